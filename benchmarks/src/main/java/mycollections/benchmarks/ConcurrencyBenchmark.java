@@ -0,0 +1,103 @@
+package mycollections.benchmarks;
+
+import mycollections.BSTTreeSet;
+import mycollections.ConcurrentBSTTreeSet;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mixed workload (80% contains, 10% add, 10% remove of random keys) on one set shared by all threads: lock-free {@link ConcurrentBSTTreeSet}
+ * against {@link BSTTreeSet} behind a global lock, which it was made to replace, and {@link ConcurrentSkipListSet} as the reference.
+ * The same operation is run by 1, 4 and 8 threads (score is the total throughput of all threads). Contention is set by the range of keys:
+ * with a small range threads change the same few nodes all the time, with a big one they rarely meet.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ConcurrencyBenchmark {
+
+    public enum SharedSet {
+        CONCURRENT_BST_TREE_SET {
+            @Override
+            Set<Integer> newSet() {
+                return new ConcurrentBSTTreeSet<>();
+            }
+        },
+        SYNCHRONIZED_BST_TREE_SET {
+            @Override
+            Set<Integer> newSet() {
+                return Collections.synchronizedSet(new BSTTreeSet<>());
+            }
+        },
+        CONCURRENT_SKIP_LIST_SET {
+            @Override
+            Set<Integer> newSet() {
+                return new ConcurrentSkipListSet<>();
+            }
+        };
+
+        abstract Set<Integer> newSet();
+    }
+
+    @Param
+    public SharedSet implementation;
+
+    /**
+     * Number of distinct keys: 64 for high contention, 1M for low.
+     */
+    @Param({"64", "1000000"})
+    public int keyRange;
+
+    private Set<Integer> set;
+    private Integer[] keys; // boxed once, so operations do not measure boxing
+
+    @Setup(Level.Iteration)
+    public void createSet() {
+        keys = new Integer[keyRange];
+        for (int i = 0; i < keyRange; i++) {
+            keys[i] = i;
+        }
+        set = implementation.newSet();
+        for (int i = 0; i < keyRange; i += 2) { // half full, where adds and removes keep it
+            set.add(keys[(int) ((i * 0x9E3779B1L) % keyRange)]); // scattered, not sorted, as the trees do not balance
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean mixed1Thread() {
+        return mixedOperation();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean mixed4Threads() {
+        return mixedOperation();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean mixed8Threads() {
+        return mixedOperation();
+    }
+
+    private boolean mixedOperation() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Integer key = keys[random.nextInt(keyRange)];
+        int operation = random.nextInt(10);
+        if (operation == 0) {
+            return set.add(key);
+        } else if (operation == 1) {
+            return set.remove(key);
+        }
+        return set.contains(key);
+    }
+}
@@ -0,0 +1,65 @@
+package mycollections.benchmarks;
+
+import mycollections.BSTTreeSet;
+import mycollections.TreeBalancing;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Sets compared by benchmarks: trees of this project with every balancing, and java.util.TreeSet as the reference.
+ */
+public enum Implementation {
+
+    BST_TREE_SET {
+        @Override
+        Set<Integer> newSet() {
+            return TreeBalancing.NONE.newTreeSet();
+        }
+    },
+    /**
+     * Unbalanced tree, rebalancing its parts when insertion goes deeper than 2 * log2(n).
+     */
+    SELF_HEALING_BST_TREE_SET {
+        @Override
+        Set<Integer> newSet() {
+            BSTTreeSet<Integer> set = TreeBalancing.NONE.newTreeSet();
+            set.setAutoRebalanceFactor(2);
+            return set;
+        }
+    },
+    AVL_TREE_SET {
+        @Override
+        Set<Integer> newSet() {
+            return TreeBalancing.AVL.newTreeSet();
+        }
+    },
+    RED_BLACK_TREE_SET {
+        @Override
+        Set<Integer> newSet() {
+            return TreeBalancing.RED_BLACK.newTreeSet();
+        }
+    },
+    JAVA_UTIL_TREE_SET {
+        @Override
+        Set<Integer> newSet() {
+            return new TreeSet<>();
+        }
+    };
+
+    /**
+     * Unbalanced tree built from sorted keys is a list, and building it takes O(n^2): hours for millions of keys.
+     */
+    static final int MAX_DEGENERATED_SIZE = 100_000;
+
+    abstract Set<Integer> newSet();
+
+    /**
+     * @throws IllegalStateException for combination of parameters which would not finish in reasonable time (JMH reports it, and goes on with other combinations)
+     */
+    void checkFeasible(KeyDistribution distribution, int size) {
+        if (this == BST_TREE_SET && distribution.isOrdered() && size > MAX_DEGENERATED_SIZE) {
+            throw new IllegalStateException("Unbalanced tree of " + size + " " + distribution + " keys is skipped, it would take hours to build");
+        }
+    }
+}
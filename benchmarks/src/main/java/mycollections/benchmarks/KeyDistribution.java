@@ -0,0 +1,89 @@
+package mycollections.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Order in which keys are added, and keys are looked up. Keys are even numbers {@code 2j}, for {@code j} in {@code [0, size)},
+ * so odd numbers are never in the set. The set always gets all {@code size} keys (see {@link #allKeys(int)}), so results for the same size compare
+ * between distributions; distribution decides the order of adding them, and the stream of lookups and updates (see {@link #probes(int, int)}).
+ */
+public enum KeyDistribution {
+
+    RANDOM {
+        @Override
+        int index(int i, int size, int[] permutation, Random random) {
+            return permutation[i % size];
+        }
+    },
+    SORTED {
+        @Override
+        int index(int i, int size, int[] permutation, Random random) {
+            return i % size;
+        }
+    },
+    REVERSE_SORTED {
+        @Override
+        int index(int i, int size, int[] permutation, Random random) {
+            return size - 1 - i % size;
+        }
+    },
+    /**
+     * Zipf distribution with exponent 1 (k-th most popular key is taken with probability proportional to 1/k), so probes repeat and a few hot keys
+     * take most of the operations. Popularity is not related to the key order (ranks are mapped to keys by random permutation).
+     * Keys are added in random order (the same as for {@link #RANDOM}), as probes repeat.
+     * Ranks are sampled by inverting continuous approximation of the distribution: {@code floor((size + 1)^u) - 1} for uniform {@code u}.
+     */
+    ZIPF {
+        @Override
+        int index(int i, int size, int[] permutation, Random random) {
+            int rank = (int) Math.pow(size + 1, random.nextDouble()) - 1;
+            return permutation[Math.min(rank, size - 1)];
+        }
+    };
+
+    abstract int index(int i, int size, int[] permutation, Random random);
+
+    boolean isOrdered() {
+        return this == SORTED || this == REVERSE_SORTED;
+    }
+
+    /**
+     * Seeds are fixed, so all implementations get the same keys. Permutation is the same for adding keys and for probes,
+     * so the hot keys of {@link #ZIPF} are keys of the set.
+     */
+    private static final long PERMUTATION_SEED = 1;
+    private static final long PROBES_SEED = 2;
+
+    /**
+     * @param size number of distinct keys
+     * @return every key once, in order of adding them to the set
+     */
+    int[] allKeys(int size) {
+        return ((this == ZIPF) ? RANDOM : this).keys(size, size);
+    }
+
+    /**
+     * @param size number of distinct keys
+     * @param length number of keys to generate; keys repeat (in the same order, or as drawn by Zipf distribution) when it is bigger than size
+     * @return keys to look up or update, in order of this distribution
+     */
+    int[] probes(int size, int length) {
+        return keys(size, length);
+    }
+
+    private int[] keys(int size, int length) {
+        Random random = new Random(PERMUTATION_SEED);
+        int[] permutation = new int[size];
+        for (int i = 0; i < size; i++) {
+            int j = random.nextInt(i + 1); // Fisher-Yates, done while filling
+            permutation[i] = permutation[j];
+            permutation[j] = i;
+        }
+        random.setSeed(PROBES_SEED);
+        int[] keys = new int[length];
+        for (int i = 0; i < length; i++) {
+            keys[i] = 2 * index(i, size, permutation, random);
+        }
+        return keys;
+    }
+}
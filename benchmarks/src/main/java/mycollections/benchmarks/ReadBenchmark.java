@@ -0,0 +1,86 @@
+package mycollections.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Operations not changing the set: contains (keys looked up in order of the distribution), iteration, toArray, serialization and deserialization.
+ * Throughput mode gives operations per microsecond, and sample time mode gives latency percentiles. Run with {@code -prof gc} for allocation rate.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ReadBenchmark {
+
+    private static final int PROBES = 1 << 16; // power of two, for cheap wrapping of probe index
+
+    @Param
+    public Implementation implementation;
+
+    @Param
+    public KeyDistribution distribution;
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int size;
+
+    private Set<Integer> set;
+    private Integer[] probes; // boxed once, so contains does not measure boxing
+    private int probeIndex;
+    private byte[] serialized;
+
+    @Setup(Level.Trial)
+    public void createSet() throws IOException {
+        implementation.checkFeasible(distribution, size);
+        set = implementation.newSet();
+        for (int key : distribution.allKeys(size)) {
+            set.add(key);
+        }
+        int[] keys = distribution.probes(size, PROBES);
+        probes = new Integer[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            probes[i] = keys[i];
+        }
+        serialized = serialize();
+    }
+
+    @Benchmark
+    public boolean contains() {
+        return set.contains(probes[probeIndex++ & (PROBES - 1)]);
+    }
+
+    @Benchmark
+    public long iterate() {
+        long sum = 0;
+        for (Integer key : set) {
+            sum += key;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public Object[] toArray() {
+        return set.toArray();
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(set);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public Object deserialize() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+            return ois.readObject();
+        }
+    }
+}
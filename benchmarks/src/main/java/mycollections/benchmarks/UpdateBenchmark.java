@@ -0,0 +1,109 @@
+package mycollections.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Operations changing the set.
+ * <ul>
+ * <li>{@link #add(EmptySet)} and {@link #remove(FullSet)} add (remove) all keys in order of the distribution, to (from) set created again for every iteration.
+ * Score is the time of {@code size} operations, so divide by size for time of one operation.</li>
+ * <li>{@link #removeAndAddBack(FullSet)} keeps the set full (every probe is a key of the set), so it gives throughput and latency percentiles of update in steady state.</li>
+ * </ul>
+ * Run with {@code -prof gc} for allocation rate.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class UpdateBenchmark {
+
+    private static final int PROBES = 1 << 16;
+
+    @Param
+    public Implementation implementation;
+
+    @Param
+    public KeyDistribution distribution;
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int size;
+
+    private Integer[] keys;
+    private Integer[] probes;
+
+    @Setup(Level.Trial)
+    public void createKeys() {
+        implementation.checkFeasible(distribution, size);
+        keys = boxed(distribution.allKeys(size));
+        probes = boxed(distribution.probes(size, PROBES));
+    }
+
+    private static Integer[] boxed(int[] values) {
+        Integer[] boxed = new Integer[values.length];
+        for (int i = 0; i < values.length; i++) {
+            boxed[i] = values[i];
+        }
+        return boxed;
+    }
+
+    @State(Scope.Thread)
+    public static class EmptySet {
+
+        Set<Integer> set;
+
+        @Setup(Level.Iteration)
+        public void create(UpdateBenchmark benchmark) {
+            set = benchmark.implementation.newSet();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class FullSet {
+
+        Set<Integer> set;
+        int probeIndex;
+
+        @Setup(Level.Iteration)
+        public void create(UpdateBenchmark benchmark) {
+            set = benchmark.implementation.newSet();
+            for (Integer key : benchmark.keys) {
+                set.add(key);
+            }
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3, batchSize = 1)
+    @Measurement(iterations = 10, batchSize = 1)
+    public Set<Integer> add(EmptySet empty) {
+        for (Integer key : keys) {
+            empty.set.add(key);
+        }
+        return empty.set;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3, batchSize = 1)
+    @Measurement(iterations = 10, batchSize = 1)
+    public Set<Integer> remove(FullSet full) {
+        for (Integer key : keys) {
+            full.set.remove(key);
+        }
+        return full.set;
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public boolean removeAndAddBack(FullSet full) {
+        Integer key = probes[full.probeIndex++ & (PROBES - 1)];
+        return full.set.remove(key) && full.set.add(key); // key not in the set is not added, so the set never grows
+    }
+}
@@ -0,0 +1,309 @@
+package mycollections;
+
+import java.util.*;
+
+/**
+ * AVL tree of nodes addressed by slot numbers, with no node objects, shared by {@link PrimitiveBSTTreeSet} (nodes in int arrays on heap)
+ * and {@link OffHeapLongTreeSet} (nodes off heap). Links of nodes are read and written through {@link SlotStore}, and the set keeps the root
+ * and the elements (so no element is ever boxed), so it provides them by subclassing this class.<BR>
+ * Sets do only the descent comparing elements (it needs the primitive element), and the allocation of new slot.
+ * Everything else (linking, removal, rotations, navigation, select, iteration) is done here.
+ */
+abstract class AVLSlotTree {
+
+    static final long NONE = -1L; // slot of missing node, like null reference
+
+    private final SlotStore store;
+
+    /**
+     * incremented with every modification, for fail-fast iterators
+     */
+    int modificationCount;
+
+    AVLSlotTree(SlotStore store) {
+        this.store = store;
+    }
+
+    /**
+     * @return slot of the root node, {@link #NONE} for empty tree
+     */
+    abstract long root();
+
+    abstract void setRoot(long slot);
+
+    /**
+     * Copies element from one slot to the other. Used when removing node having both sons: its successor's element is moved into it.
+     */
+    abstract void copyElement(long fromSlot, long toSlot);
+
+    /**
+     * @return negative, zero or positive, when element in first slot is smaller, equal or greater than element in second slot
+     */
+    abstract int compareElements(long firstSlot, long secondSlot);
+
+    /**
+     * Links new node into the place found by descent, and rebalances the tree.
+     * @param slot slot of new node, with the element already set and no links
+     * @param parentSlot slot of the last node visited by descent, {@link #NONE} if the tree is empty
+     * @param asLeftSon {@code true} if new node should become left son of the parent
+     */
+    void link(long slot, long parentSlot, boolean asLeftSon) {
+        store.setParent(slot, parentSlot);
+        if (parentSlot == NONE) {
+            setRoot(slot);
+        } else if (asLeftSon) {
+            store.setLeft(parentSlot, slot);
+        } else {
+            store.setRight(parentSlot, slot);
+        }
+        modificationCount++;
+        rebalanceUpFrom(parentSlot);
+    }
+
+    /**
+     * Removes node from the tree. If the node has both sons, its successor's element is moved into it and the successor's slot is freed instead (like java.util.TreeMap does).
+     * @return {@code true} if successor's element was moved into provided slot, so the slot is still in use
+     */
+    boolean removeSlot(long slot) {
+        boolean successorMoved = false;
+        long slotToUnlink = slot;
+        if (store.left(slot) != NONE && store.right(slot) != NONE) {
+            slotToUnlink = lowestIn(store.right(slot));
+            copyElement(slotToUnlink, slot);
+            successorMoved = true;
+        }
+        long son = (store.left(slotToUnlink) != NONE) ? store.left(slotToUnlink) : store.right(slotToUnlink); // it has at most one son
+        long parentSlot = store.parent(slotToUnlink);
+        replaceSon(parentSlot, slotToUnlink, son);
+        store.free(slotToUnlink);
+        modificationCount++;
+        rebalanceUpFrom(parentSlot);
+        return successorMoved;
+    }
+
+    /**
+     * Going from provided node up to the root, updates subtree sizes and heights, and rotates nodes whose sons' heights differ by two.
+     */
+    private void rebalanceUpFrom(long slot) {
+        long node = slot;
+        while (node != NONE) {
+            update(node);
+            long leftSon = store.left(node);
+            long rightSon = store.right(node);
+            int balance = heightOf(rightSon) - heightOf(leftSon);
+            if (balance > 1) {
+                if (heightOf(store.left(rightSon)) > heightOf(store.right(rightSon))) {
+                    rotateRight(rightSon);
+                }
+                node = rotateLeft(node);
+            } else if (balance < -1) {
+                if (heightOf(store.right(leftSon)) > heightOf(store.left(leftSon))) {
+                    rotateLeft(leftSon);
+                }
+                node = rotateRight(node);
+            }
+            node = store.parent(node);
+        }
+    }
+
+    /**
+     * @return new root of the subtree (former right son)
+     */
+    private long rotateLeft(long slot) {
+        long newRoot = store.right(slot);
+        long middle = store.left(newRoot);
+        store.setRight(slot, middle);
+        if (middle != NONE) {
+            store.setParent(middle, slot);
+        }
+        replaceSon(store.parent(slot), slot, newRoot);
+        store.setLeft(newRoot, slot);
+        store.setParent(slot, newRoot);
+        update(slot);
+        update(newRoot);
+        return newRoot;
+    }
+
+    /**
+     * @return new root of the subtree (former left son)
+     */
+    private long rotateRight(long slot) {
+        long newRoot = store.left(slot);
+        long middle = store.right(newRoot);
+        store.setLeft(slot, middle);
+        if (middle != NONE) {
+            store.setParent(middle, slot);
+        }
+        replaceSon(store.parent(slot), slot, newRoot);
+        store.setRight(newRoot, slot);
+        store.setParent(slot, newRoot);
+        update(slot);
+        update(newRoot);
+        return newRoot;
+    }
+
+    /**
+     * Puts newSon in place of oldSon under provided parent (or as the root if parent is {@link #NONE}).
+     */
+    private void replaceSon(long parentSlot, long oldSon, long newSon) {
+        if (parentSlot == NONE) {
+            setRoot(newSon);
+        } else if (store.left(parentSlot) == oldSon) {
+            store.setLeft(parentSlot, newSon);
+        } else {
+            store.setRight(parentSlot, newSon);
+        }
+        if (newSon != NONE) {
+            store.setParent(newSon, parentSlot);
+        }
+    }
+
+    private void update(long slot) {
+        long leftSon = store.left(slot);
+        long rightSon = store.right(slot);
+        store.setSubtreeSize(slot, 1 + sizeOf(leftSon) + sizeOf(rightSon));
+        store.setHeight(slot, 1 + Math.max(heightOf(leftSon), heightOf(rightSon)));
+    }
+
+    long sizeOf(long slot) {
+        return (slot == NONE) ? 0 : store.subtreeSize(slot);
+    }
+
+    private int heightOf(long slot) {
+        return (slot == NONE) ? 0 : store.height(slot);
+    }
+
+    /**
+     * @return slot of the smallest element, {@link #NONE} for empty tree
+     */
+    long lowestSlot() {
+        return (root() == NONE) ? NONE : lowestIn(root());
+    }
+
+    /**
+     * @return slot of the biggest element, {@link #NONE} for empty tree
+     */
+    long highestSlot() {
+        long slot = root();
+        if (slot == NONE) {
+            return NONE;
+        }
+        while (store.right(slot) != NONE) {
+            slot = store.right(slot);
+        }
+        return slot;
+    }
+
+    private long lowestIn(long subtreeRoot) {
+        long slot = subtreeRoot;
+        while (store.left(slot) != NONE) {
+            slot = store.left(slot);
+        }
+        return slot;
+    }
+
+    /**
+     * @return slot of next element in ascending order, {@link #NONE} if provided slot holds the biggest element
+     */
+    long successor(long slot) {
+        if (store.right(slot) != NONE) {
+            return lowestIn(store.right(slot));
+        }
+        long current = slot;
+        long ancestor = store.parent(current);
+        while (ancestor != NONE && store.right(ancestor) == current) {
+            current = ancestor;
+            ancestor = store.parent(current);
+        }
+        return ancestor;
+    }
+
+    /**
+     * @return slot of k-th smallest element (counting from 0)
+     * @throws IndexOutOfBoundsException if k is negative or not smaller than size of the tree
+     */
+    long selectSlot(long k) {
+        long size = sizeOf(root());
+        if (k < 0 || k >= size) {
+            throw new IndexOutOfBoundsException("Index: " + k + ", size: " + size);
+        }
+        long slot = root();
+        long toSkip = k;
+        while (true) {
+            long leftSize = sizeOf(store.left(slot));
+            if (toSkip < leftSize) {
+                slot = store.left(slot);
+            } else if (toSkip > leftSize) {
+                toSkip -= leftSize + 1;
+                slot = store.right(slot);
+            } else {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Iterates slots in ascending order of elements. Sets add method returning the primitive element of the slot.
+     * Fail-fast, like iterators of {@link BSTTreeSet}. remove() is supported: if removal moved successor's element into removed slot, iteration continues from that slot.
+     */
+    static class SlotIterator {
+
+        private final AVLSlotTree tree;
+        private long nextSlot;
+        private long lastReturned = NONE;
+        private int expectedModificationCount;
+
+        SlotIterator(AVLSlotTree tree) {
+            this.tree = tree;
+            this.nextSlot = tree.lowestSlot();
+            this.expectedModificationCount = tree.modificationCount;
+        }
+
+        public boolean hasNext() {
+            return nextSlot != NONE;
+        }
+
+        long nextSlot() {
+            if (tree.modificationCount != expectedModificationCount) {
+                throw new ConcurrentModificationException("Modification of collection not allowed when iterating. Iterator is fail-fast");
+            }
+            if (nextSlot == NONE) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = nextSlot;
+            nextSlot = tree.successor(nextSlot);
+            return lastReturned;
+        }
+
+        public void remove() {
+            if (lastReturned == NONE) {
+                throw new IllegalStateException("Cannot call remove() more than once per one next() call.");
+            }
+            if (tree.modificationCount != expectedModificationCount) {
+                throw new ConcurrentModificationException("Modification of collection not allowed when iterating. Iterator is fail-fast");
+            }
+            if (tree.removeSlot(lastReturned)) {
+                nextSlot = lastReturned; // successor's element (next to be returned) was moved into removed slot
+            }
+            lastReturned = NONE;
+            expectedModificationCount = tree.modificationCount;
+        }
+    }
+
+    /*
+        Sanity check for tests: parent-son links are symmetric, subtree sizes and heights are correct, AVL balance is kept and elements are in order.
+     */
+    boolean isStructureFine() {
+        return root() == NONE || (store.parent(root()) == NONE && isSubtreeFine(root()));
+    }
+
+    private boolean isSubtreeFine(long slot) {
+        long leftSon = store.left(slot);
+        long rightSon = store.right(slot);
+        if (leftSon != NONE && (store.parent(leftSon) != slot || compareElements(leftSon, slot) >= 0 || !isSubtreeFine(leftSon))) return false;
+        if (rightSon != NONE && (store.parent(rightSon) != slot || compareElements(rightSon, slot) <= 0 || !isSubtreeFine(rightSon))) return false;
+        if (store.subtreeSize(slot) != 1 + sizeOf(leftSon) + sizeOf(rightSon)) return false;
+        if (store.height(slot) != 1 + Math.max(heightOf(leftSon), heightOf(rightSon))) return false;
+        return Math.abs(heightOf(leftSon) - heightOf(rightSon)) <= 1;
+    }
+}
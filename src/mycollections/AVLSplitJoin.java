@@ -0,0 +1,333 @@
+package mycollections;
+
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Split and join of AVL trees, and set operations built only from them (like in "Just Join for Parallel Ordered Sets", Blelloch, Ferizovic, Sun).
+ * <ul>
+ * <li>join(L, k, R), where all elements of L are smaller than k and all elements of R are greater, links both trees with node k.
+ * When heights of L and R differ by more than one, k is linked at the spine of the higher tree (where the heights match) and the tree is rebalanced going back up.
+ * It takes O(|height(L) - height(R)|) time.</li>
+ * <li>split(T, k) cuts T into trees of elements smaller and greater than k (and node equal to k if present), by going down from the root
+ * and joining the cut-off subtrees with nodes of the path. It takes O(log n) time.</li>
+ * <li>union, intersection and difference split the first tree with root of the second one, and work on both halves independently.
+ * The halves have no common nodes, so they are computed in parallel as fork/join tasks. Result is balanced AVL tree, made of the nodes of both trees.</li>
+ * </ul>
+ * Works on reference-based nodes ({@link NodeStorage#REFERENCES}) only, as nodes move between trees. Trees are handled as detached subtrees:
+ * root node (with no parent) together with the height, which is not kept in nodes (they keep balance factors only), but is easy to track on the way down.
+ * Nodes are reused, so provided subtrees are destroyed.
+ */
+final class AVLSplitJoin<E> {
+
+    /**
+     * Operations on smaller trees are not worth a fork/join task
+     */
+    static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 13;
+
+    private final BSTTreeSet<E> comparingTree; // used only for comparing elements, without counting them in its statistics (tasks run in many threads)
+    private final int parallelThreshold;
+
+    AVLSplitJoin(BSTTreeSet<E> comparingTree) {
+        this(comparingTree, DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    AVLSplitJoin(BSTTreeSet<E> comparingTree, int parallelThreshold) {
+        this.comparingTree = comparingTree;
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * Detached subtree: root with no parent (null for empty subtree) and its height.
+     */
+    static final class Subtree<E> {
+
+        final Node<E> root;
+        final int height;
+
+        Subtree(Node<E> root, int height) {
+            this.root = root;
+            this.height = height;
+        }
+
+        static <E> Subtree<E> of(Node<E> root) {
+            return new Subtree<>(root, heightOf(root));
+        }
+
+        boolean isEmpty() {
+            return root == null;
+        }
+
+        int size() {
+            return BSTTreeSet.subtreeSize(root);
+        }
+
+        /**
+         * Heights of sons are derived from the height of the root and its balance factor.
+         */
+        Subtree<E> leftSon() {
+            return new Subtree<>(root.getLeftSon(), height - 1 - Math.max(balanceFactor(root), 0));
+        }
+
+        Subtree<E> rightSon() {
+            return new Subtree<>(root.getRightSon(), height - 1 + Math.min(balanceFactor(root), 0));
+        }
+    }
+
+    /**
+     * Result of the split: elements smaller than the key, node with element equal to the key (or null), elements greater than the key,
+     * and number of comparisons done.
+     */
+    static final class Split<E> {
+
+        final Subtree<E> smaller;
+        final Node<E> equal;
+        final Subtree<E> greater;
+        final int comparisons;
+
+        Split(Subtree<E> smaller, Node<E> equal, Subtree<E> greater, int comparisons) {
+            this.smaller = smaller;
+            this.equal = equal;
+            this.greater = greater;
+            this.comparisons = comparisons;
+        }
+    }
+
+    /**
+     * Height of AVL subtree, found by going down always to the higher son.
+     */
+    static int heightOf(Node<?> root) {
+        int height = 0;
+        for (Node<?> node = root; node != null; node = (balanceFactor(node) < 0) ? node.getLeftSon() : node.getRightSon()) {
+            height++;
+        }
+        return height;
+    }
+
+    private static int balanceFactor(Node<?> node) {
+        return ((WeightedNode<?>) node).getBalanceFactor();
+    }
+
+    static <E> Subtree<E> empty() {
+        return new Subtree<>(null, 0);
+    }
+
+    /**
+     * Unlinks root of the subtree from its sons, so the sons become detached subtrees. Balance factor of the root is kept.
+     */
+    private static <E> void detachSons(Node<E> root) {
+        if (root.hasLeftSon()) {
+            root.getLeftSon().unlinkFromParent();
+        }
+        if (root.hasRightSon()) {
+            root.getRightSon().unlinkFromParent();
+        }
+    }
+
+    /**
+     * Links detached subtrees as sons of detached node, which must have no sons. Heights may differ at most by one.
+     */
+    private static <E> Subtree<E> link(Subtree<E> left, Node<E> node, Subtree<E> right) {
+        assert Math.abs(right.height - left.height) <= 1;
+        node.setLeftSon(left.root);
+        node.setRightSon(right.root);
+        ((WeightedNode<E>) node).setBalanceFactor(right.height - left.height);
+        BSTTreeSet.updateSubtreeSize(node);
+        return new Subtree<>(node, 1 + Math.max(left.height, right.height));
+    }
+
+    /**
+     * Joins detached subtrees with detached node (with no sons). All elements of the left subtree must be smaller than element of the node,
+     * and all elements of the right subtree must be greater.
+     */
+    Subtree<E> join(Subtree<E> left, Node<E> node, Subtree<E> right) {
+        if (left.height > right.height + 1) {
+            return joinRight(left, node, right);
+        }
+        if (right.height > left.height + 1) {
+            return joinLeft(left, node, right);
+        }
+        return link(left, node, right);
+    }
+
+    /**
+     * Left subtree is higher: goes down its right spine to the subtree not higher than the right subtree plus one, and links it there.
+     */
+    private Subtree<E> joinRight(Subtree<E> left, Node<E> node, Subtree<E> right) {
+        Node<E> spineNode = left.root;
+        Subtree<E> spineLeft = left.leftSon();
+        Subtree<E> spineRight = left.rightSon();
+        detachSons(spineNode);
+        if (spineRight.height <= right.height + 1) {
+            Subtree<E> joined = link(spineRight, node, right);
+            if (joined.height <= spineLeft.height + 1) {
+                return link(spineLeft, spineNode, joined);
+            }
+            // joined is two levels higher than spineLeft, and its left son spineRight is higher than its right son: double rotation
+            Node<E> middle = spineRight.root;
+            Subtree<E> middleLeft = spineRight.leftSon();
+            Subtree<E> middleRight = spineRight.rightSon();
+            detachSons(node);
+            detachSons(middle);
+            return link(link(spineLeft, spineNode, middleLeft), middle, link(middleRight, node, right));
+        }
+        Subtree<E> joined = joinRight(spineRight, node, right);
+        if (joined.height <= spineLeft.height + 1) {
+            return link(spineLeft, spineNode, joined);
+        }
+        // single left rotation
+        Node<E> newRoot = joined.root;
+        Subtree<E> newRootLeft = joined.leftSon();
+        Subtree<E> newRootRight = joined.rightSon();
+        detachSons(newRoot);
+        return link(link(spineLeft, spineNode, newRootLeft), newRoot, newRootRight);
+    }
+
+    /**
+     * Mirror of {@link #joinRight(Subtree, Node, Subtree)}.
+     */
+    private Subtree<E> joinLeft(Subtree<E> left, Node<E> node, Subtree<E> right) {
+        Node<E> spineNode = right.root;
+        Subtree<E> spineLeft = right.leftSon();
+        Subtree<E> spineRight = right.rightSon();
+        detachSons(spineNode);
+        if (spineLeft.height <= left.height + 1) {
+            Subtree<E> joined = link(left, node, spineLeft);
+            if (joined.height <= spineRight.height + 1) {
+                return link(joined, spineNode, spineRight);
+            }
+            Node<E> middle = spineLeft.root;
+            Subtree<E> middleLeft = spineLeft.leftSon();
+            Subtree<E> middleRight = spineLeft.rightSon();
+            detachSons(node);
+            detachSons(middle);
+            return link(link(left, node, middleLeft), middle, link(middleRight, spineNode, spineRight));
+        }
+        Subtree<E> joined = joinLeft(left, node, spineLeft);
+        if (joined.height <= spineRight.height + 1) {
+            return link(joined, spineNode, spineRight);
+        }
+        Node<E> newRoot = joined.root;
+        Subtree<E> newRootLeft = joined.leftSon();
+        Subtree<E> newRootRight = joined.rightSon();
+        detachSons(newRoot);
+        return link(newRootLeft, newRoot, link(newRootRight, spineNode, spineRight));
+    }
+
+    /**
+     * Joins two detached subtrees, all elements of the left one must be smaller than all elements of the right one.
+     * Highest node of the left subtree is taken as joining node.
+     */
+    Subtree<E> join(Subtree<E> left, Subtree<E> right) {
+        if (left.isEmpty()) {
+            return right;
+        }
+        Split<E> withoutHighest = splitOffHighest(left);
+        return join(withoutHighest.smaller, withoutHighest.equal, right);
+    }
+
+    /**
+     * @return split of the subtree into its highest node (as {@code equal}) and all other nodes (as {@code smaller})
+     */
+    private Split<E> splitOffHighest(Subtree<E> subtree) {
+        Node<E> root = subtree.root;
+        Subtree<E> left = subtree.leftSon();
+        Subtree<E> right = subtree.rightSon();
+        detachSons(root);
+        if (right.isEmpty()) {
+            return new Split<>(left, root, empty(), 0);
+        }
+        Split<E> split = splitOffHighest(right);
+        return new Split<>(join(left, root, split.smaller), split.equal, empty(), 0);
+    }
+
+    /**
+     * Splits detached subtree by provided key. Node equal to the key (if found) is returned detached, with no sons.
+     */
+    Split<E> split(Subtree<E> subtree, E key) {
+        if (subtree.isEmpty()) {
+            return new Split<>(subtree, null, subtree, 0);
+        }
+        Node<E> root = subtree.root;
+        Subtree<E> left = subtree.leftSon();
+        Subtree<E> right = subtree.rightSon();
+        detachSons(root);
+        int comparison = comparingTree.compareWithoutCounting(key, root.getValue());
+        if (comparison == 0) {
+            return new Split<>(left, root, right, 1);
+        }
+        if (comparison < 0) {
+            Split<E> split = split(left, key);
+            return new Split<>(split.smaller, split.equal, join(split.greater, root, right), split.comparisons + 1);
+        }
+        Split<E> split = split(right, key);
+        return new Split<>(join(left, root, split.smaller), split.equal, split.greater, split.comparisons + 1);
+    }
+
+    enum SetOperation {UNION, INTERSECTION, DIFFERENCE}
+
+    /**
+     * Computes set operation on two detached subtrees. When both elements are equal, node of the first subtree is kept (like with {@code addAll}).
+     * To be run in {@link java.util.concurrent.ForkJoinPool}; every subproblem bigger than the threshold is forked.
+     */
+    final class SetOperationTask extends RecursiveTask<Subtree<E>> {
+
+        private static final long serialVersionUID = -2587012317722163431L;
+
+        private final SetOperation operation;
+        private final Subtree<E> first;
+        private final Subtree<E> second;
+
+        /**
+         * comparisons done by this task and its subtasks, valid when the task is done (subtasks add theirs after they are joined)
+         */
+        private long comparisons;
+
+        SetOperationTask(SetOperation operation, Subtree<E> first, Subtree<E> second) {
+            this.operation = operation;
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        protected Subtree<E> compute() {
+            if (first.isEmpty() || second.isEmpty()) {
+                return (operation == SetOperation.UNION && first.isEmpty()) ? second
+                        : (operation == SetOperation.INTERSECTION) ? empty() : first;
+            }
+            boolean forking = first.size() + second.size() > parallelThreshold;
+            Node<E> secondRoot = second.root;
+            Subtree<E> secondLeft = second.leftSon();
+            Subtree<E> secondRight = second.rightSon();
+            detachSons(secondRoot);
+            Split<E> split = split(first, secondRoot.getValue());
+            comparisons = split.comparisons;
+
+            SetOperationTask leftTask = new SetOperationTask(operation, split.smaller, secondLeft);
+            SetOperationTask rightTask = new SetOperationTask(operation, split.greater, secondRight);
+            Subtree<E> left;
+            Subtree<E> right;
+            if (forking) {
+                leftTask.fork();
+                right = rightTask.compute();
+                left = leftTask.join();
+            } else {
+                left = leftTask.compute();
+                right = rightTask.compute();
+            }
+            comparisons += leftTask.comparisons + rightTask.comparisons;
+
+            switch (operation) {
+                case UNION:
+                    return AVLSplitJoin.this.join(left, (split.equal != null) ? split.equal : secondRoot, right);
+                case INTERSECTION:
+                    return (split.equal != null) ? AVLSplitJoin.this.join(left, split.equal, right) : AVLSplitJoin.this.join(left, right);
+                default:
+                    return AVLSplitJoin.this.join(left, right);
+            }
+        }
+
+        long getComparisons() {
+            return comparisons;
+        }
+    }
+}
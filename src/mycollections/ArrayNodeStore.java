@@ -0,0 +1,193 @@
+package mycollections;
+
+import java.util.Arrays;
+
+/**
+ * Keeps all nodes of one tree in parallel arrays instead of separate objects: node is just an index of a slot,
+ * and left son, right son, parent, subtree size and balance information (balance factor or colour) of the slot are kept in int arrays, element in Object array.
+ * It saves object header and four references per node, and keeps the nodes close to each other in memory.<BR>
+ * Arrays are paged: growing the store adds a new page (only the small array of pages is copied), so the tree is never copied as a whole.
+ * Slots of removed nodes are kept on a free list (linked through the left son array) and reused by next inserted nodes.<BR>
+ * Tree code accesses the nodes through {@link IndexedNode} handles, which are created on demand and hold only the index, so they must be compared with {@link Node#isSameNodeAs(Node)}, not with {@code ==}.
+ */
+class ArrayNodeStore<E> implements NodeFactory<E> {
+
+    static final int NONE = -1; // index of missing node, like null reference
+
+    private static final int PAGE_SHIFT = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int INITIAL_NUMBER_OF_PAGES = 4;
+
+    private int[][] lefts;
+    private int[][] rights;
+    private int[][] parents;
+    private int[][] subtreeSizes;
+    private int[][] balances; // balance factor for AVL tree, colour ordinal for red-black tree
+    private Object[][] values;
+
+    private int numberOfPages;
+    private int usedSlots; // slots [0, usedSlots) were handed out at least once
+    private int freeListHead = NONE;
+
+    ArrayNodeStore() {
+        clear();
+    }
+
+    @Override
+    public Node<E> newNode(E e) {
+        return new IndexedNode<>(this, allocate(e));
+    }
+
+    @Override
+    public WeightedNode<E> newWeightedNode(E e) {
+        return new IndexedNode<>(this, allocate(e));
+    }
+
+    @Override
+    public ColouredNode<E> newColouredNode(E e) {
+        return new IndexedNode<>(this, allocate(e)); // colour ordinal 0 is red, as new node should be
+    }
+
+    /**
+     * Puts slot of the node on the free list. Handles of released node must not be used any more.
+     */
+    @Override
+    public void release(Node<E> node) {
+        int index = ((IndexedNode<E>) node).getIndex();
+        values[page(index)][offset(index)] = null; // let garbage collector free the element
+        parents[page(index)][offset(index)] = NONE;
+        rights[page(index)][offset(index)] = NONE;
+        lefts[page(index)][offset(index)] = freeListHead;
+        freeListHead = index;
+    }
+
+    @Override
+    public void clear() {
+        lefts = new int[INITIAL_NUMBER_OF_PAGES][];
+        rights = new int[INITIAL_NUMBER_OF_PAGES][];
+        parents = new int[INITIAL_NUMBER_OF_PAGES][];
+        subtreeSizes = new int[INITIAL_NUMBER_OF_PAGES][];
+        balances = new int[INITIAL_NUMBER_OF_PAGES][];
+        values = new Object[INITIAL_NUMBER_OF_PAGES][];
+        numberOfPages = 0;
+        usedSlots = 0;
+        freeListHead = NONE;
+    }
+
+    @Override
+    public NodeStorage getStorage() {
+        return NodeStorage.ARRAYS;
+    }
+
+    /**
+     * @return number of slots which can be used without adding new page
+     */
+    int capacity() {
+        return numberOfPages * PAGE_SIZE;
+    }
+
+    private int allocate(E e) {
+        int index;
+        if (freeListHead != NONE) {
+            index = freeListHead;
+            freeListHead = lefts[page(index)][offset(index)];
+        } else {
+            if (usedSlots == capacity()) {
+                addPage();
+            }
+            index = usedSlots++;
+        }
+        int page = page(index);
+        int offset = offset(index);
+        lefts[page][offset] = NONE;
+        rights[page][offset] = NONE;
+        parents[page][offset] = NONE;
+        subtreeSizes[page][offset] = 1;
+        balances[page][offset] = 0;
+        values[page][offset] = e;
+        return index;
+    }
+
+    private void addPage() {
+        if (numberOfPages == lefts.length) { // only arrays of pages are copied, pages stay where they are
+            int newLength = 2 * lefts.length;
+            lefts = Arrays.copyOf(lefts, newLength);
+            rights = Arrays.copyOf(rights, newLength);
+            parents = Arrays.copyOf(parents, newLength);
+            subtreeSizes = Arrays.copyOf(subtreeSizes, newLength);
+            balances = Arrays.copyOf(balances, newLength);
+            values = Arrays.copyOf(values, newLength);
+        }
+        lefts[numberOfPages] = new int[PAGE_SIZE];
+        rights[numberOfPages] = new int[PAGE_SIZE];
+        parents[numberOfPages] = new int[PAGE_SIZE];
+        subtreeSizes[numberOfPages] = new int[PAGE_SIZE];
+        balances[numberOfPages] = new int[PAGE_SIZE];
+        values[numberOfPages] = new Object[PAGE_SIZE];
+        numberOfPages++;
+    }
+
+    private static int page(int index) {
+        return index >>> PAGE_SHIFT;
+    }
+
+    private static int offset(int index) {
+        return index & PAGE_MASK;
+    }
+
+    /**
+     * @return handle for node in provided slot, {@code null} for {@link #NONE}
+     */
+    IndexedNode<E> node(int index) {
+        return (index == NONE) ? null : new IndexedNode<>(this, index);
+    }
+
+    E value(int index) {
+        return (E) values[page(index)][offset(index)];
+    }
+
+    void setValue(int index, E value) {
+        values[page(index)][offset(index)] = value;
+    }
+
+    int left(int index) {
+        return lefts[page(index)][offset(index)];
+    }
+
+    void setLeft(int index, int left) {
+        lefts[page(index)][offset(index)] = left;
+    }
+
+    int right(int index) {
+        return rights[page(index)][offset(index)];
+    }
+
+    void setRight(int index, int right) {
+        rights[page(index)][offset(index)] = right;
+    }
+
+    int parent(int index) {
+        return parents[page(index)][offset(index)];
+    }
+
+    void setParent(int index, int parent) {
+        parents[page(index)][offset(index)] = parent;
+    }
+
+    int subtreeSize(int index) {
+        return subtreeSizes[page(index)][offset(index)];
+    }
+
+    void setSubtreeSize(int index, int subtreeSize) {
+        subtreeSizes[page(index)][offset(index)] = subtreeSize;
+    }
+
+    int balance(int index) {
+        return balances[page(index)][offset(index)];
+    }
+
+    void setBalance(int index, int balance) {
+        balances[page(index)][offset(index)] = balance;
+    }
+}
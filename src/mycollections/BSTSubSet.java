@@ -0,0 +1,279 @@
+package mycollections;
+
+import java.util.*;
+
+/**
+ * Live view of the range of {@link BSTTreeSet}, returned by subSet, headSet, tailSet and descendingSet. Changes in the view are done in the backing tree, and the other way round.<BR>
+ * The view does not copy anything: its first and last element are found by descending the backing tree (time proportional to tree height),
+ * and its size is counted from subtree sizes of the backing tree, also in time proportional to tree height.<BR>
+ * Bounds are always kept in ascending order of the backing tree; for descending views navigation methods are just mirrored.
+ */
+class BSTSubSet<E> extends AbstractSet<E> implements NavigableSet<E> {
+
+    private final BSTTreeSet<E> tree;
+
+    private final boolean fromStart; // if true, range has no low bound and lo is ignored
+    private final E lo;
+    private final boolean loInclusive;
+
+    private final boolean toEnd; // if true, range has no high bound and hi is ignored
+    private final E hi;
+    private final boolean hiInclusive;
+
+    private final boolean descending;
+
+    BSTSubSet(BSTTreeSet<E> tree, boolean fromStart, E lo, boolean loInclusive, boolean toEnd, E hi, boolean hiInclusive, boolean descending) {
+        if (!fromStart && !toEnd) {
+            if (tree.compare(lo, hi) > 0) {
+                throw new IllegalArgumentException("fromElement > toElement");
+            }
+        } else {
+            // check if casting to Comparable is possible for bounds, or if comparator exists
+            if (!fromStart) {
+                tree.compare(lo, lo);
+            }
+            if (!toEnd) {
+                tree.compare(hi, hi);
+            }
+        }
+        this.tree = tree;
+        this.fromStart = fromStart;
+        this.lo = lo;
+        this.loInclusive = loInclusive;
+        this.toEnd = toEnd;
+        this.hi = hi;
+        this.hiInclusive = hiInclusive;
+        this.descending = descending;
+    }
+
+    private boolean tooLow(E e) {
+        if (!fromStart) {
+            int comparison = tree.compare(e, lo);
+            if (comparison < 0 || (comparison == 0 && !loInclusive)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean tooHigh(E e) {
+        if (!toEnd) {
+            int comparison = tree.compare(e, hi);
+            if (comparison > 0 || (comparison == 0 && !hiInclusive)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean inRange(E e) {
+        return !tooLow(e) && !tooHigh(e);
+    }
+
+    /**
+     * @return {@code true} if e is within range, treating both bounds as inclusive
+     */
+    private boolean inClosedRange(E e) {
+        return (fromStart || tree.compare(e, lo) >= 0) && (toEnd || tree.compare(hi, e) >= 0);
+    }
+
+    /**
+     * Checks if bound of new view created from this view lies within this view range.
+     */
+    private boolean inRange(E e, boolean inclusive) {
+        return inclusive ? inRange(e) : inClosedRange(e);
+    }
+
+    /*
+        Navigation in ascending order of the backing tree, used both by ascending and descending views.
+     */
+
+    private Node<E> absLowest() {
+        Node<E> node = fromStart ? tree.lowestNode() : tree.ceilingNode(lo, loInclusive);
+        return (node == null || tooHigh(node.getValue())) ? null : node;
+    }
+
+    private Node<E> absHighest() {
+        Node<E> node = toEnd ? tree.highestNode() : tree.floorNode(hi, hiInclusive);
+        return (node == null || tooLow(node.getValue())) ? null : node;
+    }
+
+    private Node<E> absCeiling(E e, boolean inclusive) {
+        if (tooLow(e)) {
+            return absLowest();
+        }
+        Node<E> node = tree.ceilingNode(e, inclusive);
+        return (node == null || tooHigh(node.getValue())) ? null : node;
+    }
+
+    private Node<E> absFloor(E e, boolean inclusive) {
+        if (tooHigh(e)) {
+            return absHighest();
+        }
+        Node<E> node = tree.floorNode(e, inclusive);
+        return (node == null || tooLow(node.getValue())) ? null : node;
+    }
+
+    @Override
+    public int size() {
+        int smallerThanHigh = toEnd ? tree.size() : tree.countSmallerThan(hi, hiInclusive);
+        int smallerThanLow = fromStart ? 0 : tree.countSmallerThan(lo, !loInclusive);
+        return Math.max(smallerThanHigh - smallerThanLow, 0);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return absLowest() == null;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return inRange((E) o) && tree.contains(o);
+    }
+
+    @Override
+    public boolean add(E e) {
+        if (!inRange(e)) {
+            throw new IllegalArgumentException("element out of range");
+        }
+        return tree.add(e);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return inRange((E) o) && tree.remove(o);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return descending ? absDescendingIterator() : absAscendingIterator();
+    }
+
+    /**
+     * Ascending view is a range of ranks of the backing tree, so it is split like the whole tree (see {@link BSTTreeSet#spliterator()}).
+     * Descending view gets default spliterator.
+     */
+    @Override
+    public Spliterator<E> spliterator() {
+        if (descending) {
+            return super.spliterator();
+        }
+        int smallerThanHigh = toEnd ? tree.size() : tree.countSmallerThan(hi, hiInclusive);
+        int smallerThanLow = fromStart ? 0 : tree.countSmallerThan(lo, !loInclusive);
+        return new TreeSpliterator<>(tree, smallerThanLow, Math.max(smallerThanHigh, smallerThanLow));
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        return descending ? absAscendingIterator() : absDescendingIterator();
+    }
+
+    private Iterator<E> absAscendingIterator() {
+        return new InOrderTreeIterator<>(tree, absLowest(), size(), false);
+    }
+
+    private Iterator<E> absDescendingIterator() {
+        return new InOrderTreeIterator<>(tree, absHighest(), size(), true);
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return descending ? Collections.reverseOrder(tree.comparator()) : tree.comparator();
+    }
+
+    @Override
+    public E first() {
+        return BSTTreeSet.valueOrThrow(descending ? absHighest() : absLowest());
+    }
+
+    @Override
+    public E last() {
+        return BSTTreeSet.valueOrThrow(descending ? absLowest() : absHighest());
+    }
+
+    @Override
+    public E lower(E e) {
+        return BSTTreeSet.valueOrNull(descending ? absCeiling(e, false) : absFloor(e, false));
+    }
+
+    @Override
+    public E floor(E e) {
+        return BSTTreeSet.valueOrNull(descending ? absCeiling(e, true) : absFloor(e, true));
+    }
+
+    @Override
+    public E ceiling(E e) {
+        return BSTTreeSet.valueOrNull(descending ? absFloor(e, true) : absCeiling(e, true));
+    }
+
+    @Override
+    public E higher(E e) {
+        return BSTTreeSet.valueOrNull(descending ? absFloor(e, false) : absCeiling(e, false));
+    }
+
+    @Override
+    public E pollFirst() {
+        return tree.removeAndGetValue(descending ? absHighest() : absLowest());
+    }
+
+    @Override
+    public E pollLast() {
+        return tree.removeAndGetValue(descending ? absLowest() : absHighest());
+    }
+
+    @Override
+    public NavigableSet<E> descendingSet() {
+        return new BSTSubSet<>(tree, fromStart, lo, loInclusive, toEnd, hi, hiInclusive, !descending);
+    }
+
+    @Override
+    public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        if (!inRange(fromElement, fromInclusive)) {
+            throw new IllegalArgumentException("fromElement out of range");
+        }
+        if (!inRange(toElement, toInclusive)) {
+            throw new IllegalArgumentException("toElement out of range");
+        }
+        if (descending) {
+            return new BSTSubSet<>(tree, false, toElement, toInclusive, false, fromElement, fromInclusive, true);
+        }
+        return new BSTSubSet<>(tree, false, fromElement, fromInclusive, false, toElement, toInclusive, false);
+    }
+
+    @Override
+    public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+        if (!inRange(toElement, inclusive)) {
+            throw new IllegalArgumentException("toElement out of range");
+        }
+        if (descending) {
+            return new BSTSubSet<>(tree, false, toElement, inclusive, toEnd, hi, hiInclusive, true);
+        }
+        return new BSTSubSet<>(tree, fromStart, lo, loInclusive, false, toElement, inclusive, false);
+    }
+
+    @Override
+    public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+        if (!inRange(fromElement, inclusive)) {
+            throw new IllegalArgumentException("fromElement out of range");
+        }
+        if (descending) {
+            return new BSTSubSet<>(tree, fromStart, lo, loInclusive, false, fromElement, inclusive, true);
+        }
+        return new BSTSubSet<>(tree, false, fromElement, inclusive, toEnd, hi, hiInclusive, false);
+    }
+
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> headSet(E toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> tailSet(E fromElement) {
+        return tailSet(fromElement, true);
+    }
+}
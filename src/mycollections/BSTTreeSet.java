@@ -2,17 +2,25 @@ package mycollections;
 
 import java.io.*;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
- * Propretary implementation for simple BST tree (no balancing). Currently supports nearly all {@code Set} interface methods.<BR><BR>
+ * Propretary implementation for simple BST tree (no balancing). Implements {@code NavigableSet} interface: iteration is in ascending order of elements,
+ * and all navigation methods (first/last, floor/ceiling/lower/higher, pollFirst/pollLast) as well as positioning of subSet/headSet/tailSet views
+ * run in time proportional to tree height.<BR>
+ * Nodes are separate objects by default; with {@link NodeStorage#ARRAYS} (see {@link TreeBalancing#newTreeSet(Comparator, NodeStorage)}) they are kept in paged arrays instead, which saves heap for big trees.<BR>
+ * Slow add, remove and contains, full iterations and serialization are recorded in Java Flight Recorder (see {@link TreeOperationEvent}, {@link TreeIterationEvent}, {@link TreeSerializationEvent}).<BR><BR>
  * <a href="http://pl.wikipedia.org/wiki/Binarne_drzewo_poszukiwa%C5%84">http://pl.wikipedia.org/wiki/Binarne_drzewo_poszukiwa%C5%84</a>
  * <BR>
  * <a href="http://en.wikipedia.org/wiki/Binary_search_tree">http://en.wikipedia.org/wiki/Binary_search_tree</a>
  *
  */
-public class BSTTreeSet<E> implements Set<E>, Serializable {
+public class BSTTreeSet<E> implements NavigableSet<E>, Serializable {
 
-    private static final long serialVersionUID = -480104583835245951L;
+    private static final long serialVersionUID = 6232519340126437201L;
 
     /**
      * reference to the root node of the tree. If null then tree is empty.
@@ -31,7 +39,25 @@ public class BSTTreeSet<E> implements Set<E>, Serializable {
      */
     private Comparator<? super E> comparator;
 
-    private enum InsertionDirection {LEFT, RIGHT}; // to be used in deserialization method
+    /**
+     * Creates (and possibly keeps) nodes of this tree. Not serialized as such: only its {@link NodeStorage} kind is written, and new factory of that kind is created on deserialization.
+     */
+    private transient NodeFactory<E> nodeFactory;
+
+    /**
+     * Writes elements on serialization. Serialized explicitly, like the comparator.
+     */
+    private transient ElementCodec<? super E> elementCodec = ElementCodec.objects();
+
+    /**
+     * Counters of operations, {@code null} when statistics are disabled (the default), so disabled statistics cost only a null check. Not serialized.
+     */
+    private transient StatisticsRecorder statistics;
+
+    /**
+     * Plain BST is rebalanced when an element is inserted deeper than this factor times the height of perfectly balanced tree, 0 when automatic rebalancing is disabled. Not serialized.
+     */
+    private transient double autoRebalanceFactor;
 
     /**
      * Constructs new empty set, sorted according to the natural ordering of its elements.
@@ -45,7 +71,21 @@ public class BSTTreeSet<E> implements Set<E>, Serializable {
      * @param comparator the comparator that will be used to order this set. If null, the natural ordering of the elements will be used.
      */
     public BSTTreeSet(Comparator<? super E> comparator) {
+        this(comparator, NodeFactory.referenceBased());
+    }
+
+    /**
+     * Constructs a new, empty tree set, sorted according to the specified comparator, with nodes created by provided factory.
+     * @param comparator the comparator that will be used to order this set. If null, the natural ordering of the elements will be used.
+     * @param nodeFactory factory of nodes, used only by this tree
+     */
+    BSTTreeSet(Comparator<? super E> comparator, NodeFactory<E> nodeFactory) {
         this.comparator = comparator;
+        this.nodeFactory = Objects.requireNonNull(nodeFactory);
+    }
+
+    NodeFactory<E> getNodeFactory() {
+        return nodeFactory;
     }
 
     /**
@@ -56,19 +96,129 @@ public class BSTTreeSet<E> implements Set<E>, Serializable {
         return rootNode;
     }
 
+    /**
+     * Returns number of elements in the set. Every node keeps size of its subtree, so it is O(1).
+     * @return number of elements in the set
+     */
     @Override
     public int size() {
-        return subTreeSize(rootNode);
+        return subtreeSize(rootNode);
+    }
+
+    /**
+     * @return number of elements in subtree, 0 for empty subtree
+     */
+    static int subtreeSize(Node<?> subtreeRoot) {
+        return (subtreeRoot == null) ? 0 : subtreeRoot.getSubtreeSize();
     }
 
     /**
-     * calculates size (number of elements) of subtree
-     * @param subTreeRoot subtree root to start
-     * @return numbr of elements in subtree
+     * Recalculates subtree size of provided node from its sons (their sizes must be correct already).
      */
-    private int subTreeSize(Node<E> subTreeRoot) {
-        if (subTreeRoot==null) return 0;
-        return 1 + subTreeSize(subTreeRoot.getLeftSon()) + subTreeSize(subTreeRoot.getRightSon());
+    static void updateSubtreeSize(Node<?> node) {
+        node.setSubtreeSize(1 + subtreeSize(node.getLeftSon()) + subtreeSize(node.getRightSon()));
+    }
+
+    /**
+     * Recalculates subtree sizes going from provided node up to the root. Called after the tree was changed below provided node.
+     */
+    private void updateSubtreeSizesUpFrom(Node<E> node) {
+        for (Node<E> current = node; current != null; current = current.getParent()) {
+            updateSubtreeSize(current);
+        }
+    }
+
+    /**
+     * Returns rank of provided element: number of elements in this set strictly smaller than it. Element does not need to be present in the set.
+     * Runs in time proportional to tree height.
+     * @param e element to get rank of
+     * @return number of elements smaller than {@code e}
+     */
+    public int rank(E e) {
+        return countSmallerThan(e, false);
+    }
+
+    /**
+     * Returns k-th smallest element of the set (counting from 0), so {@code select(rank(e)) == e} for every element of the set.
+     * Runs in time proportional to tree height.
+     * @param k index of the element in ascending order
+     * @return k-th smallest element
+     * @throws IndexOutOfBoundsException if k is negative or not smaller than size of the set
+     */
+    public E select(int k) {
+        if (k < 0 || k >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + k + ", size: " + size());
+        }
+        return selectNode(k).getValue();
+    }
+
+    /**
+     * Finds node of k-th smallest element, going down from the root by subtree sizes.
+     * @param k index of the element in ascending order, must be in range {@code [0, size())}
+     */
+    Node<E> selectNode(int k) {
+        Node<E> node = rootNode;
+        int toSkip = k;
+        while (true) {
+            int leftSize = subtreeSize(node.getLeftSon());
+            if (toSkip < leftSize) {
+                node = node.getLeftSon();
+            } else if (toSkip > leftSize) {
+                toSkip -= leftSize + 1;
+                node = node.getRightSon();
+            } else {
+                return node;
+            }
+        }
+    }
+
+    /**
+     * Returns number of elements from range {@code [fromElement, toElement)}, like in {@link java.util.SortedSet#subSet(Object, Object)}.
+     * @param fromElement low endpoint (inclusive) of the range
+     * @param toElement high endpoint (exclusive) of the range
+     * @return number of elements in the range
+     * @throws IllegalArgumentException if {@code fromElement} is greater than {@code toElement}
+     */
+    public int countInRange(E fromElement, E toElement) {
+        return countInRange(fromElement, true, toElement, false);
+    }
+
+    /**
+     * Returns number of elements from range between {@code fromElement} and {@code toElement}, like in {@link java.util.NavigableSet#subSet(Object, boolean, Object, boolean)}.
+     * Runs in time proportional to tree height.
+     * @param fromElement low endpoint of the range
+     * @param fromInclusive {@code true} if the low endpoint is to be counted
+     * @param toElement high endpoint of the range
+     * @param toInclusive {@code true} if the high endpoint is to be counted
+     * @return number of elements in the range
+     * @throws IllegalArgumentException if {@code fromElement} is greater than {@code toElement}
+     */
+    public int countInRange(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        if (compare(fromElement, toElement) > 0) {
+            throw new IllegalArgumentException("fromElement > toElement");
+        }
+        int count = countSmallerThan(toElement, toInclusive) - countSmallerThan(fromElement, !fromInclusive);
+        return Math.max(count, 0); // (x, x) range is empty
+    }
+
+    /**
+     * @return number of elements smaller than {@code e} (or smaller or equal, if {@code inclusive})
+     */
+    int countSmallerThan(E e, boolean inclusive) {
+        int count = 0;
+        Node<E> node = rootNode;
+        while (node != null) {
+            int comparison = compare(e, node.getValue());
+            if (comparison < 0) {
+                node = node.getLeftSon();
+            } else if (comparison > 0) {
+                count += subtreeSize(node.getLeftSon()) + 1;
+                node = node.getRightSon();
+            } else {
+                return count + subtreeSize(node.getLeftSon()) + (inclusive ? 1 : 0);
+            }
+        }
+        return count;
     }
 
     @Override
@@ -83,28 +233,83 @@ public class BSTTreeSet<E> implements Set<E>, Serializable {
      */
     @Override
     public boolean contains(Object e) {
-        return (subTreeContains((E)e, rootNode) != null)? true : false;
+        TreeOperationEvent event = new TreeOperationEvent();
+        event.begin();
+        boolean found = findOrLink((E) e, null, event) != null;
+        event.commitIfSlow("contains", this);
+        return found;
     }
 
     /**
-     * Returns reference to the node containing given value. If no such node found found returns {@code null}.
+     * Descent engine shared by add, contains, remove and getTreeNodeByValue. Goes down from the root in a loop (so also degenerated trees do not overflow the stack),
+     * comparing provided value with every visited node exactly once.
      * @param value value to search for
-     * @param currentNode node to start search with
-     * @return reference to the node containing given value
+     * @param nodeToLink node to be linked into the tree in the place where the value should be, if the value was not found. {@code null} for read-only search.
+     * @param event event of the operation, gets depth of the search and number of comparisons ({@code null} if the search is not a recorded operation).
+     * Nothing shared is written by read-only search (other than enabled statistics), as it may run in many threads at once, like reads of {@link ShardedTreeSet} under shared lock.
+     * @return node containing the value if found. Otherwise {@code nodeToLink} (now linked into the tree), or {@code null} if there was nothing to link.
      */
-    private Node<E> subTreeContains(E value, Node<E> currentNode) {
-        if (currentNode == null) return null;
+    private Node<E> findOrLink(E value, Node<E> nodeToLink, TreeOperationEvent event) {
+        Node<E> parent = null;
+        Node<E> current = rootNode;
+        int comparison = 0;
+        int visited = 0;
+        boolean timed = statistics != null && statistics.isTimedSearch();
+        while (current != null) {
+            visited++;
+            comparison = timed ? timedCompare(value, current.getValue()) : compare(value, current.getValue());
+            if (comparison == 0) { // elements the same value
+                if (event != null) event.searchFinished(visited);
+                if (statistics != null) statistics.searchFinished(visited);
+                return current;
+            }
+            parent = current;
+            current = (comparison < 0) ? current.getLeftSon() : current.getRightSon();
+        }
+        if (event != null) event.searchFinished(visited);
+        if (statistics != null) statistics.searchFinished(visited);
+        if (nodeToLink == null) {
+            return null;
+        }
 
-        if (compare(value, currentNode.getValue()) > 0 ) {
-            return subTreeContains(value, currentNode.getRightSon());
-        } else if (compare(value, currentNode.getValue()) < 0 ) {
-            return subTreeContains(value, currentNode.getLeftSon());
-        } else { // elements the same value
-            return currentNode;
+        //TODO add support for storing null element
+        if (parent == null) { // means the whole three is empty.
+            // check if casting to Comparable is possible for E, or if comparator exists (no comparison was done for empty tree)
+            compare(value, value);
+            if (event != null) event.comparisons++;
+            rootNode = nodeToLink;
+        } else if (comparison < 0) {
+            parent.setLeftSon(nodeToLink);
+        } else {
+            parent.setRightSon(nodeToLink);
         }
+        modificationCounter++;
+        if (statistics != null) statistics.insertions++;
+        updateSubtreeSizesUpFrom(parent);
+        rebalanceAfterInsertion(nodeToLink);
+        return nodeToLink;
     }
 
-    private int compare(E first, E second) {
+    int compare(E first, E second) {
+        if (statistics != null) statistics.comparisons++;
+        return compareWithoutCounting(first, second);
+    }
+
+    /**
+     * Compares and adds time of the comparison to statistics (which must be enabled), for sampled searches.
+     */
+    private int timedCompare(E first, E second) {
+        long start = System.nanoTime();
+        int comparison = compare(first, second);
+        statistics.comparisonTimed(System.nanoTime() - start);
+        return comparison;
+    }
+
+    /**
+     * Compares without touching statistics, so it may be called from many threads at once (fork/join tasks of {@link AVLSplitJoin}).
+     * Callers count their comparisons themselves, and add them with {@link #countComparisons(long)} when the tasks are done.
+     */
+    int compareWithoutCounting(E first, E second) {
         return (comparator == null) ?
             ((Comparable<? super E>)first).compareTo(second)
                 : comparator.compare(first, second);
@@ -112,13 +317,275 @@ public class BSTTreeSet<E> implements Set<E>, Serializable {
 
 
     /**
-     * Returns pre-order tree iterator (visit first parent, then left subtree (recursively), then right subtree (recursively)).
+     * Returns in-order tree iterator, which returns elements in ascending order. Other orders are available with {@link #iterator(TraversalOrder)}.
      * Iterator is <i>fail-fast</i>, which means that it will throw a {@link ConcurrentModificationException} if detected that tree was changed, since creation of iterator.
+     * Iteration over all elements is recorded as {@link TreeIterationEvent} in Java Flight Recorder, if it was slow.
      * @return iterator over tree elements
      */
     @Override
     public Iterator<E> iterator() {
-        return new PreOrderTreeIterator<E>(this);
+        return new InOrderTreeIterator<>(this, lowestNode(), size(), false).recordingIterationEvent();
+    }
+
+    /**
+     * Returns spliterator over elements in ascending order, which splits the tree by ranks of elements (using subtree sizes), so both halves have exact sizes
+     * and nothing is copied. It reports {@code DISTINCT}, {@code SORTED} (with comparator of this set), {@code ORDERED}, {@code SIZED} and {@code SUBSIZED},
+     * so parallel streams over the set split it evenly. Spliterator is <i>fail-fast</i>, like {@link #iterator()}.
+     * @return spliterator over tree elements
+     */
+    @Override
+    public Spliterator<E> spliterator() {
+        return new TreeSpliterator<>(this, 0, size());
+    }
+
+    /**
+     * Returns iterator over elements in provided traversal order. Iterator is <i>fail-fast</i>, like {@link #iterator()}, and supports remove(),
+     * which keeps the rest of iteration valid (no element is skipped or returned twice). Only in-order iterator supports remove() for self-balancing trees
+     * (see {@link TreeBalancing}), others throw UnsupportedOperationException.
+     * @param order order of visiting nodes
+     * @return iterator over tree elements
+     */
+    public Iterator<E> iterator(TraversalOrder order) {
+        return order.iterator(this);
+    }
+
+    /**
+     * Returns spliterator over elements in provided traversal order. For {@link TraversalOrder#IN_ORDER} it is {@link #spliterator()}.
+     * For other orders it is built on {@link #iterator(TraversalOrder)}, like for any collection: it reports {@code DISTINCT}, {@code ORDERED}, {@code SIZED} and {@code SUBSIZED},
+     * and splits off prefixes copied into arrays of growing size. It is <i>fail-fast</i> since it was created.
+     * @param order order of visiting nodes
+     * @return spliterator over tree elements
+     */
+    public Spliterator<E> spliterator(TraversalOrder order) {
+        if (order == TraversalOrder.IN_ORDER) {
+            return spliterator();
+        }
+        return Spliterators.spliterator(iterator(order), size(), Spliterator.DISTINCT | Spliterator.ORDERED);
+    }
+
+    /**
+     * @param order order of visiting nodes
+     * @return sequential stream over tree elements in provided order
+     */
+    public Stream<E> stream(TraversalOrder order) {
+        return StreamSupport.stream(spliterator(order), false);
+    }
+
+    /**
+     * Returns cursor positioned on the smallest element (not positioned, if the set is empty). Cursor moves in both directions, can be positioned by key,
+     * and removes or replaces elements in place, without searching the tree again.
+     * @return new cursor over tree elements
+     */
+    public TreeCursor<E> cursor() {
+        return new TreeCursor<>(this);
+    }
+
+    /**
+     * Returns iterator over elements in descending order. Iterator is <i>fail-fast</i>, like {@link #iterator()}.
+     * @return descending iterator over tree elements
+     */
+    @Override
+    public Iterator<E> descendingIterator() {
+        return new InOrderTreeIterator<>(this, highestNode(), size(), true);
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public E first() {
+        return valueOrThrow(lowestNode());
+    }
+
+    @Override
+    public E last() {
+        return valueOrThrow(highestNode());
+    }
+
+    @Override
+    public E lower(E e) {
+        return valueOrNull(floorNode(e, false));
+    }
+
+    @Override
+    public E floor(E e) {
+        return valueOrNull(floorNode(e, true));
+    }
+
+    @Override
+    public E ceiling(E e) {
+        return valueOrNull(ceilingNode(e, true));
+    }
+
+    @Override
+    public E higher(E e) {
+        return valueOrNull(ceilingNode(e, false));
+    }
+
+    @Override
+    public E pollFirst() {
+        return removeAndGetValue(lowestNode());
+    }
+
+    @Override
+    public E pollLast() {
+        return removeAndGetValue(highestNode());
+    }
+
+    @Override
+    public NavigableSet<E> descendingSet() {
+        return new BSTSubSet<>(this, true, null, true, true, null, true, true);
+    }
+
+    @Override
+    public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        return new BSTSubSet<>(this, false, fromElement, fromInclusive, false, toElement, toInclusive, false);
+    }
+
+    @Override
+    public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+        return new BSTSubSet<>(this, true, null, true, false, toElement, inclusive, false);
+    }
+
+    @Override
+    public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+        return new BSTSubSet<>(this, false, fromElement, inclusive, true, null, true, false);
+    }
+
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> headSet(E toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> tailSet(E fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    static <E> E valueOrNull(Node<E> node) {
+        return (node == null) ? null : node.getValue();
+    }
+
+    static <E> E valueOrThrow(Node<E> node) {
+        if (node == null) {
+            throw new NoSuchElementException();
+        }
+        return node.getValue();
+    }
+
+    /**
+     * Removes provided node from the tree.
+     * @return value of removed node, {@code null} if no node was provided
+     */
+    E removeAndGetValue(Node<E> node) {
+        if (node == null) {
+            return null;
+        }
+        E value = node.getValue();
+        removeItnernal(node);
+        return value;
+    }
+
+    /**
+     * @return node with the smallest value in the tree, {@code null} for empty tree
+     */
+    Node<E> lowestNode() {
+        return (rootNode == null) ? null : findSmallestElement(rootNode);
+    }
+
+    /**
+     * @return node with the biggest value in the tree, {@code null} for empty tree
+     */
+    Node<E> highestNode() {
+        return (rootNode == null) ? null : findBiggestElement(rootNode);
+    }
+
+    /**
+     * Finds node with the smallest value greater than (or equal to, if {@code inclusive}) provided value.
+     * @return found node, {@code null} if there is no such node
+     */
+    Node<E> ceilingNode(E value, boolean inclusive) {
+        Node<E> candidate = null;
+        Node<E> current = rootNode;
+        while (current != null) {
+            int comparison = compare(value, current.getValue());
+            if (comparison < 0) {
+                candidate = current;
+                current = current.getLeftSon();
+            } else if (comparison == 0 && inclusive) {
+                return current;
+            } else {
+                current = current.getRightSon();
+            }
+        }
+        return candidate;
+    }
+
+    /**
+     * Finds node with the biggest value smaller than (or equal to, if {@code inclusive}) provided value.
+     * @return found node, {@code null} if there is no such node
+     */
+    Node<E> floorNode(E value, boolean inclusive) {
+        Node<E> candidate = null;
+        Node<E> current = rootNode;
+        while (current != null) {
+            int comparison = compare(value, current.getValue());
+            if (comparison > 0) {
+                candidate = current;
+                current = current.getRightSon();
+            } else if (comparison == 0 && inclusive) {
+                return current;
+            } else {
+                current = current.getLeftSon();
+            }
+        }
+        return candidate;
+    }
+
+    /**
+     * Goes through elements in ascending order following successors through parent links, without iterator (so, with reference-based nodes, without any allocation per element).
+     * Like the iterator, it is fail-fast, and going through all elements is recorded as {@link TreeIterationEvent}.
+     */
+    @Override
+    public void forEach(Consumer<? super E> action) {
+        Objects.requireNonNull(action);
+        TreeIterationEvent event = new TreeIterationEvent();
+        event.begin();
+        int expectedModificationCounter = modificationCounter;
+        for (Node<E> node = lowestNode(); node != null; node = findSuccessor(node)) {
+            action.accept(node.getValue());
+            if (modificationCounter != expectedModificationCounter) {
+                throw new ConcurrentModificationException();
+            }
+        }
+        event.commitIfSlow(size());
+    }
+
+    /**
+     * Removes matching elements in one pass over the tree, without iterator. Nodes are unlinked in place (like by {@link Iterator#remove()}),
+     * so the successor found before removal stays the next node to visit, also after rotations.
+     */
+    @Override
+    public boolean removeIf(Predicate<? super E> filter) {
+        Objects.requireNonNull(filter);
+        boolean removed = false;
+        Node<E> node = lowestNode();
+        while (node != null) {
+            Node<E> successor = findSuccessor(node);
+            if (filter.test(node.getValue())) {
+                removeItnernal(node);
+                removed = true;
+            }
+            node = successor;
+        }
+        return removed;
     }
 
     @Override
@@ -165,48 +632,30 @@ public class BSTTreeSet<E> implements Set<E>, Serializable {
      */
     @Override
     public boolean add(E e) {
-        Node<E> nodeToAdd = NodeFactory.newNode(e);
-        return addToSubtree(nodeToAdd , rootNode);
+        TreeOperationEvent event = new TreeOperationEvent();
+        event.begin();
+        Node<E> nodeToAdd = createNode(e);
+        boolean added = findOrLink(e, nodeToAdd, event).isSameNodeAs(nodeToAdd);
+        if (!added) {
+            nodeFactory.release(nodeToAdd); // element already existed, new node was not linked into the tree
+        } else if (autoRebalanceFactor > 0 && !isSelfBalancing() && event.depth + 1 > autoRebalanceFactor * heightOfBalanced(size())) {
+            rebalanceAfterDeepInsertion(nodeToAdd);
+        }
+        event.commitIfSlow("add", this);
+        return added;
     }
 
-    boolean add(Node<E> e) {
-        return addToSubtree(e , rootNode);
+    /**
+     * Creates new node for the value, not yet linked into the tree. Subclasses override it, when they need node carrying additional information (like balance factor).
+     * @param value value for the node
+     * @return new node
+     */
+    Node<E> createNode(E value) {
+        return nodeFactory.newNode(value);
     }
 
-    final boolean addToSubtree(Node<E> elementToAdd, Node<E> currentRoot) {
-        // check if casting to Comparable is possible for E, or if comparator exists
-        compare(elementToAdd.getValue(), elementToAdd.getValue());
-
-        //TODO add support for storing null element
-        if (currentRoot == null) { // means the whole three is empty.
-            // Later method calls itself recursively but makes sure it will not be called for null subtree.
-            // May be called for null only for root element
-            rootNode = elementToAdd;
-            modificationCounter++;
-            return true;
-        }
-        if (compare(elementToAdd.getValue(), currentRoot.getValue()) > 0) {
-            if (currentRoot.hasRightSon()) {
-                return addToSubtree(elementToAdd, currentRoot.getRightSon());
-            } else {
-                currentRoot.setRightSon(elementToAdd);
-                modificationCounter++;
-                return true;
-            }
-        }
-        if (compare(elementToAdd.getValue(), currentRoot.getValue()) < 0) {
-            if (currentRoot.hasLeftSon()) {
-                return addToSubtree(elementToAdd, currentRoot.getLeftSon());
-            } else {
-                currentRoot.setLeftSon(elementToAdd);
-                modificationCounter++;
-                return true;
-            }
-        }
-        if (compare(elementToAdd.getValue(), currentRoot.getValue()) == 0) { // element exists, structure does not need to change.
-            return false;
-        }
-        return false;
+    boolean add(Node<E> e) {
+        return findOrLink(e.getValue(), e, null).isSameNodeAs(e);
     }
 
     /**
@@ -222,8 +671,12 @@ public class BSTTreeSet<E> implements Set<E>, Serializable {
         } catch (Exception e) {
             throw new ClassCastException("Cannot cast from " + o.getClass() + " to E: "+ e.getMessage()); // type ereasure, do not know E
         }
-        Node<E> nodeToRemove = getTreeNodeByValue(valueToRemove);
-        return removeItnernal(nodeToRemove);
+        TreeOperationEvent event = new TreeOperationEvent();
+        event.begin();
+        Node<E> nodeToRemove = findOrLink(valueToRemove, null, event);
+        boolean removed = removeItnernal(nodeToRemove);
+        event.commitIfSlow("remove", this);
+        return removed;
     }
 
     /**
@@ -239,16 +692,24 @@ public class BSTTreeSet<E> implements Set<E>, Serializable {
 
         // if leaf node very simple: remove this node without any more transformations in the tree
         if (nodeToRemove.isLeafNode()) {
+            Node<E> parent = nodeToRemove.getParent();
+            boolean wasLeftSon = nodeToRemove.isLeftSon();
             if (nodeToRemove.isRootNode()) {
                 rootNode = null;
             }
             nodeToRemove.unlinkFromParent();
             modificationCounter++;
+            updateSubtreeSizesUpFrom(parent);
+            rebalanceAfterRemoval(parent, wasLeftSon, nodeToRemove);
+            nodeFactory.release(nodeToRemove);
+            if (statistics != null) statistics.removals++;
             return true;
         }
 
         if (nodeToRemove.hasOneSonOnly() ) { // remove element and connect its parent with removed element descendant
             Node<E> descendantOfTheNodeToBeRemoved = nodeToRemove.getOnlySon();
+            Node<E> parent = nodeToRemove.getParent();
+            boolean wasLeftSon = nodeToRemove.isLeftSon();
             if (nodeToRemove.isLeftSon()) {
                 nodeToRemove.getParent().setLeftSon(descendantOfTheNodeToBeRemoved);
             } else if (nodeToRemove.isRightSon()) {
@@ -258,30 +719,41 @@ public class BSTTreeSet<E> implements Set<E>, Serializable {
             }
             nodeToRemove.unlinkFromParentAndSons();
             modificationCounter++;
+            updateSubtreeSizesUpFrom(parent);
+            rebalanceAfterRemoval(parent, wasLeftSon, nodeToRemove);
+            nodeFactory.release(nodeToRemove);
+            if (statistics != null) statistics.removals++;
             return true;
         }
 
         if (nodeToRemove.hasBothSons()) { // put the successor node in place of the removed node
             Node<E> successor = findSuccessor(nodeToRemove);
+            Node<E> shrunkSubtreeParent; // node whose subtree lost one node when successor was moved out of its original place
+            boolean shrunkFromLeft;
 
             if (successor.isLeftSon()) {
                 // it must mean this successor may have only right son/subtree (otherwise the successor would be in its left subtree)
                 assert !successor.hasLeftSon();
+                shrunkSubtreeParent = successor.getParent();
+                shrunkFromLeft = true;
                 successor.getParent().setLeftSon(successor.getRightSon());
 
                 if (nodeToRemove.isLeftSon()) {
                     nodeToRemove.getParent().setLeftSon(successor);
                 } else if (nodeToRemove.isRightSon()) {
                     nodeToRemove.getParent().setRightSon(successor);
-                } else if (nodeToRemove == rootNode) {
+                } else if (nodeToRemove.isSameNodeAs(rootNode)) {
                     rootNode = successor;
                 }
                successor.setRightSon(nodeToRemove.getRightSon());
-            } else if (successor.isRightSon()) {
+            } else {
+                assert successor.isRightSon();
                 assert !successor.hasLeftSon();
-                assert successor.getParent() == nodeToRemove;
+                assert successor.getParent().isSameNodeAs(nodeToRemove);
+                shrunkSubtreeParent = successor; // successor takes the place of removed node, and its right subtree stays as it was
+                shrunkFromLeft = false;
 
-                if (nodeToRemove == rootNode) {
+                if (nodeToRemove.isSameNodeAs(rootNode)) {
                     rootNode = successor;
                 } else {
                     if (nodeToRemove.isLeftSon()){
@@ -295,14 +767,212 @@ public class BSTTreeSet<E> implements Set<E>, Serializable {
             assert !successor.hasLeftSon();
             successor.setLeftSon(nodeToRemove.getLeftSon());
 
+            if (successor.isSameNodeAs(rootNode)) {
+                successor.unlinkFromParent(); // successor became the root, it cannot point to its old parent any more
+            }
             nodeToRemove.unlinkFromParentAndSons();
 
             modificationCounter++;
+            updateSubtreeSizesUpFrom(shrunkSubtreeParent);
+            successorMovedInPlaceOf(nodeToRemove, successor);
+            rebalanceAfterRemoval(shrunkSubtreeParent, shrunkFromLeft, nodeToRemove);
+            nodeFactory.release(nodeToRemove);
+            if (statistics != null) statistics.removals++;
             return true;
         }
         return false;
     }
 
+    /**
+     * Called after new node was linked into the tree. Plain BST does nothing here,
+     * self-balancing subclasses override it to restore their invariants, going from inserted node up to the root.
+     * @param insertedNode node just linked into the tree
+     */
+    void rebalanceAfterInsertion(Node<E> insertedNode) {
+    }
+
+    /**
+     * Called during removal of node having both sons, after its successor was moved into its place.
+     * Self-balancing subclasses override it to take over balancing information (like balance factor) of the removed node by the successor.
+     * @param removedNode node being removed from the tree
+     * @param successor node which took place of the removed node
+     */
+    void successorMovedInPlaceOf(Node<E> removedNode, Node<E> successor) {
+    }
+
+    /**
+     * Called after node was removed from the tree. Plain BST does nothing here, self-balancing subclasses override it to restore their invariants.
+     * @param parent node which lost one node in its left (if {@code fromLeft}) or right subtree, {@code null} if the removed node was the root
+     * @param fromLeft {@code true} if the left subtree of {@code parent} has shrunk, {@code false} if the right one
+     * @param removedNode node unlinked from the tree
+     */
+    void rebalanceAfterRemoval(Node<E> parent, boolean fromLeft, Node<E> removedNode) {
+    }
+
+    /**
+     * Tells if this tree changes its structure (rotates nodes) on its own when elements are added or removed.
+     * @return {@code true} for self-balancing trees
+     */
+    boolean isSelfBalancing() {
+        return false;
+    }
+
+    /**
+     * @return balancing of this tree, as used in {@link TreeBalancing#newTreeSet(Comparator, NodeStorage)}
+     */
+    TreeBalancing getBalancing() {
+        return TreeBalancing.NONE;
+    }
+
+    /**
+     * @return new empty set of the same kind as this one: the same balancing, node storage, comparator and element codec
+     */
+    BSTTreeSet<E> newEmptySet() {
+        BSTTreeSet<E> set = getBalancing().newTreeSet(comparator, nodeFactory.getStorage());
+        set.elementCodec = elementCodec;
+        set.autoRebalanceFactor = autoRebalanceFactor;
+        return set;
+    }
+
+    /**
+     * Sets new root node (taken from other tree, or built outside of this tree), like whole tree was replaced.
+     * @param newRootNode root of the new tree, with no parent
+     * @return previous root node
+     */
+    Node<E> replaceRootNode(Node<E> newRootNode) {
+        Node<E> previousRootNode = rootNode;
+        rootNode = newRootNode;
+        modificationCounter++;
+        return previousRootNode;
+    }
+
+    /**
+     * Tells if nodes of this tree can be moved to other trees and back by {@link AVLSplitJoin}: AVL tree with reference-based nodes.
+     */
+    boolean isJoinable() {
+        return getBalancing() == TreeBalancing.AVL && nodeFactory.getStorage() == NodeStorage.REFERENCES;
+    }
+
+    /**
+     * Splits this set in two: this set keeps elements smaller than provided key, and all elements greater or equal are moved to returned new set
+     * (of the same balancing, storage and comparator).<BR>
+     * For AVL tree with reference-based nodes it takes O(log n) time, as subtrees are cut off and joined again instead of moving single elements
+     * (see {@link AVLSplitJoin}). Other trees move elements one by one.
+     * @param key element to split at, does not need to be present in the set
+     * @return new set with elements greater than or equal to the key
+     */
+    public BSTTreeSet<E> split(E key) {
+        BSTTreeSet<E> greaterOrEqual = newEmptySet();
+        if (isJoinable()) {
+            AVLSplitJoin<E> splitJoin = new AVLSplitJoin<>(this);
+            AVLSplitJoin.Split<E> split = splitJoin.split(AVLSplitJoin.Subtree.of(replaceRootNode(null)), key);
+            countComparisons(split.comparisons);
+            replaceRootNode(split.smaller.root);
+            greaterOrEqual.replaceRootNode((split.equal == null) ? split.greater.root : splitJoin.join(AVLSplitJoin.empty(), split.equal, split.greater).root);
+        } else {
+            NavigableSet<E> tail = tailSet(key, true);
+            greaterOrEqual.addAll(tail);
+            tail.clear();
+        }
+        return greaterOrEqual;
+    }
+
+    /**
+     * Joins provided sets with provided key between them: all elements are moved to the left set, and the right set becomes empty.
+     * All elements of the left set must be smaller than the key, and all elements of the right set must be greater.<BR>
+     * When both sets are AVL trees with reference-based nodes it takes O(log n) time: the key is linked at the spine of the higher tree,
+     * where heights of both trees match (see {@link AVLSplitJoin}). Otherwise elements are moved one by one.
+     * @param left set with elements smaller than the key, receives the result
+     * @param key element to put between both sets
+     * @param right set with elements greater than the key, emptied
+     * @return left set, containing all elements
+     * @throws IllegalArgumentException if sets have different comparators, or elements are not in order
+     */
+    public static <E> BSTTreeSet<E> join(BSTTreeSet<E> left, E key, BSTTreeSet<E> right) {
+        if (!Objects.equals(left.comparator, right.comparator)) {
+            throw new IllegalArgumentException("Joined sets must be ordered the same way");
+        }
+        left.compare(key, key); // check if element can be compared at all, also when both sets are empty
+        if ((!left.isEmpty() && left.compare(left.last(), key) >= 0) || (!right.isEmpty() && left.compare(key, right.first()) >= 0)) {
+            throw new IllegalArgumentException("Elements of the left set must be smaller than the key, and elements of the right set greater");
+        }
+        if (left.isJoinable() && right.isJoinable()) {
+            AVLSplitJoin<E> splitJoin = new AVLSplitJoin<>(left);
+            AVLSplitJoin.Subtree<E> joined = splitJoin.join(AVLSplitJoin.Subtree.of(left.replaceRootNode(null)), left.createNode(key),
+                    AVLSplitJoin.Subtree.of(right.replaceRootNode(null)));
+            left.replaceRootNode(joined.root);
+        } else {
+            left.add(key);
+            left.addAll(right);
+            right.clear();
+        }
+        return left;
+    }
+
+    /**
+     * Rotates subtree rooted in provided node to the left: right son of the root becomes the new root of the subtree, old root becomes its left son.
+     * <pre>
+     *       x                y
+     *      / \              / \
+     *     A   y     =>      x   C
+     *        / \          / \
+     *       B   C        A   B
+     * </pre>
+     * @param root root of the subtree, must have right son
+     */
+    void rotateLeft(Node<E> root) {
+        if (statistics != null) statistics.rotations++;
+        Node<E> newRoot = root.getRightSon();
+        Node<E> oldParentOfRoot = root.getParent();
+        boolean rootWasLeftSon = root.isLeftSon();
+
+        newRoot.unlinkFromParent();
+        root.setRightSon(newRoot.getLeftSon());
+        newRoot.setLeftSon(root);
+        updateSubtreeSize(root);
+        updateSubtreeSize(newRoot);
+
+        if (oldParentOfRoot == null) {
+            rootNode = newRoot;
+        } else if (rootWasLeftSon) {
+            oldParentOfRoot.setLeftSon(newRoot);
+        } else {
+            oldParentOfRoot.setRightSon(newRoot);
+        }
+    }
+
+    /**
+     * Rotates subtree rooted in provided node to the right: left son of the root becomes the new root of the subtree, old root becomes its right son.
+     * <pre>
+     *         x            y
+     *        / \          / \
+     *       y   C   =>   A   x
+     *      / \              / \
+     *     A   B            B   C
+     * </pre>
+     * @param root root of the subtree, must have left son
+     */
+    void rotateRight(Node<E> root) {
+        if (statistics != null) statistics.rotations++;
+        Node<E> newRoot = root.getLeftSon();
+        Node<E> oldParentOfRoot = root.getParent();
+        boolean rootWasLeftSon = root.isLeftSon();
+
+        newRoot.unlinkFromParent();
+        root.setLeftSon(newRoot.getRightSon());
+        newRoot.setRightSon(root);
+        updateSubtreeSize(root);
+        updateSubtreeSize(newRoot);
+
+        if (oldParentOfRoot == null) {
+            rootNode = newRoot;
+        } else if (rootWasLeftSon) {
+            oldParentOfRoot.setLeftSon(newRoot);
+        } else {
+            oldParentOfRoot.setRightSon(newRoot);
+        }
+    }
+
     /**
      * Finds successor for provided element.
      * Successor is the next element (following the provided element) when traversing tree in the in-order method if there is no successor then returns null
@@ -313,10 +983,28 @@ public class BSTTreeSet<E> implements Set<E>, Serializable {
         if (node.hasRightSon()) {
             return findSmallestElement(node.getRightSon());
         }
-        else if (node.isLeftSon()) {
-            return node.getParent();
+        // no right subtree: successor is the first ancestor, which has our node in its left subtree
+        Node<E> current = node;
+        while (current.isRightSon()) {
+            current = current.getParent();
+        }
+        return current.getParent(); // null if we went up to the root, so node had the biggest value
+    }
+
+    /**
+     * Finds predecessor for provided element: previous element when traversing tree in the in-order method. If there is no predecessor then returns null
+     * @param node the node to find predecessor for
+     * @return predecessor node
+     */
+    Node<E> findPredecessor(Node<E> node) {
+        if (node.hasLeftSon()) {
+            return findBiggestElement(node.getLeftSon());
+        }
+        Node<E> current = node;
+        while (current.isLeftSon()) {
+            current = current.getParent();
         }
-        else return null; // if our node is the right node of parent node (and there are no right sons), then there is no successor
+        return current.getParent();
     }
 
     /**
@@ -333,11 +1021,23 @@ public class BSTTreeSet<E> implements Set<E>, Serializable {
         return tmp;
     }
 
+    /**
+     * Finds biggest element in subtree.
+     * If called for leaf node returns that leaf node.
+     */
+    private Node<E> findBiggestElement(Node<E> subtreeRoot) {
+        Node<E> tmp = subtreeRoot;
+        while (tmp.hasRightSon()) {
+            tmp = tmp.getRightSon();
+        }
+        return tmp;
+    }
+
     /**
      * Returns reference to specyfic tree node that contains value provided
      */
     Node<E> getTreeNodeByValue(E value) {
-        return subTreeContains(value, rootNode);
+        return findOrLink(value, null, null);
     }
 
     @Override
@@ -348,8 +1048,15 @@ public class BSTTreeSet<E> implements Set<E>, Serializable {
         return true;
     }
 
+    /**
+     * Adds all elements of provided collection. If the collection is sorted the same way as this set (like other BSTTreeSet or TreeSet with equal comparator),
+     * and it is not much smaller than this set, both sorted sequences are merged and the tree is rebuilt balanced, in O(n + m) time instead of O(m log(n + m)).
+     */
     @Override
     public boolean addAll(Collection<? extends E> c) {
+        if (isSortedTheSameWay(c) && mergeIsCheaper(c, c.size(), size() + c.size())) {
+            return mergeWith(c, SetOperation.UNION);
+        }
         boolean collectionChanged = false;
         for(E element : c) {
             if (add(element)) {
@@ -359,16 +1066,98 @@ public class BSTTreeSet<E> implements Set<E>, Serializable {
         return collectionChanged;
     }
 
+    /**
+     * Removes all elements of provided collection. If the collection is sorted the same way as this set, and it is not much smaller than this set,
+     * it is done by merging both sorted sequences and rebuilding the tree balanced, in O(n + m) time.
+     */
     @Override
     public boolean removeAll(Collection<?> c) {
+        if (isSortedTheSameWay(c) && mergeIsCheaper(c, size(), c.size())) {
+            return mergeWith(c, SetOperation.DIFFERENCE);
+        }
         return removeOrRetainAll(c, true);
     }
 
+    /**
+     * Retains only elements of provided collection. If the collection is sorted the same way as this set, and it is not much smaller than this set,
+     * it is done by merging both sorted sequences and rebuilding the tree balanced, in O(n + m) time.
+     */
     @Override
     public boolean retainAll(Collection<?> c) {
+        if (isSortedTheSameWay(c) && mergeIsCheaper(c, size(), c.size())) {
+            return mergeWith(c, SetOperation.INTERSECTION);
+        }
         return removeOrRetainAll(c, false);
     }
 
+    private enum SetOperation {UNION, INTERSECTION, DIFFERENCE}
+
+    /**
+     * @return {@code true} if provided collection iterates its elements in ascending order of this set's comparator
+     */
+    private boolean isSortedTheSameWay(Collection<?> c) {
+        return (c instanceof SortedSet) && Objects.equals(((SortedSet<?>) c).comparator(), comparator);
+    }
+
+    /**
+     * Merge visits all n + m elements, while single-element operations cost about log2 of the size of the searched set each.
+     * @param operations number of single-element operations needed without merging
+     * @param searchedSetSize size of the set searched by each of them
+     */
+    private boolean mergeIsCheaper(Collection<?> c, int operations, int searchedSetSize) {
+        return (long) size() + c.size() <= (long) operations * heightOfBalanced(searchedSetSize);
+    }
+
+    /**
+     * Merges in-order sequence of this tree with sorted sequence of provided collection, and rebuilds the tree balanced from the result (only if anything changed).
+     * Both sequences are copied before the tree is touched, so the collection may be also this set or its view.
+     * @return {@code true} if the set was changed
+     */
+    private boolean mergeWith(Collection<?> c, SetOperation operation) {
+        Object[] mine = toArray();
+        Object[] theirs = c.toArray();
+        Object[] result = new Object[(operation == SetOperation.UNION) ? mine.length + theirs.length : mine.length];
+        int i = 0;
+        int j = 0;
+        int count = 0;
+        while (i < mine.length && j < theirs.length) {
+            int comparison = compare((E) mine[i], (E) theirs[j]);
+            if (comparison < 0) {
+                if (operation != SetOperation.INTERSECTION) {
+                    result[count++] = mine[i];
+                }
+                i++;
+            } else if (comparison > 0) {
+                if (operation == SetOperation.UNION) {
+                    result[count++] = theirs[j];
+                }
+                j++;
+            } else {
+                if (operation != SetOperation.DIFFERENCE) {
+                    result[count++] = mine[i]; // element already in the set stays, like with add()
+                }
+                i++;
+                j++;
+            }
+        }
+        if (operation != SetOperation.INTERSECTION) {
+            while (i < mine.length) {
+                result[count++] = mine[i++];
+            }
+        }
+        if (operation == SetOperation.UNION) {
+            while (j < theirs.length) {
+                result[count++] = theirs[j++];
+            }
+        }
+        if (count == mine.length) { // union only adds, difference and intersection only remove, so the same count means nothing changed
+            return false;
+        }
+        clear();
+        buildFromSorted(result, count);
+        return true;
+    }
+
     /*
         If remove is set to true then removes all elements that exist in the provided Collection c.
         If remove is set to false then removes all elements that do not exist in the provided Collection c
@@ -378,20 +1167,10 @@ public class BSTTreeSet<E> implements Set<E>, Serializable {
         boolean collectionChanged = false;
         Objects.requireNonNull(c);
 
-        if (remove) { // remove mode
-            for (Iterator<E> it = iterator(); it.hasNext(); ) {
-                if (c.contains(it.next())) {
-                    it.remove();
-                    collectionChanged = true;
-                }
-            }
-        } else { // retain mode
-            for (Iterator<E> it = iterator(); it.hasNext(); ) {
-                Object next = it.next();
-                if (!c.contains(next)) {
-                    it.remove();
-                    collectionChanged = true;
-                }
+        for (Iterator<E> it = iterator(); it.hasNext(); ) {
+            if (c.contains(it.next()) == remove) {
+                it.remove();
+                collectionChanged = true;
             }
         }
         return collectionChanged;
@@ -399,7 +1178,9 @@ public class BSTTreeSet<E> implements Set<E>, Serializable {
 
     @Override
     public void clear() {
-        rootNode = null; // TODO should not we also remove all references between nodes? How is it implemented in other collections?
+        rootNode = null; // reference-based nodes are just left to garbage collector, array-based store drops its arrays
+        nodeFactory.clear();
+        modificationCounter++;
     }
 
     int getCurrentModificationSerialNumber() {
@@ -407,27 +1188,32 @@ public class BSTTreeSet<E> implements Set<E>, Serializable {
     }
 
     /**
-     * requires trees to be equal not only in terms of content, but also in terms of structure
-     * @param o
-     * @return
+     * Set contract (like {@link AbstractSet#equals(Object)}): equal to any Set having the same elements, whatever the shape of both trees.
      */
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-
-        BSTTreeSet that = (BSTTreeSet) o;
+        if (!(o instanceof Set)) return false;
 
-        if (comparator != null ? !comparator.equals(that.comparator) : that.comparator != null) return false;
-        if (rootNode != null ? !rootNode.equals(that.rootNode) : that.rootNode != null) return false;
-
-        return true;
+        Collection<?> that = (Collection<?>) o;
+        if (that.size() != size()) return false;
+        try {
+            return containsAll(that);
+        } catch (ClassCastException | NullPointerException e) { // element not comparable with elements of this set
+            return false;
+        }
     }
 
+    /**
+     * Sum of hash codes of elements, as required by Set contract.
+     */
     @Override
     public int hashCode() {
-        int result = rootNode != null ? rootNode.hashCode() : 0;
-        result = 31 * result + (comparator != null ? comparator.hashCode() : 0);
+        int result = 0;
+        for (Node<E> node = lowestNode(); node != null; node = findSuccessor(node)) {
+            E value = node.getValue();
+            result += (value != null) ? value.hashCode() : 0;
+        }
         return result;
     }
 
@@ -441,126 +1227,305 @@ public class BSTTreeSet<E> implements Set<E>, Serializable {
         return result.toString();
     }
 
+    /**
+     * Writes header: comparator, {@link NodeStorage} kind, element codec and number of elements, followed by all elements in ascending order, written by the codec.
+     * Shape of the tree is not written: it is rebuilt balanced on reading, see {@link #readObject(ObjectInputStream)}.
+     */
     private void writeObject(ObjectOutputStream oos) throws IOException {
-        // serialize comparator first and then all elements, with nulls marking lack of more child elements for every node. See PreOrderTreeIterator(... emitNullsForMissingSons=true)
+        TreeSerializationEvent event = new TreeSerializationEvent();
+        event.begin();
         oos.writeObject(comparator);
-        E nextElement;
-        for (Iterator<E> iterator = new PreOrderTreeIterator(this, true); iterator.hasNext(); ) {
-            nextElement = iterator.next();
-            oos.writeObject(nextElement);
+        oos.writeObject(nodeFactory.getStorage());
+        oos.writeObject(elementCodec);
+        oos.writeInt(size());
+        for (Iterator<E> iterator = new InOrderTreeIterator<>(this, lowestNode(), size(), false); iterator.hasNext(); ) { // not recorded as iteration
+            elementCodec.write(iterator.next(), oos);
         }
+        event.commitIfSlow("writeObject", this);
     }
 
     /**
-      Non-recursive version of deserializing tree, which was serialized in pre-order method (including nulls for no more left or right son (guards)).
+     * Reads exactly as many elements as the header says, and builds balanced tree from them in O(n) (see {@link #loadSorted(Object[])}),
+     * which also sets balancing information of self-balancing trees.
      */
     private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
-        comparator = (Comparator<? super E>)ois.readObject();
-        E element = null;
-        Node<E> currentNode = rootNode; // start with rootNode
-        InsertionDirection direction = InsertionDirection.LEFT; // be default we will be inserting elements as left son, as we serialized with pre-order method (parent, left before right)
+        TreeSerializationEvent event = new TreeSerializationEvent();
+        event.begin();
+        comparator = (Comparator<? super E>) ois.readObject();
+        nodeFactory = ((NodeStorage) ois.readObject()).newNodeFactory();
+        elementCodec = (ElementCodec<? super E>) ois.readObject();
+        int size = ois.readInt();
+        if (size < 0) {
+            throw new InvalidObjectException("Negative number of elements: " + size);
+        }
+        Object[] elements = new Object[size];
+        for (int i = 0; i < size; i++) {
+            elements[i] = elementCodec.read(ois);
+        }
         try {
-            while(true) {
-                element = (E) ois.readObject();
+            loadSorted(elements);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidObjectException(e.getMessage());
+        }
+        if (size() != size) {
+            throw new InvalidObjectException("Duplicated elements in the stream");
+        }
+        event.comparisons = size; // loadSorted compares every element with the previous one (the first one with itself)
+        event.commitIfSlow("readObject", this);
+    }
 
-                // we are inserting left sons and we met null, which means no more left sons. Turn right then.
-                if (direction.equals(InsertionDirection.LEFT) && element == null) {
-                    direction = InsertionDirection.RIGHT;
-                    continue;
-                }
+    /**
+     * Adds comparisons done by {@link #compareWithoutCounting(Object, Object)} to statistics, if they are enabled.
+     */
+    void countComparisons(long comparisons) {
+        if (statistics != null) statistics.comparisons += comparisons;
+    }
 
-                // we were going to insert right son, but we met null, which means no more right sons. Then let's move up on level to parent (or more, till we will be able to insert right son).
-                if (direction.equals(InsertionDirection.RIGHT) && element == null) {
-                    currentNode = currentNode.getParent();
-                    // if current node already has right son (so its left son was already considered (in pre-order iteration method),
-                    // then surely there is nothing to do here and we have to move to the parent, and continue this operation till we get to the node which does not have right son: it will be our current node, when we will insert next element as a right son
-                    for(; currentNode.hasRightSon() && currentNode != rootNode; currentNode = currentNode.getParent());
-                    continue;
-                }
+    /**
+     * Enables or disables statistics of operations of this set (see {@link TreeStatistics}). Enabling starts with all counters zeroed, disabling drops them.
+     * Statistics are disabled by default, and after deserialization.
+     * @param enabled {@code true} to start counting
+     */
+    public void setStatisticsEnabled(boolean enabled) {
+        if (enabled != (statistics != null)) {
+            statistics = enabled ? new StatisticsRecorder() : null;
+        }
+    }
 
-                // condition only for deserializing the root node
-                if (rootNode == null) {
-                    rootNode = NodeFactory.newNode(element);
-                    currentNode = rootNode;
-                    continue;
-                }
+    public boolean isStatisticsEnabled() {
+        return statistics != null;
+    }
 
-                // link new read node with current Node
-                if (direction.equals(InsertionDirection.RIGHT)) {
-                    currentNode.setRightSon(NodeFactory.newNode(element));
-                    currentNode = currentNode.getRightSon();
-                    direction = InsertionDirection.LEFT;
-                } else { // turn left
-                    assert !currentNode.hasLeftSon();
-                    currentNode.setLeftSon(NodeFactory.newNode(element));
-                    currentNode = currentNode.getLeftSon();
-                }
+    /**
+     * Returns snapshot of statistics. Shape of the tree (height, average depth) is computed at the moment of the call, what takes O(n) time.
+     * @return statistics counted since they were enabled or reset
+     * @throws IllegalStateException if statistics are disabled
+     */
+    public TreeStatistics getStatistics() {
+        return new TreeStatistics(enabledStatistics(), rootNode);
+    }
+
+    /**
+     * Zeroes all counters of statistics.
+     * @throws IllegalStateException if statistics are disabled
+     */
+    public void resetStatistics() {
+        enabledStatistics().reset();
+    }
+
+    private StatisticsRecorder enabledStatistics() {
+        if (statistics == null) {
+            throw new IllegalStateException("Statistics are not enabled");
+        }
+        return statistics;
+    }
+
+    /**
+     * Sets codec used to write elements when this set is serialized. It is serialized with the set, so deserialized set uses it as well.
+     * @param elementCodec codec of elements, by default {@link ElementCodec#objects()}
+     */
+    public void setElementCodec(ElementCodec<? super E> elementCodec) {
+        this.elementCodec = Objects.requireNonNull(elementCodec);
+    }
+
+    /**
+     * @return codec used to write elements when this set is serialized
+     */
+    public ElementCodec<? super E> getElementCodec() {
+        return elementCodec;
+    }
+
+    /**
+     * Rebuilds plain BST into balanced one, with height of perfectly balanced tree (floor(log2(n)) + 1), in O(n) time and O(1) additional memory,
+     * using Day-Stout-Warren algorithm (see {@link #rebalanceSubtree(Node)}). Nodes stay the same, only their links change.<BR>
+     * Self-balancing trees keep their own balance, so for them nothing is done.
+     */
+    public void rebalance() {
+        if (isSelfBalancing() || rootNode == null) {
+            return;
+        }
+        modificationCounter++;
+        rebalanceSubtree(rootNode);
+    }
+
+    /**
+     * Day-Stout-Warren algorithm: right rotations turn the subtree into a "vine" (every node has right son only), and then rounds of left rotations
+     * on every second node of the vine fold it, halving its length each time. Rotations keep subtree sizes, and size of the whole subtree does not change,
+     * so sizes of its ancestors stay valid.
+     */
+    private void rebalanceSubtree(Node<E> subtreeRoot) {
+        Node<E> parent = subtreeRoot.getParent(); // subtree root changes with rotations, its place does not
+        boolean leftSubtree = subtreeRoot.isLeftSon();
+        int size = subtreeRoot.getSubtreeSize();
+        Node<E> node = subtreeRoot;
+        while (node != null) { // tree to vine
+            if (node.hasLeftSon()) {
+                Node<E> leftSon = node.getLeftSon();
+                rotateRight(node);
+                node = leftSon;
+            } else {
+                node = node.getRightSon();
             }
-        } catch (OptionalDataException e) { // end of input stream
-            if (e.eof && e.length == 0) {
+        }
+        int fullTreeSize = Integer.highestOneBit(size + 1) - 1; // nodes of the biggest full tree not bigger than this one
+        compressVine(parent, leftSubtree, size - fullTreeSize); // nodes over full tree go to the last level
+        for (int vineLength = fullTreeSize / 2; vineLength > 0; vineLength /= 2) {
+            compressVine(parent, leftSubtree, vineLength);
+        }
+    }
+
+    /**
+     * Rotates left provided number of nodes of the vine going right from the root of the subtree, starting from the root and skipping every second one,
+     * so rotated nodes become left sons of the nodes which were following them.
+     */
+    private void compressVine(Node<E> parent, boolean leftSubtree, int rotations) {
+        Node<E> node = (parent == null) ? rootNode : leftSubtree ? parent.getLeftSon() : parent.getRightSon();
+        for (int i = 0; i < rotations; i++) {
+            Node<E> rightSon = node.getRightSon();
+            rotateLeft(node);
+            node = rightSon.getRightSon();
+        }
+    }
+
+    /**
+     * Called after an element was inserted too deep. Rebuilding the whole tree every time would be too expensive for sorted input
+     * (depth exceeds the limit again after a few insertions), so only the subtree of the lowest ancestor which is unbalanced by weight
+     * (son on the path holds more than 2^(-1/factor) of its nodes) is rebalanced, like in scapegoat tree. Such ancestor exists, when the path is that long,
+     * and its subtree had to get unbalanced by many insertions since it was balanced last time, so insertions cost amortized O(log n).
+     */
+    private void rebalanceAfterDeepInsertion(Node<E> insertedNode) {
+        double maxWeightOfSon = Math.pow(2, -1 / autoRebalanceFactor);
+        Node<E> son = insertedNode;
+        while (!son.hasNoParent()) {
+            Node<E> parent = son.getParent();
+            if (son.getSubtreeSize() > maxWeightOfSon * parent.getSubtreeSize()) {
+                rebalanceSubtree(parent);
                 return;
-            } else {
-                e.printStackTrace();
             }
+            son = parent;
         }
+    }
 
+    /**
+     * Enables automatic rebalancing of plain BST: when an element gets added deeper than provided factor times the height of perfectly balanced tree
+     * of the same size, the unbalanced part of the tree is rebalanced (see {@link #rebalance()}). So unbalanced tree (for example after a batch of sorted insertions)
+     * recovers by itself, keeping height within about factor * log2(n), and insertions take amortized O(log n) time.
+     * Self-balancing trees are never rebalanced this way. Disabled by default, and after deserialization (deserialized tree is balanced anyway).
+     * @param factor factor greater than 1 (like 2), or 0 to disable automatic rebalancing
+     * @throws IllegalArgumentException if the factor is neither 0 nor greater than 1
+     */
+    public void setAutoRebalanceFactor(double factor) {
+        if (factor != 0 && !(factor > 1)) {
+            throw new IllegalArgumentException("Factor must be greater than 1 (or 0 to disable), was: " + factor);
+        }
+        autoRebalanceFactor = factor;
     }
 
     /**
-     recursive version of deserializing tree, which was serialized in pre-order method (including nulls for no more left or right son (guards)).
+     * @return factor set by {@link #setAutoRebalanceFactor(double)}, 0 if automatic rebalancing is disabled
      */
+    public double getAutoRebalanceFactor() {
+        return autoRebalanceFactor;
+    }
 
-    private Node<E> readObjectRecursive(ObjectInputStream ois) throws IOException, ClassNotFoundException {
-        E element = null;
-        try {
-            while(true) {
-                element = (E) ois.readObject();
-                if (element == null) {
-                    break;
+    /**
+     * Builds perfectly balanced tree from sorted elements, in one pass and without any comparisons besides checking that every element is greater than previous one.
+     * Middle element becomes the root and both halves are built the same way, so sizes of sons' subtrees differ at most by one, and all empty leaves are on the last two levels.
+     * Adjacent equal elements are taken once.
+     * @param elements elements in ascending order of this tree's comparator. The array is taken over by this method (duplicates are squeezed out in place).
+     * @throws IllegalStateException if the tree is not empty
+     * @throws IllegalArgumentException if elements are not sorted
+     */
+    void loadSorted(Object[] elements) {
+        if (rootNode != null) {
+            throw new IllegalStateException("Sorted elements can be loaded only into empty tree");
+        }
+        int count = 0;
+        for (Object element : elements) {
+            if (count > 0) {
+                int comparison = compare((E) elements[count - 1], (E) element);
+                if (comparison > 0) {
+                    throw new IllegalArgumentException("Elements are not sorted: " + element + " after " + elements[count - 1]);
                 }
-
-                if (rootNode == null) {
-                    rootNode =  NodeFactory.newNode(element);
-                    rootNode.setLeftSon(readObjectRecursive(ois));
-                    rootNode.setRightSon(readObjectRecursive(ois));
-                } else {
-                    Node<E> tmpElement = NodeFactory.newNode(element);
-                    tmpElement.setLeftSon(readObjectRecursive(ois));
-                    tmpElement.setRightSon(readObjectRecursive(ois));
-                    return tmpElement;
+                if (comparison == 0) {
+                    continue;
                 }
-
-            }
-        } catch (OptionalDataException e) { // end of input stream
-            if (e.eof && e.length == 0) {}
-            else {
-                e.printStackTrace();
+            } else {
+                compare((E) element, (E) element); // check if casting to Comparable is possible for E, or if comparator exists
             }
+            elements[count++] = element;
         }
-    return null;
+        buildFromSorted(elements, count);
+    }
+
+    /**
+     * Builds balanced tree from first {@code count} provided elements, which must be already in strictly ascending order (nothing is checked).
+     */
+    private void buildFromSorted(Object[] elements, int count) {
+        rootNode = buildBalanced(elements, 0, count - 1, 0, heightOfBalanced(count));
+        modificationCounter++;
+    }
+
+    /**
+     * Builds subtree of elements from range [from, to]. Recursion depth is the height of the balanced tree, so it is about log2(n).
+     * @param depth depth of the subtree root in the whole tree (0 for the root)
+     * @param treeHeight height of the whole tree
+     * @return root of the subtree, {@code null} for empty range
+     */
+    private Node<E> buildBalanced(Object[] elements, int from, int to, int depth, int treeHeight) {
+        if (from > to) {
+            return null;
+        }
+        int middle = (from + to) >>> 1;
+        Node<E> node = createNode((E) elements[middle]);
+        node.setLeftSon(buildBalanced(elements, from, middle - 1, depth + 1, treeHeight));
+        node.setRightSon(buildBalanced(elements, middle + 1, to, depth + 1, treeHeight));
+        node.setSubtreeSize(to - from + 1);
+        initBulkLoadedNode(node, heightOfBalanced(middle - from), heightOfBalanced(to - middle), depth, treeHeight);
+        return node;
+    }
+
+    /**
+     * @return height of tree built by {@link #loadSorted(Object[])} from provided number of elements: floor(log2(n)) + 1
+     */
+    static int heightOfBalanced(int numberOfElements) {
+        return 32 - Integer.numberOfLeadingZeros(numberOfElements);
+    }
+
+    /**
+     * Called for every node built by {@link #loadSorted(Object[])}, after its sons were built. Self-balancing subclasses override it to set balancing information of the node.
+     * @param node node just built
+     * @param leftHeight height of its left subtree
+     * @param rightHeight height of its right subtree
+     * @param depth depth of the node in the tree (0 for the root)
+     * @param treeHeight height of the whole tree; nodes with {@code depth == treeHeight - 1} are on the deepest level
+     */
+    void initBulkLoadedNode(Node<E> node, int leftHeight, int rightHeight, int depth, int treeHeight) {
     }
 
     /*
-        performs sanity test on tree after every test: check for every node, check if father-son relations are symetric (if father F has son S, then son S must have father F).
+        performs sanity test on tree after every test: check for every node, check if father-son relations are symetric (if father F has son S, then son S must have father F),
+        and if subtree size kept in the node is correct.
     */
     boolean areNodeRelationsFine(Node<E> node) {
         if (node == null) { //TODO dependency on reference-based implementation
             return true;
         }
+        if (node.getSubtreeSize() != 1 + subtreeSize(node.getLeftSon()) + subtreeSize(node.getRightSon())) return false;
         if (node.isLeafNode()) return true;
         if (node.hasBothSons()) {
-            if (!node.getRightSon().getParent().equals(node)) return false;
+            if (!node.getRightSon().getParent().isSameNodeAs(node)) return false;
             if (!isRightSonGreater(node)) return false;
 
-            if (!node.getLeftSon().getParent().equals(node)) return false;
+            if (!node.getLeftSon().getParent().isSameNodeAs(node)) return false;
             if (!isLeftSonSmaller(node)) return false;
 
-            return (areNodeRelationsFine(node.getLeftSon()) && areNodeRelationsFine(node.getLeftSon()));
+            return (areNodeRelationsFine(node.getLeftSon()) && areNodeRelationsFine(node.getRightSon()));
         } else if (node.hasRightSon()) {
-            if (!node.getRightSon().getParent().equals(node)) return false;
+            if (!node.getRightSon().getParent().isSameNodeAs(node)) return false;
             return areNodeRelationsFine(node.getRightSon());
         } else if (node.hasLeftSon()) {
-            if (!node.getLeftSon().getParent().equals(node)) return false;
+            if (!node.getLeftSon().getParent().isSameNodeAs(node)) return false;
             return areNodeRelationsFine(node.getLeftSon());
         }
         return false;
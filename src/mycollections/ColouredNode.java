@@ -0,0 +1,17 @@
+package mycollections;
+
+/**
+ * Node of red-black tree, carrying its colour.
+ */
+public interface ColouredNode<E> extends Node<E> {
+
+    enum Colour {RED, BLACK}
+
+    Colour getColour();
+
+    void setColour(Colour colour);
+
+    default boolean isRed() {
+        return getColour() == Colour.RED;
+    }
+}
@@ -0,0 +1,25 @@
+package mycollections;
+
+/**
+ * Reference based node of red-black tree. New nodes are red, as they are always inserted in place of (black) empty leaf.
+ */
+class ColouredReferenceBasedNode<E> extends ReferenceBasedNode<E> implements ColouredNode<E> {
+
+    private static final long serialVersionUID = -2412338405541207338L;
+
+    private Colour colour = Colour.RED;
+
+    @Override
+    public Colour getColour() {
+        return colour;
+    }
+
+    @Override
+    public void setColour(Colour colour) {
+        this.colour = colour;
+    }
+
+    ColouredReferenceBasedNode(E value) {
+        super(value);
+    }
+}
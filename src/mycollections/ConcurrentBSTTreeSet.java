@@ -0,0 +1,373 @@
+package mycollections;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free thread-safe set, backed by external (leaf-oriented) BST with edge marking, by Natarajan and Mittal
+ * ("Fast Concurrent Lock-Free Binary Search Trees", PPoPP 2014).<BR>
+ * Elements are kept in leaves only; internal nodes just route the search and always have both sons. Every edge (link from node to its son) has two marks:
+ * <ul>
+ * <li><i>flag</i> - edge to the leaf being removed</li>
+ * <li><i>tag</i> - edge to the sibling of the leaf being removed, which will be moved up in place of their parent</li>
+ * </ul>
+ * Marked edge is never changed again, so removal first flags the edge to the leaf (which is the linearization point), then tags the edge to its sibling,
+ * and finally swings the edge of the nearest untagged ancestor to the sibling, removing the parent and the leaf at once.
+ * All changes are single compare-and-set operations on edges; thread which finds marked edge on its way helps to finish the removal instead of waiting.
+ * {@code contains} only reads, it does not write or help anybody.<BR>
+ * No rebalancing is done (like in {@link BSTTreeSet} with {@link TreeBalancing#NONE}), so random insertion order is expected for good performance.<BR>
+ * Size is kept in {@link LongAdder}, so it is O(1), but only approximate while other threads modify the set.
+ * Iterators are <i>weakly consistent</i>: they never throw {@link ConcurrentModificationException}, return elements in ascending order,
+ * and may reflect some changes done after they were created.
+ * <BR><BR>
+ * <a href="http://dl.acm.org/citation.cfm?id=2555256">http://dl.acm.org/citation.cfm?id=2555256</a>
+ */
+public class ConcurrentBSTTreeSet<E> extends AbstractSet<E> {
+
+    /**
+     * Son link with its marks. Edges are immutable, so compare-and-set of the whole edge object changes the son and the marks atomically.
+     */
+    private static final class Edge<E> {
+
+        final TreeNode<E> son;
+        final boolean flag;
+        final boolean tag;
+
+        Edge(TreeNode<E> son, boolean flag, boolean tag) {
+            this.son = son;
+            this.flag = flag;
+            this.tag = tag;
+        }
+
+        boolean isMarked() {
+            return flag || tag;
+        }
+    }
+
+    /**
+     * Node of the tree: leaf (no sons, keeps the element) or internal node (both sons, keeps routing key).
+     * Keys of sentinel nodes are infinities greater than any element: 1, 2 or 3 (0 for other nodes).
+     */
+    private static final class TreeNode<E> {
+
+        final E key;
+        final int infinity;
+        volatile Edge<E> left;
+        volatile Edge<E> right;
+
+        @SuppressWarnings("rawtypes")
+        static final AtomicReferenceFieldUpdater<TreeNode, Edge> LEFT = AtomicReferenceFieldUpdater.newUpdater(TreeNode.class, Edge.class, "left");
+        @SuppressWarnings("rawtypes")
+        static final AtomicReferenceFieldUpdater<TreeNode, Edge> RIGHT = AtomicReferenceFieldUpdater.newUpdater(TreeNode.class, Edge.class, "right");
+
+        /** leaf */
+        TreeNode(E key, int infinity) {
+            this.key = key;
+            this.infinity = infinity;
+        }
+
+        /** internal node */
+        TreeNode(E key, int infinity, TreeNode<E> leftSon, TreeNode<E> rightSon) {
+            this(key, infinity);
+            this.left = new Edge<>(leftSon, false, false);
+            this.right = new Edge<>(rightSon, false, false);
+        }
+    }
+
+    /**
+     * Nodes found by {@link #seek(Object)}: the leaf where the search ended, its parent, and the last edge on the path which was not tagged
+     * (from ancestor to successor); all nodes below the successor and above the parent are being removed.
+     */
+    private static final class SeekRecord<E> {
+        TreeNode<E> ancestor;
+        TreeNode<E> successor;
+        TreeNode<E> parent;
+        TreeNode<E> leaf;
+    }
+
+    private final Comparator<? super E> comparator;
+
+    /**
+     * Sentinels: root (key infinity 3) has left son S (infinity 2) and right leaf infinity 3; S has leaves infinity 1 and 2.
+     * All elements are put into the left subtree of S, so every leaf with element has parent and ancestor, and sentinels are never removed.
+     */
+    private final TreeNode<E> root;
+
+    private final LongAdder size = new LongAdder();
+
+    /**
+     * Constructs new empty set, sorted according to the natural ordering of its elements.
+     */
+    public ConcurrentBSTTreeSet() {
+        this(null);
+    }
+
+    /**
+     * Constructs a new, empty set, sorted according to the specified comparator.
+     * @param comparator the comparator that will be used to order this set. If null, the natural ordering of the elements will be used.
+     */
+    public ConcurrentBSTTreeSet(Comparator<? super E> comparator) {
+        this.comparator = comparator;
+        TreeNode<E> s = new TreeNode<>(null, 2, new TreeNode<>(null, 1), new TreeNode<>(null, 2));
+        this.root = new TreeNode<>(null, 3, s, new TreeNode<>(null, 3));
+    }
+
+    /**
+     * @return the comparator used to order the elements, or {@code null} for natural ordering
+     */
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+
+    private int compare(E first, E second) {
+        return (comparator == null) ?
+                ((Comparable<? super E>) first).compareTo(second)
+                : comparator.compare(first, second);
+    }
+
+    /**
+     * Compares element with key of the node, which may be infinity.
+     */
+    private int compare(E element, TreeNode<E> node) {
+        return (node.infinity > 0) ? -1 : compare(element, node.key);
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static AtomicReferenceFieldUpdater<TreeNode, Edge> edgeUpdater(boolean left) {
+        return left ? TreeNode.LEFT : TreeNode.RIGHT;
+    }
+
+    private static <E> Edge<E> edge(TreeNode<E> node, boolean left) {
+        return left ? node.left : node.right;
+    }
+
+    private static <E> boolean casEdge(TreeNode<E> node, boolean left, Edge<E> expected, Edge<E> update) {
+        return edgeUpdater(left).compareAndSet(node, expected, update);
+    }
+
+    /**
+     * Goes down from the root to the leaf, where provided element is or would be.
+     */
+    private SeekRecord<E> seek(E element) {
+        SeekRecord<E> record = new SeekRecord<>();
+        TreeNode<E> s = root.left.son;
+        Edge<E> parentEdge = s.left;
+        record.ancestor = root;
+        record.successor = s;
+        record.parent = s;
+        record.leaf = parentEdge.son;
+
+        Edge<E> currentEdge = (compare(element, record.leaf) < 0) ? record.leaf.left : record.leaf.right;
+        while (currentEdge != null) { // null when leaf is reached
+            TreeNode<E> current = currentEdge.son;
+            if (!parentEdge.tag) { // edge to the leaf is not being removed, so it is the last clean edge so far
+                record.ancestor = record.parent;
+                record.successor = record.leaf;
+            }
+            record.parent = record.leaf;
+            record.leaf = current;
+            parentEdge = currentEdge;
+            currentEdge = (compare(element, current) < 0) ? current.left : current.right;
+        }
+        return record;
+    }
+
+    /**
+     * Lock-free: never writes, never waits.
+     */
+    @Override
+    public boolean contains(Object o) {
+        E element = (E) Objects.requireNonNull(o);
+        TreeNode<E> leaf = seek(element).leaf;
+        return leaf.infinity == 0 && compare(element, leaf.key) == 0;
+    }
+
+    @Override
+    public boolean add(E e) {
+        Objects.requireNonNull(e);
+        compare(e, e); // check if casting to Comparable is possible for E, or if comparator exists
+        while (true) {
+            SeekRecord<E> record = seek(e);
+            TreeNode<E> leaf = record.leaf;
+            TreeNode<E> parent = record.parent;
+            int comparison = compare(e, leaf);
+            if (comparison == 0) {
+                return false;
+            }
+            boolean leftSon = compare(e, parent) < 0;
+            Edge<E> edge = edge(parent, leftSon);
+            if (edge.son == leaf && !edge.isMarked()) {
+                TreeNode<E> newLeaf = new TreeNode<>(e, 0);
+                TreeNode<E> newInternal = (comparison < 0) ? new TreeNode<>(leaf.key, leaf.infinity, newLeaf, leaf)
+                        : new TreeNode<>(e, 0, leaf, newLeaf);
+                if (casEdge(parent, leftSon, edge, new Edge<>(newInternal, false, false))) {
+                    size.increment();
+                    return true;
+                }
+                edge = edge(parent, leftSon);
+            }
+            if (edge.son == leaf && edge.isMarked()) { // leaf or its sibling is being removed, help to finish it
+                cleanup(e, record);
+            }
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        E element = (E) Objects.requireNonNull(o);
+        TreeNode<E> leafToRemove = null; // set when the edge to the leaf was flagged by this thread
+        while (true) {
+            SeekRecord<E> record = seek(element);
+            TreeNode<E> parent = record.parent;
+            boolean leftSon = compare(element, parent) < 0;
+            if (leafToRemove == null) { // injection: flag the edge to the leaf
+                TreeNode<E> leaf = record.leaf;
+                if (leaf.infinity != 0 || compare(element, leaf.key) != 0) {
+                    return false;
+                }
+                Edge<E> edge = edge(parent, leftSon);
+                if (edge.son == leaf && !edge.isMarked() && casEdge(parent, leftSon, edge, new Edge<>(leaf, true, false))) {
+                    leafToRemove = leaf;
+                    size.decrement();
+                    if (cleanup(element, record)) {
+                        return true;
+                    }
+                } else {
+                    edge = edge(parent, leftSon);
+                    if (edge.son == leaf && edge.isMarked()) {
+                        cleanup(element, record);
+                    }
+                }
+            } else { // cleanup: element is already removed logically, physical removal may be finished by other thread
+                if (record.leaf != leafToRemove || cleanup(element, record)) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Physically removes flagged leaf and its parent, by moving the sibling of the leaf up to the successor's place.
+     * @return {@code true} if removal was finished by this call
+     */
+    private boolean cleanup(E element, SeekRecord<E> record) {
+        TreeNode<E> ancestor = record.ancestor;
+        TreeNode<E> successor = record.successor;
+        TreeNode<E> parent = record.parent;
+        boolean successorIsLeft = compare(element, ancestor) < 0;
+        boolean leafIsLeft = compare(element, parent) < 0;
+
+        Edge<E> leafEdge = edge(parent, leafIsLeft);
+        boolean siblingIsLeft = !leafIsLeft;
+        if (!leafEdge.flag) { // leaf found by the search is not the one being removed: it is its sibling
+            siblingIsLeft = leafIsLeft;
+        }
+        Edge<E> siblingEdge;
+        while (true) { // tag the sibling edge, so it cannot be changed any more
+            siblingEdge = edge(parent, siblingIsLeft);
+            if (siblingEdge.tag) {
+                break;
+            }
+            if (casEdge(parent, siblingIsLeft, siblingEdge, new Edge<>(siblingEdge.son, siblingEdge.flag, true))) {
+                siblingEdge = edge(parent, siblingIsLeft);
+                break;
+            }
+        }
+        Edge<E> successorEdge = edge(ancestor, successorIsLeft);
+        if (successorEdge.son != successor || successorEdge.isMarked()) {
+            return false;
+        }
+        // sibling takes place of the successor; flag is kept, as sibling may be a leaf being removed by another thread
+        return casEdge(ancestor, successorIsLeft, successorEdge, new Edge<>(siblingEdge.son, siblingEdge.flag, false));
+    }
+
+    /**
+     * Number of elements, which is exact only when no other thread modifies the set at the same time.
+     */
+    @Override
+    public int size() {
+        long sum = size.sum();
+        return (sum < 0) ? 0 : (int) Math.min(sum, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return iterator().hasNext() == false;
+    }
+
+    /**
+     * Returns weakly consistent iterator over elements in ascending order.
+     * Tree is traversed with explicit stack of nodes still to be visited; subtrees moved up by concurrent removals may be visited again,
+     * so elements not greater than the last returned are skipped.
+     * @return iterator over elements in ascending order
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+
+            private final Deque<TreeNode<E>> toVisit = new ArrayDeque<>();
+            private E next;
+            private E lastReturned; // also the threshold for skipping elements in advance(), so it is kept after remove()
+            private boolean canRemove;
+
+            {
+                toVisit.push(root.left.son.left.son); // left subtree of sentinel S
+                advance();
+            }
+
+            private void advance() {
+                next = null;
+                while (!toVisit.isEmpty()) {
+                    TreeNode<E> node = toVisit.pop();
+                    Edge<E> left = node.left;
+                    if (left == null) { // leaf
+                        if (node.infinity == 0 && (lastReturned == null || compare(node.key, lastReturned) > 0)) {
+                            next = node.key;
+                            return;
+                        }
+                    } else {
+                        toVisit.push(node.right.son);
+                        toVisit.push(left.son);
+                    }
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public E next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                lastReturned = next;
+                canRemove = true;
+                advance();
+                return lastReturned;
+            }
+
+            @Override
+            public void remove() {
+                if (!canRemove) {
+                    throw new IllegalStateException();
+                }
+                ConcurrentBSTTreeSet.this.remove(lastReturned);
+                canRemove = false;
+            }
+        };
+    }
+
+    /**
+     * Removes all elements, one by one. Elements added concurrently may stay.
+     */
+    @Override
+    public void clear() {
+        for (Iterator<E> it = iterator(); it.hasNext(); ) {
+            it.next();
+            it.remove();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package mycollections;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes and reads elements of {@link BSTTreeSet} during its serialization (see {@link BSTTreeSet#setElementCodec(ElementCodec)}).
+ * Default {@link #objects()} codec writes every element as an object, with class descriptor and handle overhead of Java serialization.
+ * Codecs for known element types write just their data: fixed-width {@link #ints()} and {@link #longs()}, and length-prefixed UTF-8 {@link #strings()}.<BR>
+ * Codec is serialized with the tree (as an object), so it must be serializable. It must read back exactly what it has written, in the same order.
+ * @param <E> type of elements
+ */
+public interface ElementCodec<E> extends Serializable {
+
+    /**
+     * @param element element to write, never {@code null}
+     * @param out stream to write to
+     */
+    void write(E element, ObjectOutput out) throws IOException;
+
+    /**
+     * @param in stream to read from
+     * @return element read
+     */
+    E read(ObjectInput in) throws IOException, ClassNotFoundException;
+
+    /**
+     * @return codec writing elements with {@link ObjectOutput#writeObject(Object)}, for elements of any serializable type
+     */
+    static <E> ElementCodec<E> objects() {
+        return (ElementCodec<E>) BuiltInCodec.OBJECTS;
+    }
+
+    /**
+     * @return codec writing every element as 4 bytes
+     */
+    static ElementCodec<Integer> ints() {
+        return (ElementCodec) BuiltInCodec.INTS;
+    }
+
+    /**
+     * @return codec writing every element as 8 bytes
+     */
+    static ElementCodec<Long> longs() {
+        return (ElementCodec) BuiltInCodec.LONGS;
+    }
+
+    /**
+     * @return codec writing every element as its length in bytes followed by the UTF-8 bytes. Unlike {@link DataOutput#writeUTF(String)}, it has no 64 KB limit.
+     */
+    static ElementCodec<String> strings() {
+        return (ElementCodec) BuiltInCodec.STRINGS;
+    }
+
+    /**
+     * Codecs available through static methods of {@link ElementCodec}. Enum, so every codec stays a singleton after deserialization.
+     */
+    enum BuiltInCodec implements ElementCodec<Object> {
+
+        OBJECTS {
+            @Override
+            public void write(Object element, ObjectOutput out) throws IOException {
+                out.writeObject(element);
+            }
+
+            @Override
+            public Object read(ObjectInput in) throws IOException, ClassNotFoundException {
+                return in.readObject();
+            }
+        },
+
+        INTS {
+            @Override
+            public void write(Object element, ObjectOutput out) throws IOException {
+                out.writeInt((Integer) element);
+            }
+
+            @Override
+            public Object read(ObjectInput in) throws IOException {
+                return in.readInt();
+            }
+        },
+
+        LONGS {
+            @Override
+            public void write(Object element, ObjectOutput out) throws IOException {
+                out.writeLong((Long) element);
+            }
+
+            @Override
+            public Object read(ObjectInput in) throws IOException {
+                return in.readLong();
+            }
+        },
+
+        STRINGS {
+            @Override
+            public void write(Object element, ObjectOutput out) throws IOException {
+                byte[] bytes = ((String) element).getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+
+            @Override
+            public Object read(ObjectInput in) throws IOException {
+                int length = in.readInt();
+                if (length < 0) {
+                    throw new InvalidObjectException("Negative length of string: " + length);
+                }
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package mycollections;
+
+import java.util.*;
+
+/**
+ * Iterates tree in in-order method (left subtree, then the node, then right subtree), so elements are returned in ascending order (or descending, if requested).
+ * Next node is found by going to the successor (predecessor) of previous one through parent links, so iterator keeps no stack.<BR>
+ * Iterator returns provided number of elements starting from provided node, so the same class iterates also over ranges of subSet/headSet/tailSet views.<BR>
+ * remove() unlinks the last returned node directly, and is supported also for self-balancing trees: rotations do not change in-order sequence of nodes,
+ * and the next node to be returned is already remembered.
+ */
+class InOrderTreeIterator<E> implements Iterator<E> {
+
+    private final BSTTreeSet<E> tree;
+    private final boolean descending;
+
+    private Node<E> nextNode;
+    private Node<E> lastReturned; // needed for remove(), null if remove() is not allowed now
+    private int remaining; // number of elements still to be returned
+
+    private int originalModificationSerialNumber;
+
+    private TreeIterationEvent event; // only for iteration over the whole tree
+
+    /**
+     * @param tree tree to iterate
+     * @param firstNode first node to be returned, may be {@code null} for empty tree or range
+     * @param count number of elements to be returned
+     * @param descending {@code true} to iterate in descending order
+     */
+    InOrderTreeIterator(BSTTreeSet<E> tree, Node<E> firstNode, int count, boolean descending) {
+        this.tree = tree;
+        this.nextNode = firstNode;
+        this.remaining = (firstNode == null) ? 0 : count;
+        this.descending = descending;
+        this.originalModificationSerialNumber = tree.getCurrentModificationSerialNumber();
+    }
+
+    /**
+     * Makes this iterator (over the whole tree) record {@link TreeIterationEvent} when it returns its last element.
+     * @return this iterator
+     */
+    InOrderTreeIterator<E> recordingIterationEvent() {
+        event = new TreeIterationEvent();
+        event.begin();
+        return this;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return remaining > 0;
+    }
+
+    @Override
+    public E next() {
+        if (tree.getCurrentModificationSerialNumber() != originalModificationSerialNumber) {
+            throw new ConcurrentModificationException("Modification of collection not allowed when iterating. Iterator is fail-fast");
+        }
+        if (remaining == 0) {
+            throw new NoSuchElementException();
+        }
+        lastReturned = nextNode;
+        remaining--;
+        if (remaining > 0) {
+            nextNode = descending ? tree.findPredecessor(lastReturned) : tree.findSuccessor(lastReturned);
+        } else {
+            nextNode = null;
+            if (event != null) {
+                event.commitIfSlow(tree.size());
+                event = null;
+            }
+        }
+        return lastReturned.getValue();
+    }
+
+    /**
+     * Removes last returned element from the tree. If removed node has both sons, its successor is moved into its place,
+     * but node objects stay the same, so the remembered next node remains valid.
+     */
+    @Override
+    public void remove() {
+        if (lastReturned == null) {
+            throw new IllegalStateException("Cannot call remove() more than once per one next() call.");
+        }
+        if (tree.getCurrentModificationSerialNumber() != originalModificationSerialNumber) {
+            throw new ConcurrentModificationException("Modification of collection not allowed when iterating. Iterator is fail-fast");
+        }
+        tree.removeItnernal(lastReturned);
+        originalModificationSerialNumber = tree.getCurrentModificationSerialNumber();
+        lastReturned = null;
+    }
+}
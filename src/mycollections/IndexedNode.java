@@ -0,0 +1,215 @@
+package mycollections;
+
+import static mycollections.ArrayNodeStore.NONE;
+
+/**
+ * Handle for node kept in {@link ArrayNodeStore}: holds only the store and index of the slot, all data of the node is read from (and written to) the store arrays.
+ * Handles are created on demand (e.g. by every getLeftSon() call), so two handles of the same node are different objects - use {@link #isSameNodeAs(Node)} to compare them.<BR>
+ * Implements both {@link WeightedNode} and {@link ColouredNode}, as balance factor and colour are kept in the same array of the store.
+ */
+final class IndexedNode<E> implements WeightedNode<E>, ColouredNode<E> {
+
+    private static final long serialVersionUID = -3264870913170496043L;
+
+    private static final Colour[] COLOURS = Colour.values();
+
+    private final ArrayNodeStore<E> store;
+    private final int index;
+
+    IndexedNode(ArrayNodeStore<E> store, int index) {
+        this.store = store;
+        this.index = index;
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    private int indexOf(Node<E> node) {
+        if (node == null) {
+            return NONE;
+        }
+        assert ((IndexedNode<E>) node).store == store : "node from other store";
+        return ((IndexedNode<E>) node).index;
+    }
+
+    @Override
+    public boolean isSameNodeAs(Node<E> other) {
+        return other instanceof IndexedNode && ((IndexedNode<E>) other).store == store && ((IndexedNode<E>) other).index == index;
+    }
+
+    @Override
+    public E getValue() {
+        return store.value(index);
+    }
+
+    @Override
+    public void setValue(E value) {
+        store.setValue(index, value);
+    }
+
+    @Override
+    public Node<E> getOnlySon() {
+        if (hasOneSonOnly()) {
+            return hasRightSon() ? getRightSon() : getLeftSon();
+        }
+        throw new IllegalStateException("Cannot call getOnlySon on node which has both sons");
+    }
+
+    @Override
+    public Node<E> getLeftSon() {
+        return store.node(store.left(index));
+    }
+
+    @Override
+    public Node<E> getRightSon() {
+        return store.node(store.right(index));
+    }
+
+    @Override
+    public Node<E> getParent() {
+        return store.node(store.parent(index));
+    }
+
+    /** sets to provided node without checking if already has right son (overriding it) */
+    @Override
+    public void setRightSon(Node<E> newRightSon) {
+        int son = indexOf(newRightSon);
+        store.setRight(index, son);
+        if (son != NONE) {
+            store.setParent(son, index);
+        }
+    }
+
+    @Override
+    public void setLeftSon(Node<E> newLeftSon) {
+        int son = indexOf(newLeftSon);
+        store.setLeft(index, son);
+        if (son != NONE) {
+            store.setParent(son, index);
+        }
+    }
+
+    @Override
+    public int getSubtreeSize() {
+        return store.subtreeSize(index);
+    }
+
+    @Override
+    public void setSubtreeSize(int subtreeSize) {
+        store.setSubtreeSize(index, subtreeSize);
+    }
+
+    @Override
+    public int getBalanceFactor() {
+        return store.balance(index);
+    }
+
+    @Override
+    public void setBalanceFactor(int balanceFactor) {
+        assert balanceFactor >= -2 && balanceFactor <= 2;
+        store.setBalance(index, balanceFactor);
+    }
+
+    @Override
+    public Colour getColour() {
+        return COLOURS[store.balance(index)];
+    }
+
+    @Override
+    public void setColour(Colour colour) {
+        store.setBalance(index, colour.ordinal());
+    }
+
+    @Override
+    public boolean hasLeftSon() {
+        return store.left(index) != NONE;
+    }
+
+    @Override
+    public boolean hasRightSon() {
+        return store.right(index) != NONE;
+    }
+
+    @Override
+    public boolean isLeftSon() {
+        int parent = store.parent(index);
+        return parent != NONE && store.left(parent) == index;
+    }
+
+    @Override
+    public boolean isRightSon() {
+        int parent = store.parent(index);
+        return parent != NONE && store.right(parent) == index;
+    }
+
+    @Override
+    public boolean hasNoParent() {
+        return store.parent(index) == NONE;
+    }
+
+    @Override
+    public boolean isRootNode() {
+        return hasNoParent();
+    }
+
+    @Override
+    public void unlinkFromParent() {
+        int parent = store.parent(index);
+        if (parent != NONE) {
+            if (store.right(parent) == index) {
+                store.setRight(parent, NONE);
+            } else if (store.left(parent) == index) {
+                store.setLeft(parent, NONE);
+            }
+        }
+        store.setParent(index, NONE);
+    }
+
+    @Override
+    public void unlinkFromParentAndSons() {
+        int right = store.right(index);
+        if (right != NONE && store.parent(right) == index) {
+            store.setParent(right, NONE);
+        }
+        store.setRight(index, NONE);
+        int left = store.left(index);
+        if (left != NONE && store.parent(left) == index) {
+            store.setParent(left, NONE);
+        }
+        store.setLeft(index, NONE);
+        unlinkFromParent();
+    }
+
+    /**
+     * Like for {@link ReferenceBasedNode}, nodes are equal when they have equal values and equal subtrees.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        IndexedNode<E> node = (IndexedNode<E>) o;
+
+        if (getLeftSon() != null ? !getLeftSon().equals(node.getLeftSon()) : node.getLeftSon() != null) return false;
+        if (getRightSon() != null ? !getRightSon().equals(node.getRightSon()) : node.getRightSon() != null) return false;
+        E value = getValue();
+        if (value != null ? !value.equals(node.getValue()) : node.getValue() != null) return false;
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        E value = getValue();
+        int result = value != null ? value.hashCode() : 0;
+        result = 31 * result + (getLeftSon() != null ? getLeftSon().hashCode() : 0);
+        result = 31 * result + (getRightSon() != null ? getRightSon().hashCode() : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return index + ":" + getValue();
+    }
+}
@@ -0,0 +1,239 @@
+package mycollections;
+
+import java.util.*;
+
+/**
+ * Set of {@code int} values, kept in AVL tree in ascending (natural) order, with no boxing of elements: elements are kept in {@code int[]} array,
+ * and {@link #add(int)}, {@link #contains(int)}, {@link #remove(int)}, {@link #intIterator()} and bulk operations on {@code int[]} never create {@code Integer} objects.
+ * Tree algorithms are shared with {@link LongBSTTreeSet} (see {@link PrimitiveBSTTreeSet}).<BR>
+ * Methods of {@code Set<Integer>} interface are also supported (so the set can be passed where Collection is expected), but they box and unbox elements.
+ */
+public class IntBSTTreeSet extends PrimitiveBSTTreeSet<Integer> {
+
+    private static final long serialVersionUID = -4125683530316453385L;
+
+    private int[] elements = new int[INITIAL_CAPACITY];
+
+    /**
+     * Constructs new empty set.
+     */
+    public IntBSTTreeSet() {
+    }
+
+    /**
+     * Constructs new set containing provided values.
+     * @param values values to be added, may contain duplicates
+     */
+    public IntBSTTreeSet(int... values) {
+        addAll(values);
+    }
+
+    /**
+     * Adds value to the set.
+     * @param value value to be added
+     * @return {@code true} if value was added, {@code false} if it already existed
+     */
+    public boolean add(int value) {
+        int parentSlot = NONE;
+        int slot = root;
+        boolean goLeft = false;
+        while (slot != NONE) {
+            int element = elements[slot];
+            if (value == element) {
+                return false;
+            }
+            parentSlot = slot;
+            goLeft = value < element;
+            slot = goLeft ? left[slot] : right[slot];
+        }
+        int newSlot = allocateSlot();
+        elements[newSlot] = value;
+        link(newSlot, parentSlot, goLeft);
+        return true;
+    }
+
+    /**
+     * @param value value to be checked
+     * @return {@code true} if the set contains provided value
+     */
+    public boolean contains(int value) {
+        return findSlot(value) != NONE;
+    }
+
+    /**
+     * Removes value from the set.
+     * @param value value to be removed
+     * @return {@code true} if value was removed, {@code false} if it was not present
+     */
+    public boolean remove(int value) {
+        int slot = findSlot(value);
+        if (slot == NONE) {
+            return false;
+        }
+        removeSlot(slot);
+        return true;
+    }
+
+    private int findSlot(int value) {
+        int slot = root;
+        while (slot != NONE) {
+            int element = elements[slot];
+            if (value == element) {
+                return slot;
+            }
+            slot = (value < element) ? left[slot] : right[slot];
+        }
+        return NONE;
+    }
+
+    /**
+     * @return the smallest value in the set
+     * @throws NoSuchElementException if the set is empty
+     */
+    public int first() {
+        return valueOf(lowestSlot());
+    }
+
+    /**
+     * @return the biggest value in the set
+     * @throws NoSuchElementException if the set is empty
+     */
+    public int last() {
+        return valueOf(highestSlot());
+    }
+
+    private int valueOf(int slot) {
+        if (slot == NONE) {
+            throw new NoSuchElementException();
+        }
+        return elements[slot];
+    }
+
+    /**
+     * Returns k-th smallest value of the set (counting from 0). Runs in time proportional to tree height.
+     * @throws IndexOutOfBoundsException if k is negative or not smaller than size of the set
+     */
+    public int select(int k) {
+        return elements[selectSlot(k)];
+    }
+
+    /**
+     * Returns number of values in this set strictly smaller than provided one (which does not need to be present in the set). Runs in time proportional to tree height.
+     */
+    public int rank(int value) {
+        int count = 0;
+        int slot = root;
+        while (slot != NONE) {
+            int element = elements[slot];
+            if (value < element) {
+                slot = left[slot];
+            } else if (value > element) {
+                count += sizeOf(left[slot]) + 1;
+                slot = right[slot];
+            } else {
+                return count + sizeOf(left[slot]);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Adds all provided values. Arrays are grown once for all of them, not for every added value.
+     * @return {@code true} if any value was added
+     */
+    public boolean addAll(int... values) {
+        ensureCapacity(size() + values.length);
+        boolean changed = false;
+        for (int value : values) {
+            changed |= add(value);
+        }
+        return changed;
+    }
+
+    /**
+     * @return {@code true} if all provided values are present in the set
+     */
+    public boolean containsAll(int... values) {
+        for (int value : values) {
+            if (!contains(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes all provided values.
+     * @return {@code true} if any value was removed
+     */
+    public boolean removeAll(int... values) {
+        boolean changed = false;
+        for (int value : values) {
+            changed |= remove(value);
+        }
+        return changed;
+    }
+
+    /**
+     * @return all values of the set in ascending order
+     */
+    public int[] toIntArray() {
+        int[] result = new int[size()];
+        int i = 0;
+        for (int slot = lowestSlot(); slot != NONE; slot = successor(slot)) {
+            result[i++] = elements[slot];
+        }
+        return result;
+    }
+
+    /**
+     * Returns iterator over values in ascending order. Use {@link PrimitiveIterator.OfInt#nextInt()} to avoid boxing.
+     * Iterator is <i>fail-fast</i>, and supports remove().
+     */
+    public PrimitiveIterator.OfInt intIterator() {
+        return new IntIterator();
+    }
+
+    @Override
+    public PrimitiveIterator.OfInt iterator() {
+        return intIterator();
+    }
+
+    @Override
+    public boolean add(Integer value) {
+        return add(value.intValue());
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return (o instanceof Integer) && contains(((Integer) o).intValue());
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return (o instanceof Integer) && remove(((Integer) o).intValue());
+    }
+
+    @Override
+    void resizeElements(int newCapacity) {
+        elements = Arrays.copyOf(elements, newCapacity);
+    }
+
+    @Override
+    void copyElement(int fromSlot, int toSlot) {
+        elements[toSlot] = elements[fromSlot];
+    }
+
+    @Override
+    int compareElements(int firstSlot, int secondSlot) {
+        return Integer.compare(elements[firstSlot], elements[secondSlot]);
+    }
+
+    private final class IntIterator extends SlotIterator implements PrimitiveIterator.OfInt {
+
+        @Override
+        public int nextInt() {
+            return elements[(int) nextSlot()];
+        }
+    }
+}
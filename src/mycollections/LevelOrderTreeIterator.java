@@ -0,0 +1,81 @@
+package mycollections;
+
+import java.util.*;
+
+/**
+ * Iterates tree in level-order method (breadth-first): the root, then all nodes of depth 1 from left to right, then nodes of depth 2, and so on.
+ * Nodes waiting to be visited are kept in a queue: sons of returned node are added at its end. So unlike other iterators it needs memory
+ * proportional to the width of the tree (up to n/2 for balanced tree).<BR>
+ * remove() unlinks the last returned node directly. Its sons are the last ones in the queue, as they were just added; the node taking its place
+ * (the only son, or the successor if it had both) is then put at the front of the queue in their place, so it is returned next, and its sons are queued when it is returned.
+ * It is not supported for self-balancing trees, as rotations done on removal may move visited nodes below not yet visited ones.
+ */
+class LevelOrderTreeIterator<E> implements Iterator<E> {
+
+    private final BSTTreeSet<E> tree;
+
+    private final ArrayDeque<Node<E>> queue = new ArrayDeque<>();
+    private Node<E> lastReturned; // needed for remove(), null if remove() is not allowed now
+
+    private int originalModificationSerialNumber;
+
+    LevelOrderTreeIterator(BSTTreeSet<E> tree) {
+        this.tree = tree;
+        Node<E> rootNode = tree.getRootNode();
+        if (rootNode != null) {
+            queue.addLast(rootNode);
+        }
+        this.originalModificationSerialNumber = tree.getCurrentModificationSerialNumber();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !queue.isEmpty();
+    }
+
+    @Override
+    public E next() {
+        if (tree.getCurrentModificationSerialNumber() != originalModificationSerialNumber) {
+            throw new ConcurrentModificationException("Modification of collection not allowed when iterating. Iterator is fail-fast");
+        }
+        if (queue.isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        lastReturned = queue.removeFirst();
+        if (lastReturned.hasLeftSon()) {
+            queue.addLast(lastReturned.getLeftSon());
+        }
+        if (lastReturned.hasRightSon()) {
+            queue.addLast(lastReturned.getRightSon());
+        }
+        return lastReturned.getValue();
+    }
+
+    @Override
+    public void remove() {
+        if (tree.isSelfBalancing()) {
+            throw new UnsupportedOperationException("Level-order iterator cannot remove elements from self-balancing tree, as rotations done on removal reorganize not yet visited nodes");
+        }
+        if (lastReturned == null) {
+            throw new IllegalStateException("Cannot call remove() more than once per one next() call.");
+        }
+        if (tree.getCurrentModificationSerialNumber() != originalModificationSerialNumber) {
+            throw new ConcurrentModificationException("Modification of collection not allowed when iterating. Iterator is fail-fast");
+        }
+        Node<E> replacement = null;
+        if (lastReturned.hasBothSons()) {
+            replacement = tree.findSuccessor(lastReturned); // successor deeper in right subtree would not be reached from its new parent, which is already visited
+            queue.removeLast();
+            queue.removeLast();
+        } else if (!lastReturned.isLeafNode()) {
+            replacement = lastReturned.getOnlySon();
+            queue.removeLast();
+        }
+        tree.removeItnernal(lastReturned);
+        if (replacement != null) {
+            queue.addFirst(replacement);
+        }
+        originalModificationSerialNumber = tree.getCurrentModificationSerialNumber();
+        lastReturned = null;
+    }
+}
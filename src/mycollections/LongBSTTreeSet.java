@@ -0,0 +1,239 @@
+package mycollections;
+
+import java.util.*;
+
+/**
+ * Set of {@code long} values, kept in AVL tree in ascending (natural) order, with no boxing of elements: elements are kept in {@code long[]} array,
+ * and {@link #add(long)}, {@link #contains(long)}, {@link #remove(long)}, {@link #longIterator()} and bulk operations on {@code long[]} never create {@code Long} objects.
+ * Tree algorithms are shared with {@link IntBSTTreeSet} (see {@link PrimitiveBSTTreeSet}).<BR>
+ * Methods of {@code Set<Long>} interface are also supported (so the set can be passed where Collection is expected), but they box and unbox elements.
+ */
+public class LongBSTTreeSet extends PrimitiveBSTTreeSet<Long> {
+
+    private static final long serialVersionUID = 3811246009577317962L;
+
+    private long[] elements = new long[INITIAL_CAPACITY];
+
+    /**
+     * Constructs new empty set.
+     */
+    public LongBSTTreeSet() {
+    }
+
+    /**
+     * Constructs new set containing provided values.
+     * @param values values to be added, may contain duplicates
+     */
+    public LongBSTTreeSet(long... values) {
+        addAll(values);
+    }
+
+    /**
+     * Adds value to the set.
+     * @param value value to be added
+     * @return {@code true} if value was added, {@code false} if it already existed
+     */
+    public boolean add(long value) {
+        int parentSlot = NONE;
+        int slot = root;
+        boolean goLeft = false;
+        while (slot != NONE) {
+            long element = elements[slot];
+            if (value == element) {
+                return false;
+            }
+            parentSlot = slot;
+            goLeft = value < element;
+            slot = goLeft ? left[slot] : right[slot];
+        }
+        int newSlot = allocateSlot();
+        elements[newSlot] = value;
+        link(newSlot, parentSlot, goLeft);
+        return true;
+    }
+
+    /**
+     * @param value value to be checked
+     * @return {@code true} if the set contains provided value
+     */
+    public boolean contains(long value) {
+        return findSlot(value) != NONE;
+    }
+
+    /**
+     * Removes value from the set.
+     * @param value value to be removed
+     * @return {@code true} if value was removed, {@code false} if it was not present
+     */
+    public boolean remove(long value) {
+        int slot = findSlot(value);
+        if (slot == NONE) {
+            return false;
+        }
+        removeSlot(slot);
+        return true;
+    }
+
+    private int findSlot(long value) {
+        int slot = root;
+        while (slot != NONE) {
+            long element = elements[slot];
+            if (value == element) {
+                return slot;
+            }
+            slot = (value < element) ? left[slot] : right[slot];
+        }
+        return NONE;
+    }
+
+    /**
+     * @return the smallest value in the set
+     * @throws NoSuchElementException if the set is empty
+     */
+    public long first() {
+        return valueOf(lowestSlot());
+    }
+
+    /**
+     * @return the biggest value in the set
+     * @throws NoSuchElementException if the set is empty
+     */
+    public long last() {
+        return valueOf(highestSlot());
+    }
+
+    private long valueOf(int slot) {
+        if (slot == NONE) {
+            throw new NoSuchElementException();
+        }
+        return elements[slot];
+    }
+
+    /**
+     * Returns k-th smallest value of the set (counting from 0). Runs in time proportional to tree height.
+     * @throws IndexOutOfBoundsException if k is negative or not smaller than size of the set
+     */
+    public long select(int k) {
+        return elements[selectSlot(k)];
+    }
+
+    /**
+     * Returns number of values in this set strictly smaller than provided one (which does not need to be present in the set). Runs in time proportional to tree height.
+     */
+    public int rank(long value) {
+        int count = 0;
+        int slot = root;
+        while (slot != NONE) {
+            long element = elements[slot];
+            if (value < element) {
+                slot = left[slot];
+            } else if (value > element) {
+                count += sizeOf(left[slot]) + 1;
+                slot = right[slot];
+            } else {
+                return count + sizeOf(left[slot]);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Adds all provided values. Arrays are grown once for all of them, not for every added value.
+     * @return {@code true} if any value was added
+     */
+    public boolean addAll(long... values) {
+        ensureCapacity(size() + values.length);
+        boolean changed = false;
+        for (long value : values) {
+            changed |= add(value);
+        }
+        return changed;
+    }
+
+    /**
+     * @return {@code true} if all provided values are present in the set
+     */
+    public boolean containsAll(long... values) {
+        for (long value : values) {
+            if (!contains(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes all provided values.
+     * @return {@code true} if any value was removed
+     */
+    public boolean removeAll(long... values) {
+        boolean changed = false;
+        for (long value : values) {
+            changed |= remove(value);
+        }
+        return changed;
+    }
+
+    /**
+     * @return all values of the set in ascending order
+     */
+    public long[] toLongArray() {
+        long[] result = new long[size()];
+        int i = 0;
+        for (int slot = lowestSlot(); slot != NONE; slot = successor(slot)) {
+            result[i++] = elements[slot];
+        }
+        return result;
+    }
+
+    /**
+     * Returns iterator over values in ascending order. Use {@link PrimitiveIterator.OfLong#nextLong()} to avoid boxing.
+     * Iterator is <i>fail-fast</i>, and supports remove().
+     */
+    public PrimitiveIterator.OfLong longIterator() {
+        return new LongIterator();
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        return longIterator();
+    }
+
+    @Override
+    public boolean add(Long value) {
+        return add(value.longValue());
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return (o instanceof Long) && contains(((Long) o).longValue());
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return (o instanceof Long) && remove(((Long) o).longValue());
+    }
+
+    @Override
+    void resizeElements(int newCapacity) {
+        elements = Arrays.copyOf(elements, newCapacity);
+    }
+
+    @Override
+    void copyElement(int fromSlot, int toSlot) {
+        elements[toSlot] = elements[fromSlot];
+    }
+
+    @Override
+    int compareElements(int firstSlot, int secondSlot) {
+        return Long.compare(elements[firstSlot], elements[secondSlot]);
+    }
+
+    private final class LongIterator extends SlotIterator implements PrimitiveIterator.OfLong {
+
+        @Override
+        public long nextLong() {
+            return elements[(int) nextSlot()];
+        }
+    }
+}
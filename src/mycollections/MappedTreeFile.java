@@ -0,0 +1,295 @@
+package mycollections;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.NoSuchElementException;
+import java.util.OptionalLong;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Read-only tree of {@code int} or {@code long} keys kept in a file, which is memory-mapped ({@link FileChannel#map}) and searched directly,
+ * without reading it into java heap first. So opening even a huge file is immediate (only the header is checked), pages of the file are loaded
+ * by the OS when lookups touch them, and processes on the same host mapping the same file share these pages in page cache.<BR>
+ * File is written from {@link IntBSTTreeSet} or {@link LongBSTTreeSet} (see {@link #write(Path, IntBSTTreeSet)}). It has no pointers at all:
+ * keys of perfectly balanced tree are stored in breadth-first order (Eytzinger layout), so sons of the key at position k (counting from 1) are at 2k and 2k+1.
+ * Search goes down from position 1 computing the next position, and first levels of the tree (visited by every lookup) are together at the beginning of the file,
+ * so they stay in the page cache.<BR>
+ * File format (little endian): magic number, format version, bytes of a key (4 or 8), number of keys, then the keys.
+ * Single mapping is limited to 2GB, so a file keeps at most about 268M long keys (536M int keys).<BR>
+ * Lookups are thread-safe. {@link #close()} unmaps the file at once, so it must not be called while other threads still use the tree; any call after it throws IllegalStateException.
+ */
+public final class MappedTreeFile implements AutoCloseable {
+
+    private static final int MAGIC = 0x4D545246; // "MTRF"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 24;
+    private static final int KEY_BYTES_OFFSET = 8;
+    private static final int SIZE_OFFSET = 16;
+
+    private final MappedByteBuffer buffer;
+    private final int keyBytes;
+    private final int size;
+    private volatile boolean closed;
+
+    private MappedTreeFile(MappedByteBuffer buffer, int keyBytes, int size) {
+        this.buffer = buffer;
+        this.keyBytes = keyBytes;
+        this.size = size;
+    }
+
+    /**
+     * Writes all values of the set to the file (replacing it atomically), as 4-byte keys.
+     * @throws IllegalArgumentException if the set is too big for a single mapping
+     */
+    public static void write(Path file, IntBSTTreeSet set) throws IOException {
+        PrimitiveIterator.OfInt values = set.intIterator();
+        write(file, set.size(), Integer.BYTES, (buffer, offset) -> buffer.putInt(offset, values.nextInt()));
+    }
+
+    /**
+     * Writes all values of the set to the file (replacing it atomically), as 8-byte keys.
+     * @throws IllegalArgumentException if the set is too big for a single mapping
+     */
+    public static void write(Path file, LongBSTTreeSet set) throws IOException {
+        PrimitiveIterator.OfLong values = set.longIterator();
+        write(file, set.size(), Long.BYTES, (buffer, offset) -> buffer.putLong(offset, values.nextLong()));
+    }
+
+    private interface KeyWriter {
+        void putNextKey(ByteBuffer buffer, int offset);
+    }
+
+    /**
+     * Writes a temporary file next to the target and then moves it in place of the target atomically, so processes still having the old file mapped
+     * keep reading the old content, and never see the file shrunk or half-written. Replaced file keeps its POSIX permissions, and new file gets the default ones,
+     * so other users may still map it.<BR>
+     * Goes through positions of the tree in-order, so values coming in ascending order are put straight in place, without any copy on heap.
+     */
+    private static void write(Path file, int size, int keyBytes, KeyWriter nextKey) throws IOException {
+        long fileBytes = HEADER_BYTES + (long) size * keyBytes;
+        if (fileBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Tree of " + size + " keys does not fit into single mapping");
+        }
+        // not Files.createTempFile, as it makes the file readable by the owner only
+        Path tempFile = file.resolveSibling(file.getFileName() + "." + Long.toUnsignedString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileBytes);
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                for (int position = firstPosition(size); position != 0; position = nextPosition(position, size)) {
+                    nextKey.putNextKey(buffer, offset(position, keyBytes));
+                }
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                buffer.putInt(KEY_BYTES_OFFSET, keyBytes);
+                buffer.putLong(SIZE_OFFSET, size);
+                buffer.force();
+                OffHeapNodeStore.freeDirectBuffer(buffer);
+            }
+            if (Files.exists(file) && Files.getFileStore(tempFile).supportsFileAttributeView(PosixFileAttributeView.class)) {
+                Files.setPosixFilePermissions(tempFile, Files.getPosixFilePermissions(file));
+            }
+            Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tempFile); // only if the move did not happen
+        }
+    }
+
+    /**
+     * Maps the file written by one of {@code write} methods. Only the header is read.
+     * @throws IOException if the file cannot be read, or it is not a tree file
+     */
+    public static MappedTreeFile open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) { // mapping stays valid after the channel is closed
+            long fileBytes = channel.size();
+            if (fileBytes < HEADER_BYTES || fileBytes > Integer.MAX_VALUE) {
+                throw new IOException("Not a tree file: " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileBytes);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            int keyBytes = buffer.getInt(KEY_BYTES_OFFSET);
+            long size = buffer.getLong(SIZE_OFFSET);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || (keyBytes != Integer.BYTES && keyBytes != Long.BYTES)
+                    || size < 0 || HEADER_BYTES + size * keyBytes != fileBytes) {
+                OffHeapNodeStore.freeDirectBuffer(buffer);
+                throw new IOException("Not a tree file, or file of other version: " + file);
+            }
+            return new MappedTreeFile(buffer, keyBytes, (int) size);
+        }
+    }
+
+    /**
+     * @return number of keys
+     */
+    public int size() {
+        ensureOpen();
+        return size;
+    }
+
+    /**
+     * @return 4 for file written from {@link IntBSTTreeSet}, 8 for file written from {@link LongBSTTreeSet}
+     */
+    public int keyBytes() {
+        return keyBytes;
+    }
+
+    public boolean contains(long value) {
+        int position = ceilingPosition(value);
+        return position != 0 && key(position) == value;
+    }
+
+    /**
+     * @return the greatest key less than or equal to the value, empty if there is no such key
+     */
+    public OptionalLong floor(long value) {
+        ensureOpen();
+        int position = 1;
+        while (position <= size) {
+            position = 2 * position + (key(position) <= value ? 1 : 0);
+        }
+        position >>>= Integer.numberOfTrailingZeros(position) + 1; // back to the last node where search went right
+        return (position == 0) ? OptionalLong.empty() : OptionalLong.of(key(position));
+    }
+
+    /**
+     * @return the least key greater than or equal to the value, empty if there is no such key
+     */
+    public OptionalLong ceiling(long value) {
+        int position = ceilingPosition(value);
+        return (position == 0) ? OptionalLong.empty() : OptionalLong.of(key(position));
+    }
+
+    /**
+     * @return position of the least key greater than or equal to the value, 0 if there is no such key
+     */
+    private int ceilingPosition(long value) {
+        ensureOpen();
+        int position = 1;
+        while (position <= size) {
+            position = 2 * position + (key(position) < value ? 1 : 0);
+        }
+        return position >>> (Integer.numberOfTrailingZeros(~position) + 1); // back to the last node where search went left
+    }
+
+    /**
+     * @return the smallest key
+     * @throws NoSuchElementException if the tree is empty
+     */
+    public long first() {
+        ensureOpen();
+        return keyAt(firstPosition(size));
+    }
+
+    /**
+     * @return the biggest key
+     * @throws NoSuchElementException if the tree is empty
+     */
+    public long last() {
+        ensureOpen();
+        int position = 0;
+        while (2 * position + 1 <= size) {
+            position = 2 * position + 1;
+        }
+        return keyAt(position);
+    }
+
+    private long keyAt(int position) {
+        if (position == 0) {
+            throw new NoSuchElementException();
+        }
+        return key(position);
+    }
+
+    /**
+     * @return iterator over keys in ascending order
+     */
+    public PrimitiveIterator.OfLong iterator() {
+        ensureOpen();
+        return new PrimitiveIterator.OfLong() {
+
+            private int position = firstPosition(size);
+
+            @Override
+            public boolean hasNext() {
+                return position != 0;
+            }
+
+            @Override
+            public long nextLong() {
+                if (position == 0) {
+                    throw new NoSuchElementException();
+                }
+                ensureOpen();
+                long key = key(position);
+                position = nextPosition(position, size);
+                return key;
+            }
+        };
+    }
+
+    /**
+     * Unmaps the file. Calling it more than once has no effect.
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            OffHeapNodeStore.freeDirectBuffer(buffer);
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Tree file already closed");
+        }
+    }
+
+    private long key(int position) {
+        int offset = offset(position, keyBytes);
+        return (keyBytes == Long.BYTES) ? buffer.getLong(offset) : buffer.getInt(offset);
+    }
+
+    private static int offset(int position, int keyBytes) {
+        return HEADER_BYTES + (position - 1) * keyBytes;
+    }
+
+    /**
+     * @return position of the lowest key (the leftmost one), 0 for empty tree
+     */
+    private static int firstPosition(int size) {
+        if (size == 0) {
+            return 0;
+        }
+        int position = 1;
+        while (2 * position <= size) {
+            position *= 2;
+        }
+        return position;
+    }
+
+    /**
+     * @return position of in-order successor, 0 if there is none
+     */
+    private static int nextPosition(int position, int size) {
+        if (2 * position + 1 <= size) { // the leftmost position of the right subtree
+            position = 2 * position + 1;
+            while (2 * position <= size) {
+                position *= 2;
+            }
+            return position;
+        }
+        while ((position & 1) == 1) { // go up while coming from the right son
+            position >>>= 1;
+        }
+        return position >>> 1;
+    }
+}
@@ -1,50 +1,167 @@
 package mycollections;
 
+import java.util.Comparator;
+
 /**
+ * Self-balancing BST (AVL tree). For every node heights of its left and right subtree differ at most by one,
+ * what guarantees tree height not bigger than about 1.44*log2(n), so add, remove and contains are O(log n) whatever the order of inserted elements is.<BR>
+ * Every node keeps its balance factor: height of right subtree minus height of left subtree (see {@link WeightedNode}).
+ * After insert or delete balance factors are updated going from the modified place up to the root, and single or double rotations are done when balance factor reaches +2 or -2.
+ * <BR><BR>
  * <a href="http://en.wikipedia.org/wiki/AVL_tree">Wiki article on AVL tree</a>
  *
  */
 class MyAVLTreeSet<E> extends BSTTreeSet<E> {
 
-    @Override
-    public boolean add(E e) {
-        WeightedNode<E> nodeToAdd = NodeFactory.newWeightedNode(e);
-        return addToSubtree(nodeToAdd, getRootNode());
+    private static final long serialVersionUID = 3290471547128035126L;
+
+    /**
+     * Constructs new empty set, sorted according to the natural ordering of its elements.
+     */
+    MyAVLTreeSet() {
+        this(null);
     }
 
-    void rotateRight(Node<E> root) {
-        Node<E> oldLeftSonRightSubtree = root.getLeftSon().getRightSon();
-        Node<E> oldParentOfRoot = root.getParent();
+    /**
+     * Constructs a new, empty tree set, sorted according to the specified comparator.
+     * @param comparator the comparator that will be used to order this set. If null, the natural ordering of the elements will be used.
+     */
+    MyAVLTreeSet(Comparator<? super E> comparator) {
+        super(comparator);
+    }
 
-        root.getLeftSon().setRightSon(root);
+    /**
+     * Constructs a new, empty tree set, sorted according to the specified comparator, with nodes created by provided factory.
+     * @param comparator the comparator that will be used to order this set. If null, the natural ordering of the elements will be used.
+     * @param nodeFactory factory of nodes, used only by this tree
+     */
+    MyAVLTreeSet(Comparator<? super E> comparator, NodeFactory<E> nodeFactory) {
+        super(comparator, nodeFactory);
+    }
 
-        if (oldParentOfRoot!=null && root.hasLeftSon()) {
-            oldParentOfRoot.setLeftSon(root.getLeftSon());
-        }
+    @Override
+    Node<E> createNode(E value) {
+        return getNodeFactory().newWeightedNode(value);
+    }
 
+    @Override
+    boolean isSelfBalancing() {
+        return true;
+    }
 
-        if (getRootNode() == root) {
-            rootNode = root.getLeftSon();
-        }
+    @Override
+    TreeBalancing getBalancing() {
+        return TreeBalancing.AVL;
+    }
 
-        root.setLeftSon(oldLeftSonRightSubtree);
+    /**
+     * Goes up from inserted node, updating balance factors. Stops when subtree height did not change, or after first rotation
+     * (after insertion one rotation, single or double, always restores previous height of the subtree).
+     */
+    @Override
+    void rebalanceAfterInsertion(Node<E> insertedNode) {
+        Node<E> son = insertedNode;
+        Node<E> parent = insertedNode.getParent();
+        while (parent != null) {
+            WeightedNode<E> weightedParent = (WeightedNode<E>) parent;
+            int balanceFactor = weightedParent.getBalanceFactor() + (son.isLeftSon() ? -1 : 1);
+            weightedParent.setBalanceFactor(balanceFactor);
+            if (balanceFactor == 0) { // shorter subtree got higher, height of parent subtree not changed
+                return;
+            }
+            if (balanceFactor == 2 || balanceFactor == -2) {
+                rebalance(weightedParent);
+                return;
+            }
+            son = parent;
+            parent = parent.getParent();
+        }
     }
 
-    void rotateLeft(ReferenceBasedNode root) {
-        Node<E> oldRightSonLeftSubtree = root.getRightSon().getLeftSon();
-        Node<E> oldParentOfRoot = root.getParent();
+    @Override
+    void successorMovedInPlaceOf(Node<E> removedNode, Node<E> successor) {
+        ((WeightedNode<E>) successor).setBalanceFactor(((WeightedNode<E>) removedNode).getBalanceFactor());
+    }
 
-        root.getRightSon().setLeftSon(root);
+    /**
+     * Goes up from the parent of removed node, updating balance factors. Contrary to insertion, rotation may decrease height of the subtree,
+     * so it may be needed to rotate on many levels (up to the root).
+     */
+    @Override
+    void rebalanceAfterRemoval(Node<E> parent, boolean fromLeft, Node<E> removedNode) {
+        Node<E> node = parent;
+        boolean shrunkFromLeft = fromLeft;
+        while (node != null) {
+            WeightedNode<E> weightedNode = (WeightedNode<E>) node;
+            int balanceFactor = weightedNode.getBalanceFactor() + (shrunkFromLeft ? 1 : -1);
+            weightedNode.setBalanceFactor(balanceFactor);
 
-        if (oldParentOfRoot!= null && root.hasRightSon()) {
-            oldParentOfRoot.setRightSon(root.getRightSon());
+            Node<E> subtreeRoot = node;
+            if (balanceFactor == 2 || balanceFactor == -2) {
+                WeightedNode<E> higherSon = (WeightedNode<E>) (balanceFactor == 2 ? node.getRightSon() : node.getLeftSon());
+                boolean heightPreserved = higherSon.getBalanceFactor() == 0; // single rotation will not decrease height then
+                subtreeRoot = rebalance(weightedNode);
+                if (heightPreserved) {
+                    return;
+                }
+            } else if (balanceFactor != 0) { // was 0 before, so one subtree is still as high as before
+                return;
+            }
+            // height of subtree decreased by one, parent has to be updated as well
+            shrunkFromLeft = subtreeRoot.isLeftSon();
+            node = subtreeRoot.getParent();
         }
+    }
+
+    @Override
+    void initBulkLoadedNode(Node<E> node, int leftHeight, int rightHeight, int depth, int treeHeight) {
+        ((WeightedNode<E>) node).setBalanceFactor(rightHeight - leftHeight);
+    }
 
-        if (rootNode == root) {
-            rootNode  = root.getRightSon();
+    /**
+     * Restores balance of the node having balance factor +2 or -2, with single or double rotation.
+     * @param node node with balance factor +2 or -2
+     * @return new root of the rebalanced subtree
+     */
+    private Node<E> rebalance(WeightedNode<E> node) {
+        if (node.getBalanceFactor() == 2) {
+            if (((WeightedNode<E>) node.getRightSon()).getBalanceFactor() < 0) { // right-left case
+                rotateRight(node.getRightSon());
+            }
+            rotateLeft(node);
+        } else {
+            assert node.getBalanceFactor() == -2;
+            if (((WeightedNode<E>) node.getLeftSon()).getBalanceFactor() > 0) { // left-right case
+                rotateLeft(node.getLeftSon());
+            }
+            rotateRight(node);
         }
+        return node.getParent();
+    }
 
-        root.setRightSon(oldRightSonLeftSubtree);
+    /**
+     * Rotates left updating balance factors of both rotated nodes.
+     * Heights of subtrees A, B, C (see {@link BSTTreeSet#rotateLeft(Node)}) do not change, so new balance factors can be derived from old ones.
+     */
+    @Override
+    void rotateLeft(Node<E> root) {
+        WeightedNode<E> x = (WeightedNode<E>) root;
+        WeightedNode<E> y = (WeightedNode<E>) root.getRightSon();
+        super.rotateLeft(root);
+        x.setBalanceFactor(x.getBalanceFactor() - 1 - Math.max(y.getBalanceFactor(), 0));
+        y.setBalanceFactor(y.getBalanceFactor() - 1 + Math.min(x.getBalanceFactor(), 0));
+    }
+
+    /**
+     * Rotates right updating balance factors of both rotated nodes.
+     */
+    @Override
+    void rotateRight(Node<E> root) {
+        WeightedNode<E> x = (WeightedNode<E>) root;
+        WeightedNode<E> y = (WeightedNode<E>) root.getLeftSon();
+        super.rotateRight(root);
+        x.setBalanceFactor(x.getBalanceFactor() + 1 - Math.min(y.getBalanceFactor(), 0));
+        y.setBalanceFactor(y.getBalanceFactor() + 1 + Math.max(x.getBalanceFactor(), 0));
     }
 
 }
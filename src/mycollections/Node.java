@@ -9,6 +9,11 @@ public interface Node<E> extends Serializable {
 
     E getValue();
 
+    /**
+     * Replaces value kept in the node. Caller must keep order of the tree (new value must fit between predecessor and successor of the node).
+     */
+    void setValue(E value);
+
     Node<E> getOnlySon();
 
     Node<E> getLeftSon();
@@ -21,6 +26,13 @@ public interface Node<E> extends Serializable {
 
     void setLeftSon(Node<E> newLeftSon);
 
+    /**
+     * @return number of nodes in subtree rooted in this node (including this node)
+     */
+    int getSubtreeSize();
+
+    void setSubtreeSize(int subtreeSize);
+
     default boolean isLeafNode()  {
         return (!hasRightSon() && !hasLeftSon())? true : false;
     }
@@ -48,4 +60,14 @@ public interface Node<E> extends Serializable {
     }
 
     boolean isRootNode();
+
+    /**
+     * Tells if provided node is the same node of the tree as this one. Nodes kept in arrays (see {@link ArrayNodeStore}) are accessed through short-living handles,
+     * so {@code ==} cannot be used to compare nodes.
+     * @param other node to compare with, may be {@code null}
+     * @return {@code true} if both represent the same node
+     */
+    default boolean isSameNodeAs(Node<E> other) {
+        return this == other;
+    }
 }
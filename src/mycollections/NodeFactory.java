@@ -1,17 +1,66 @@
 package mycollections;
 
 /**
- *
+ * Creates nodes for the tree. Every tree has its own factory, so the factory may also be the place where nodes are kept (see {@link ArrayNodeStore}).
+ * Trees give back nodes they do not use any more with {@link #release(Node)}, so such factory may reuse their space.
  */
-class NodeFactory<E> {
+interface NodeFactory<E> {
 
-    public static <E> Node<E> newNode(E e) {
-        return new ReferenceBasedNode(e);
+    Node<E> newNode(E e);
+
+    WeightedNode<E> newWeightedNode(E e);
+
+    ColouredNode<E> newColouredNode(E e);
+
+    /**
+     * Called when node was unlinked from the tree (or was never linked into it) and will not be used any more.
+     */
+    default void release(Node<E> node) {
     }
 
-    public static <E> WeightedNode<E> newWeightedNode(E e) {
-        return new BalanceFactoredReferenceBasedNode(e);
+    /**
+     * Called when all nodes were removed from the tree.
+     */
+    default void clear() {
+    }
+
+    /**
+     * @return kind of storage of the nodes, so the tree can create the same kind of factory after deserialization
+     */
+    NodeStorage getStorage();
+
+    /**
+     * @return factory creating separate objects for every node (nodes are freed by garbage collector, so release() does nothing)
+     */
+    static <E> NodeFactory<E> referenceBased() {
+        return (NodeFactory<E>) ReferenceNodeFactory.INSTANCE;
     }
 
+    final class ReferenceNodeFactory<E> implements NodeFactory<E> {
 
+        private static final ReferenceNodeFactory<?> INSTANCE = new ReferenceNodeFactory<>();
+
+        private ReferenceNodeFactory() {
+        }
+
+        @Override
+        public Node<E> newNode(E e) {
+            return new ReferenceBasedNode<>(e);
+        }
+
+        @Override
+        public WeightedNode<E> newWeightedNode(E e) {
+            return new BalanceFactoredReferenceBasedNode<>(e);
+        }
+
+        @Override
+        public ColouredNode<E> newColouredNode(E e) {
+            return new ColouredReferenceBasedNode<>(e);
+        }
+
+        @Override
+        public NodeStorage getStorage() {
+            return NodeStorage.REFERENCES;
+        }
+    }
 }
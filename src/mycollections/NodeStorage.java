@@ -0,0 +1,33 @@
+package mycollections;
+
+/**
+ * The way nodes of the tree are kept in memory, to be chosen when the set is constructed (see {@link TreeBalancing#newTreeSet(java.util.Comparator, NodeStorage)}).
+ */
+public enum NodeStorage {
+
+    /**
+     * Every node is a separate object referencing its sons and parent. Simple and fast, but every node costs object header plus four references.
+     */
+    REFERENCES {
+        @Override
+        <E> NodeFactory<E> newNodeFactory() {
+            return NodeFactory.referenceBased();
+        }
+    },
+
+    /**
+     * Nodes are slots in paged int arrays (left, right, parent, subtree size, balance) plus paged array of elements.
+     * Costs about half of the heap of {@link #REFERENCES} for big trees and keeps nodes close to each other, but every access to the node goes through the arrays.
+     */
+    ARRAYS {
+        @Override
+        <E> NodeFactory<E> newNodeFactory() {
+            return new ArrayNodeStore<>();
+        }
+    };
+
+    /**
+     * @return new factory for one tree
+     */
+    abstract <E> NodeFactory<E> newNodeFactory();
+}
@@ -0,0 +1,279 @@
+package mycollections;
+
+import java.util.*;
+
+import static mycollections.OffHeapNodeStore.NONE;
+
+/**
+ * Set of {@code long} values kept in AVL tree whose nodes live outside of java heap (see {@link OffHeapNodeStore}), for sets too big to keep their nodes on heap
+ * (GC cost grows with number of live objects, off-heap nodes are not visible to GC at all).<BR>
+ * Nodes are addressed with {@code long} slots, so the set may have more than Integer.MAX_VALUE elements: use {@link #longSize()} then, as {@link #size()} saturates.
+ * Operations are the same as for {@link LongBSTTreeSet} (no boxing for primitive methods), and {@code Set<Long>} methods are supported with boxing.<BR>
+ * Memory must be freed explicitly with {@link #close()} (set is {@link AutoCloseable}, so try-with-resources may be used). Any operation on closed set throws IllegalStateException.
+ * The set is not serializable.
+ */
+public class OffHeapLongTreeSet extends AbstractSet<Long> implements AutoCloseable {
+
+    private final OffHeapNodeStore store;
+
+    private long root = NONE;
+
+    private final AVLSlotTree tree;
+
+    /**
+     * Constructs new empty set.
+     */
+    public OffHeapLongTreeSet() {
+        this(OffHeapNodeStore.DEFAULT_CHUNK_SHIFT);
+    }
+
+    /**
+     * @param chunkShift every chunk of off-heap memory keeps 2^chunkShift nodes
+     */
+    OffHeapLongTreeSet(int chunkShift) {
+        this.store = new OffHeapNodeStore(chunkShift);
+        this.tree = new OffHeapTree();
+    }
+
+    OffHeapNodeStore getStore() {
+        return store;
+    }
+
+    /**
+     * Adds value to the set.
+     * @param value value to be added
+     * @return {@code true} if value was added, {@code false} if it already existed
+     */
+    public boolean add(long value) {
+        store.ensureOpen();
+        long parentSlot = NONE;
+        long slot = root;
+        boolean goLeft = false;
+        while (slot != NONE) {
+            long key = store.key(slot);
+            if (value == key) {
+                return false;
+            }
+            parentSlot = slot;
+            goLeft = value < key;
+            slot = goLeft ? store.left(slot) : store.right(slot);
+        }
+        tree.link(store.allocate(value), parentSlot, goLeft);
+        return true;
+    }
+
+    /**
+     * @param value value to be checked
+     * @return {@code true} if the set contains provided value
+     */
+    public boolean contains(long value) {
+        store.ensureOpen();
+        return findSlot(value) != NONE;
+    }
+
+    /**
+     * Removes value from the set.
+     * @param value value to be removed
+     * @return {@code true} if value was removed, {@code false} if it was not present
+     */
+    public boolean remove(long value) {
+        store.ensureOpen();
+        long slot = findSlot(value);
+        if (slot == NONE) {
+            return false;
+        }
+        tree.removeSlot(slot);
+        return true;
+    }
+
+    private long findSlot(long value) {
+        long slot = root;
+        while (slot != NONE) {
+            long key = store.key(slot);
+            if (value == key) {
+                return slot;
+            }
+            slot = (value < key) ? store.left(slot) : store.right(slot);
+        }
+        return NONE;
+    }
+
+    /**
+     * @return number of elements, may be bigger than Integer.MAX_VALUE
+     */
+    public long longSize() {
+        store.ensureOpen();
+        return tree.sizeOf(root);
+    }
+
+    /**
+     * @return number of elements, or Integer.MAX_VALUE if there are more of them (see {@link #longSize()})
+     */
+    @Override
+    public int size() {
+        return (int) Math.min(longSize(), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        store.ensureOpen();
+        return root == NONE;
+    }
+
+    /**
+     * @return the smallest value in the set
+     * @throws NoSuchElementException if the set is empty
+     */
+    public long first() {
+        store.ensureOpen();
+        if (root == NONE) {
+            throw new NoSuchElementException();
+        }
+        return store.key(tree.lowestSlot());
+    }
+
+    /**
+     * @return the biggest value in the set
+     * @throws NoSuchElementException if the set is empty
+     */
+    public long last() {
+        store.ensureOpen();
+        if (root == NONE) {
+            throw new NoSuchElementException();
+        }
+        return store.key(tree.highestSlot());
+    }
+
+    /**
+     * Returns k-th smallest value of the set (counting from 0). Runs in time proportional to tree height.
+     * @throws IndexOutOfBoundsException if k is negative or not smaller than size of the set
+     */
+    public long select(long k) {
+        store.ensureOpen();
+        return store.key(tree.selectSlot(k));
+    }
+
+    /**
+     * Adds all provided values.
+     * @return {@code true} if any value was added
+     */
+    public boolean addAll(long... values) {
+        boolean changed = false;
+        for (long value : values) {
+            changed |= add(value);
+        }
+        return changed;
+    }
+
+    /**
+     * @return all values of the set in ascending order
+     * @throws IllegalStateException if the set is too big for java array
+     */
+    public long[] toLongArray() {
+        long size = longSize();
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Set of " + size + " elements does not fit into array");
+        }
+        long[] result = new long[(int) size];
+        int i = 0;
+        for (long slot = tree.lowestSlot(); slot != NONE; slot = tree.successor(slot)) {
+            result[i++] = store.key(slot);
+        }
+        return result;
+    }
+
+    /**
+     * Returns iterator over values in ascending order. Use {@link PrimitiveIterator.OfLong#nextLong()} to avoid boxing.
+     * Iterator is <i>fail-fast</i>, and supports remove().
+     */
+    public PrimitiveIterator.OfLong longIterator() {
+        store.ensureOpen();
+        return new OffHeapIterator();
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        return longIterator();
+    }
+
+    @Override
+    public boolean add(Long value) {
+        return add(value.longValue());
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return (o instanceof Long) && contains(((Long) o).longValue());
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return (o instanceof Long) && remove(((Long) o).longValue());
+    }
+
+    /**
+     * Removes all elements and frees off-heap memory they used. The set may be used further.
+     */
+    @Override
+    public void clear() {
+        store.clear();
+        root = NONE;
+        tree.modificationCount++;
+    }
+
+    /**
+     * Frees off-heap memory of the set. Set cannot be used after that. Calling it more than once has no effect.
+     */
+    @Override
+    public void close() {
+        store.close();
+        root = NONE;
+        tree.modificationCount++;
+    }
+
+    /*
+        Sanity check for tests: parent-son links are symmetric, subtree sizes and heights are correct, AVL balance is kept and keys are in order.
+     */
+    boolean isStructureFine() {
+        return tree.isStructureFine();
+    }
+
+    private final class OffHeapTree extends AVLSlotTree {
+
+        OffHeapTree() {
+            super(store);
+        }
+
+        @Override
+        long root() {
+            return root;
+        }
+
+        @Override
+        void setRoot(long slot) {
+            root = slot;
+        }
+
+        @Override
+        void copyElement(long fromSlot, long toSlot) {
+            store.setKey(toSlot, store.key(fromSlot));
+        }
+
+        @Override
+        int compareElements(long firstSlot, long secondSlot) {
+            return Long.compare(store.key(firstSlot), store.key(secondSlot));
+        }
+    }
+
+    private final class OffHeapIterator extends AVLSlotTree.SlotIterator implements PrimitiveIterator.OfLong {
+
+        OffHeapIterator() {
+            super(tree);
+        }
+
+        @Override
+        public long nextLong() {
+            return store.key(nextSlot());
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package mycollections;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Keeps nodes of {@link OffHeapLongTreeSet} outside of java heap, in direct ByteBuffers, so garbage collector does not see (and does not scan) them at all.
+ * Every node is a record of {@link #NODE_BYTES} bytes: key, left son, right son, parent, subtree size and height.
+ * Nodes are addressed with {@code long} slot numbers, so the store is not limited to Integer.MAX_VALUE nodes (single ByteBuffer is, so memory is allocated in chunks).<BR>
+ * Growing the store allocates new chunk, existing chunks are never copied. Slots of removed nodes are kept on a free list (linked through left son field) and reused.<BR>
+ * Memory is freed explicitly with {@link #close()}; store cannot be used after that.
+ */
+final class OffHeapNodeStore implements SlotStore, AutoCloseable {
+
+    static final long NONE = -1L; // slot of missing node, like null reference
+
+    private static final int KEY = 0;
+    private static final int LEFT = 8;
+    private static final int RIGHT = 16;
+    private static final int PARENT = 24;
+    private static final int SIZE = 32;
+    private static final int HEIGHT = 40;
+    static final int NODE_BYTES = 48; // 4 bytes of padding keep records 8-byte aligned
+
+    static final int DEFAULT_CHUNK_SHIFT = 20; // 1M nodes, 48MB per chunk
+
+    private final int chunkShift;
+    private final long chunkMask;
+
+    private ByteBuffer[] chunks = new ByteBuffer[8];
+    private int numberOfChunks;
+    private long usedSlots; // slots [0, usedSlots) were handed out at least once
+    private long freeListHead = NONE;
+    private boolean closed;
+
+    /**
+     * @param chunkShift every chunk keeps 2^chunkShift nodes
+     */
+    OffHeapNodeStore(int chunkShift) {
+        if (chunkShift < 0 || ((long) NODE_BYTES << chunkShift) > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Chunk of 2^" + chunkShift + " nodes does not fit into ByteBuffer");
+        }
+        this.chunkShift = chunkShift;
+        this.chunkMask = (1L << chunkShift) - 1;
+    }
+
+    /**
+     * Takes free slot (allocating new chunk if needed) and initializes it as unlinked node with provided key.
+     * @return slot of new node
+     */
+    long allocate(long key) {
+        ensureOpen();
+        long slot;
+        if (freeListHead != NONE) {
+            slot = freeListHead;
+            freeListHead = left(slot);
+        } else {
+            if (usedSlots == capacity()) {
+                addChunk();
+            }
+            slot = usedSlots++;
+        }
+        ByteBuffer chunk = chunk(slot);
+        int offset = offset(slot);
+        chunk.putLong(offset + KEY, key);
+        chunk.putLong(offset + LEFT, NONE);
+        chunk.putLong(offset + RIGHT, NONE);
+        chunk.putLong(offset + PARENT, NONE);
+        chunk.putLong(offset + SIZE, 1);
+        chunk.putInt(offset + HEIGHT, 1);
+        return slot;
+    }
+
+    /**
+     * Puts slot on the free list.
+     */
+    @Override
+    public void free(long slot) {
+        setParent(slot, NONE);
+        setRight(slot, NONE);
+        setLeft(slot, freeListHead);
+        freeListHead = slot;
+    }
+
+    private void addChunk() {
+        if (numberOfChunks == chunks.length) {
+            chunks = Arrays.copyOf(chunks, 2 * chunks.length); // only references to chunks are copied
+        }
+        chunks[numberOfChunks++] = ByteBuffer.allocateDirect(NODE_BYTES << chunkShift).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * @return number of nodes which can be kept without allocating new chunk
+     */
+    long capacity() {
+        return (long) numberOfChunks << chunkShift;
+    }
+
+    /**
+     * Frees all chunks, store stays open and empty.
+     */
+    void clear() {
+        ensureOpen();
+        freeChunks();
+        usedSlots = 0;
+        freeListHead = NONE;
+    }
+
+    /**
+     * Frees all memory of the store. Calling it more than once has no effect.
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            freeChunks();
+            closed = true;
+        }
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Off-heap store already closed");
+        }
+    }
+
+    private void freeChunks() {
+        for (int i = 0; i < numberOfChunks; i++) {
+            freeDirectBuffer(chunks[i]);
+        }
+        chunks = new ByteBuffer[8];
+        numberOfChunks = 0;
+    }
+
+    private ByteBuffer chunk(long slot) {
+        return chunks[(int) (slot >>> chunkShift)];
+    }
+
+    private int offset(long slot) {
+        return (int) (slot & chunkMask) * NODE_BYTES;
+    }
+
+    long key(long slot) {
+        return chunk(slot).getLong(offset(slot) + KEY);
+    }
+
+    void setKey(long slot, long key) {
+        chunk(slot).putLong(offset(slot) + KEY, key);
+    }
+
+    @Override
+    public long left(long slot) {
+        return chunk(slot).getLong(offset(slot) + LEFT);
+    }
+
+    @Override
+    public void setLeft(long slot, long left) {
+        chunk(slot).putLong(offset(slot) + LEFT, left);
+    }
+
+    @Override
+    public long right(long slot) {
+        return chunk(slot).getLong(offset(slot) + RIGHT);
+    }
+
+    @Override
+    public void setRight(long slot, long right) {
+        chunk(slot).putLong(offset(slot) + RIGHT, right);
+    }
+
+    @Override
+    public long parent(long slot) {
+        return chunk(slot).getLong(offset(slot) + PARENT);
+    }
+
+    @Override
+    public void setParent(long slot, long parent) {
+        chunk(slot).putLong(offset(slot) + PARENT, parent);
+    }
+
+    @Override
+    public long subtreeSize(long slot) {
+        return chunk(slot).getLong(offset(slot) + SIZE);
+    }
+
+    @Override
+    public void setSubtreeSize(long slot, long subtreeSize) {
+        chunk(slot).putLong(offset(slot) + SIZE, subtreeSize);
+    }
+
+    @Override
+    public int height(long slot) {
+        return chunk(slot).getInt(offset(slot) + HEIGHT);
+    }
+
+    @Override
+    public void setHeight(long slot, int height) {
+        chunk(slot).putInt(offset(slot) + HEIGHT, height);
+    }
+
+    /*
+        Direct buffers are normally freed only when garbage collector finds them unreachable, what may happen long after close().
+        sun.misc.Unsafe.invokeCleaner (Java 9+) frees the memory at once (or unmaps mapped buffer, see MappedTreeFile). If it is not available, memory is left to garbage collector.
+     */
+    private static final Method INVOKE_CLEANER;
+    private static final Object UNSAFE;
+
+    static {
+        Method invokeCleaner = null;
+        Object unsafe = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            invokeCleaner = null;
+        }
+        INVOKE_CLEANER = invokeCleaner;
+        UNSAFE = unsafe;
+    }
+
+    static void freeDirectBuffer(ByteBuffer buffer) {
+        if (INVOKE_CLEANER != null) {
+            try {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // leave it to garbage collector
+            }
+        }
+    }
+}
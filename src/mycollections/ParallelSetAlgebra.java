@@ -0,0 +1,97 @@
+package mycollections;
+
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Union, intersection and difference of two tree sets, computed in parallel on {@link ForkJoinPool}.<BR>
+ * When both sets are AVL trees with reference-based nodes and the same comparator, operations are built from split and join (see {@link AVLSplitJoin}):
+ * the first tree is split by the root of the second one, and both halves are processed independently by fork/join tasks, so the work spreads over all cores.
+ * Result is balanced AVL tree, made of the nodes of both sets (no nodes are copied).
+ * For other sets operations fall back to sequential {@code addAll}, {@code retainAll} and {@code removeAll}.<BR>
+ * Result is always put into the first set, and the second set is emptied (its nodes may be taken by the result).
+ * If comparator throws an exception in the middle of the operation, content of both sets is undefined.
+ */
+public final class ParallelSetAlgebra {
+
+    private ParallelSetAlgebra() {
+    }
+
+    /**
+     * Adds all elements of the second set to the first one, using common fork/join pool.
+     * @return the first set, containing the union
+     */
+    public static <E> BSTTreeSet<E> union(BSTTreeSet<E> first, BSTTreeSet<E> second) {
+        return union(first, second, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Adds all elements of the second set to the first one. If both contain equal elements, element of the first set is kept.
+     * @param pool fork/join pool to run the tasks in
+     * @return the first set, containing the union
+     */
+    public static <E> BSTTreeSet<E> union(BSTTreeSet<E> first, BSTTreeSet<E> second, ForkJoinPool pool) {
+        return apply(AVLSplitJoin.SetOperation.UNION, first, second, pool);
+    }
+
+    /**
+     * Retains in the first set only elements contained also in the second one, using common fork/join pool.
+     * @return the first set, containing the intersection
+     */
+    public static <E> BSTTreeSet<E> intersection(BSTTreeSet<E> first, BSTTreeSet<E> second) {
+        return intersection(first, second, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Retains in the first set only elements contained also in the second one.
+     * @param pool fork/join pool to run the tasks in
+     * @return the first set, containing the intersection
+     */
+    public static <E> BSTTreeSet<E> intersection(BSTTreeSet<E> first, BSTTreeSet<E> second, ForkJoinPool pool) {
+        return apply(AVLSplitJoin.SetOperation.INTERSECTION, first, second, pool);
+    }
+
+    /**
+     * Removes from the first set all elements contained in the second one, using common fork/join pool.
+     * @return the first set, containing the difference
+     */
+    public static <E> BSTTreeSet<E> difference(BSTTreeSet<E> first, BSTTreeSet<E> second) {
+        return difference(first, second, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Removes from the first set all elements contained in the second one.
+     * @param pool fork/join pool to run the tasks in
+     * @return the first set, containing the difference
+     */
+    public static <E> BSTTreeSet<E> difference(BSTTreeSet<E> first, BSTTreeSet<E> second, ForkJoinPool pool) {
+        return apply(AVLSplitJoin.SetOperation.DIFFERENCE, first, second, pool);
+    }
+
+    private static <E> BSTTreeSet<E> apply(AVLSplitJoin.SetOperation operation, BSTTreeSet<E> first, BSTTreeSet<E> second, ForkJoinPool pool) {
+        if (first == second) {
+            throw new IllegalArgumentException("Operation needs two different sets, as the second one is emptied");
+        }
+        if (first.isJoinable() && second.isJoinable() && Objects.equals(first.comparator(), second.comparator())) {
+            AVLSplitJoin<E> splitJoin = new AVLSplitJoin<>(first);
+            AVLSplitJoin.Subtree<E> firstTree = AVLSplitJoin.Subtree.of(first.replaceRootNode(null));
+            AVLSplitJoin.Subtree<E> secondTree = AVLSplitJoin.Subtree.of(second.replaceRootNode(null));
+            AVLSplitJoin<E>.SetOperationTask task = splitJoin.new SetOperationTask(operation, firstTree, secondTree);
+            first.replaceRootNode(pool.invoke(task).root);
+            first.countComparisons(task.getComparisons());
+            return first;
+        }
+        switch (operation) {
+            case UNION:
+                first.addAll(second);
+                break;
+            case INTERSECTION:
+                first.retainAll(second);
+                break;
+            default:
+                first.removeAll(second);
+        }
+        second.clear();
+        return first;
+    }
+}
@@ -0,0 +1,324 @@
+package mycollections;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Set backed by persistent (immutable) AVL tree. Nodes are never changed after creation: add and remove copy only nodes on the path from the root
+ * to the changed place (O(log n) nodes, including rotated ones), and all other nodes are shared with the previous version of the tree.<BR>
+ * So whole version of the set is just its root node:
+ * <ul>
+ * <li>{@link #snapshot()} is O(1), and changes of the set and of the snapshot do not affect each other; memory grows only with the number of changes</li>
+ * <li>iterator works on the version from the moment it was created, so it never fails and never blocks writers
+ * (it does not see changes done after its creation, also its own {@code remove()})</li>
+ * <li>set is thread-safe: readers just read the current root, and writers replace the root with compare-and-set, repeating the update if another writer was first</li>
+ * </ul>
+ * Nodes keep no parent links (shared node may have many parents in different versions), so iteration keeps stack of nodes instead.
+ * This is why it is a separate class, not a {@link BSTTreeSet} variant: {@link Node} has parent links and is changed in place.
+ */
+public class PersistentTreeSet<E> extends AbstractSet<E> {
+
+    /**
+     * Immutable node of AVL tree, knowing height and size of its subtree.
+     */
+    static final class TreeNode<E> {
+
+        final E value;
+        final TreeNode<E> left;
+        final TreeNode<E> right;
+        final int height;
+        final int size;
+
+        TreeNode(E value, TreeNode<E> left, TreeNode<E> right) {
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.height = 1 + Math.max(height(left), height(right));
+            this.size = 1 + size(left) + size(right);
+        }
+    }
+
+    private static int height(TreeNode<?> node) {
+        return (node == null) ? 0 : node.height;
+    }
+
+    private static int size(TreeNode<?> node) {
+        return (node == null) ? 0 : node.size;
+    }
+
+    private final Comparator<? super E> comparator;
+
+    private volatile TreeNode<E> root;
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<PersistentTreeSet, TreeNode> ROOT =
+            AtomicReferenceFieldUpdater.newUpdater(PersistentTreeSet.class, TreeNode.class, "root");
+
+    /**
+     * Constructs new empty set, sorted according to the natural ordering of its elements.
+     */
+    public PersistentTreeSet() {
+        this(null);
+    }
+
+    /**
+     * Constructs a new, empty set, sorted according to the specified comparator.
+     * @param comparator the comparator that will be used to order this set. If null, the natural ordering of the elements will be used.
+     */
+    public PersistentTreeSet(Comparator<? super E> comparator) {
+        this(comparator, null);
+    }
+
+    private PersistentTreeSet(Comparator<? super E> comparator, TreeNode<E> root) {
+        this.comparator = comparator;
+        this.root = root;
+    }
+
+    /**
+     * Returns set with the current content of this set, in O(1) time (the tree is shared, nothing is copied).
+     * Later changes of this set are not visible in the snapshot, and changes of the snapshot are not visible in this set.
+     * @return snapshot of this set
+     */
+    public PersistentTreeSet<E> snapshot() {
+        return new PersistentTreeSet<>(comparator, root);
+    }
+
+    /**
+     * @return the comparator used to order the elements, or {@code null} for natural ordering
+     */
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+
+    TreeNode<E> getRoot() {
+        return root;
+    }
+
+    private int compare(E first, E second) {
+        return (comparator == null) ?
+                ((Comparable<? super E>) first).compareTo(second)
+                : comparator.compare(first, second);
+    }
+
+    /**
+     * O(1), size is kept in nodes.
+     */
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        E element = (E) o;
+        TreeNode<E> node = root;
+        while (node != null) {
+            int comparison = compare(element, node.value);
+            if (comparison == 0) {
+                return true;
+            }
+            node = (comparison < 0) ? node.left : node.right;
+        }
+        return false;
+    }
+
+    /**
+     * @return the lowest element
+     * @throws NoSuchElementException if the set is empty
+     */
+    public E first() {
+        TreeNode<E> node = root;
+        if (node == null) {
+            throw new NoSuchElementException();
+        }
+        while (node.left != null) {
+            node = node.left;
+        }
+        return node.value;
+    }
+
+    /**
+     * @return the highest element
+     * @throws NoSuchElementException if the set is empty
+     */
+    public E last() {
+        TreeNode<E> node = root;
+        if (node == null) {
+            throw new NoSuchElementException();
+        }
+        while (node.right != null) {
+            node = node.right;
+        }
+        return node.value;
+    }
+
+    @Override
+    public boolean add(E e) {
+        Objects.requireNonNull(e);
+        compare(e, e); // check if casting to Comparable is possible for E, or if comparator exists (no comparison is done for empty tree)
+        while (true) {
+            TreeNode<E> current = root;
+            TreeNode<E> updated = insert(current, e);
+            if (updated == current) {
+                return false;
+            }
+            if (ROOT.compareAndSet(this, current, updated)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        E element = (E) o;
+        while (true) {
+            TreeNode<E> current = root;
+            TreeNode<E> updated = delete(current, element);
+            if (updated == current) {
+                return false;
+            }
+            if (ROOT.compareAndSet(this, current, updated)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+    }
+
+    /**
+     * @return root of the new version of the subtree, or the same node if element is already there
+     */
+    private TreeNode<E> insert(TreeNode<E> node, E e) {
+        if (node == null) {
+            return new TreeNode<>(e, null, null);
+        }
+        int comparison = compare(e, node.value);
+        if (comparison == 0) {
+            return node;
+        }
+        if (comparison < 0) {
+            TreeNode<E> left = insert(node.left, e);
+            return (left == node.left) ? node : balance(node.value, left, node.right);
+        }
+        TreeNode<E> right = insert(node.right, e);
+        return (right == node.right) ? node : balance(node.value, node.left, right);
+    }
+
+    /**
+     * @return root of the new version of the subtree, or the same node if there is no such element
+     */
+    private TreeNode<E> delete(TreeNode<E> node, E e) {
+        if (node == null) {
+            return null;
+        }
+        int comparison = compare(e, node.value);
+        if (comparison < 0) {
+            TreeNode<E> left = delete(node.left, e);
+            return (left == node.left) ? node : balance(node.value, left, node.right);
+        }
+        if (comparison > 0) {
+            TreeNode<E> right = delete(node.right, e);
+            return (right == node.right) ? node : balance(node.value, node.left, right);
+        }
+        if (node.left == null) {
+            return node.right;
+        }
+        if (node.right == null) {
+            return node.left;
+        }
+        // both sons: successor (the lowest element of the right subtree) takes place of removed element
+        TreeNode<E> successor = node.right;
+        while (successor.left != null) {
+            successor = successor.left;
+        }
+        return balance(successor.value, node.left, deleteLowest(node.right));
+    }
+
+    private TreeNode<E> deleteLowest(TreeNode<E> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        return balance(node.value, deleteLowest(node.left), node.right);
+    }
+
+    /**
+     * Creates node with provided sons, whose heights differ at most by two, doing single or double rotation if needed.
+     */
+    private static <E> TreeNode<E> balance(E value, TreeNode<E> left, TreeNode<E> right) {
+        int balanceFactor = height(right) - height(left);
+        if (balanceFactor == 2) {
+            if (height(right.left) > height(right.right)) { // right-left case
+                TreeNode<E> middle = right.left;
+                return new TreeNode<>(middle.value, new TreeNode<>(value, left, middle.left), new TreeNode<>(right.value, middle.right, right.right));
+            }
+            return new TreeNode<>(right.value, new TreeNode<>(value, left, right.left), right.right);
+        }
+        if (balanceFactor == -2) {
+            if (height(left.right) > height(left.left)) { // left-right case
+                TreeNode<E> middle = left.right;
+                return new TreeNode<>(middle.value, new TreeNode<>(left.value, left.left, middle.left), new TreeNode<>(value, middle.right, right));
+            }
+            return new TreeNode<>(left.value, left.left, new TreeNode<>(value, left.right, right));
+        }
+        return new TreeNode<>(value, left, right);
+    }
+
+    /**
+     * Returns iterator over elements in ascending order, of the version of the set from the moment of this call.
+     * It never throws {@link ConcurrentModificationException}. {@code remove()} removes the last returned element from the set (not from the iterated version).
+     * @return iterator over elements in ascending order
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+
+            private final Deque<TreeNode<E>> path = new ArrayDeque<>(); // nodes whose left subtree is being iterated
+            private E lastReturned;
+            private boolean canRemove;
+
+            {
+                pushLeftSpine(root);
+            }
+
+            private void pushLeftSpine(TreeNode<E> node) {
+                for (TreeNode<E> current = node; current != null; current = current.left) {
+                    path.push(current);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !path.isEmpty();
+            }
+
+            @Override
+            public E next() {
+                if (path.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                TreeNode<E> node = path.pop();
+                pushLeftSpine(node.right);
+                lastReturned = node.value;
+                canRemove = true;
+                return lastReturned;
+            }
+
+            @Override
+            public void remove() {
+                if (!canRemove) {
+                    throw new IllegalStateException();
+                }
+                PersistentTreeSet.this.remove(lastReturned);
+                canRemove = false;
+            }
+        };
+    }
+}
@@ -0,0 +1,87 @@
+package mycollections;
+
+import java.util.*;
+
+/**
+ * Iterates tree in post-order method (left subtree, then right subtree, then the node), so every node is returned after all its descendants.
+ * Like {@link InOrderTreeIterator}, it keeps no stack: the next node is found from the previous one through parent links.
+ * It is the parent, unless we come from the left son and the parent has right son too - then it is the first node of right subtree of the parent
+ * (found by going down, to the left son when there is one, to the right son otherwise, until a leaf).<BR>
+ * remove() unlinks the last returned node directly. Its whole subtree is already visited, so moving its successor into its place does not change what is left to visit.
+ * It is not supported for self-balancing trees, as rotations done on removal may move visited nodes above not yet visited ones.
+ */
+class PostOrderTreeIterator<E> implements Iterator<E> {
+
+    private final BSTTreeSet<E> tree;
+
+    private Node<E> nextNode;
+    private Node<E> lastReturned; // needed for remove(), null if remove() is not allowed now
+
+    private int originalModificationSerialNumber;
+
+    PostOrderTreeIterator(BSTTreeSet<E> tree) {
+        this.tree = tree;
+        Node<E> rootNode = tree.getRootNode();
+        this.nextNode = (rootNode == null) ? null : firstInSubtree(rootNode);
+        this.originalModificationSerialNumber = tree.getCurrentModificationSerialNumber();
+    }
+
+    /**
+     * @return node of the subtree to be visited first in post-order: the leftmost leaf
+     */
+    private static <E> Node<E> firstInSubtree(Node<E> subtreeRoot) {
+        Node<E> node = subtreeRoot;
+        while (!node.isLeafNode()) {
+            node = node.hasLeftSon() ? node.getLeftSon() : node.getRightSon();
+        }
+        return node;
+    }
+
+    /**
+     * @return node visited in post-order after provided one, null if it is the last one (the root)
+     */
+    private static <E> Node<E> postOrderSuccessor(Node<E> node) {
+        if (node.hasNoParent()) {
+            return null;
+        }
+        Node<E> parent = node.getParent();
+        if (node.isLeftSon() && parent.hasRightSon()) {
+            return firstInSubtree(parent.getRightSon());
+        }
+        return parent;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return nextNode != null;
+    }
+
+    @Override
+    public E next() {
+        if (tree.getCurrentModificationSerialNumber() != originalModificationSerialNumber) {
+            throw new ConcurrentModificationException("Modification of collection not allowed when iterating. Iterator is fail-fast");
+        }
+        if (nextNode == null) {
+            throw new NoSuchElementException();
+        }
+        lastReturned = nextNode;
+        nextNode = postOrderSuccessor(lastReturned);
+        return lastReturned.getValue();
+    }
+
+    @Override
+    public void remove() {
+        if (tree.isSelfBalancing()) {
+            throw new UnsupportedOperationException("Post-order iterator cannot remove elements from self-balancing tree, as rotations done on removal reorganize not yet visited nodes");
+        }
+        if (lastReturned == null) {
+            throw new IllegalStateException("Cannot call remove() more than once per one next() call.");
+        }
+        if (tree.getCurrentModificationSerialNumber() != originalModificationSerialNumber) {
+            throw new ConcurrentModificationException("Modification of collection not allowed when iterating. Iterator is fail-fast");
+        }
+        tree.removeItnernal(lastReturned); // next node is the parent or in right subtree of the parent, both stay as they were
+        originalModificationSerialNumber = tree.getCurrentModificationSerialNumber();
+        lastReturned = null;
+    }
+}
@@ -3,9 +3,9 @@ package mycollections;
 import java.util.*;
 
 /**
- *
+ * Iterates tree in pre-order method (the node, then left subtree, then right subtree), returning elements of nodes found by {@link PreOrderTreeNodeIterator}.
  */
-class PreOrderTreeIterator<E> implements Iterator {
+class PreOrderTreeIterator<E> implements Iterator<E> {
 
     private final PreOrderTreeNodeIterator<E> nodeIterator;
 
@@ -17,17 +17,15 @@ class PreOrderTreeIterator<E> implements Iterator {
         nodeIterator = new PreOrderTreeNodeIterator<E>(tree, emitNullsForMissingSons);
     }
 
-
-
     @Override
     public boolean hasNext() {
         return nodeIterator.hasNext();
     }
 
     @Override
-    public Object next() {
-        Node node = nodeIterator.next();
-        return (node==null)? null : (E)node.getValue();
+    public E next() {
+        Node<E> node = nodeIterator.next();
+        return (node==null)? null : node.getValue();
     }
     @Override
     public void remove() {
@@ -4,15 +4,26 @@ import java.util.*;
 
 /**
  * Created by SG0892454 on 2014-09-14.
+ * Keeps no stack: position in the tree is just the last visited node and which of its sons is to be visited next.
+ * When both sons are done, iteration goes up by parent link (and, from left son, continues with right son of the parent).
+ * So every iterator takes constant memory, whatever is the height of the tree, and finding next node takes amortized O(1) time (every link is followed twice in the whole iteration).
  */
 public class PreOrderTreeNodeIterator<E> implements Iterator {
-    private final Deque<Node<E>> stack = new LinkedList();
+    private static final int LEFT_SON_NEXT = 0;
+    private static final int RIGHT_SON_NEXT = 1;
+    private static final int SONS_DONE = 2;
+
     private final BSTTreeSet<E> tree; // needed only to query for modification number
     private boolean emitNullsForMissingSons;
 
-    private E prevNodeReturnedValue; // need to remember where we are to support delete operation
-    private Node<E> successorOfPrevNode; // need to remember it, in case remove() is called and we have to adjust the stack after remove
-    private boolean prevNodeHadBothSons; // need to remember it, in case remove() is called and we have to adjust the stack after remove
+    private Node<E> cursor; // the last visited node, null before the first one and after the end
+    private int cursorState; // which son of cursor is to be visited next
+
+    private Node<E> nextNode; // found by hasNext(), null may be also emitted for missing son
+    private boolean nextFound;
+    private boolean finished;
+
+    private Node<E> prevNode; // need to remember where we are to support delete operation
 
     private boolean callToRemoveLegal; // need to remember if remove was already called per last next
 
@@ -22,15 +33,15 @@ public class PreOrderTreeNodeIterator<E> implements Iterator {
 
     PreOrderTreeNodeIterator(BSTTreeSet tree) {
         Node<E> rootNode = tree.getRootNode();
-        if (rootNode != null) {
-            stack.push(rootNode);
-        }
+        nextNode = rootNode;
+        nextFound = (rootNode != null);
+        finished = (rootNode == null);
         this.originalModificationSerialNumber = tree.getCurrentModificationSerialNumber();
         this.tree = tree;
     }
 
     /**
-     * this version will emit nulls for every missing sons (for leaf nodes it will emit the leaf node and two nulls). Needed for serialization.
+     * this version will emit nulls for every missing sons (for leaf nodes it will emit the leaf node and two nulls). Such sequence shows the shape of the tree.
      * @param tree
      * @param emitNullsForMissingSons: when set to true will ..
      */
@@ -39,34 +50,40 @@ public class PreOrderTreeNodeIterator<E> implements Iterator {
         this.emitNullsForMissingSons = emitNullsForMissingSons;
     }
 
-    private Node<E> getNextPreOrder() {
-        Node<E> iterationCurrentNode;
-        if (hasNext()) {
-
-            iterationCurrentNode = stack.pop();
-
-            if (iterationCurrentNode == null) {
-                return iterationCurrentNode;
-            }
-
-            if (iterationCurrentNode.hasRightSon()) {
-                stack.push(iterationCurrentNode.getRightSon());
-            } else if (emitNullsForMissingSons) {
-                stack.push(null);
-            }
-            if (iterationCurrentNode.hasLeftSon()) {
-                stack.push(iterationCurrentNode.getLeftSon());
-            } else if (emitNullsForMissingSons) {
-                stack.push(null);
+    /**
+     * Moves the cursor to the next son to be visited (going up when sons of the cursor are done).
+     * @return {@code false} if there are no more nodes
+     */
+    private boolean findNext() {
+        while (cursor != null) {
+            if (cursorState == LEFT_SON_NEXT || cursorState == RIGHT_SON_NEXT) {
+                boolean left = (cursorState == LEFT_SON_NEXT);
+                cursorState++;
+                if (left ? cursor.hasLeftSon() : cursor.hasRightSon()) {
+                    nextNode = left ? cursor.getLeftSon() : cursor.getRightSon();
+                    return true;
+                }
+                if (emitNullsForMissingSons) {
+                    nextNode = null;
+                    return true;
+                }
+            } else if (cursor.hasNoParent()) {
+                cursor = null;
+            } else {
+                cursorState = cursor.isLeftSon() ? RIGHT_SON_NEXT : SONS_DONE;
+                cursor = cursor.getParent();
             }
-            return iterationCurrentNode;
         }
-        throw new NoSuchElementException();
+        return false;
     }
 
     @Override
     public boolean hasNext() {
-        return (!stack.isEmpty()) ;
+        if (!nextFound && !finished) {
+            nextFound = findNext();
+            finished = !nextFound;
+        }
+        return nextFound;
     }
 
     @Override
@@ -74,69 +91,92 @@ public class PreOrderTreeNodeIterator<E> implements Iterator {
         if (tree.getCurrentModificationSerialNumber() != originalModificationSerialNumber) {
             throw new ConcurrentModificationException("Modification of collection not allowed when iterating. Iterator is fail-fast");
         }
-        callToRemoveLegal = true;
-        Node<E> next = getNextPreOrder();
-        if (!emitNullsForMissingSons || (emitNullsForMissingSons && (next != null))) { // if in mode of emitting nulls, then we cannot check if null contains sons
-            prevNodeHadBothSons = next.hasBothSons();
-
-            if (prevNodeHadBothSons) {
-                successorOfPrevNode = tree.findSuccessor(next); /* When this node has both sons, and then remove() will be called, we will have to reorganize the tree, pushing onto the stack the successor or removed note.
-                                                                So unfortunatelly, we have to have this penalty of searching for successor for every next call for any node that has two sons. But complexity of finding successor is linear */
-            }
+        if (!hasNext()) {
+            throw new NoSuchElementException();
         }
-        prevNodeReturnedValue = (next == null) ? null : next.getValue();  // TODO impl dependent on references, remove
+        nextFound = false;
+        Node<E> next = nextNode;
+        if (next != null) { // null for missing son leaves the cursor where it was
+            cursor = next;
+            cursorState = LEFT_SON_NEXT;
+        }
+        callToRemoveLegal = true;
+        prevNode = next;
         return next;
     }
 
     /*  Please note, in the specification of Collection interface, for remove() method that:
         The behavior of an iterator is unspecified if the underlying collection is modified while the iteration is in progress in any way other than by calling this method.
 
-        However we will take care of our tree being modified and its structure changed. You have to care so that iterator after remove does not skip or the same nodes two times. It is done in the adjustStackAfterRemove().
+        However we will take care of our tree being modified and its structure changed. You have to care so that iterator after remove does not skip or the same nodes two times. It is done in the positionAfterRemovalOf().
 
         So next() calls after remove are legal and guarantted to work correctly.
+
+        This is not possible for self-balancing trees: rotations done on remove may move nodes already visited below nodes not yet visited (and the other way round), so remove() is not supported for them.
      */
     @Override
     public void remove() {
+        if (tree.isSelfBalancing()) {
+            throw new UnsupportedOperationException("Pre-order iterator cannot remove elements from self-balancing tree, as rotations done on removal reorganize not yet visited nodes");
+        }
         if (!callToRemoveLegal) {
             throw new IllegalStateException("Cannot call remove() more than once per one next() call.");
         }
+        if (tree.getCurrentModificationSerialNumber() != originalModificationSerialNumber) {
+            throw new ConcurrentModificationException("Modification of collection not allowed when iterating. Iterator is fail-fast");
+        }
         callToRemoveLegal = false;
-        originalModificationSerialNumber = tree.getCurrentModificationSerialNumber(); // remember serial number before remove
-        if (tree.remove(prevNodeReturnedValue)) { // we cannot store reference to pointer and call removeInternal as it would bound to reference implementation. Also as we are doing remove we would have to also cut references in prevNodeReturnedValue (outside of remove function)
-            originalModificationSerialNumber++; // increment our reference modification number by one, with next call to next() it will be compared with current tree modificatioin number. Must be the same (no other changes in the meantime, like from other threads)
-            adjustStackAfterRemove();
+        if (prevNode == null) { // null emitted for missing son, nothing to remove
+            return;
         }
-        prevNodeReturnedValue = null;
+        positionAfterRemovalOf(prevNode); // hasNext() may have moved the cursor already, so position is set again from the removed node
+        tree.removeItnernal(prevNode);
+        originalModificationSerialNumber = tree.getCurrentModificationSerialNumber(); // with next call to next() it will be compared with current tree modification number. Must be the same (no other changes in the meantime, like from other threads)
+        prevNode = null;
     }
 
     /**
-     * after call to remove, if removed node had two sons, tree gets reorganized. For examples, for this tree:
+     * Sets position of iteration for the tree after removal of provided node, which was the last visited one. Must be called before the removal.
+     * Removal changes only the subtree of removed node (no rotations, tree is not self-balancing), so nodes visited so far stay visited.
+     * <ul>
+     * <li>Leaf: nothing to visit below it, so iteration continues from its parent, as if the leaf was done.</li>
+     * <li>One son: the son takes place of removed node, and it is the next one to visit.</li>
+     * <li>Both sons: tree gets reorganized. For examples, for this tree:
+     * <pre>
+     *          80
+     *         /
+     *       40
+     *      /  \
+     *    20    44
+     *         /
+     *       42
+     * </pre>
+     * when we remove 40 from the tree, it will get reorganized into:
+     * <pre>
      *          80
-               /
-             40
-           /  \
-         20    44
-              /
-            42
-
-     when we remove 40 from the tree, it will get reorganized into:
-            80
-           /
-          42
-         /  \
-        20   44
-     After removing 40, on our stact we had (looking from the bottom of the stack): 20, 44
-     So if we continue with the stack we had, we would skip 42 (it is not longer son to 44).
-
-     So we have to pop two elements from the stack (old sons of removed node), and push the node which replaced removed node in the tree.
-     And this node is the successor of the removed node. Successor, after tree reorganization after delete, will have both sons of removed son attached, so iteration will include them properly
-     *
+     *         /
+     *       42
+     *      /  \
+     *    20    44
+     * </pre>
+     * So the node which replaced removed node in the tree (its successor, 42) is the next one to visit, and then both sons of removed node, now its sons.</li>
+     * </ul>
      */
-    private void adjustStackAfterRemove() {
-        if (prevNodeHadBothSons) {
-            stack.pop();
-            stack.pop();
-            stack.push(successorOfPrevNode);
+    private void positionAfterRemovalOf(Node<E> removed) {
+        if (removed.isLeafNode()) {
+            nextFound = false;
+            if (removed.hasNoParent()) {
+                cursor = null;
+                finished = true;
+            } else {
+                cursorState = removed.isLeftSon() ? RIGHT_SON_NEXT : SONS_DONE;
+                cursor = removed.getParent();
+                finished = false;
+            }
+        } else {
+            nextNode = removed.hasBothSons() ? tree.findSuccessor(removed) : removed.getOnlySon();
+            nextFound = true;
+            finished = false;
         }
     }
 }
@@ -0,0 +1,259 @@
+package mycollections;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Tree algorithms shared by sets of primitive elements ({@link IntBSTTreeSet}, {@link LongBSTTreeSet}).
+ * Nodes are slots in parallel arrays (left son, right son, parent, subtree size, height), like in {@link ArrayNodeStore}, but without any node handles:
+ * the tree works directly on slot indices, and subclasses keep the elements in primitive array indexed by the same slot, so no element is ever boxed.<BR>
+ * Tree is kept balanced the AVL way (heights of sons differ at most by one), as sets of primitive IDs are very often filled in ascending order.
+ * Subclasses do only the descent comparing elements (it needs the primitive element), everything else (linking, removal, rotations, iteration, select) is done by {@link AVLSlotTree}.<BR>
+ * Slots of removed nodes are kept on a free list (linked through the left son array) and reused by next inserted elements.
+ */
+abstract class PrimitiveBSTTreeSet<E> extends AbstractSet<E> implements Serializable {
+
+    private static final long serialVersionUID = 2960211853521947512L;
+
+    static final int NONE = -1; // index of missing node, like null reference
+    static final int INITIAL_CAPACITY = 16;
+
+    int[] left = new int[INITIAL_CAPACITY];
+    int[] right = new int[INITIAL_CAPACITY];
+    private int[] parent = new int[INITIAL_CAPACITY];
+    private int[] subtreeSize = new int[INITIAL_CAPACITY];
+    private byte[] height = new byte[INITIAL_CAPACITY]; // AVL tree of 2^31 nodes is lower than 50 levels
+
+    /**
+     * slot of the root node, {@link #NONE} for empty tree
+     */
+    int root = NONE;
+
+    private int usedSlots; // slots [0, usedSlots) were handed out at least once
+    private int freeListHead = NONE;
+
+    /**
+     * the AVL algorithm (shared with {@link OffHeapLongTreeSet}), working on the arrays above; it also counts modifications for fail-fast iterators
+     */
+    private transient AVLSlotTree tree = new ArrayTree();
+
+    /**
+     * Changes length of the array of elements, when the tree grows or is cleared.
+     */
+    abstract void resizeElements(int newCapacity);
+
+    /**
+     * Copies element from one slot to the other. Used when removing node having both sons: its successor's element is moved into it.
+     */
+    abstract void copyElement(int fromSlot, int toSlot);
+
+    /**
+     * @return negative, zero or positive, when element in first slot is smaller, equal or greater than element in second slot
+     */
+    abstract int compareElements(int firstSlot, int secondSlot);
+
+    @Override
+    public int size() {
+        return (root == NONE) ? 0 : subtreeSize[root];
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return root == NONE;
+    }
+
+    @Override
+    public void clear() {
+        left = new int[INITIAL_CAPACITY];
+        right = new int[INITIAL_CAPACITY];
+        parent = new int[INITIAL_CAPACITY];
+        subtreeSize = new int[INITIAL_CAPACITY];
+        height = new byte[INITIAL_CAPACITY];
+        resizeElements(INITIAL_CAPACITY);
+        root = NONE;
+        usedSlots = 0;
+        freeListHead = NONE;
+        tree.modificationCount++;
+    }
+
+    /**
+     * Makes sure that provided number of elements can be kept without growing the arrays again. Used by bulk operations.
+     */
+    void ensureCapacity(int minCapacity) {
+        int capacity = left.length;
+        if (minCapacity <= capacity) {
+            return;
+        }
+        int newCapacity = (int) Math.min(Math.max(2L * capacity, minCapacity), Integer.MAX_VALUE - 8);
+        left = Arrays.copyOf(left, newCapacity);
+        right = Arrays.copyOf(right, newCapacity);
+        parent = Arrays.copyOf(parent, newCapacity);
+        subtreeSize = Arrays.copyOf(subtreeSize, newCapacity);
+        height = Arrays.copyOf(height, newCapacity);
+        resizeElements(newCapacity);
+    }
+
+    /**
+     * Takes free slot for new node (growing the arrays if needed). Subclass puts the element into it, and then links it with {@link #link(int, int, boolean)}.
+     */
+    int allocateSlot() {
+        int slot;
+        if (freeListHead != NONE) {
+            slot = freeListHead;
+            freeListHead = left[slot];
+        } else {
+            ensureCapacity(usedSlots + 1);
+            slot = usedSlots++;
+        }
+        left[slot] = NONE;
+        right[slot] = NONE;
+        parent[slot] = NONE;
+        subtreeSize[slot] = 1;
+        height[slot] = 1;
+        return slot;
+    }
+
+    private void freeSlot(int slot) {
+        parent[slot] = NONE;
+        right[slot] = NONE;
+        left[slot] = freeListHead;
+        freeListHead = slot;
+    }
+
+    void link(int slot, int parentSlot, boolean asLeftSon) {
+        tree.link(slot, parentSlot, asLeftSon);
+    }
+
+    boolean removeSlot(int slot) {
+        return tree.removeSlot(slot);
+    }
+
+    int sizeOf(int slot) {
+        return (slot == NONE) ? 0 : subtreeSize[slot];
+    }
+
+    int lowestSlot() {
+        return (int) tree.lowestSlot();
+    }
+
+    int highestSlot() {
+        return (int) tree.highestSlot();
+    }
+
+    int successor(int slot) {
+        return (int) tree.successor(slot);
+    }
+
+    int selectSlot(int k) {
+        return (int) tree.selectSlot(k);
+    }
+
+    /**
+     * Iterates slots in ascending order of elements, see {@link AVLSlotTree.SlotIterator}. Subclasses add method returning the primitive element of the slot.
+     */
+    abstract class SlotIterator extends AVLSlotTree.SlotIterator {
+
+        SlotIterator() {
+            super(tree);
+        }
+    }
+
+    boolean isStructureFine() {
+        return tree.isStructureFine();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        tree = new ArrayTree();
+    }
+
+    /**
+     * The AVL algorithm working on the arrays. The arrays are read from the fields on every call, as they are replaced when growing.
+     */
+    private final class ArrayTree extends AVLSlotTree {
+
+        ArrayTree() {
+            super(new ArraySlots());
+        }
+
+        @Override
+        long root() {
+            return root;
+        }
+
+        @Override
+        void setRoot(long slot) {
+            root = (int) slot;
+        }
+
+        @Override
+        void copyElement(long fromSlot, long toSlot) {
+            PrimitiveBSTTreeSet.this.copyElement((int) fromSlot, (int) toSlot);
+        }
+
+        @Override
+        int compareElements(long firstSlot, long secondSlot) {
+            return PrimitiveBSTTreeSet.this.compareElements((int) firstSlot, (int) secondSlot);
+        }
+    }
+
+    private final class ArraySlots implements SlotStore {
+
+        @Override
+        public long left(long slot) {
+            return left[(int) slot];
+        }
+
+        @Override
+        public void setLeft(long slot, long son) {
+            left[(int) slot] = (int) son;
+        }
+
+        @Override
+        public long right(long slot) {
+            return right[(int) slot];
+        }
+
+        @Override
+        public void setRight(long slot, long son) {
+            right[(int) slot] = (int) son;
+        }
+
+        @Override
+        public long parent(long slot) {
+            return parent[(int) slot];
+        }
+
+        @Override
+        public void setParent(long slot, long parentSlot) {
+            parent[(int) slot] = (int) parentSlot;
+        }
+
+        @Override
+        public long subtreeSize(long slot) {
+            return subtreeSize[(int) slot];
+        }
+
+        @Override
+        public void setSubtreeSize(long slot, long size) {
+            subtreeSize[(int) slot] = (int) size;
+        }
+
+        @Override
+        public int height(long slot) {
+            return height[(int) slot];
+        }
+
+        @Override
+        public void setHeight(long slot, int nodeHeight) {
+            height[(int) slot] = (byte) nodeHeight;
+        }
+
+        @Override
+        public void free(long slot) {
+            freeSlot((int) slot);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package mycollections;
+
+import java.util.Comparator;
+
+import mycollections.ColouredNode.Colour;
+
+/**
+ * Self-balancing BST (red-black tree). Every node is red or black, root is black, red node cannot have red son,
+ * and every path from a node down to an empty leaf contains the same number of black nodes. It keeps tree height below 2*log2(n+1).<BR>
+ * Compared to {@link MyAVLTreeSet} the tree is less strictly balanced, but it needs at most two rotations for insert and at most three rotations for remove
+ * (all other fixes are just recolouring), so it fits write-heavy workloads better.
+ * <BR><BR>
+ * <a href="http://en.wikipedia.org/wiki/Red%E2%80%93black_tree">Wiki article on red-black tree</a>
+ *
+ */
+class RedBlackTreeSet<E> extends BSTTreeSet<E> {
+
+    private static final long serialVersionUID = -6386012263712385432L;
+
+    /**
+     * Constructs new empty set, sorted according to the natural ordering of its elements.
+     */
+    RedBlackTreeSet() {
+        this(null);
+    }
+
+    /**
+     * Constructs a new, empty tree set, sorted according to the specified comparator.
+     * @param comparator the comparator that will be used to order this set. If null, the natural ordering of the elements will be used.
+     */
+    RedBlackTreeSet(Comparator<? super E> comparator) {
+        super(comparator);
+    }
+
+    /**
+     * Constructs a new, empty tree set, sorted according to the specified comparator, with nodes created by provided factory.
+     * @param comparator the comparator that will be used to order this set. If null, the natural ordering of the elements will be used.
+     * @param nodeFactory factory of nodes, used only by this tree
+     */
+    RedBlackTreeSet(Comparator<? super E> comparator, NodeFactory<E> nodeFactory) {
+        super(comparator, nodeFactory);
+    }
+
+    @Override
+    Node<E> createNode(E value) {
+        return getNodeFactory().newColouredNode(value);
+    }
+
+    @Override
+    boolean isSelfBalancing() {
+        return true;
+    }
+
+    @Override
+    TreeBalancing getBalancing() {
+        return TreeBalancing.RED_BLACK;
+    }
+
+    /**
+     * Inserted node is red, so the only rule which can be broken is red parent having red son. Going up the tree it is fixed by recolouring
+     * (when uncle is red), or by one or two rotations finishing the fix (when uncle is black).
+     */
+    @Override
+    void rebalanceAfterInsertion(Node<E> insertedNode) {
+        Node<E> node = insertedNode;
+        while (isRed(node.getParent())) {
+            Node<E> parent = node.getParent();
+            Node<E> grandParent = parent.getParent(); // red node is never a root, so grand parent exists
+            if (parent.isLeftSon()) {
+                Node<E> uncle = grandParent.getRightSon();
+                if (isRed(uncle)) {
+                    setColour(parent, Colour.BLACK);
+                    setColour(uncle, Colour.BLACK);
+                    setColour(grandParent, Colour.RED);
+                    node = grandParent;
+                } else {
+                    if (node.isRightSon()) {
+                        node = parent;
+                        rotateLeft(node);
+                        parent = node.getParent();
+                    }
+                    setColour(parent, Colour.BLACK);
+                    setColour(grandParent, Colour.RED);
+                    rotateRight(grandParent);
+                }
+            } else {
+                Node<E> uncle = grandParent.getLeftSon();
+                if (isRed(uncle)) {
+                    setColour(parent, Colour.BLACK);
+                    setColour(uncle, Colour.BLACK);
+                    setColour(grandParent, Colour.RED);
+                    node = grandParent;
+                } else {
+                    if (node.isLeftSon()) {
+                        node = parent;
+                        rotateRight(node);
+                        parent = node.getParent();
+                    }
+                    setColour(parent, Colour.BLACK);
+                    setColour(grandParent, Colour.RED);
+                    rotateLeft(grandParent);
+                }
+            }
+        }
+        setColour(getRootNode(), Colour.BLACK);
+    }
+
+    /**
+     * Successor takes colour of the removed node, and removed node takes colour of the successor,
+     * so that {@link #rebalanceAfterRemoval} sees the colour which was really removed from the tree.
+     */
+    @Override
+    void successorMovedInPlaceOf(Node<E> removedNode, Node<E> successor) {
+        Colour successorColour = colourOf(successor);
+        setColour(successor, colourOf(removedNode));
+        setColour(removedNode, successorColour);
+    }
+
+    /**
+     * Removing red node does not break any rule. Removing black node leaves one path with black node missing:
+     * node which took its place is treated as "double black", and the extra black is moved up the tree by recolouring
+     * or absorbed by rotations around its sibling.
+     */
+    @Override
+    void rebalanceAfterRemoval(Node<E> parent, boolean fromLeft, Node<E> removedNode) {
+        if (colourOf(removedNode) == Colour.RED) {
+            return;
+        }
+        Node<E> node = (parent == null) ? getRootNode() : (fromLeft ? parent.getLeftSon() : parent.getRightSon());
+        boolean nodeIsLeftSon = fromLeft;
+        while (parent != null && !isRed(node)) {
+            if (nodeIsLeftSon) {
+                Node<E> sibling = parent.getRightSon(); // sibling subtree has at least one black node more, so it exists
+                if (isRed(sibling)) {
+                    setColour(sibling, Colour.BLACK);
+                    setColour(parent, Colour.RED);
+                    rotateLeft(parent);
+                    sibling = parent.getRightSon();
+                }
+                if (!isRed(sibling.getLeftSon()) && !isRed(sibling.getRightSon())) {
+                    setColour(sibling, Colour.RED);
+                    node = parent;
+                } else {
+                    if (!isRed(sibling.getRightSon())) {
+                        setColour(sibling.getLeftSon(), Colour.BLACK);
+                        setColour(sibling, Colour.RED);
+                        rotateRight(sibling);
+                        sibling = parent.getRightSon();
+                    }
+                    setColour(sibling, colourOf(parent));
+                    setColour(parent, Colour.BLACK);
+                    setColour(sibling.getRightSon(), Colour.BLACK);
+                    rotateLeft(parent);
+                    node = getRootNode();
+                }
+            } else {
+                Node<E> sibling = parent.getLeftSon();
+                if (isRed(sibling)) {
+                    setColour(sibling, Colour.BLACK);
+                    setColour(parent, Colour.RED);
+                    rotateRight(parent);
+                    sibling = parent.getLeftSon();
+                }
+                if (!isRed(sibling.getLeftSon()) && !isRed(sibling.getRightSon())) {
+                    setColour(sibling, Colour.RED);
+                    node = parent;
+                } else {
+                    if (!isRed(sibling.getLeftSon())) {
+                        setColour(sibling.getRightSon(), Colour.BLACK);
+                        setColour(sibling, Colour.RED);
+                        rotateLeft(sibling);
+                        sibling = parent.getLeftSon();
+                    }
+                    setColour(sibling, colourOf(parent));
+                    setColour(parent, Colour.BLACK);
+                    setColour(sibling.getLeftSon(), Colour.BLACK);
+                    rotateRight(parent);
+                    node = getRootNode();
+                }
+            }
+            parent = node.getParent();
+            nodeIsLeftSon = node.isLeftSon();
+        }
+        if (node != null) {
+            setColour(node, Colour.BLACK);
+        }
+    }
+
+    /**
+     * Tree built from sorted elements has all empty leaves on the last two levels, so colouring the deepest level red (and all other nodes black)
+     * gives the same number of black nodes on every path. The root stays black even if it is the only level.
+     */
+    @Override
+    void initBulkLoadedNode(Node<E> node, int leftHeight, int rightHeight, int depth, int treeHeight) {
+        setColour(node, (depth > 0 && depth == treeHeight - 1) ? Colour.RED : Colour.BLACK);
+    }
+
+    private static boolean isRed(Node<?> node) {
+        return node != null && ((ColouredNode<?>) node).isRed();
+    }
+
+    /**
+     * @return colour of the node, empty leaves ({@code null}) are black
+     */
+    private static Colour colourOf(Node<?> node) {
+        return (node == null) ? Colour.BLACK : ((ColouredNode<?>) node).getColour();
+    }
+
+    private static void setColour(Node<?> node, Colour colour) {
+        ((ColouredNode<?>) node).setColour(colour);
+    }
+}
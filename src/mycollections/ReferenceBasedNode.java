@@ -8,10 +8,11 @@ class ReferenceBasedNode<E> implements Node<E> {
 
     private static final long serialVersionUID = 7522960547854287545L;
 
-    private final E value;
+    private E value;
     private ReferenceBasedNode<E> left;
     private ReferenceBasedNode right;
     private ReferenceBasedNode parent;
+    private int subtreeSize = 1; // new node is not linked to any other node yet
 
     @Override
     public boolean equals(Object o) {
@@ -69,6 +70,16 @@ class ReferenceBasedNode<E> implements Node<E> {
 
     }
 
+    @Override
+    public int getSubtreeSize() {
+        return subtreeSize;
+    }
+
+    @Override
+    public void setSubtreeSize(int subtreeSize) {
+        this.subtreeSize = subtreeSize;
+    }
+
     /**
      * Creates node with value provided, this node has all parent, left and right son unset (set to null).
      * @param value
@@ -82,6 +93,11 @@ class ReferenceBasedNode<E> implements Node<E> {
         return value;
     }
 
+    @Override
+    public void setValue(E value) {
+        this.value = value;
+    }
+
     @Override
     public boolean isLeftSon() {
         if (hasNoParent()) return false;
@@ -0,0 +1,299 @@
+package mycollections;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Thread-safe set made of range shards: key space is divided into consecutive ranges, and every range is independent {@link BSTTreeSet} guarded by its own
+ * read-write lock. So writers of different ranges do not contend with each other, and readers of the same range run in parallel.<BR>
+ * Shard which grows above maximal size is split in half (at its median element, see {@link BSTTreeSet#split(Object)}), so hot ranges get spread over more locks.
+ * Shards are found in directory (array of shards sorted by their ranges), which is replaced as a whole on split (copy on write), so lookups need no lock.
+ * Split shard is marked as retired, and thread which locked it just after the split looks it up again in the new directory.<BR>
+ * Iteration goes through shards in order, copying content of one shard at a time (under read lock), so it never throws {@link ConcurrentModificationException}
+ * and does not block writers for long. It is weakly consistent: every shard is seen in some state from the time of iteration.
+ */
+public class ShardedTreeSet<E> extends AbstractSet<E> {
+
+    static final int DEFAULT_MAX_SHARD_SIZE = 1 << 16;
+
+    /**
+     * Range of keys {@code [lowerBound, upperBound)} with its tree. Bounds are null for unbounded ends. Range of a shard never changes,
+     * split creates two new shards.
+     */
+    private static final class Shard<E> {
+
+        final E lowerBound;
+        final E upperBound;
+        final BSTTreeSet<E> tree;
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        volatile boolean retired; // set under write lock, when the shard was replaced in directory by its halves
+
+        Shard(E lowerBound, E upperBound, BSTTreeSet<E> tree) {
+            this.lowerBound = lowerBound;
+            this.upperBound = upperBound;
+            this.tree = tree;
+        }
+    }
+
+    private final Comparator<? super E> comparator;
+    private final int maxShardSize;
+
+    private volatile Shard<E>[] shards;
+    private final Object directoryLock = new Object(); // only for replacing the directory
+
+    /**
+     * Constructs new empty set, sorted according to the natural ordering of its elements, with AVL trees as shards.
+     * It starts with one shard, which is split when it grows.
+     */
+    public ShardedTreeSet() {
+        this(null, TreeBalancing.AVL, DEFAULT_MAX_SHARD_SIZE, Collections.emptyList());
+    }
+
+    /**
+     * Constructs a new, empty set, sorted according to the specified comparator.
+     * @param comparator the comparator that will be used to order this set. If null, the natural ordering of the elements will be used.
+     * @param balancing balancing of shard trees
+     * @param maxShardSize shard bigger than this is split in half
+     * @param boundaries lower bounds of initial shards (besides the first shard, which is unbounded), in ascending order.
+     *                   Good boundaries divide expected elements evenly; bad ones are fixed by splits anyway.
+     * @throws IllegalArgumentException if boundaries are not in strictly ascending order, or maximal size is smaller than 2
+     */
+    public ShardedTreeSet(Comparator<? super E> comparator, TreeBalancing balancing, int maxShardSize, List<? extends E> boundaries) {
+        if (maxShardSize < 2) {
+            throw new IllegalArgumentException("Shard must be allowed to have at least two elements, to be split");
+        }
+        this.comparator = comparator;
+        Objects.requireNonNull(balancing);
+        this.maxShardSize = maxShardSize;
+        Shard<E>[] initialShards = new Shard[boundaries.size() + 1];
+        E lowerBound = null;
+        for (int i = 0; i < boundaries.size(); i++) {
+            E upperBound = boundaries.get(i);
+            if (lowerBound != null && compare(lowerBound, upperBound) >= 0) {
+                throw new IllegalArgumentException("Boundaries not in ascending order: " + lowerBound + ", " + upperBound);
+            }
+            initialShards[i] = new Shard<>(lowerBound, upperBound, balancing.newTreeSet(comparator));
+            lowerBound = upperBound;
+        }
+        initialShards[boundaries.size()] = new Shard<>(lowerBound, null, balancing.newTreeSet(comparator));
+        this.shards = initialShards;
+    }
+
+    /**
+     * @return the comparator used to order the elements, or {@code null} for natural ordering
+     */
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+
+    int numberOfShards() {
+        return shards.length;
+    }
+
+    private int compare(E first, E second) {
+        return (comparator == null) ?
+                ((Comparable<? super E>) first).compareTo(second)
+                : comparator.compare(first, second);
+    }
+
+    /**
+     * Binary search for the last shard with lower bound not greater than the element.
+     */
+    private Shard<E> shardFor(E element) {
+        Shard<E>[] directory = shards;
+        int low = 1; // first shard has no lower bound
+        int high = directory.length - 1;
+        int found = 0;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (compare(directory[middle].lowerBound, element) <= 0) {
+                found = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return directory[found];
+    }
+
+    /**
+     * Finds shard of the element and takes its lock, repeating the lookup if the shard was split in the meantime.
+     * After split the lower half stays in the same tree, but under the lock of new shard, so retired shard must not be touched.
+     * @param element element to find shard for, {@code null} for the first shard
+     * @return locked shard, which is not retired
+     */
+    private Shard<E> lockShardFor(E element, boolean forWrite) {
+        while (true) {
+            Shard<E> shard = (element == null) ? shards[0] : shardFor(element);
+            Lock lock = forWrite ? shard.lock.writeLock() : shard.lock.readLock();
+            lock.lock();
+            if (!shard.retired) {
+                return shard;
+            }
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        E element = (E) Objects.requireNonNull(o);
+        Shard<E> shard = lockShardFor(element, false);
+        try {
+            return shard.tree.contains(element);
+        } finally {
+            shard.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean add(E e) {
+        Objects.requireNonNull(e);
+        Shard<E> shard = lockShardFor(e, true);
+        try {
+            boolean added = shard.tree.add(e);
+            if (added && shard.tree.size() > maxShardSize) {
+                split(shard);
+            }
+            return added;
+        } finally {
+            shard.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        E element = (E) Objects.requireNonNull(o);
+        Shard<E> shard = lockShardFor(element, true);
+        try {
+            return shard.tree.remove(element);
+        } finally {
+            shard.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Splits shard at its median into two new shards, and replaces it in the directory. Must be called with write lock of the shard held.
+     */
+    private void split(Shard<E> shard) {
+        E median = shard.tree.select(shard.tree.size() / 2);
+        BSTTreeSet<E> upperHalf = shard.tree.split(median); // the old tree keeps the lower half
+        Shard<E> lower = new Shard<>(shard.lowerBound, median, shard.tree);
+        Shard<E> upper = new Shard<>(median, shard.upperBound, upperHalf);
+        synchronized (directoryLock) {
+            Shard<E>[] directory = shards;
+            Shard<E>[] newDirectory = Arrays.copyOf(directory, directory.length + 1);
+            int index = Arrays.asList(directory).indexOf(shard);
+            newDirectory[index] = lower;
+            newDirectory[index + 1] = upper;
+            System.arraycopy(directory, index + 1, newDirectory, index + 2, directory.length - index - 1);
+            shards = newDirectory;
+        }
+        shard.retired = true; // new shards are not locked, so threads waiting for the old one must go to them
+    }
+
+    /**
+     * Goes through all shards in order, calling provided action for every tree under the shard lock.
+     * Next shard is found by the upper bound of the previous one: it stays a bound forever, as shards are only split, so shards split in the meantime are handled.
+     */
+    private void forEachShard(boolean forWrite, Consumer<BSTTreeSet<E>> action) {
+        E lowerBound = null;
+        do {
+            Shard<E> shard = lockShardFor(lowerBound, forWrite);
+            try {
+                action.accept(shard.tree);
+            } finally {
+                (forWrite ? shard.lock.writeLock() : shard.lock.readLock()).unlock();
+            }
+            lowerBound = shard.upperBound;
+        } while (lowerBound != null);
+    }
+
+    /**
+     * Sums sizes of all shards. Exact only when no other thread modifies the set at the same time.
+     */
+    @Override
+    public int size() {
+        long[] size = new long[1];
+        forEachShard(false, tree -> size[0] += tree.size());
+        return (int) Math.min(size[0], Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return !iterator().hasNext();
+    }
+
+    /**
+     * Removes all elements, shard after shard. Elements added concurrently to already cleared shards stay.
+     */
+    @Override
+    public void clear() {
+        forEachShard(true, BSTTreeSet::clear);
+    }
+
+    /**
+     * Returns weakly consistent iterator over elements in ascending order. Content of one shard at a time is copied under read lock,
+     * then next shard is found by the upper bound of the previous one, like in {@link #forEachShard(boolean, Consumer)}.
+     * @return iterator over elements in ascending order
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+
+            private Object[] chunk = new Object[0];
+            private int position;
+            private E nextShardLowerBound; // null at the start, or when there are no more shards
+            private boolean started;
+            private E lastReturned;
+            private boolean canRemove;
+
+            private boolean fetchNonEmptyChunk() {
+                while (position == chunk.length) {
+                    if (started && nextShardLowerBound == null) {
+                        return false;
+                    }
+                    readShard();
+                }
+                return true;
+            }
+
+            private void readShard() {
+                Shard<E> shard = lockShardFor(nextShardLowerBound, false);
+                try {
+                    chunk = shard.tree.toArray();
+                } finally {
+                    shard.lock.readLock().unlock();
+                }
+                position = 0;
+                started = true;
+                nextShardLowerBound = shard.upperBound;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return fetchNonEmptyChunk();
+            }
+
+            @Override
+            public E next() {
+                if (!fetchNonEmptyChunk()) {
+                    throw new NoSuchElementException();
+                }
+                lastReturned = (E) chunk[position++];
+                canRemove = true;
+                return lastReturned;
+            }
+
+            @Override
+            public void remove() {
+                if (!canRemove) {
+                    throw new IllegalStateException();
+                }
+                ShardedTreeSet.this.remove(lastReturned);
+                canRemove = false;
+            }
+        };
+    }
+}
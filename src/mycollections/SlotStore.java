@@ -0,0 +1,33 @@
+package mycollections;
+
+/**
+ * Links of tree nodes addressed by slot numbers ({@link AVLSlotTree#NONE} for missing node), wherever they are kept:
+ * in arrays on heap ({@link PrimitiveBSTTreeSet}) or off heap ({@link OffHeapNodeStore}).
+ */
+interface SlotStore {
+
+    long left(long slot);
+
+    void setLeft(long slot, long left);
+
+    long right(long slot);
+
+    void setRight(long slot, long right);
+
+    long parent(long slot);
+
+    void setParent(long slot, long parent);
+
+    long subtreeSize(long slot);
+
+    void setSubtreeSize(long slot, long subtreeSize);
+
+    int height(long slot);
+
+    void setHeight(long slot, int height);
+
+    /**
+     * Gives the slot back to the store, for reuse by new nodes.
+     */
+    void free(long slot);
+}
@@ -0,0 +1,52 @@
+package mycollections;
+
+/**
+ * Mutable counters of one {@link BSTTreeSet}, updated by the tree when statistics are enabled. Not thread-safe, like the tree itself:
+ * fork/join tasks of {@link AVLSplitJoin} do not touch it, they count their comparisons themselves and the sum is added when all tasks are done.
+ */
+final class StatisticsRecorder {
+
+    /**
+     * Every that many searches one has its comparisons timed: {@link System#nanoTime()} may cost more than a cheap comparison, so it is not called for all of them
+     */
+    static final int TIMED_SEARCH_INTERVAL = 64;
+
+    long comparisons;
+    long timedComparisons;
+    long comparisonNanos;
+    long searches;
+    long nodesVisited;
+    int maxNodesVisited;
+    long rotations;
+    long insertions;
+    long removals;
+
+    boolean isTimedSearch() {
+        return searches % TIMED_SEARCH_INTERVAL == 0;
+    }
+
+    void comparisonTimed(long nanos) {
+        timedComparisons++;
+        comparisonNanos += nanos;
+    }
+
+    void searchFinished(int visited) {
+        searches++;
+        nodesVisited += visited;
+        if (visited > maxNodesVisited) {
+            maxNodesVisited = visited;
+        }
+    }
+
+    void reset() {
+        comparisons = 0;
+        timedComparisons = 0;
+        comparisonNanos = 0;
+        searches = 0;
+        nodesVisited = 0;
+        maxNodesVisited = 0;
+        rotations = 0;
+        insertions = 0;
+        removals = 0;
+    }
+}
@@ -0,0 +1,58 @@
+package mycollections;
+
+import java.util.*;
+
+/**
+ * Order in which nodes of the tree are visited, to be chosen for {@link BSTTreeSet#iterator(TraversalOrder)}, {@link BSTTreeSet#spliterator(TraversalOrder)}
+ * and {@link BSTTreeSet#stream(TraversalOrder)}. Every order visits all elements once; they differ in where the node is visited relative to its subtrees.
+ * All iterators are <i>fail-fast</i>, and support remove() (for self-balancing trees only in-order iterator does, as rotations move nodes between visited and not yet visited parts of the tree).
+ */
+public enum TraversalOrder {
+
+    /**
+     * Left subtree, the node, right subtree: ascending order of elements, the same as {@link BSTTreeSet#iterator()}.
+     */
+    IN_ORDER {
+        @Override
+        <E> Iterator<E> iterator(BSTTreeSet<E> tree) {
+            return tree.iterator();
+        }
+    },
+
+    /**
+     * The node, left subtree, right subtree: every node comes before its descendants, so the sequence shows the shape of the tree
+     * (adding elements in this order to an empty plain BST builds the same tree).
+     */
+    PRE_ORDER {
+        @Override
+        <E> Iterator<E> iterator(BSTTreeSet<E> tree) {
+            return new PreOrderTreeIterator<>(tree);
+        }
+    },
+
+    /**
+     * Left subtree, right subtree, the node: every node comes after its descendants, for bottom-up computations over subtrees.
+     */
+    POST_ORDER {
+        @Override
+        <E> Iterator<E> iterator(BSTTreeSet<E> tree) {
+            return new PostOrderTreeIterator<>(tree);
+        }
+    },
+
+    /**
+     * Breadth-first: the root, then nodes of depth 1 from left to right, then nodes of depth 2, and so on.
+     * Like pre-order, adding elements in this order to an empty plain BST builds the same tree.
+     */
+    LEVEL_ORDER {
+        @Override
+        <E> Iterator<E> iterator(BSTTreeSet<E> tree) {
+            return new LevelOrderTreeIterator<>(tree);
+        }
+    };
+
+    /**
+     * @return new iterator over elements of the tree in this order
+     */
+    abstract <E> Iterator<E> iterator(BSTTreeSet<E> tree);
+}
@@ -0,0 +1,110 @@
+package mycollections;
+
+import java.util.*;
+
+/**
+ * Balancing strategy of the tree, to be chosen when the set is constructed. All of them share {@link BSTTreeSet} operations and differ only in the way the tree shape is kept.
+ */
+public enum TreeBalancing {
+
+    /**
+     * Plain BST, no balancing. Fastest updates for random input, but degenerates into a list for sorted input.
+     */
+    NONE {
+        @Override
+        public <E> BSTTreeSet<E> newTreeSet(Comparator<? super E> comparator, NodeStorage storage) {
+            return new BSTTreeSet<>(comparator, storage.newNodeFactory());
+        }
+    },
+
+    /**
+     * AVL tree: strictly balanced (height up to 1.44*log2(n)), best for read-heavy workloads.
+     */
+    AVL {
+        @Override
+        public <E> BSTTreeSet<E> newTreeSet(Comparator<? super E> comparator, NodeStorage storage) {
+            return new MyAVLTreeSet<>(comparator, storage.newNodeFactory());
+        }
+    },
+
+    /**
+     * Red-black tree: height up to 2*log2(n+1), at most three rotations per update, best for write-heavy workloads.
+     */
+    RED_BLACK {
+        @Override
+        public <E> BSTTreeSet<E> newTreeSet(Comparator<? super E> comparator, NodeStorage storage) {
+            return new RedBlackTreeSet<>(comparator, storage.newNodeFactory());
+        }
+    };
+
+    /**
+     * Constructs a new, empty tree set using this balancing, sorted according to the specified comparator.
+     * @param comparator the comparator that will be used to order this set. If null, the natural ordering of the elements will be used.
+     * @return new empty set
+     */
+    public <E> BSTTreeSet<E> newTreeSet(Comparator<? super E> comparator) {
+        return newTreeSet(comparator, NodeStorage.REFERENCES);
+    }
+
+    /**
+     * Constructs a new, empty tree set using this balancing and provided storage of nodes, sorted according to the specified comparator.
+     * @param comparator the comparator that will be used to order this set. If null, the natural ordering of the elements will be used.
+     * @param storage the way nodes are kept in memory
+     * @return new empty set
+     */
+    public abstract <E> BSTTreeSet<E> newTreeSet(Comparator<? super E> comparator, NodeStorage storage);
+
+    /**
+     * Constructs a new, empty tree set using this balancing, sorted according to the natural ordering of its elements.
+     * @return new empty set
+     */
+    public <E> BSTTreeSet<E> newTreeSet() {
+        return newTreeSet(null);
+    }
+
+    /**
+     * Constructs a new tree set using this balancing, containing provided elements which are already sorted according to the specified comparator.
+     * Tree is built perfectly balanced in O(n) time, without searching place for every element (elements are only checked to be in ascending order).
+     * So it is also the way to get balanced plain BST ({@link #NONE}) from sorted data. Duplicates (adjacent equal elements) are taken once.
+     * @param sorted elements in ascending order
+     * @param comparator the comparator that orders the elements and will order the set. If null, the natural ordering of the elements is used.
+     * @param storage the way nodes are kept in memory
+     * @return new set containing provided elements
+     * @throws IllegalArgumentException if elements are not in ascending order
+     */
+    public <E> BSTTreeSet<E> newTreeSetFromSorted(Iterator<? extends E> sorted, Comparator<? super E> comparator, NodeStorage storage) {
+        List<E> elements = new ArrayList<>();
+        sorted.forEachRemaining(elements::add);
+        return newTreeSetFromSortedArray(elements.toArray(), comparator, storage);
+    }
+
+    /**
+     * Constructs a new tree set using this balancing, containing provided elements which are already sorted according to the specified comparator.
+     * See {@link #newTreeSetFromSorted(Iterator, Comparator, NodeStorage)}.
+     */
+    public <E> BSTTreeSet<E> newTreeSetFromSorted(Iterator<? extends E> sorted, Comparator<? super E> comparator) {
+        return newTreeSetFromSorted(sorted, comparator, NodeStorage.REFERENCES);
+    }
+
+    /**
+     * Constructs a new tree set using this balancing, containing elements of provided collection, which iterates them in ascending order of specified comparator.
+     * See {@link #newTreeSetFromSorted(Iterator, Comparator, NodeStorage)}.
+     */
+    public <E> BSTTreeSet<E> newTreeSetFromSorted(Collection<? extends E> sorted, Comparator<? super E> comparator) {
+        return newTreeSetFromSortedArray(sorted.toArray(), comparator, NodeStorage.REFERENCES);
+    }
+
+    /**
+     * Constructs a new tree set using this balancing, containing elements of provided array, sorted according to specified comparator.
+     * See {@link #newTreeSetFromSorted(Iterator, Comparator, NodeStorage)}.
+     */
+    public <E> BSTTreeSet<E> newTreeSetFromSorted(E[] sorted, Comparator<? super E> comparator) {
+        return newTreeSetFromSortedArray(Arrays.copyOf(sorted, sorted.length, Object[].class), comparator, NodeStorage.REFERENCES);
+    }
+
+    private <E> BSTTreeSet<E> newTreeSetFromSortedArray(Object[] sorted, Comparator<? super E> comparator, NodeStorage storage) {
+        BSTTreeSet<E> tree = newTreeSet(comparator, storage);
+        tree.loadSorted(sorted);
+        return tree;
+    }
+}
@@ -0,0 +1,153 @@
+package mycollections;
+
+import java.util.*;
+
+/**
+ * Cursor positioned on a node of {@link BSTTreeSet}, got with {@link BSTTreeSet#cursor()}. It moves to neighbours (in ascending order) through parent links,
+ * and removes or replaces the element it is positioned on directly in its node, without searching the tree for it again.
+ * So a loop going over the tree and removing some of the elements (like compaction) saves the search from the root for every removed element.
+ * Moving to the next element costs amortized O(1), but removal itself still takes time proportional to tree height: subtree sizes of all ancestors
+ * of the removed node are updated (and self-balancing trees fix balance on the way up), so it is O(log n) for balanced trees, and up to O(n) for degenerated plain BST:
+ * <pre>
+ * for (TreeCursor&lt;E&gt; cursor = tree.cursor(); cursor.isPositioned(); ) {
+ *     if (isObsolete(cursor.get())) {
+ *         cursor.remove(); // moves to the next element
+ *     } else {
+ *         cursor.next();
+ *     }
+ * }
+ * </pre>
+ * Cursor is either positioned on an element, or not (when it went past either end of the set, or the set is empty).<BR>
+ * Cursor is <i>fail-fast</i>: if the tree was structurally changed other than through the cursor, moving from the current node or changing it throws
+ * {@link ConcurrentModificationException}. Positioning it again with {@link #first()}, {@link #last()} or {@link #seek(Object)} makes it valid again,
+ * as they start from the root.
+ */
+public final class TreeCursor<E> {
+
+    private final BSTTreeSet<E> tree;
+
+    private Node<E> node; // null if not positioned
+    private int originalModificationSerialNumber;
+
+    TreeCursor(BSTTreeSet<E> tree) {
+        this.tree = tree;
+        first();
+    }
+
+    /**
+     * Positions the cursor on the smallest element.
+     * @return {@code true} if positioned, {@code false} if the set is empty
+     */
+    public boolean first() {
+        return positionOn(tree.lowestNode());
+    }
+
+    /**
+     * Positions the cursor on the biggest element.
+     * @return {@code true} if positioned, {@code false} if the set is empty
+     */
+    public boolean last() {
+        return positionOn(tree.highestNode());
+    }
+
+    /**
+     * Positions the cursor on the smallest element greater than or equal to provided key, in time proportional to tree height.
+     * @return {@code true} if positioned, {@code false} if all elements are smaller than the key
+     */
+    public boolean seek(E key) {
+        return positionOn(tree.ceilingNode(key, true));
+    }
+
+    private boolean positionOn(Node<E> node) {
+        this.node = node;
+        originalModificationSerialNumber = tree.getCurrentModificationSerialNumber();
+        return node != null;
+    }
+
+    /**
+     * @return {@code true} if the cursor is positioned on an element
+     */
+    public boolean isPositioned() {
+        return node != null;
+    }
+
+    /**
+     * @return element the cursor is positioned on
+     * @throws NoSuchElementException if the cursor is not positioned
+     */
+    public E get() {
+        checkPositioned();
+        return node.getValue();
+    }
+
+    /**
+     * Moves the cursor to the next (greater) element.
+     * @return {@code true} if moved, {@code false} if there is no next element (cursor is not positioned any more)
+     * @throws NoSuchElementException if the cursor is not positioned
+     */
+    public boolean next() {
+        checkPositioned();
+        node = tree.findSuccessor(node);
+        return node != null;
+    }
+
+    /**
+     * Moves the cursor to the previous (smaller) element.
+     * @return {@code true} if moved, {@code false} if there is no previous element (cursor is not positioned any more)
+     * @throws NoSuchElementException if the cursor is not positioned
+     */
+    public boolean prev() {
+        checkPositioned();
+        node = tree.findPredecessor(node);
+        return node != null;
+    }
+
+    /**
+     * Removes the element the cursor is positioned on, and moves the cursor to the next element. The node is unlinked directly (as by iterator),
+     * also in self-balancing trees: rotations do not change the order of nodes, and the node of the next element stays the same.
+     * No search is done, but subtree sizes are updated up to the root, so it takes time proportional to tree height.
+     * @return removed element
+     * @throws NoSuchElementException if the cursor is not positioned
+     */
+    public E remove() {
+        checkPositioned();
+        Node<E> removed = node;
+        node = tree.findSuccessor(removed);
+        E value = tree.removeAndGetValue(removed);
+        originalModificationSerialNumber = tree.getCurrentModificationSerialNumber();
+        return value;
+    }
+
+    /**
+     * Replaces the element the cursor is positioned on, in place. New element must keep its position in the order: it must be greater than the previous element
+     * and smaller than the next one (so it is usually equal to the replaced one by comparator, like newer version of the same record).
+     * Tree structure does not change, so it does not invalidate other iterators or cursors.
+     * @param element new element
+     * @return replaced element
+     * @throws NoSuchElementException if the cursor is not positioned
+     * @throws NullPointerException if the element is null
+     * @throws IllegalArgumentException if the element does not fit between the neighbours of the current one
+     */
+    public E replace(E element) {
+        Objects.requireNonNull(element);
+        checkPositioned();
+        Node<E> predecessor = tree.findPredecessor(node);
+        Node<E> successor = tree.findSuccessor(node);
+        if ((predecessor != null && tree.compare(predecessor.getValue(), element) >= 0)
+                || (successor != null && tree.compare(element, successor.getValue()) >= 0)) {
+            throw new IllegalArgumentException("Element " + element + " does not fit in place of " + node.getValue());
+        }
+        E replaced = node.getValue();
+        node.setValue(element);
+        return replaced;
+    }
+
+    private void checkPositioned() {
+        if (node == null) {
+            throw new NoSuchElementException("Cursor is not positioned on any element");
+        }
+        if (tree.getCurrentModificationSerialNumber() != originalModificationSerialNumber) {
+            throw new ConcurrentModificationException("Tree was modified not through the cursor");
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package mycollections;
+
+import jdk.jfr.*;
+
+/**
+ * Java Flight Recorder event of iteration over the whole {@link BSTTreeSet}, recorded when the iterator returns its last element
+ * (iterations abandoned before the end are not recorded). Threshold is 20 ms by default.
+ */
+@Name("mycollections.TreeIteration")
+@Label("Tree Iteration")
+@Category({"mycollections", "BSTTreeSet"})
+@Description("Slow iteration over all elements of BSTTreeSet")
+@Threshold("20 ms")
+class TreeIterationEvent extends Event {
+
+    @Label("Element Count")
+    int elementCount;
+
+    void commitIfSlow(int elementCount) {
+        end();
+        if (shouldCommit()) {
+            this.elementCount = elementCount;
+            commit();
+        }
+    }
+}
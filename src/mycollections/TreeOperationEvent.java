@@ -0,0 +1,49 @@
+package mycollections;
+
+import jdk.jfr.*;
+
+/**
+ * Java Flight Recorder event of single add, remove or contains of {@link BSTTreeSet}. Only operations longer than the threshold are recorded
+ * (1 ms by default, it can be changed in recording settings, like for JDK events). When no recording is running, the event costs next to nothing.
+ */
+@Name("mycollections.TreeOperation")
+@Label("Tree Operation")
+@Category({"mycollections", "BSTTreeSet"})
+@Description("Slow add, remove or contains of BSTTreeSet")
+@Threshold("1 ms")
+class TreeOperationEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Element Count")
+    @Description("Number of elements in the set after the operation")
+    int elementCount;
+
+    @Label("Depth")
+    @Description("Number of nodes visited going down from the root")
+    int depth;
+
+    @Label("Comparisons")
+    int comparisons;
+
+    /**
+     * Called by the search from the root, which compares provided value with every visited node.
+     */
+    void searchFinished(int visited) {
+        depth = visited;
+        comparisons += visited;
+    }
+
+    /**
+     * Ends timing of the operation and commits the event if it took longer than the threshold. Depth and comparisons are already set by the search.
+     */
+    void commitIfSlow(String operation, BSTTreeSet<?> tree) {
+        end();
+        if (shouldCommit()) {
+            this.operation = operation;
+            this.elementCount = tree.size();
+            commit();
+        }
+    }
+}
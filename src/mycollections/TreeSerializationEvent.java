@@ -0,0 +1,40 @@
+package mycollections;
+
+import jdk.jfr.*;
+
+/**
+ * Java Flight Recorder event of serialization or deserialization of {@link BSTTreeSet}. Threshold is 20 ms by default.
+ */
+@Name("mycollections.TreeSerialization")
+@Label("Tree Serialization")
+@Category({"mycollections", "BSTTreeSet"})
+@Description("Slow writeObject or readObject of BSTTreeSet")
+@Threshold("20 ms")
+class TreeSerializationEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Element Count")
+    int elementCount;
+
+    @Label("Comparisons")
+    @Description("Comparisons done to check order of read elements, 0 for writeObject")
+    int comparisons;
+
+    @Label("Element Codec")
+    String elementCodec;
+
+    /**
+     * Ends timing and commits the event if it took longer than the threshold. Comparisons are set by readObject.
+     */
+    void commitIfSlow(String operation, BSTTreeSet<?> tree) {
+        end();
+        if (shouldCommit()) {
+            this.operation = operation;
+            this.elementCount = tree.size();
+            this.elementCodec = String.valueOf(tree.getElementCodec());
+            commit();
+        }
+    }
+}
@@ -1,8 +0,0 @@
-package mycollections;
-
-/**
- * proprietary red-black tree implementation
- */
-public class TreeSet {
-
-}
@@ -0,0 +1,108 @@
+package mycollections;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator over range of ranks {@code [from, to)} of the tree (rank is the index of element in ascending order).
+ * Every subtree knows its size, so the range is split exactly in half: prefix half is handed off to the new spliterator,
+ * and its first node is found only when it starts traversal, by descending from the root (see {@link BSTTreeSet#selectNode(int)}), in time proportional to tree height.
+ * Nothing is copied, and sizes of both halves are exact, so it is SIZED and SUBSIZED, and parallel streams get balanced work for all cores.
+ * Traversal goes from node to its successor, like {@link InOrderTreeIterator}.<BR>
+ * Spliterator is <i>fail-fast</i>: it throws {@link ConcurrentModificationException} if the tree was changed since the spliterator was created
+ * (ranks would not be valid any more).
+ */
+class TreeSpliterator<E> implements Spliterator<E> {
+
+    private final BSTTreeSet<E> tree;
+    private int from; // rank of next element to be returned
+    private final int to; // rank of the first element not to be returned
+    private Node<E> nextNode; // node of rank 'from', null if not found yet
+    private final int expectedModificationSerialNumber;
+
+    /**
+     * @param tree tree to traverse
+     * @param from rank of the first element to be returned
+     * @param to rank of the first element not to be returned (exclusive)
+     */
+    TreeSpliterator(BSTTreeSet<E> tree, int from, int to) {
+        this(tree, from, to, null, tree.getCurrentModificationSerialNumber());
+    }
+
+    private TreeSpliterator(BSTTreeSet<E> tree, int from, int to, Node<E> nextNode, int expectedModificationSerialNumber) {
+        this.tree = tree;
+        this.from = from;
+        this.to = to;
+        this.nextNode = nextNode;
+        this.expectedModificationSerialNumber = expectedModificationSerialNumber;
+    }
+
+    @Override
+    public Spliterator<E> trySplit() {
+        checkForComodification();
+        int middle = (from + to) >>> 1;
+        if (middle <= from) {
+            return null;
+        }
+        TreeSpliterator<E> prefix = new TreeSpliterator<>(tree, from, middle, nextNode, expectedModificationSerialNumber);
+        from = middle;
+        nextNode = null; // to be found when needed, split may be split again before
+        return prefix;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super E> action) {
+        Objects.requireNonNull(action);
+        checkForComodification();
+        if (from >= to) {
+            return false;
+        }
+        Node<E> node = (nextNode != null) ? nextNode : tree.selectNode(from);
+        from++;
+        nextNode = (from < to) ? tree.findSuccessor(node) : null;
+        action.accept(node.getValue());
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super E> action) {
+        Objects.requireNonNull(action);
+        checkForComodification();
+        if (from >= to) {
+            return;
+        }
+        Node<E> node = (nextNode != null) ? nextNode : tree.selectNode(from);
+        int remaining = to - from;
+        from = to;
+        nextNode = null;
+        for (; remaining > 0 && node != null; remaining--) { // node may be null only if the tree was changed by the action
+            action.accept(node.getValue());
+            node = tree.findSuccessor(node);
+        }
+        checkForComodification(); // like in java.util spliterators, changes done by the action are detected at the end
+    }
+
+    @Override
+    public long estimateSize() {
+        return to - from;
+    }
+
+    @Override
+    public int characteristics() {
+        return DISTINCT | SORTED | ORDERED | SIZED | SUBSIZED;
+    }
+
+    /**
+     * @return comparator of the tree, {@code null} for natural ordering
+     */
+    @Override
+    public Comparator<? super E> getComparator() {
+        return tree.comparator();
+    }
+
+    private void checkForComodification() {
+        if (tree.getCurrentModificationSerialNumber() != expectedModificationSerialNumber) {
+            throw new ConcurrentModificationException();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package mycollections;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Snapshot of operation statistics of {@link BSTTreeSet} (see {@link BSTTreeSet#setStatisticsEnabled(boolean)}), with shape of the tree at the moment of the snapshot.
+ * Helps to tell why the tree is slow: high {@link #getHeight()} compared to log2(size) (and so many nodes visited per search) means degenerated tree,
+ * high {@link #getAverageComparisonNanos()} means expensive comparator (every visited node costs one comparison),
+ * and otherwise it is just the volume of operations.
+ */
+public final class TreeStatistics {
+
+    private final long comparisons;
+    private final long timedComparisons;
+    private final long comparisonNanos;
+    private final long searches;
+    private final long nodesVisited;
+    private final int maxNodesVisited;
+    private final long rotations;
+    private final long insertions;
+    private final long removals;
+    private final int size;
+    private final int height;
+    private final double averageDepth;
+
+    TreeStatistics(StatisticsRecorder recorder, Node<?> rootNode) {
+        this.comparisons = recorder.comparisons;
+        this.timedComparisons = recorder.timedComparisons;
+        this.comparisonNanos = recorder.comparisonNanos;
+        this.searches = recorder.searches;
+        this.nodesVisited = recorder.nodesVisited;
+        this.maxNodesVisited = recorder.maxNodesVisited;
+        this.rotations = recorder.rotations;
+        this.insertions = recorder.insertions;
+        this.removals = recorder.removals;
+
+        // depths of all nodes, with explicit stack, as degenerated tree may be too deep for recursion
+        int size = 0;
+        int height = 0;
+        long depthSum = 0;
+        Deque<Node<?>> nodes = new ArrayDeque<>();
+        Deque<Integer> depths = new ArrayDeque<>();
+        if (rootNode != null) {
+            nodes.push(rootNode);
+            depths.push(1);
+        }
+        while (!nodes.isEmpty()) {
+            Node<?> node = nodes.pop();
+            int depth = depths.pop();
+            size++;
+            depthSum += depth;
+            height = Math.max(height, depth);
+            if (node.hasLeftSon()) {
+                nodes.push(node.getLeftSon());
+                depths.push(depth + 1);
+            }
+            if (node.hasRightSon()) {
+                nodes.push(node.getRightSon());
+                depths.push(depth + 1);
+            }
+        }
+        this.size = size;
+        this.height = height;
+        this.averageDepth = (size == 0) ? 0 : (double) depthSum / size;
+    }
+
+    /**
+     * @return number of calls of the comparator (or of {@code compareTo} for natural ordering)
+     */
+    public long getComparisons() {
+        return comparisons;
+    }
+
+    /**
+     * Comparisons are timed in every 64th search (the first one included), so timing costs little.
+     * @return average time of one comparison in timed searches, in nanoseconds (including call of {@link System#nanoTime()}), 0 if nothing was timed yet
+     */
+    public double getAverageComparisonNanos() {
+        return (timedComparisons == 0) ? 0 : (double) comparisonNanos / timedComparisons;
+    }
+
+    /**
+     * @return number of searches from the root: done by add, contains and remove
+     */
+    public long getSearches() {
+        return searches;
+    }
+
+    /**
+     * @return number of nodes visited by all searches
+     */
+    public long getNodesVisited() {
+        return nodesVisited;
+    }
+
+    /**
+     * @return average number of nodes visited per search, 0 if there were no searches
+     */
+    public double getAverageNodesVisited() {
+        return (searches == 0) ? 0 : (double) nodesVisited / searches;
+    }
+
+    /**
+     * @return the biggest number of nodes visited by one search: the deepest level reached
+     */
+    public int getMaxNodesVisited() {
+        return maxNodesVisited;
+    }
+
+    /**
+     * @return number of single rotations done by balancing (double rotation counts as two)
+     */
+    public long getRotations() {
+        return rotations;
+    }
+
+    /**
+     * @return number of elements added one by one (bulk loads and merges are not counted)
+     */
+    public long getInsertions() {
+        return insertions;
+    }
+
+    /**
+     * @return number of elements removed one by one
+     */
+    public long getRemovals() {
+        return removals;
+    }
+
+    /**
+     * @return number of elements when the snapshot was taken
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return height of the tree when the snapshot was taken (number of levels, 0 for empty tree)
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return average depth of nodes when the snapshot was taken (root has depth 1), 0 for empty tree.
+     * It is the average number of nodes visited when searching for an element present in the tree.
+     */
+    public double getAverageDepth() {
+        return averageDepth;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TreeStatistics{comparisons=%d (average %.1f ns), searches=%d, nodesVisited=%d (average %.2f, max %d), rotations=%d, insertions=%d, removals=%d, size=%d, height=%d, averageDepth=%.2f}",
+                comparisons, getAverageComparisonNanos(), searches, nodesVisited, getAverageNodesVisited(), maxNodesVisited, rotations, insertions, removals, size, height, averageDepth);
+    }
+}
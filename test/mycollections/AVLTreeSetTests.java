@@ -1,84 +1,231 @@
 package mycollections;
 
+import org.junit.After;
 import org.junit.Test;
 
-import java.util.Collection;
+import java.io.*;
+import java.util.*;
 
-import static org.junit.Assert.assertArrayEquals;
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 /**
  * Created by SG0892454 on 2014-09-13.
  */
 public class AVLTreeSetTests  extends CollectionOrderGuaranteedTests {
 
+    private static final int NUMBER_OF_ELEMENTS = 100000;
+
     @Override
     protected <E> Collection<E> createEmptyCollection() {
         return new MyAVLTreeSet<>();
     }
 
+    /**
+     * AVL tree rebalances while inserting 10, 20, 30, 1, 2, 3, 100, 200, so its shape is different than for plain BST:
+     * <pre>
+     *            10
+     *          /    \
+     *         2      30
+     *        / \    /  \
+     *       1   3  20   100
+     *                     \
+     *                     200
+     * </pre>
+     */
+    @Test
+    public void shapeAfterInsertions() {
+        cInt.addAll(Arrays.asList(10, 20, 30, 1, 2, 3, 100, 200));
+
+        assertArrayEquals(new Object[] {10, 2, 1, 3, 30, 20, 100, 200}, PreOrderTreeIteratorTest.toPreOrderArray((BSTTreeSet<?>) cInt));
+    }
+
     @Test
-    public void rotateRightTest3ElementsRooted() {
+    public void singleRotationAfterInsertingSortedElements() {
         MyAVLTreeSet<Integer> tree = new MyAVLTreeSet<>();
-        ReferenceBasedNode<Integer> n = new ReferenceBasedNode(5);
-        tree.add(n);
-        tree.add(2);
         tree.add(1);
+        tree.add(2);
+        tree.add(3);
 
-        tree.rotateRight(n);
+        assertArrayEquals(new Integer[] {2, 1, 3}, PreOrderTreeIteratorTest.toPreOrderArray(tree));
+        assertTrue(tree.getRootNode().isRootNode());
+    }
 
-        Integer[] expecteds = new Integer[] {2, 1, 5};
-        assertArrayEquals(expecteds, tree.toArray());
+    @Test
+    public void doubleRotationAfterInsertion() {
+        MyAVLTreeSet<Integer> tree = new MyAVLTreeSet<>();
+        tree.add(3);
+        tree.add(1);
+        tree.add(2);
 
-        assertEquals(Integer.valueOf(2), tree.getRootNode().getValue());
+        assertArrayEquals(new Integer[] {2, 1, 3}, PreOrderTreeIteratorTest.toPreOrderArray(tree));
     }
 
     @Test
-    public void rotateRightTest4ElementsNotRoot() {
+    public void rotationAfterRemoval() {
         MyAVLTreeSet<Integer> tree = new MyAVLTreeSet<>();
-        tree.add(7);
-        ReferenceBasedNode<Integer> n = new ReferenceBasedNode(5);
-        tree.add(n);
-        tree.add(2);
-        tree.add(1);
+        tree.addAll(Arrays.asList(2, 1, 3, 4));
 
-        tree.rotateRight(n);
+        tree.remove(1);
 
-        Integer[] expecteds = new Integer[] {7, 2, 1, 5};
-        assertArrayEquals(expecteds, tree.toArray());
+        assertArrayEquals(new Integer[] {3, 2, 4}, PreOrderTreeIteratorTest.toPreOrderArray(tree));
     }
 
+    @Test
+    public void heightBoundAfterSortedInsertions() {
+        MyAVLTreeSet<Integer> tree = new MyAVLTreeSet<>();
+        for (int i = 0; i < NUMBER_OF_ELEMENTS; i++) {
+            tree.add(i);
+        }
+        assertEquals(NUMBER_OF_ELEMENTS, tree.size());
+        assertHeightWithinAVLBound(tree);
+    }
 
     @Test
-    public void rotateLeftTest3ElementsRooted() {
+    public void heightBoundAfterReverseSortedInsertions() {
         MyAVLTreeSet<Integer> tree = new MyAVLTreeSet<>();
-        ReferenceBasedNode<Integer> n = new ReferenceBasedNode(1);
-        tree.add(n);
-        tree.add(2);
-        tree.add(3);
+        for (int i = NUMBER_OF_ELEMENTS; i > 0; i--) {
+            tree.add(i);
+        }
+        assertEquals(NUMBER_OF_ELEMENTS, tree.size());
+        assertHeightWithinAVLBound(tree);
+    }
+
+    @Test
+    public void heightBoundAfterRandomInsertionsAndRemovals() {
+        MyAVLTreeSet<Integer> tree = (MyAVLTreeSet<Integer>) createCollectionOfIntegersWithRandomContent(NUMBER_OF_ELEMENTS);
+        assertHeightWithinAVLBound(tree);
+
+        Random random = new Random(2014);
+        Set<Integer> expected = new HashSet<>(tree);
+        for (int i = 0; i < NUMBER_OF_ELEMENTS / 2; i++) {
+            Integer toRemove = random.nextInt(NUMBER_OF_ELEMENTS);
+            assertEquals(expected.remove(toRemove), tree.remove(toRemove));
+        }
+        assertEquals(expected.size(), tree.size());
+        assertHeightWithinAVLBound(tree);
+        assertTrue("subtree sizes must be kept by rotations", tree.areNodeRelationsFine(tree.getRootNode()));
+        List<Integer> sorted = new ArrayList<>(expected);
+        Collections.sort(sorted);
+        for (int k = 0; k < sorted.size(); k += 97) {
+            assertEquals(sorted.get(k), tree.select(k));
+            assertEquals(k, tree.rank(sorted.get(k)));
+        }
+    }
 
-        tree.rotateLeft(n);
+    @Test
+    public void heightBoundAfterRemovingSortedRange() {
+        MyAVLTreeSet<Integer> tree = new MyAVLTreeSet<>();
+        for (int i = 0; i < NUMBER_OF_ELEMENTS; i++) {
+            tree.add(i);
+        }
+        for (int i = 0; i < NUMBER_OF_ELEMENTS - 1000; i++) {
+            assertTrue(tree.remove(i));
+        }
+        assertEquals(1000, tree.size());
+        assertHeightWithinAVLBound(tree);
+    }
 
-        Integer[] expecteds = new Integer[] {2, 1, 3};
-        assertArrayEquals(expecteds, tree.toArray());
+    @Test
+    public void balanceFactorsRestoredAfterDeserialization() throws IOException, ClassNotFoundException {
+        MyAVLTreeSet<Integer> originalTree = (MyAVLTreeSet<Integer>) createCollectionOfIntegersWithRandomContent(1000);
+
+        MyAVLTreeSet<Integer> deserializedTree;
+        try (ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+             ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(originalTree);
+            try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+                deserializedTree = (MyAVLTreeSet<Integer>) ois.readObject();
+            }
+        }
+        assertEquals(originalTree, deserializedTree);
+        assertBalanceFactorsCorrect(deserializedTree.getRootNode());
+
+        for (int i = 0; i < 1000; i += 2) {
+            deserializedTree.remove(i);
+        }
+        assertHeightWithinAVLBound(deserializedTree);
+    }
 
-        assertEquals(Integer.valueOf(2), tree.getRootNode().getValue());
+    @Test (expected = UnsupportedOperationException.class)
+    public void preOrderIteratorCannotRemove() {
+        cInt.addAll(Arrays.asList(2, 1, 3));
+        Iterator<Integer> it = new PreOrderTreeIterator<Integer>((BSTTreeSet<Integer>) cInt);
+        it.next();
+        it.remove();
     }
 
     @Test
-    public void rotateLeftTest4ElementsNotRoot() {
-        MyAVLTreeSet<Integer> tree = new MyAVLTreeSet<Integer>();
-        tree.add(1);
-        ReferenceBasedNode<Integer> n = new ReferenceBasedNode(2);
-        tree.add(n);
-        tree.add(3);
-        tree.add(4);
+    public void inOrderIteratorRemovesDespiteRotations() {
+        MyAVLTreeSet<Integer> tree = new MyAVLTreeSet<>();
+        for (int i = 0; i < 1000; i++) {
+            tree.add(i);
+        }
+        int expected = 0;
+        for (Iterator<Integer> it = tree.iterator(); it.hasNext(); expected++) {
+            Integer next = it.next();
+            assertEquals(Integer.valueOf(expected), next);
+            if (next % 3 != 0) {
+                it.remove();
+            }
+        }
+        assertEquals(1000, expected);
+        assertEquals(334, tree.size());
+        assertHeightWithinAVLBound(tree);
+        for (Integer element : tree) {
+            assertEquals(0, element % 3);
+        }
+    }
 
-        tree.rotateLeft(n);
+    @Test
+    public void loadSortedSetsBalanceFactors() {
+        for (int n = 0; n < 300; n++) {
+            List<Integer> sorted = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                sorted.add(i);
+            }
+            MyAVLTreeSet<Integer> tree = (MyAVLTreeSet<Integer>) TreeBalancing.AVL.newTreeSetFromSorted(sorted, null);
+            assertEquals(n, tree.size());
+            assertBalanceFactorsCorrect(tree.getRootNode());
+            assertTrue(tree.areNodeRelationsFine(tree.getRootNode()));
+        }
+        MyAVLTreeSet<Integer> tree = (MyAVLTreeSet<Integer>) TreeBalancing.AVL.newTreeSetFromSorted(new Integer[] {1, 2, 3, 4, 5, 6}, null);
+        for (int i = 1; i <= 6; i += 2) {
+            tree.remove(i); // tree keeps being AVL tree after bulk load
+        }
+        tree.add(10);
+        assertHeightWithinAVLBound(tree);
+    }
+
+    @After
+    public void treeSanityCheck() {
+        MyAVLTreeSet tree = (MyAVLTreeSet)c;
+        MyAVLTreeSet treeInt = (MyAVLTreeSet)cInt;
 
-        Integer[] expecteds = new Integer[] {1, 3, 2, 4};
-        assertArrayEquals(expecteds, tree.toArray());
+        assertTrue(tree.areNodeRelationsFine(tree.getRootNode()));
+        assertTrue(treeInt.areNodeRelationsFine(treeInt.getRootNode()));
+        assertBalanceFactorsCorrect(tree.getRootNode());
+        assertBalanceFactorsCorrect(treeInt.getRootNode());
     }
 
+    /**
+     * AVL tree with n nodes cannot be higher than 1.44*log2(n+2)
+     */
+    private static void assertHeightWithinAVLBound(MyAVLTreeSet<?> tree) {
+        int height = assertBalanceFactorsCorrect(tree.getRootNode());
+        double bound = 1.44 * Math.log(tree.size() + 2) / Math.log(2);
+        assertTrue("height " + height + " exceeds AVL bound " + bound + " for " + tree.size() + " elements", height <= bound);
+    }
 
+    /**
+     * checks that every node keeps correct balance factor, within -1..1
+     * @return height of the subtree
+     */
+    private static int assertBalanceFactorsCorrect(Node<?> node) {
+        if (node == null) return 0;
+        int leftHeight = assertBalanceFactorsCorrect(node.getLeftSon());
+        int rightHeight = assertBalanceFactorsCorrect(node.getRightSon());
+        assertEquals("balance factor of node " + node.getValue(), rightHeight - leftHeight, ((WeightedNode<?>) node).getBalanceFactor());
+        assertTrue(Math.abs(rightHeight - leftHeight) <= 1);
+        return 1 + Math.max(leftHeight, rightHeight);
+    }
 }
@@ -0,0 +1,134 @@
+package mycollections;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing trees keeping their nodes in {@link ArrayNodeStore}, using general Collection tests (run on AVL tree), plus tests of the store itself.
+ */
+public class ArrayNodeStoreTest extends CollectionOrderGuaranteedTests {
+
+    private static final int NUMBER_OF_ELEMENTS = 100000;
+
+    @Override
+    protected <E> Collection<E> createEmptyCollection() {
+        return TreeBalancing.AVL.newTreeSet(null, NodeStorage.ARRAYS);
+    }
+
+    @Test
+    public void allBalancingsRunOnArrays() {
+        for (TreeBalancing balancing : TreeBalancing.values()) {
+            BSTTreeSet<Integer> tree = balancing.newTreeSet(null, NodeStorage.ARRAYS);
+            TreeSet<Integer> expected = new TreeSet<>();
+            Random random = new Random(2014);
+            for (int i = 0; i < NUMBER_OF_ELEMENTS; i++) {
+                Integer element = random.nextInt(NUMBER_OF_ELEMENTS);
+                if (random.nextInt(3) == 0) {
+                    assertEquals(expected.remove(element), tree.remove(element));
+                } else {
+                    assertEquals(expected.add(element), tree.add(element));
+                }
+            }
+            assertArrayEquals(expected.toArray(), tree.toArray());
+            assertTrue(tree.areNodeRelationsFine(tree.getRootNode()));
+            assertEquals(expected.first(), tree.first());
+            assertEquals(expected.size() / 2, tree.rank(tree.select(expected.size() / 2)));
+        }
+    }
+
+    @Test
+    public void sameShapeAsWithReferenceBasedNodes() {
+        for (TreeBalancing balancing : TreeBalancing.values()) {
+            BSTTreeSet<Integer> onArrays = balancing.newTreeSet(null, NodeStorage.ARRAYS);
+            BSTTreeSet<Integer> onReferences = balancing.newTreeSet(null, NodeStorage.REFERENCES);
+            for (int i = 0; i < 1000; i++) {
+                Integer element = (i * 7919) % 1000;
+                onArrays.add(element);
+                onReferences.add(element);
+            }
+            for (int i = 0; i < 1000; i += 3) {
+                onArrays.remove(i);
+                onReferences.remove(i);
+            }
+            assertArrayEquals(PreOrderTreeIteratorTest.toPreOrderArray(onReferences), PreOrderTreeIteratorTest.toPreOrderArray(onArrays));
+        }
+    }
+
+    @Test
+    public void slotsOfRemovedNodesAreReused() {
+        BSTTreeSet<Integer> tree = TreeBalancing.AVL.newTreeSet(null, NodeStorage.ARRAYS);
+        ArrayNodeStore<Integer> store = (ArrayNodeStore<Integer>) tree.getNodeFactory();
+        for (int i = 0; i < NUMBER_OF_ELEMENTS; i++) {
+            tree.add(i);
+        }
+        int capacity = store.capacity();
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < NUMBER_OF_ELEMENTS; i += 2) {
+                assertTrue(tree.remove(i));
+            }
+            for (int i = 0; i < NUMBER_OF_ELEMENTS; i += 2) {
+                assertTrue(tree.add(i));
+                assertFalse(tree.add(i)); // node created for duplicate must be released too
+            }
+        }
+        assertEquals(NUMBER_OF_ELEMENTS, tree.size());
+        assertEquals(capacity, store.capacity());
+    }
+
+    @Test
+    public void clearReleasesAllSlots() {
+        BSTTreeSet<Integer> tree = TreeBalancing.RED_BLACK.newTreeSet(null, NodeStorage.ARRAYS);
+        for (int i = 0; i < NUMBER_OF_ELEMENTS; i++) {
+            tree.add(i);
+        }
+        tree.clear();
+        assertTrue(tree.isEmpty());
+        assertTrue(((ArrayNodeStore<Integer>) tree.getNodeFactory()).capacity() < NUMBER_OF_ELEMENTS);
+        tree.addAll(Arrays.asList(3, 1, 2));
+        assertArrayEquals(new Object[] {1, 2, 3}, tree.toArray());
+    }
+
+    @Test
+    public void storageKeptAfterDeserialization() throws IOException, ClassNotFoundException {
+        BSTTreeSet<Integer> originalTree = (BSTTreeSet<Integer>) createCollectionOfIntegersWithRandomContent(1000);
+
+        BSTTreeSet<Integer> deserializedTree;
+        try (ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+             ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(originalTree);
+            try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+                deserializedTree = (BSTTreeSet<Integer>) ois.readObject();
+            }
+        }
+        assertEquals(originalTree, deserializedTree);
+        assertEquals(NodeStorage.ARRAYS, deserializedTree.getNodeFactory().getStorage());
+        assertTrue(deserializedTree.areNodeRelationsFine(deserializedTree.getRootNode()));
+    }
+
+    @Test
+    public void handlesOfTheSameNode() {
+        BSTTreeSet<Integer> tree = TreeBalancing.NONE.newTreeSet(null, NodeStorage.ARRAYS);
+        tree.addAll(Arrays.asList(2, 1, 3));
+        Node<Integer> root = tree.getRootNode();
+
+        assertNotSame(root.getLeftSon(), root.getLeftSon());
+        assertTrue(root.getLeftSon().isSameNodeAs(root.getLeftSon()));
+        assertTrue(root.getLeftSon().getParent().isSameNodeAs(root));
+        assertFalse(root.getLeftSon().isSameNodeAs(root.getRightSon()));
+        assertFalse(root.isSameNodeAs(null));
+    }
+
+    @After
+    public void treeSanityCheck() {
+        BSTTreeSet tree = (BSTTreeSet)c;
+        BSTTreeSet treeInt = (BSTTreeSet)cInt;
+
+        assertTrue(tree.areNodeRelationsFine(tree.getRootNode()));
+        assertTrue(treeInt.areNodeRelationsFine(treeInt.getRootNode()));
+    }
+}
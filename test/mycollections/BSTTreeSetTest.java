@@ -41,6 +41,290 @@ public class BSTTreeSetTest extends CollectionOrderGuaranteedTests {
         assertNull(c.findSuccessor(c.getTreeNodeByValue(15)));
     }
 
+    @Test
+    public void rotateRightTest3ElementsRooted() {
+        BSTTreeSet<Integer> tree = new BSTTreeSet<>();
+        ReferenceBasedNode<Integer> n = new ReferenceBasedNode(5);
+        tree.add(n);
+        tree.add(2);
+        tree.add(1);
+
+        tree.rotateRight(n);
+
+        Integer[] expecteds = new Integer[] {2, 1, 5};
+        assertArrayEquals(expecteds, PreOrderTreeIteratorTest.toPreOrderArray(tree));
+
+        assertEquals(Integer.valueOf(2), tree.getRootNode().getValue());
+        assertTrue(tree.getRootNode().isRootNode());
+    }
+
+    @Test
+    public void rotateRightTest4ElementsNotRoot() {
+        BSTTreeSet<Integer> tree = new BSTTreeSet<>();
+        tree.add(7);
+        ReferenceBasedNode<Integer> n = new ReferenceBasedNode(5);
+        tree.add(n);
+        tree.add(2);
+        tree.add(1);
+
+        tree.rotateRight(n);
+
+        Integer[] expecteds = new Integer[] {7, 2, 1, 5};
+        assertArrayEquals(expecteds, PreOrderTreeIteratorTest.toPreOrderArray(tree));
+    }
+
+    @Test
+    public void rotateLeftTest3ElementsRooted() {
+        BSTTreeSet<Integer> tree = new BSTTreeSet<>();
+        ReferenceBasedNode<Integer> n = new ReferenceBasedNode(1);
+        tree.add(n);
+        tree.add(2);
+        tree.add(3);
+
+        tree.rotateLeft(n);
+
+        Integer[] expecteds = new Integer[] {2, 1, 3};
+        assertArrayEquals(expecteds, PreOrderTreeIteratorTest.toPreOrderArray(tree));
+
+        assertEquals(Integer.valueOf(2), tree.getRootNode().getValue());
+        assertTrue(tree.getRootNode().isRootNode());
+    }
+
+    @Test
+    public void rotateLeftTest4ElementsNotRoot() {
+        BSTTreeSet<Integer> tree = new BSTTreeSet<Integer>();
+        tree.add(1);
+        ReferenceBasedNode<Integer> n = new ReferenceBasedNode(2);
+        tree.add(n);
+        tree.add(3);
+        tree.add(4);
+
+        tree.rotateLeft(n);
+
+        Integer[] expecteds = new Integer[] {1, 3, 2, 4};
+        assertArrayEquals(expecteds, PreOrderTreeIteratorTest.toPreOrderArray(tree));
+    }
+
+    @Test
+    public void rotateLeftAsRightSon() {
+        BSTTreeSet<Integer> tree = new BSTTreeSet<Integer>();
+        tree.addAll(Arrays.asList(10, 5, 20, 15, 30, 25, 40));
+        /*
+                10                      10
+               /  \                    /  \
+              5    20                 5    30
+                  /  \       =>          /  \
+                 15   30                20   40
+                     /  \              /  \
+                    25   40           15   25
+         */
+        tree.rotateLeft(tree.getTreeNodeByValue(20));
+
+        assertArrayEquals(new Integer[] {10, 5, 30, 20, 15, 25, 40}, PreOrderTreeIteratorTest.toPreOrderArray(tree));
+        assertTrue(tree.areNodeRelationsFine(tree.getRootNode()));
+    }
+
+    @Test
+    public void removeRootWithDeepSuccessorUnlinksSuccessorFromOldParent() {
+        BSTTreeSet<Integer> tree = new BSTTreeSet<>();
+        tree.addAll(Arrays.asList(10, 5, 20, 15));
+
+        tree.remove(10);
+
+        assertEquals(Integer.valueOf(15), tree.getRootNode().getValue());
+        assertTrue(tree.getRootNode().isRootNode());
+        assertArrayEquals(new Integer[] {15, 5, 20}, PreOrderTreeIteratorTest.toPreOrderArray(tree));
+    }
+
+    @Test
+    public void rankAndSelect() {
+        BSTTreeSet<Integer> tree = new BSTTreeSet<>();
+        tree.addAll(Arrays.asList(50, 20, 80, 10, 30, 70, 90, 25));
+
+        Integer[] sorted = {10, 20, 25, 30, 50, 70, 80, 90};
+        for (int i = 0; i < sorted.length; i++) {
+            assertEquals(i, tree.rank(sorted[i]));
+            assertEquals(sorted[i], tree.select(i));
+        }
+        assertEquals(0, tree.rank(5)); // elements not present in the set
+        assertEquals(3, tree.rank(26));
+        assertEquals(8, tree.rank(100));
+    }
+
+    @Test (expected = IndexOutOfBoundsException.class)
+    public void selectOutOfRange() {
+        BSTTreeSet<Integer> tree = new BSTTreeSet<>();
+        tree.addAll(Arrays.asList(2, 1, 3));
+        tree.select(3);
+    }
+
+    @Test
+    public void countInRange() {
+        BSTTreeSet<Integer> tree = new BSTTreeSet<>();
+        tree.addAll(Arrays.asList(50, 20, 80, 10, 30, 70, 90, 25));
+
+        assertEquals(3, tree.countInRange(20, 50)); // 20, 25, 30
+        assertEquals(5, tree.countInRange(20, true, 70, true)); // 20, 25, 30, 50, 70
+        assertEquals(3, tree.countInRange(20, false, 70, false)); // 25, 30, 50
+        assertEquals(0, tree.countInRange(31, 49));
+        assertEquals(0, tree.countInRange(50, false, 50, false));
+        assertEquals(1, tree.countInRange(50, true, 50, true));
+        assertEquals(8, tree.countInRange(0, 1000));
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void countInRangeWithFromGreaterThanTo() {
+        BSTTreeSet<Integer> tree = new BSTTreeSet<>();
+        tree.add(1);
+        tree.countInRange(10, 5);
+    }
+
+    @Test
+    public void orderStatisticsKeptAfterRemovals() {
+        BSTTreeSet<Integer> tree = (BSTTreeSet<Integer>) createCollectionOfIntegersWithRandomContent(1000);
+        for (int i = 0; i < 1000; i += 2) {
+            tree.remove(i);
+        }
+        assertEquals(500, tree.size());
+        assertTrue(tree.areNodeRelationsFine(tree.getRootNode()));
+        for (int k = 0; k < 500; k++) {
+            assertEquals(Integer.valueOf(2 * k + 1), tree.select(k));
+            assertEquals(k, tree.rank(2 * k + 1));
+        }
+        assertEquals(50, tree.countInRange(100, 200));
+    }
+
+    @Test
+    public void subtreeSizesRestoredAfterDeserialization() throws IOException, ClassNotFoundException {
+        BSTTreeSet<Integer> originalTree = new BSTTreeSet<>();
+        originalTree.addAll(Arrays.asList(0, 7, 6, 2, 8, 1, 10, 11, 5, 3, 4, 9));
+
+        BSTTreeSet<Integer> deserializedTree = (BSTTreeSet<Integer>) serializeAndDeserialize(originalTree);
+
+        assertEquals(12, deserializedTree.size());
+        assertTrue(deserializedTree.areNodeRelationsFine(deserializedTree.getRootNode()));
+        assertEquals(Integer.valueOf(6), deserializedTree.select(6));
+    }
+
+    /*
+                        50
+                       /  \
+                      20   80
+                     /  \
+                    10   30
+     */
+    @Test
+    public void oneComparisonPerVisitedNode() {
+        int[] comparisons = new int[1];
+        BSTTreeSet<Integer> tree = new BSTTreeSet<>((o1, o2) -> {
+            comparisons[0]++;
+            return o1.compareTo(o2);
+        });
+        tree.addAll(Arrays.asList(50, 20, 80, 10, 30));
+
+        comparisons[0] = 0;
+        assertTrue(tree.contains(30));
+        assertEquals(3, comparisons[0]);
+
+        comparisons[0] = 0;
+        assertFalse(tree.contains(25));
+        assertEquals(3, comparisons[0]); // 50, 20, 30
+
+        comparisons[0] = 0;
+        assertFalse(tree.add(80));
+        assertEquals(2, comparisons[0]);
+
+        comparisons[0] = 0;
+        assertTrue(tree.add(25));
+        assertEquals(3, comparisons[0]);
+
+        comparisons[0] = 0;
+        assertTrue(tree.remove(20));
+        assertEquals(2, comparisons[0]);
+    }
+
+    /**
+     * Loading 1..7 gives perfectly balanced tree:
+     * <pre>
+     *          4
+     *        /   \
+     *       2     6
+     *      / \   / \
+     *     1   3 5   7
+     * </pre>
+     */
+    @Test
+    public void loadSortedBuildsBalancedTree() {
+        BSTTreeSet<Integer> tree = TreeBalancing.NONE.newTreeSetFromSorted(new Integer[] {1, 2, 3, 4, 5, 6, 7}, null);
+
+        assertArrayEquals(new Integer[] {4, 2, 1, 3, 6, 5, 7}, PreOrderTreeIteratorTest.toPreOrderArray(tree));
+        assertEquals(7, tree.size());
+        assertTrue(tree.areNodeRelationsFine(tree.getRootNode()));
+    }
+
+    @Test
+    public void loadSortedComparesOnlyNeighbours() {
+        int[] comparisons = new int[1];
+        Comparator<Integer> countingComparator = (o1, o2) -> {
+            comparisons[0]++;
+            return o1.compareTo(o2);
+        };
+        List<Integer> sorted = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            sorted.add(i);
+        }
+        BSTTreeSet<Integer> tree = TreeBalancing.NONE.newTreeSetFromSorted(sorted, countingComparator);
+
+        assertEquals(100000, comparisons[0]); // type check of the first element, then every element with previous one
+        assertEquals(100000, tree.size());
+        assertEquals(Integer.valueOf(54321), tree.select(54321));
+        assertTrue(tree.areNodeRelationsFine(tree.getRootNode()));
+    }
+
+    @Test
+    public void loadSortedFromIteratorSkipsDuplicates() {
+        BSTTreeSet<String> tree = TreeBalancing.NONE.newTreeSetFromSorted(Arrays.asList("a", "b", "b", "c", "c", "c").iterator(), null, NodeStorage.ARRAYS);
+
+        assertArrayEquals(new String[] {"a", "b", "c"}, tree.toArray());
+        assertTrue(tree.areNodeRelationsFine(tree.getRootNode()));
+    }
+
+    @Test
+    public void loadSortedEmpty() {
+        BSTTreeSet<Integer> tree = TreeBalancing.NONE.newTreeSetFromSorted(Collections.<Integer>emptyList(), null);
+
+        assertTrue(tree.isEmpty());
+        assertTrue(tree.add(1));
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void loadSortedRejectsUnsortedElements() {
+        TreeBalancing.NONE.newTreeSetFromSorted(Arrays.asList(1, 3, 2), null);
+    }
+
+    @Test
+    public void loadSortedWithCustomComparator() {
+        BSTTreeSet<Integer> tree = TreeBalancing.NONE.newTreeSetFromSorted(Arrays.asList(5, 4, 3, 2, 1), new ReverseOrderComparator());
+
+        assertArrayEquals(new Integer[] {5, 4, 3, 2, 1}, tree.toArray());
+        assertTrue(tree.add(0));
+        assertEquals(Integer.valueOf(0), tree.last());
+    }
+
+    @Test
+    public void degeneratedTreeDoesNotOverflowStack() {
+        int numberOfElements = 20000;
+        BSTTreeSet<Integer> tree = new BSTTreeSet<>();
+        for (int i = 0; i < numberOfElements; i++) {
+            tree.add(i); // sorted input, tree degenerates into a list
+        }
+        assertTrue(tree.contains(numberOfElements - 1));
+        assertFalse(tree.add(numberOfElements - 1));
+        assertTrue(tree.remove(numberOfElements - 1));
+        assertFalse(tree.contains(numberOfElements - 1));
+        assertEquals(numberOfElements - 1, tree.size());
+    }
+
     @Test (expected = ClassCastException.class)
     public void typeThatDoesNotHaveNaturalOrdering() {
         BSTTreeSet<Object> c = new BSTTreeSet<>();
@@ -58,12 +342,13 @@ public class BSTTreeSetTest extends CollectionOrderGuaranteedTests {
         c.add("AAAAAAAAAAAAA");
         c.add("BBBBBBBBBBBBBBBBBBBBBBBBBBBB");
         c.add("CCCCCCCCCCCCCCCCCCC");
-        Iterator<String> it = c.iterator();
+        Iterator<String> it = c.iterator(); // ascending order of custom comparator: shortest first
         assertEquals("DDDD", it.next());
         assertEquals("XXXXXXXXX", it.next());
         assertEquals("AAAAAAAAAAAAA", it.next());
-        assertEquals("BBBBBBBBBBBBBBBBBBBBBBBBBBBB", it.next());
         assertEquals("CCCCCCCCCCCCCCCCCCC", it.next());
+        assertEquals("BBBBBBBBBBBBBBBBBBBBBBBBBBBB", it.next());
+        assertEquals("DDDD", c.first());
     }
 
     @Test
@@ -77,7 +362,7 @@ public class BSTTreeSetTest extends CollectionOrderGuaranteedTests {
         c.add("DDDD");
         c.add("XXXXXXXXX");
         c.add("CCCCCCCCCCCCCCCCCCC");
-        Iterator<String> it = c.iterator();
+        Iterator<String> it = new PreOrderTreeIterator<String>(c); // pre-order shows where custom comparator put elements in the tree
         assertEquals("AAAAAAAAAAAAA", it.next());
         assertEquals("DDDD", it.next());
         assertEquals("XXXXXXXXX", it.next());
@@ -99,17 +384,68 @@ public class BSTTreeSetTest extends CollectionOrderGuaranteedTests {
     @Test
     public void equalsNot() {
         BSTTreeSet<Integer> treeOne = new BSTTreeSet<>();
-        treeOne.add(1);
-        treeOne.add(2);
-        treeOne.add(3);
-        // TODO: for implementing, cannot we just use our pre-order iterator? we cannot use iterators (pre-order) for comparing, as for both trees pre-order iterator would print the same content (while the structure is different)
+        treeOne.addAll(Arrays.asList(1, 2, 3));
 
         BSTTreeSet<Integer> treeTwo = new BSTTreeSet<>();
-        treeTwo.add(2);
-        treeTwo.add(1);
-        treeTwo.add(3);
+        treeTwo.addAll(Arrays.asList(1, 2, 4));
 
         assertNotEquals(treeOne, treeTwo);
+        assertNotEquals(treeOne, Arrays.asList(1, 2, 3)); // not a Set
+    }
+
+    /**
+     * Equality follows Set contract: shape of the tree does not matter, and it is symmetric with other Set implementations.
+     */
+    @Test
+    public void equalsOtherSetsWithSameElements() {
+        BSTTreeSet<Integer> treeOne = new BSTTreeSet<>();
+        treeOne.addAll(Arrays.asList(1, 2, 3));
+
+        BSTTreeSet<Integer> treeTwo = new BSTTreeSet<>();
+        treeTwo.addAll(Arrays.asList(2, 1, 3)); // other shape
+
+        assertEquals(treeOne, treeTwo);
+        assertEquals(treeOne.hashCode(), treeTwo.hashCode());
+        Set<Integer> sharded = new ShardedTreeSet<>(null, TreeBalancing.AVL, 2, Collections.emptyList());
+        sharded.addAll(treeOne);
+        for (Set<Integer> other : Arrays.asList(new TreeSet<>(treeOne), new HashSet<>(treeOne), sharded)) {
+            assertEquals(treeOne, other);
+            assertEquals(other, treeOne);
+            assertEquals(other.hashCode(), treeOne.hashCode());
+        }
+        assertNotEquals(treeOne, Collections.singleton("1")); // elements not comparable with Integer
+    }
+
+    @Test
+    public void forEachAndRemoveIfForAllTrees() {
+        for (TreeBalancing balancing : TreeBalancing.values()) {
+            for (NodeStorage storage : NodeStorage.values()) {
+                BSTTreeSet<Integer> tree = balancing.newTreeSet(null, storage);
+                TreeSet<Integer> expected = new TreeSet<>();
+                Random random = new Random(2014);
+                for (int i = 0; i < 10000; i++) {
+                    Integer element = random.nextInt(100000);
+                    tree.add(element);
+                    expected.add(element);
+                }
+                List<Integer> visited = new ArrayList<>();
+                tree.forEach(visited::add);
+                assertEquals(new ArrayList<>(expected), visited);
+
+                assertTrue(tree.removeIf(element -> element % 3 != 0));
+                expected.removeIf(element -> element % 3 != 0);
+                assertFalse(tree.removeIf(element -> element % 3 != 0));
+                assertArrayEquals(expected.toArray(), tree.toArray());
+                assertTrue(tree.areNodeRelationsFine(tree.getRootNode()));
+            }
+        }
+    }
+
+    @Test (expected = ConcurrentModificationException.class)
+    public void forEachIsFailFast() {
+        BSTTreeSet<Integer> tree = new BSTTreeSet<>();
+        tree.addAll(Arrays.asList(1, 2, 3));
+        tree.forEach(element -> tree.add(element + 10));
     }
 
     @Test
@@ -118,6 +454,7 @@ public class BSTTreeSetTest extends CollectionOrderGuaranteedTests {
 
         BSTTreeSet<Integer> deserializedTree = (BSTTreeSet<Integer>) serializeAndDeserialize(originalTree);
         assertEquals(originalTree, deserializedTree);
+        assertBalanced(deserializedTree);
     }
 
     @Test
@@ -135,6 +472,7 @@ public class BSTTreeSetTest extends CollectionOrderGuaranteedTests {
          */
         BSTTreeSet<Integer> deserializedTree = (BSTTreeSet<Integer>) serializeAndDeserialize(originalTree);
         assertEquals(originalTree, deserializedTree);
+        assertBalanced(deserializedTree);
     }
 
     /*
@@ -159,6 +497,19 @@ public class BSTTreeSetTest extends CollectionOrderGuaranteedTests {
 
         BSTTreeSet<Integer> deserializedTree = (BSTTreeSet<Integer>) serializeAndDeserialize(originalTree);
         assertEquals(originalTree, deserializedTree);
+        assertBalanced(deserializedTree);
+    }
+
+    /**
+     * Shape of the tree is not serialized, so deserialized tree is perfectly balanced.
+     */
+    private static <E> void assertBalanced(BSTTreeSet<E> deserializedTree) {
+        assertEquals(BSTTreeSet.heightOfBalanced(deserializedTree.size()), heightOf(deserializedTree.getRootNode()));
+        assertTrue(deserializedTree.areNodeRelationsFine(deserializedTree.getRootNode()));
+    }
+
+    private static int heightOf(Node<?> node) {
+        return (node == null) ? 0 : 1 + Math.max(heightOf(node.getLeftSon()), heightOf(node.getRightSon()));
     }
 
     private <E> List<E> serializeAndDeserializeTreeAsListOfElements(BSTTreeSet<E> tree) throws IOException, ClassNotFoundException {
@@ -192,10 +543,16 @@ public class BSTTreeSetTest extends CollectionOrderGuaranteedTests {
             1    3
           /
          0
-         will be serialized as (N stands for null): 2, 1, 0, N, N, N, 3, N, N
+         only elements are serialized, and tree is rebuilt balanced (middle element is the root):
+               1
+             /  \
+            0    2
+                  \
+                   3
+         so in pre-order (N stands for null) it is: 1, 0, N, N, 2, N, 3, N, N
         */
         List<Integer> deserialized = serializeAndDeserializeTreeAsListOfElements(originalTree);
-        assertArrayEquals(new Integer[]{2, 1, 0, null, null, null, 3, null, null}, deserialized.toArray());
+        assertArrayEquals(new Integer[]{1, 0, null, null, 2, null, 3, null, null}, deserialized.toArray());
     }
 
     @Test
@@ -205,6 +562,7 @@ public class BSTTreeSetTest extends CollectionOrderGuaranteedTests {
 
         BSTTreeSet<Integer> deserializedTree = (BSTTreeSet<Integer>) serializeAndDeserialize(originalTree);
         assertEquals(originalTree, deserializedTree);
+        assertBalanced(deserializedTree);
     }
 
     /*
@@ -225,6 +583,7 @@ public class BSTTreeSetTest extends CollectionOrderGuaranteedTests {
 
         BSTTreeSet<Integer> deserializedTree = (BSTTreeSet<Integer>) serializeAndDeserialize(originalTree);
         assertEquals(originalTree, deserializedTree);
+        assertBalanced(deserializedTree);
     }
 
     @Test
@@ -244,6 +603,7 @@ public class BSTTreeSetTest extends CollectionOrderGuaranteedTests {
 
         BSTTreeSet<Integer> deserializedTree = (BSTTreeSet<Integer>) serializeAndDeserialize(originalTree);
         assertEquals(originalTree, deserializedTree);
+        assertBalanced(deserializedTree);
     }
 
     /*
@@ -258,5 +618,83 @@ public class BSTTreeSetTest extends CollectionOrderGuaranteedTests {
         assertTrue(treeInt.areNodeRelationsFine(treeInt.getRootNode()));
     }
 
+    @Test
+    public void rebalanceDegeneratedTree() {
+        for (int size = 0; size <= 70; size++) {
+            BSTTreeSet<Integer> tree = new BSTTreeSet<>();
+            for (int i = 0; i < size; i++) {
+                tree.add((i % 2 == 0) ? i : -i); // zig-zag, both sons used
+            }
+            Object[] elements = tree.toArray();
+            tree.rebalance();
+
+            assertArrayEquals(elements, tree.toArray());
+            assertEquals(BSTTreeSet.heightOfBalanced(size), heightOf(tree.getRootNode()));
+            assertTrue(tree.areNodeRelationsFine(tree.getRootNode()));
+            for (int rank = 0; rank < size; rank++) { // subtree sizes are right
+                assertEquals(elements[rank], tree.select(rank));
+            }
+        }
+    }
+
+    @Test
+    public void rebalanceOfSortedTreeWithArrayStorage() {
+        BSTTreeSet<Integer> tree = TreeBalancing.NONE.newTreeSet(null, NodeStorage.ARRAYS);
+        for (int i = 0; i < 10000; i++) {
+            tree.add(i);
+        }
+        tree.rebalance();
+
+        assertEquals(BSTTreeSet.heightOfBalanced(10000), heightOf(tree.getRootNode()));
+        assertEquals(10000, tree.size());
+        assertEquals(Integer.valueOf(5000), tree.select(5000));
+        assertTrue(tree.areNodeRelationsFine(tree.getRootNode()));
+    }
+
+    @Test (expected = ConcurrentModificationException.class)
+    public void rebalanceInvalidatesIterators() {
+        BSTTreeSet<Integer> tree = new BSTTreeSet<>();
+        tree.addAll(Arrays.asList(1, 2, 3));
+        Iterator<Integer> it = tree.iterator();
+        tree.rebalance();
+        it.next();
+    }
+
+    @Test
+    public void autoRebalanceKeepsSortedInsertionsLow() {
+        BSTTreeSet<Integer> tree = new BSTTreeSet<>();
+        tree.setAutoRebalanceFactor(2);
+        for (int i = 0; i < 100000; i++) {
+            tree.add(i);
+        }
+        for (int i = -1; i > -1000; i--) {
+            tree.add(i);
+        }
+
+        assertTrue(heightOf(tree.getRootNode()) <= 2 * BSTTreeSet.heightOfBalanced(tree.size()));
+        assertEquals(100999, tree.size());
+        assertEquals(Integer.valueOf(-999), tree.first());
+        assertTrue(tree.areNodeRelationsFine(tree.getRootNode()));
+        assertEquals(2, tree.split(50000).getAutoRebalanceFactor(), 0);
+    }
+
+    @Test
+    public void selfBalancingTreesAreNotRebalanced() {
+        BSTTreeSet<Integer> tree = TreeBalancing.RED_BLACK.newTreeSet();
+        tree.setAutoRebalanceFactor(1.1);
+        tree.setStatisticsEnabled(true);
+        for (int i = 0; i < 1000; i++) {
+            tree.add(i);
+        }
+        long rotations = tree.getStatistics().getRotations();
+        tree.rebalance();
 
+        assertEquals(rotations, tree.getStatistics().getRotations());
+        assertTrue(tree.areNodeRelationsFine(tree.getRootNode()));
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void autoRebalanceFactorMustBeGreaterThanOne() {
+        new BSTTreeSet<Integer>().setAutoRebalanceFactor(1);
+    }
 }
@@ -21,7 +21,7 @@ public abstract class CollectionOrderGuaranteedTests extends CollectionTests {
 
         Integer[] someIntegerArray = new Integer[originalCollectionSize];
 
-        Integer[] expecteds = {20, 10, 30, 40};
+        Integer[] expecteds = {10, 20, 30, 40};
 
         Integer[] resultArray = cInt.toArray(someIntegerArray);
         assertEquals(originalCollectionSize, resultArray.length);
@@ -43,8 +43,8 @@ public abstract class CollectionOrderGuaranteedTests extends CollectionTests {
         Integer[] resultArray = cInt.toArray(someIntegerArray);
         assertTrue(resultArray.length >= originalCollectionSize);
 
-        assertEquals(Integer.valueOf(20), someIntegerArray[0]);
-        assertEquals(Integer.valueOf(10), someIntegerArray[1]);
+        assertEquals(Integer.valueOf(10), someIntegerArray[0]);
+        assertEquals(Integer.valueOf(20), someIntegerArray[1]);
         assertEquals(Integer.valueOf(30), someIntegerArray[2]);
         assertEquals(Integer.valueOf(40), someIntegerArray[3]);
 
@@ -62,7 +62,7 @@ public abstract class CollectionOrderGuaranteedTests extends CollectionTests {
 
         Integer[] someIntegerArray = new Integer[0];
 
-        Integer[] expecteds = {20, 10, 30, 40};
+        Integer[] expecteds = {10, 20, 30, 40};
 
         Integer[] resultArray = cInt.toArray(someIntegerArray);
         assertEquals(originalCollectionSize, resultArray.length);
@@ -1,6 +1,5 @@
 package mycollections;
 
-import com.sun.istack.internal.NotNull;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -327,7 +326,7 @@ public abstract class CollectionTests  {
 
         Object[] array = cInt.toArray();
 
-        Object[] expecteds = new Object[] {10, 1, 2, 3, 20, 30, 100, 200};
+        Object[] expecteds = new Object[] {1, 2, 3, 10, 20, 30, 100, 200};
 
         assertTrue(Arrays.binarySearch(array, 20) >= 0);
         assertTrue(Arrays.binarySearch(array, 100) >= 0);
@@ -349,7 +348,7 @@ public abstract class CollectionTests  {
             }
 
             @Override
-            public int compareTo(@NotNull Object o) {
+            public int compareTo(Object o) {
                 return value - ((SimplestMutableClass)o).value;
             }
         }
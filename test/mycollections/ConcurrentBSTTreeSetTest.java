@@ -0,0 +1,159 @@
+package mycollections;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static mycollections.ManyThreads.runInThreads;
+import static org.junit.Assert.*;
+
+/**
+ * Testing ConcurrentBSTTreeSet: general Collection tests run in single thread, plus checks of the set modified by many threads at once.
+ */
+public class ConcurrentBSTTreeSetTest extends CollectionOrderGuaranteedTests {
+
+    private static final int NUMBER_OF_THREADS = 8;
+    private static final int OPERATIONS_PER_THREAD = 100000;
+
+    @Override
+    protected <E> Collection<E> createEmptyCollection() {
+        return new ConcurrentBSTTreeSet<>();
+    }
+
+    @Test
+    public void sameAsTreeSetInSingleThread() {
+        ConcurrentBSTTreeSet<Integer> set = new ConcurrentBSTTreeSet<>();
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(2014);
+        for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+            Integer element = random.nextInt(1000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(element), set.remove(element));
+            } else {
+                assertEquals(expected.add(element), set.add(element));
+            }
+            assertEquals(expected.contains(i % 1000), set.contains(i % 1000));
+        }
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(set));
+        assertEquals(expected.size(), set.size());
+    }
+
+    @Test
+    public void concurrentInsertionsAreAllKept() throws InterruptedException {
+        ConcurrentBSTTreeSet<Integer> set = new ConcurrentBSTTreeSet<>();
+        runInThreads(NUMBER_OF_THREADS, thread -> {
+            Random random = new Random(thread);
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                set.add(random.nextInt(NUMBER_OF_THREADS * OPERATIONS_PER_THREAD));
+            }
+        });
+
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int thread = 0; thread < NUMBER_OF_THREADS; thread++) {
+            Random random = new Random(thread);
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                expected.add(random.nextInt(NUMBER_OF_THREADS * OPERATIONS_PER_THREAD));
+            }
+        }
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(set));
+        assertEquals(expected.size(), set.size());
+    }
+
+    /**
+     * Every thread works on its own elements (equal to its number modulo number of threads), but the elements are mixed in the tree,
+     * so threads remove nodes next to nodes of other threads all the time.
+     */
+    @Test
+    public void concurrentAddsAndRemovesOfNeighbours() throws InterruptedException {
+        ConcurrentBSTTreeSet<Integer> set = new ConcurrentBSTTreeSet<>();
+        List<Set<Integer>> expectedPerThread = new ArrayList<>();
+        for (int thread = 0; thread < NUMBER_OF_THREADS; thread++) {
+            expectedPerThread.add(new HashSet<>());
+        }
+        runInThreads(NUMBER_OF_THREADS, thread -> {
+            Set<Integer> expected = expectedPerThread.get(thread);
+            Random random = new Random(thread);
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                Integer element = random.nextInt(1000) * NUMBER_OF_THREADS + thread;
+                if (random.nextBoolean()) {
+                    assertEquals(expected.add(element), set.add(element));
+                } else {
+                    assertEquals(expected.remove(element), set.remove(element));
+                }
+                assertEquals(expected.contains(element), set.contains(element));
+            }
+        });
+
+        TreeSet<Integer> expected = new TreeSet<>();
+        expectedPerThread.forEach(expected::addAll);
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(set));
+        assertEquals(expected.size(), set.size());
+    }
+
+    @Test
+    public void threadsFightingForTheSameElements() throws InterruptedException {
+        ConcurrentBSTTreeSet<Integer> set = new ConcurrentBSTTreeSet<>();
+        runInThreads(NUMBER_OF_THREADS, thread -> {
+            Random random = new Random(thread);
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                Integer element = random.nextInt(64);
+                if (random.nextBoolean()) {
+                    set.add(element);
+                } else {
+                    set.remove(element);
+                }
+            }
+        });
+
+        List<Integer> elements = new ArrayList<>(set);
+        assertEquals(elements.size(), set.size());
+        for (int i = 0; i < 64; i++) {
+            assertEquals(elements.contains(i), set.contains(i));
+        }
+        assertEquals(new ArrayList<>(new TreeSet<>(elements)), elements);
+    }
+
+    @Test
+    public void iteratorsAreWeaklyConsistent() throws InterruptedException {
+        ConcurrentBSTTreeSet<Integer> set = new ConcurrentBSTTreeSet<>();
+        for (int i = 0; i < 1000; i += 2) {
+            set.add(i); // even elements stay all the time
+        }
+        runInThreads(NUMBER_OF_THREADS, thread -> {
+            Random random = new Random(thread);
+            for (int i = 0; i < OPERATIONS_PER_THREAD / 10; i++) {
+                if (thread % 2 == 0) {
+                    Integer odd = 2 * random.nextInt(500) + 1;
+                    if (random.nextBoolean()) {
+                        set.add(odd);
+                    } else {
+                        set.remove(odd);
+                    }
+                } else {
+                    int previous = -1;
+                    int evens = 0;
+                    for (Integer element : set) {
+                        assertTrue(element > previous);
+                        previous = element;
+                        if (element % 2 == 0) evens++;
+                    }
+                    assertEquals(500, evens);
+                }
+            }
+        });
+    }
+
+    @Test (expected = IllegalStateException.class)
+    public void iteratorRemoveTwiceIsIllegal() {
+        ConcurrentBSTTreeSet<Integer> set = new ConcurrentBSTTreeSet<>();
+        set.addAll(Arrays.asList(1, 2, 3));
+        Iterator<Integer> it = set.iterator();
+        it.next();
+        it.remove();
+        try {
+            it.remove();
+        } finally {
+            assertEquals(Arrays.asList(2, 3), new ArrayList<>(set));
+        }
+    }
+}
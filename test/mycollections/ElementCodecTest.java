@@ -0,0 +1,129 @@
+package mycollections;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing serialization of BSTTreeSet with element codecs.
+ */
+public class ElementCodecTest {
+
+    private static final int NUMBER_OF_ELEMENTS = 10000;
+
+    @Test
+    public void intsAreWrittenMoreCompactlyThanObjects() throws IOException, ClassNotFoundException {
+        BSTTreeSet<Integer> tree = TreeBalancing.AVL.newTreeSet(null);
+        Random random = new Random(2014);
+        while (tree.size() < NUMBER_OF_ELEMENTS) {
+            tree.add(random.nextInt());
+        }
+        byte[] asObjects = serialize(tree);
+        tree.setElementCodec(ElementCodec.ints());
+        byte[] asInts = serialize(tree);
+
+        assertTrue(asObjects.length + " bytes as objects, " + asInts.length + " as ints", asInts.length < asObjects.length / 2);
+        assertTrue(asInts.length < 4 * NUMBER_OF_ELEMENTS + 1000);
+        for (byte[] bytes : Arrays.asList(asObjects, asInts)) {
+            BSTTreeSet<Integer> deserialized = deserialize(bytes);
+            assertArrayEquals(tree.toArray(), deserialized.toArray());
+            assertEquals(TreeBalancing.AVL, deserialized.getBalancing());
+        }
+    }
+
+    @Test
+    public void longsInArrayStoredRedBlackTree() throws IOException, ClassNotFoundException {
+        BSTTreeSet<Long> tree = TreeBalancing.RED_BLACK.newTreeSet(null, NodeStorage.ARRAYS);
+        tree.setElementCodec(ElementCodec.longs());
+        for (long i = 0; i < NUMBER_OF_ELEMENTS; i++) {
+            tree.add(i * Integer.MAX_VALUE);
+        }
+        BSTTreeSet<Long> deserialized = deserialize(serialize(tree));
+
+        assertArrayEquals(tree.toArray(), deserialized.toArray());
+        assertSame(ElementCodec.longs(), deserialized.getElementCodec());
+        assertEquals(NodeStorage.ARRAYS, deserialized.getNodeFactory().getStorage());
+        assertTrue(deserialized.add(-1L)); // balancing information is set, so the tree can be changed
+        assertTrue(deserialized.areNodeRelationsFine(deserialized.getRootNode()));
+    }
+
+    @Test
+    public void stringsWithOtherComparator() throws IOException, ClassNotFoundException {
+        BSTTreeSet<String> tree = new BSTTreeSet<>(Comparator.reverseOrder());
+        tree.setElementCodec(ElementCodec.strings());
+        char[] longString = new char[100000]; // too long for DataOutput.writeUTF
+        Arrays.fill(longString, '\u017C');
+        tree.addAll(Arrays.asList("", "abc", "za\u017C\u00F3\u0142\u0107", "\uD83D\uDE00", new String(longString)));
+
+        BSTTreeSet<String> deserialized = deserialize(serialize(tree));
+
+        assertArrayEquals(tree.toArray(), deserialized.toArray());
+        assertTrue(deserialized.add("b"));
+        assertEquals("abc", deserialized.higher("b"));
+    }
+
+    @Test
+    public void emptyTree() throws IOException, ClassNotFoundException {
+        BSTTreeSet<Integer> tree = TreeBalancing.AVL.newTreeSet(null);
+        tree.setElementCodec(ElementCodec.ints());
+
+        BSTTreeSet<Integer> deserialized = deserialize(serialize(tree));
+
+        assertTrue(deserialized.isEmpty());
+        assertTrue(deserialized.add(1));
+    }
+
+    @Test
+    public void splitSetKeepsCodec() {
+        BSTTreeSet<Integer> tree = TreeBalancing.AVL.newTreeSet(null);
+        tree.setElementCodec(ElementCodec.ints());
+        tree.addAll(Arrays.asList(1, 2, 3));
+
+        assertSame(ElementCodec.ints(), tree.split(2).getElementCodec());
+    }
+
+    @Test (expected = InvalidObjectException.class)
+    public void unsortedElementsInStreamAreRejected() throws IOException, ClassNotFoundException {
+        BSTTreeSet<Integer> tree = new BSTTreeSet<>();
+        tree.setElementCodec(new NegatingOnReadCodec());
+        tree.addAll(Arrays.asList(1, 2, 3));
+
+        deserialize(serialize(tree));
+    }
+
+    /**
+     * Broken codec: elements come back in descending order.
+     */
+    private static class NegatingOnReadCodec implements ElementCodec<Integer> {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void write(Integer element, ObjectOutput out) throws IOException {
+            out.writeInt(element);
+        }
+
+        @Override
+        public Integer read(ObjectInput in) throws IOException {
+            return -in.readInt();
+        }
+    }
+
+    private static byte[] serialize(Object object) throws IOException {
+        try (ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+             ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(object);
+            oos.flush();
+            return bytes.toByteArray();
+        }
+    }
+
+    private static <E> BSTTreeSet<E> deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (BSTTreeSet<E>) ois.readObject();
+        }
+    }
+}
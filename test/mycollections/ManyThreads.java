@@ -0,0 +1,46 @@
+package mycollections;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs the same code in many threads at once, for tests of sets modified concurrently.
+ */
+final class ManyThreads {
+
+    interface ThreadBody {
+        void run(int threadNumber) throws Exception;
+    }
+
+    private ManyThreads() {
+    }
+
+    /**
+     * Starts all threads at once (they wait on a latch until all are created, to get as much contention as possible),
+     * waits for all of them, and rethrows the first failure.
+     */
+    static void runInThreads(int numberOfThreads, ThreadBody body) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[numberOfThreads];
+        for (int i = 0; i < numberOfThreads; i++) {
+            int threadNumber = i;
+            threads[i] = new Thread(() -> {
+                try {
+                    start.await();
+                    body.run(threadNumber);
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError("Failure in one of threads", failure.get());
+        }
+    }
+}
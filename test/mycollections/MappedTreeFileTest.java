@@ -0,0 +1,175 @@
+package mycollections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Testing MappedTreeFile against TreeSet with the same keys, for sizes giving complete and incomplete last level of the tree.
+ */
+public class MappedTreeFileTest {
+
+    private Path file;
+
+    @Before
+    public void createFile() throws IOException {
+        file = Files.createTempFile("tree", ".mtrf");
+    }
+
+    @After
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void sameAsTreeSetForLongKeys() throws IOException {
+        Random random = new Random(2014);
+        for (int size : new int[] {0, 1, 2, 3, 7, 8, 100, 1023, 1024, 10000}) {
+            LongBSTTreeSet set = new LongBSTTreeSet();
+            TreeSet<Long> expected = new TreeSet<>();
+            while (set.size() < size) {
+                long value = random.nextLong() / 2;
+                set.add(value);
+                expected.add(value);
+            }
+            MappedTreeFile.write(file, set);
+            try (MappedTreeFile tree = MappedTreeFile.open(file)) {
+                assertEquals(Long.BYTES, tree.keyBytes());
+                assertSameAsTreeSet(expected, tree, random);
+            }
+        }
+    }
+
+    @Test
+    public void sameAsTreeSetForIntKeys() throws IOException {
+        Random random = new Random(2014);
+        IntBSTTreeSet set = new IntBSTTreeSet();
+        TreeSet<Long> expected = new TreeSet<>();
+        set.add(Integer.MIN_VALUE);
+        expected.add((long) Integer.MIN_VALUE);
+        while (set.size() < 5000) {
+            int value = random.nextInt();
+            set.add(value);
+            expected.add((long) value);
+        }
+        MappedTreeFile.write(file, set);
+        assertEquals(24 + 4 * 5000, Files.size(file));
+        try (MappedTreeFile tree = MappedTreeFile.open(file)) {
+            assertEquals(Integer.BYTES, tree.keyBytes());
+            assertSameAsTreeSet(expected, tree, random);
+            assertFalse(tree.contains(Integer.MIN_VALUE - 1L));
+        }
+    }
+
+    private static void assertSameAsTreeSet(TreeSet<Long> expected, MappedTreeFile tree, Random random) {
+        assertEquals(expected.size(), tree.size());
+        List<Long> keys = new ArrayList<>();
+        tree.iterator().forEachRemaining((long key) -> keys.add(key));
+        assertEquals(new ArrayList<>(expected), keys);
+        if (!expected.isEmpty()) {
+            assertEquals(expected.first().longValue(), tree.first());
+            assertEquals(expected.last().longValue(), tree.last());
+        }
+        List<Long> probes = new ArrayList<>();
+        for (Long key : expected) {
+            probes.addAll(Arrays.asList(key - 1, key, key + 1));
+        }
+        for (int i = 0; i < 1000; i++) {
+            probes.add(random.nextLong() / 2);
+        }
+        probes.addAll(Arrays.asList(Long.MIN_VALUE, Long.MAX_VALUE));
+        for (long probe : probes) {
+            assertEquals(expected.contains(probe), tree.contains(probe));
+            assertEquals(Optional.ofNullable(expected.floor(probe)), box(tree.floor(probe)));
+            assertEquals(Optional.ofNullable(expected.ceiling(probe)), box(tree.ceiling(probe)));
+        }
+    }
+
+    private static Optional<Long> box(OptionalLong value) {
+        return value.isPresent() ? Optional.of(value.getAsLong()) : Optional.empty();
+    }
+
+    @Test (expected = NoSuchElementException.class)
+    public void firstOfEmptyTree() throws IOException {
+        MappedTreeFile.write(file, new LongBSTTreeSet());
+        try (MappedTreeFile tree = MappedTreeFile.open(file)) {
+            tree.first();
+        }
+    }
+
+    @Test
+    public void otherFileIsRejected() throws IOException {
+        Files.write(file, new byte[100]);
+        try {
+            MappedTreeFile.open(file);
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void filesCanBeOpenedManyTimes() throws IOException {
+        MappedTreeFile.write(file, new LongBSTTreeSet(5, 1, 3));
+        try (MappedTreeFile first = MappedTreeFile.open(file);
+             MappedTreeFile second = MappedTreeFile.open(file)) {
+            assertTrue(first.contains(3));
+            assertEquals(OptionalLong.of(3), second.floor(4));
+        }
+    }
+
+    /**
+     * Rewriting with smaller set must not shrink the file under the tree still mapping it: it keeps reading the old keys.
+     */
+    @Test
+    public void rewriteDoesNotAffectOpenedTree() throws IOException {
+        LongBSTTreeSet bigSet = new LongBSTTreeSet();
+        for (long value = 0; value < 10000; value++) {
+            bigSet.add(value);
+        }
+        MappedTreeFile.write(file, bigSet);
+        try (MappedTreeFile oldTree = MappedTreeFile.open(file)) {
+            MappedTreeFile.write(file, new LongBSTTreeSet(1, 2));
+            assertEquals(10000, oldTree.size());
+            assertTrue(oldTree.contains(9999));
+            try (MappedTreeFile newTree = MappedTreeFile.open(file)) {
+                assertEquals(2, newTree.size());
+                assertFalse(newTree.contains(9999));
+            }
+        }
+        try (DirectoryStream<Path> siblings = Files.newDirectoryStream(file.getParent(), file.getFileName() + ".*.tmp")) {
+            assertFalse("temporary file left behind", siblings.iterator().hasNext());
+        }
+    }
+
+    @Test
+    public void rewriteKeepsPermissionsOfTheFile() throws IOException {
+        assumeTrue(Files.getFileStore(file).supportsFileAttributeView(PosixFileAttributeView.class));
+        Set<PosixFilePermission> readableByAll = PosixFilePermissions.fromString("rw-r--r--");
+        Files.setPosixFilePermissions(file, readableByAll);
+
+        MappedTreeFile.write(file, new LongBSTTreeSet(1, 2));
+
+        assertEquals(readableByAll, Files.getPosixFilePermissions(file));
+    }
+
+    @Test (expected = IllegalStateException.class)
+    public void closedTreeCannotBeUsed() throws IOException {
+        MappedTreeFile.write(file, new LongBSTTreeSet(1, 2));
+        MappedTreeFile tree = MappedTreeFile.open(file);
+        tree.close();
+        tree.close();
+        tree.contains(1);
+    }
+}
@@ -0,0 +1,244 @@
+package mycollections;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing NavigableSet methods and range views of all tree variants, using java.util.TreeSet as reference implementation.
+ */
+public class NavigableTreeSetTest {
+
+    private static final int NUMBER_OF_ELEMENTS = 1000;
+
+    @Test
+    public void navigationMethodsSameAsInTreeSet() {
+        for (TreeBalancing balancing : TreeBalancing.values()) {
+            BSTTreeSet<Integer> tree = balancing.newTreeSet();
+            TreeSet<Integer> expected = new TreeSet<>();
+            fillWithEvenNumbers(tree, expected);
+
+            assertEquals(expected.first(), tree.first());
+            assertEquals(expected.last(), tree.last());
+            for (int i = -2; i < 2 * NUMBER_OF_ELEMENTS + 2; i++) {
+                assertEquals(expected.lower(i), tree.lower(i));
+                assertEquals(expected.floor(i), tree.floor(i));
+                assertEquals(expected.ceiling(i), tree.ceiling(i));
+                assertEquals(expected.higher(i), tree.higher(i));
+            }
+        }
+    }
+
+    @Test
+    public void iterationInAscendingAndDescendingOrder() {
+        for (TreeBalancing balancing : TreeBalancing.values()) {
+            BSTTreeSet<Integer> tree = balancing.newTreeSet();
+            TreeSet<Integer> expected = new TreeSet<>();
+            fillWithRandomNumbers(tree, expected);
+
+            assertArrayEquals(expected.toArray(), tree.toArray());
+            assertArrayEquals(expected.descendingSet().toArray(), tree.descendingSet().toArray());
+            assertIteratorsEqual(expected.descendingIterator(), tree.descendingIterator());
+        }
+    }
+
+    @Test
+    public void rangeViewsSameAsInTreeSet() {
+        for (TreeBalancing balancing : TreeBalancing.values()) {
+            BSTTreeSet<Integer> tree = balancing.newTreeSet();
+            TreeSet<Integer> expected = new TreeSet<>();
+            fillWithEvenNumbers(tree, expected);
+
+            int[] bounds = {-1, 0, 1, 100, 101, 1998, 1999, 2000};
+            for (int from : bounds) {
+                for (int to : bounds) {
+                    if (from > to) continue;
+                    for (boolean fromInclusive : new boolean[] {true, false}) {
+                        for (boolean toInclusive : new boolean[] {true, false}) {
+                            assertSameSet(expected.subSet(from, fromInclusive, to, toInclusive), tree.subSet(from, fromInclusive, to, toInclusive));
+                        }
+                    }
+                }
+                assertSameSet(expected.headSet(from, true), tree.headSet(from, true));
+                assertSameSet(expected.headSet(from, false), tree.headSet(from, false));
+                assertSameSet(expected.tailSet(from, true), tree.tailSet(from, true));
+                assertSameSet(expected.tailSet(from, false), tree.tailSet(from, false));
+            }
+        }
+    }
+
+    @Test
+    public void nestedAndDescendingViews() {
+        for (TreeBalancing balancing : TreeBalancing.values()) {
+            BSTTreeSet<Integer> tree = balancing.newTreeSet();
+            TreeSet<Integer> expected = new TreeSet<>();
+            fillWithEvenNumbers(tree, expected);
+
+            NavigableSet<Integer> expectedView = expected.subSet(100, true, 900, false).descendingSet().headSet(200, true).tailSet(500, false);
+            NavigableSet<Integer> treeView = tree.subSet(100, true, 900, false).descendingSet().headSet(200, true).tailSet(500, false);
+            assertSameSet(expectedView, treeView);
+            assertEquals(expectedView.comparator().compare(1, 2), treeView.comparator().compare(1, 2));
+            for (int i = 150; i < 950; i++) {
+                assertEquals(expectedView.lower(i), treeView.lower(i));
+                assertEquals(expectedView.floor(i), treeView.floor(i));
+                assertEquals(expectedView.ceiling(i), treeView.ceiling(i));
+                assertEquals(expectedView.higher(i), treeView.higher(i));
+                assertEquals(expectedView.contains(i), treeView.contains(i));
+            }
+        }
+    }
+
+    @Test
+    public void viewsAreLive() {
+        for (TreeBalancing balancing : TreeBalancing.values()) {
+            BSTTreeSet<Integer> tree = balancing.newTreeSet();
+            tree.addAll(Arrays.asList(10, 20, 30, 40, 50));
+            NavigableSet<Integer> view = tree.subSet(15, true, 45, true);
+
+            assertEquals(3, view.size());
+            tree.add(35);
+            tree.add(100);
+            assertEquals(4, view.size());
+            assertTrue(view.remove(20));
+            assertFalse(view.remove(10));
+            assertFalse(tree.contains(20));
+            assertTrue(view.add(25));
+            assertTrue(tree.contains(25));
+            assertEquals(Integer.valueOf(25), view.pollFirst());
+            assertEquals(Integer.valueOf(40), view.pollLast());
+            assertArrayEquals(new Object[] {30, 35}, view.toArray());
+            assertArrayEquals(new Object[] {10, 30, 35, 50, 100}, tree.toArray());
+            assertTrue(tree.areNodeRelationsFine(tree.getRootNode()));
+        }
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void addingOutOfRangeOfViewNotAllowed() {
+        BSTTreeSet<Integer> tree = new BSTTreeSet<>();
+        tree.headSet(10).add(10);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void nestedViewCannotExceedRange() {
+        BSTTreeSet<Integer> tree = new BSTTreeSet<>();
+        tree.subSet(10, 20).tailSet(5);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void subSetBoundsMustBeOrdered() {
+        BSTTreeSet<Integer> tree = new BSTTreeSet<>();
+        tree.subSet(20, 10);
+    }
+
+    @Test (expected = NoSuchElementException.class)
+    public void firstOfEmptySet() {
+        new BSTTreeSet<Integer>().first();
+    }
+
+    @Test (expected = NoSuchElementException.class)
+    public void lastOfEmptyView() {
+        BSTTreeSet<Integer> tree = new BSTTreeSet<>();
+        tree.addAll(Arrays.asList(1, 2, 3));
+        tree.subSet(5, 10).last();
+    }
+
+    @Test
+    public void pollFirstAndLast() {
+        for (TreeBalancing balancing : TreeBalancing.values()) {
+            BSTTreeSet<Integer> tree = balancing.newTreeSet();
+            TreeSet<Integer> expected = new TreeSet<>();
+            fillWithRandomNumbers(tree, expected);
+
+            while (!expected.isEmpty()) {
+                assertEquals(expected.pollFirst(), tree.pollFirst());
+                assertEquals(expected.pollLast(), tree.pollLast());
+            }
+            assertTrue(tree.isEmpty());
+            assertNull(tree.pollFirst());
+            assertNull(tree.pollLast());
+        }
+    }
+
+    @Test
+    public void iteratorRemoveWhileIteratingViews() {
+        for (TreeBalancing balancing : TreeBalancing.values()) {
+            BSTTreeSet<Integer> tree = balancing.newTreeSet();
+            TreeSet<Integer> expected = new TreeSet<>();
+            fillWithRandomNumbers(tree, expected);
+
+            removeEverySecond(expected.subSet(100, true, 1500, false).descendingSet().iterator());
+            removeEverySecond(tree.subSet(100, true, 1500, false).descendingSet().iterator());
+            removeEverySecond(expected.iterator());
+            removeEverySecond(tree.iterator());
+
+            assertArrayEquals(expected.toArray(), tree.toArray());
+            assertEquals(expected.size(), tree.size());
+            assertTrue(tree.areNodeRelationsFine(tree.getRootNode()));
+        }
+    }
+
+    @Test (expected = ConcurrentModificationException.class)
+    public void viewIteratorIsFailFast() {
+        BSTTreeSet<Integer> tree = new BSTTreeSet<>();
+        tree.addAll(Arrays.asList(1, 2, 3));
+        Iterator<Integer> it = tree.headSet(3).iterator();
+        tree.add(0);
+        it.next();
+    }
+
+    @Test
+    public void comparatorOfTree() {
+        assertNull(new BSTTreeSet<Integer>().comparator());
+        Comparator<Integer> comparator = new ReverseOrderComparator();
+        BSTTreeSet<Integer> tree = new BSTTreeSet<>(comparator);
+        assertSame(comparator, tree.comparator());
+        tree.addAll(Arrays.asList(1, 3, 2));
+        assertArrayEquals(new Object[] {3, 2, 1}, tree.toArray());
+        assertArrayEquals(new Object[] {1, 2, 3}, tree.descendingSet().toArray());
+    }
+
+    private static void fillWithEvenNumbers(Set<Integer> tree, Set<Integer> expected) {
+        for (int i = 0; i < NUMBER_OF_ELEMENTS; i++) {
+            tree.add(2 * i);
+            expected.add(2 * i);
+        }
+    }
+
+    private static void fillWithRandomNumbers(Set<Integer> tree, Set<Integer> expected) {
+        Random random = new Random(2014);
+        for (int i = 0; i < NUMBER_OF_ELEMENTS; i++) {
+            Integer element = random.nextInt(2 * NUMBER_OF_ELEMENTS);
+            assertEquals(expected.add(element), tree.add(element));
+        }
+    }
+
+    private static void removeEverySecond(Iterator<Integer> it) {
+        for (boolean remove = false; it.hasNext(); remove = !remove) {
+            it.next();
+            if (remove) {
+                it.remove();
+            }
+        }
+    }
+
+    private static void assertSameSet(NavigableSet<Integer> expected, NavigableSet<Integer> actual) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.isEmpty(), actual.isEmpty());
+        assertArrayEquals(expected.toArray(), actual.toArray());
+        assertIteratorsEqual(expected.descendingIterator(), actual.descendingIterator());
+        if (!expected.isEmpty()) {
+            assertEquals(expected.first(), actual.first());
+            assertEquals(expected.last(), actual.last());
+        }
+    }
+
+    private static void assertIteratorsEqual(Iterator<Integer> expected, Iterator<Integer> actual) {
+        while (expected.hasNext()) {
+            assertTrue(actual.hasNext());
+            assertEquals(expected.next(), actual.next());
+        }
+        assertFalse(actual.hasNext());
+    }
+}
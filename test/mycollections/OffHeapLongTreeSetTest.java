@@ -0,0 +1,146 @@
+package mycollections;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing OffHeapLongTreeSet, using java.util.TreeSet as reference implementation. Small chunks are used, so the tree spreads over many of them.
+ */
+public class OffHeapLongTreeSetTest {
+
+    private static final int NUMBER_OF_ELEMENTS = 100000;
+    private static final int SMALL_CHUNK_SHIFT = 6;
+
+    @Test
+    public void sameAsTreeSet() {
+        try (OffHeapLongTreeSet set = new OffHeapLongTreeSet(SMALL_CHUNK_SHIFT)) {
+            TreeSet<Long> expected = new TreeSet<>();
+            Random random = new Random(2014);
+            for (int i = 0; i < NUMBER_OF_ELEMENTS; i++) {
+                long value = random.nextInt(NUMBER_OF_ELEMENTS) * 1000000007L;
+                if (random.nextInt(3) == 0) {
+                    assertEquals(expected.remove(value), set.remove(value));
+                } else {
+                    assertEquals(expected.add(value), set.add(value));
+                }
+            }
+            assertEquals(expected.size(), set.longSize());
+            assertEquals(expected.size(), set.size());
+            assertTrue(set.isStructureFine());
+            long[] values = set.toLongArray();
+            int i = 0;
+            for (Long value : expected) {
+                assertEquals(value.longValue(), values[i++]);
+                assertTrue(set.contains(value.longValue()));
+            }
+            assertEquals(expected.first().longValue(), set.first());
+            assertEquals(expected.last().longValue(), set.last());
+            assertEquals(values[values.length / 2], set.select(values.length / 2));
+        }
+    }
+
+    @Test
+    public void balancedAfterSortedInsertions() {
+        try (OffHeapLongTreeSet set = new OffHeapLongTreeSet(SMALL_CHUNK_SHIFT)) {
+            for (long i = 0; i < NUMBER_OF_ELEMENTS; i++) {
+                set.add(i);
+            }
+            assertTrue(set.isStructureFine());
+            for (long i = 0; i < NUMBER_OF_ELEMENTS; i += 2) {
+                assertTrue(set.remove(i));
+            }
+            assertTrue(set.isStructureFine());
+            assertEquals(NUMBER_OF_ELEMENTS / 2, set.longSize());
+        }
+    }
+
+    @Test
+    public void slotsAreReused() {
+        try (OffHeapLongTreeSet set = new OffHeapLongTreeSet(SMALL_CHUNK_SHIFT)) {
+            for (long i = 0; i < 1000; i++) {
+                set.add(i);
+            }
+            long capacity = set.getStore().capacity();
+            for (int round = 0; round < 10; round++) {
+                for (long i = 0; i < 1000; i += 2) {
+                    set.remove(i);
+                }
+                for (long i = 0; i < 1000; i += 2) {
+                    set.add(i);
+                }
+            }
+            assertEquals(capacity, set.getStore().capacity());
+        }
+    }
+
+    @Test
+    public void iteratorRemove() {
+        try (OffHeapLongTreeSet set = new OffHeapLongTreeSet(SMALL_CHUNK_SHIFT)) {
+            for (long i = 0; i < 1000; i++) {
+                set.add(i);
+            }
+            long expected = 0;
+            for (PrimitiveIterator.OfLong it = set.longIterator(); it.hasNext(); expected++) {
+                long value = it.nextLong();
+                assertEquals(expected, value);
+                if (value % 3 != 0) {
+                    it.remove();
+                }
+            }
+            assertEquals(334, set.longSize());
+            assertTrue(set.isStructureFine());
+        }
+    }
+
+    @Test
+    public void setMethodsWorkOnBoxedValues() {
+        try (OffHeapLongTreeSet set = new OffHeapLongTreeSet()) {
+            Collection<Long> collection = set;
+            assertTrue(collection.addAll(Arrays.asList(3L, 1L, 2L)));
+            assertTrue(collection.contains(2L));
+            assertFalse(collection.contains(2));
+            assertTrue(collection.remove(1L));
+            assertEquals(new HashSet<>(Arrays.asList(2L, 3L)), collection);
+        }
+    }
+
+    @Test
+    public void clearFreesChunks() {
+        try (OffHeapLongTreeSet set = new OffHeapLongTreeSet(SMALL_CHUNK_SHIFT)) {
+            set.addAll(1, 2, 3);
+            set.clear();
+            assertTrue(set.isEmpty());
+            assertEquals(0, set.getStore().capacity());
+            set.add(4);
+            assertArrayEquals(new long[] {4}, set.toLongArray());
+        }
+    }
+
+    @Test (expected = IllegalStateException.class)
+    public void cannotBeUsedAfterClose() {
+        OffHeapLongTreeSet set = new OffHeapLongTreeSet();
+        set.add(1);
+        set.close();
+        set.close(); // second close does nothing
+        assertTrue(set.getStore().isClosed());
+        set.contains(1);
+    }
+
+    @Test (expected = ConcurrentModificationException.class)
+    public void iteratorIsFailFast() {
+        try (OffHeapLongTreeSet set = new OffHeapLongTreeSet()) {
+            set.addAll(1, 2, 3);
+            PrimitiveIterator.OfLong it = set.longIterator();
+            set.add(4);
+            it.nextLong();
+        }
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void chunkMustFitIntoByteBuffer() {
+        new OffHeapNodeStore(30);
+    }
+}
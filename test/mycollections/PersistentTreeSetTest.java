@@ -0,0 +1,137 @@
+package mycollections;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static mycollections.ManyThreads.runInThreads;
+import static org.junit.Assert.*;
+
+/**
+ * Testing PersistentTreeSet: general Collection tests, plus snapshots, iteration during changes and sharing of nodes between versions.
+ */
+public class PersistentTreeSetTest extends CollectionOrderGuaranteedTests {
+
+    private static final int NUMBER_OF_ELEMENTS = 100000;
+
+    @Override
+    protected <E> Collection<E> createEmptyCollection() {
+        return new PersistentTreeSet<>();
+    }
+
+    @Test
+    public void sameAsTreeSet() {
+        PersistentTreeSet<Integer> set = new PersistentTreeSet<>();
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(2014);
+        for (int i = 0; i < NUMBER_OF_ELEMENTS; i++) {
+            Integer element = random.nextInt(NUMBER_OF_ELEMENTS / 10);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(element), set.remove(element));
+            } else {
+                assertEquals(expected.add(element), set.add(element));
+            }
+        }
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(set));
+        assertEquals(expected.size(), set.size());
+        assertEquals(expected.first(), set.first());
+        assertEquals(expected.last(), set.last());
+        assertAVLTree(set.getRoot());
+    }
+
+    @Test
+    public void balancedAfterSortedInsertions() {
+        PersistentTreeSet<Integer> set = new PersistentTreeSet<>(Comparator.reverseOrder());
+        for (int i = 0; i < NUMBER_OF_ELEMENTS; i++) {
+            set.add(i);
+        }
+        int height = assertAVLTree(set.getRoot());
+        assertTrue(height <= 1.44 * Math.log(NUMBER_OF_ELEMENTS + 2) / Math.log(2));
+        assertEquals(Integer.valueOf(NUMBER_OF_ELEMENTS - 1), set.first());
+    }
+
+    @Test
+    public void snapshotAndSetChangeIndependently() {
+        PersistentTreeSet<Integer> set = new PersistentTreeSet<>();
+        set.addAll(Arrays.asList(1, 2, 3));
+
+        PersistentTreeSet<Integer> snapshot = set.snapshot();
+        set.add(4);
+        set.remove(1);
+        snapshot.add(0);
+
+        assertEquals(Arrays.asList(2, 3, 4), new ArrayList<>(set));
+        assertEquals(Arrays.asList(0, 1, 2, 3), new ArrayList<>(snapshot));
+    }
+
+    @Test
+    public void iteratorSeesVersionFromItsCreation() {
+        PersistentTreeSet<Integer> set = new PersistentTreeSet<>();
+        for (int i = 0; i < 1000; i++) {
+            set.add(i);
+        }
+        int expected = 0;
+        for (Iterator<Integer> it = set.iterator(); it.hasNext(); expected++) {
+            assertEquals(Integer.valueOf(expected), it.next());
+            set.add(-expected - 1); // no ConcurrentModificationException
+            if (expected % 2 == 0) {
+                it.remove();
+            }
+        }
+        assertEquals(1000, expected);
+        assertEquals(1500, set.size());
+        assertFalse(set.contains(0));
+        assertTrue(set.contains(-1000));
+    }
+
+    @Test
+    public void versionsShareUnchangedNodes() {
+        PersistentTreeSet<Integer> set = new PersistentTreeSet<>();
+        for (int i = 0; i < NUMBER_OF_ELEMENTS; i++) {
+            set.add(i);
+        }
+        PersistentTreeSet<Integer> snapshot = set.snapshot();
+        for (int i = 0; i < 10; i++) {
+            set.add(NUMBER_OF_ELEMENTS + i);
+            set.remove(i * 1000);
+        }
+
+        Set<PersistentTreeSet.TreeNode<Integer>> nodes = Collections.newSetFromMap(new IdentityHashMap<>());
+        collectNodes(set.getRoot(), nodes);
+        collectNodes(snapshot.getRoot(), nodes);
+        int height = set.getRoot().height;
+        assertTrue("nodes of both versions: " + nodes.size(), nodes.size() <= NUMBER_OF_ELEMENTS + 20 * (height + 2));
+    }
+
+    @Test
+    public void concurrentWritersLoseNoUpdates() throws InterruptedException {
+        PersistentTreeSet<Integer> set = new PersistentTreeSet<>();
+        runInThreads(4, thread -> {
+            for (int i = 0; i < 10000; i++) {
+                set.add(i * 4 + thread);
+            }
+        });
+        assertEquals(40000, set.size());
+        assertAVLTree(set.getRoot());
+    }
+
+    private static void collectNodes(PersistentTreeSet.TreeNode<Integer> node, Set<PersistentTreeSet.TreeNode<Integer>> nodes) {
+        if (node != null && nodes.add(node)) {
+            collectNodes(node.left, nodes);
+            collectNodes(node.right, nodes);
+        }
+    }
+
+    /**
+     * @return height of the subtree
+     */
+    private static int assertAVLTree(PersistentTreeSet.TreeNode<?> node) {
+        if (node == null) return 0;
+        int leftHeight = assertAVLTree(node.left);
+        int rightHeight = assertAVLTree(node.right);
+        assertTrue(Math.abs(rightHeight - leftHeight) <= 1);
+        assertEquals(1 + Math.max(leftHeight, rightHeight), node.height);
+        assertEquals(1 + (node.left == null ? 0 : node.left.size) + (node.right == null ? 0 : node.right.size), node.size);
+        return node.height;
+    }
+}
@@ -17,10 +17,97 @@ import static org.junit.Assert.*;
  */
 public class PreOrderTreeIteratorTest {
 
+    /**
+     * Returns elements of the tree in pre-order, which shows the shape of the tree (unlike toArray(), which returns elements in ascending order).
+     */
+    static Object[] toPreOrderArray(BSTTreeSet<?> tree) {
+        List<Object> elements = new ArrayList<>();
+        for (Iterator<?> it = new PreOrderTreeIterator<>(tree); it.hasNext(); ) {
+            elements.add(it.next());
+        }
+        return elements.toArray();
+    }
+
+    /**
+     * Left path of 500 nodes, every one with a right son: after the whole path is visited, iteration walks back up through parent links,
+     * visiting right sons on the way. Then the same walk with removal of every other node of the path.
+     */
+    @Test
+    public void deepDegeneratedTree() {
+        BSTTreeSet<Integer> tree = new BSTTreeSet<>();
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 1000; i > 0; i -= 2) {
+            tree.add(i);
+            tree.add(i + 1);
+            expected.add(i);
+        }
+        for (int i = 2; i <= 1000; i += 2) {
+            expected.add(i + 1); // right sons are visited after the whole left path, going back up
+        }
+
+        assertArrayEquals(expected.toArray(), toPreOrderArray(tree));
+
+        for (Iterator<Integer> it = new PreOrderTreeIterator<Integer>(tree); it.hasNext(); ) {
+            if (it.next() % 4 == 0) {
+                it.remove();
+            }
+        }
+        assertEquals(750, tree.size());
+        assertTrue(tree.areNodeRelationsFine(tree.getRootNode()));
+    }
+
+    @Test
+    public void removeAfterHasNextForNodeWithBothSons() {
+        BSTTreeSet<Integer> tree = new BSTTreeSet<>();
+        tree.addAll(Arrays.asList(80, 40, 20, 44, 42, 90));
+        Iterator<Integer> it = new PreOrderTreeIterator<>(tree);
+        assertEquals(Integer.valueOf(80), it.next());
+        assertEquals(Integer.valueOf(40), it.next());
+        assertTrue(it.hasNext()); // finds 20, but 40 is replaced by 42, which must be visited first
+        it.remove();
+        List<Integer> rest = new ArrayList<>();
+        it.forEachRemaining(rest::add);
+
+        assertEquals(Arrays.asList(42, 20, 44, 90), rest);
+        assertArrayEquals(new Object[] {80, 42, 20, 44, 90}, toPreOrderArray(tree));
+    }
+
+    @Test
+    public void removeAfterHasNextForLeaf() {
+        BSTTreeSet<Integer> tree = new BSTTreeSet<>();
+        tree.addAll(Arrays.asList(80, 40, 20, 44, 90));
+        Iterator<Integer> it = new PreOrderTreeIterator<>(tree);
+        it.next();
+        it.next();
+        assertEquals(Integer.valueOf(20), it.next());
+        assertTrue(it.hasNext());
+        it.remove();
+        List<Integer> rest = new ArrayList<>();
+        it.forEachRemaining(rest::add);
+
+        assertEquals(Arrays.asList(44, 90), rest);
+        assertArrayEquals(new Object[] {80, 40, 44, 90}, toPreOrderArray(tree));
+    }
+
+    @Test
+    public void removeAfterEmittedNullRemovesNothing() {
+        BSTTreeSet<Integer> tree = new BSTTreeSet<>();
+        tree.addAll(Arrays.asList(2, 3));
+        Iterator<Integer> it = new PreOrderTreeIterator<>(tree, true);
+        assertEquals(Integer.valueOf(2), it.next());
+        assertNull(it.next()); // missing left son of 2
+        it.remove();
+
+        List<Integer> rest = new ArrayList<>();
+        it.forEachRemaining(rest::add);
+        assertEquals(Arrays.asList(3, null, null), rest);
+        assertEquals(2, tree.size());
+    }
+
     @Test
     public void emptyTree() {
         BSTTreeSet<Integer> tree = new BSTTreeSet<Integer>();
-        Iterator<Integer> it = tree.iterator();
+        Iterator<Integer> it = new PreOrderTreeIterator<Integer>(tree);
         assertFalse(it.hasNext());
     }
 
@@ -30,7 +117,7 @@ public class PreOrderTreeIteratorTest {
         tree.add(2);
         tree.add(1);
         tree.add(3);
-        Iterator<Integer> it = tree.iterator();
+        Iterator<Integer> it = new PreOrderTreeIterator<Integer>(tree);
         assertTrue(it.hasNext());
         assertEquals(Integer.valueOf(2), it.next());
         assertTrue(it.hasNext());
@@ -44,7 +131,7 @@ public class PreOrderTreeIteratorTest {
     public void bugWithIteratorNotWorkingOnOneElementTree() {
         BSTTreeSet<Integer> tree = new BSTTreeSet<>();
         tree.add(10);
-        Iterator<Integer> it = tree.iterator();
+        Iterator<Integer> it = new PreOrderTreeIterator<Integer>(tree);
         assertEquals(Integer.valueOf(10), it.next());
         assertFalse(it.hasNext());
         try {
@@ -64,7 +151,7 @@ public class PreOrderTreeIteratorTest {
         tree.add(25);
         tree.add(11);
 
-        Iterator<Integer> it = tree.iterator();
+        Iterator<Integer> it = new PreOrderTreeIterator<Integer>(tree);
         assertTrue(it.hasNext());
         assertEquals(Integer.valueOf(10), it.next());
         assertTrue(it.hasNext());
@@ -83,7 +170,7 @@ public class PreOrderTreeIteratorTest {
         BSTTreeSet<Integer> tree = new BSTTreeSet<>();
         tree.add(2);
         tree.add(1);
-        Iterator<Integer> it = tree.iterator();
+        Iterator<Integer> it = new PreOrderTreeIterator<Integer>(tree);
         try {
             it.next();
             it.next();
@@ -96,7 +183,7 @@ public class PreOrderTreeIteratorTest {
     @Test(expected = NoSuchElementException.class)
     public void testProperExceptionThrownWhenNoMoreElementsOnEmptyTree() {
         BSTTreeSet<Integer> tree = new BSTTreeSet<>();
-        Iterator<Integer> it = tree.iterator();
+        Iterator<Integer> it = new PreOrderTreeIterator<Integer>(tree);
         assert !it.hasNext();
         it.next();
     }
@@ -106,7 +193,7 @@ public class PreOrderTreeIteratorTest {
         BSTTreeSet<Integer> tree = new BSTTreeSet<>();
         tree.add(1);
         tree.add(2);
-        Iterator<Integer> it = tree.iterator();
+        Iterator<Integer> it = new PreOrderTreeIterator<Integer>(tree);
         it.next();
         tree.add(10); // concurrent modification
         it.next();
@@ -157,7 +244,7 @@ public class PreOrderTreeIteratorTest {
         tree.add(1);
         tree.add(3);
         tree.add(4);
-        Iterator<Integer> it = tree.iterator();
+        Iterator<Integer> it = new PreOrderTreeIterator<Integer>(tree);
         it.next(); // 2;
 
         it.next(); // 1;
@@ -176,7 +263,7 @@ public class PreOrderTreeIteratorTest {
         tree.add(1);
         tree.add(3);
 
-        Iterator<Integer> it = tree.iterator();
+        Iterator<Integer> it = new PreOrderTreeIterator<Integer>(tree);
         it.next();
 
         it.remove();
@@ -190,7 +277,7 @@ public class PreOrderTreeIteratorTest {
         tree.add(1);
         tree.add(3);
 
-        Iterator<Integer> it = tree.iterator();
+        Iterator<Integer> it = new PreOrderTreeIterator<Integer>(tree);
 
         it.remove();
     }
@@ -215,7 +302,7 @@ public class PreOrderTreeIteratorTest {
         tree.add(44);
         tree.add(42);
 
-        Iterator<Integer> it = tree.iterator();
+        Iterator<Integer> it = new PreOrderTreeIterator<Integer>(tree);
 
         // scroll iterator to node 40
         it.next(); // 80
@@ -311,7 +398,7 @@ public class PreOrderTreeIteratorTest {
         tree.add(44);
         tree.add(42);
 
-        Iterator<Integer> it = tree.iterator();
+        Iterator<Integer> it = new PreOrderTreeIterator<Integer>(tree);
 
         // scroll iterator to node 40
         it.next(); // 80
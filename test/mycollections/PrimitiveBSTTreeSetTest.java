@@ -0,0 +1,207 @@
+package mycollections;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing IntBSTTreeSet and LongBSTTreeSet, using java.util.TreeSet as reference implementation.
+ */
+public class PrimitiveBSTTreeSetTest {
+
+    private static final int NUMBER_OF_ELEMENTS = 100000;
+
+    @Test
+    public void intSetSameAsTreeSet() {
+        IntBSTTreeSet set = new IntBSTTreeSet();
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(2014);
+        for (int i = 0; i < NUMBER_OF_ELEMENTS; i++) {
+            int value = random.nextInt(NUMBER_OF_ELEMENTS) - NUMBER_OF_ELEMENTS / 2;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(value), set.remove(value));
+            } else {
+                assertEquals(expected.add(value), set.add(value));
+            }
+        }
+        assertEquals(expected.size(), set.size());
+        assertTrue(set.isStructureFine());
+        int[] values = set.toIntArray();
+        int i = 0;
+        for (Integer value : expected) {
+            assertEquals(value.intValue(), values[i++]);
+            assertTrue(set.contains(value.intValue()));
+        }
+        assertEquals(expected.first().intValue(), set.first());
+        assertEquals(expected.last().intValue(), set.last());
+        for (int k = 0; k < values.length; k += 97) {
+            assertEquals(values[k], set.select(k));
+            assertEquals(k, set.rank(values[k]));
+        }
+    }
+
+    @Test
+    public void longSetSameAsTreeSet() {
+        LongBSTTreeSet set = new LongBSTTreeSet();
+        TreeSet<Long> expected = new TreeSet<>();
+        Random random = new Random(2014);
+        for (int i = 0; i < NUMBER_OF_ELEMENTS; i++) {
+            long value = random.nextLong() % NUMBER_OF_ELEMENTS * Integer.MAX_VALUE; // values not fitting in int
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(value), set.remove(value));
+            } else {
+                assertEquals(expected.add(value), set.add(value));
+            }
+        }
+        assertEquals(expected.size(), set.size());
+        assertTrue(set.isStructureFine());
+        long[] values = set.toLongArray();
+        int i = 0;
+        for (Long value : expected) {
+            assertEquals(value.longValue(), values[i++]);
+        }
+        assertEquals(expected.first().longValue(), set.first());
+        assertEquals(expected.last().longValue(), set.last());
+    }
+
+    @Test
+    public void balancedAfterSortedInsertions() {
+        IntBSTTreeSet set = new IntBSTTreeSet();
+        for (int i = 0; i < NUMBER_OF_ELEMENTS; i++) {
+            set.add(i);
+        }
+        assertEquals(NUMBER_OF_ELEMENTS, set.size());
+        assertTrue(set.isStructureFine()); // includes AVL balance check
+        for (int i = 0; i < NUMBER_OF_ELEMENTS; i += 2) {
+            assertTrue(set.remove(i));
+        }
+        assertTrue(set.isStructureFine());
+        assertEquals(1, set.first());
+    }
+
+    @Test
+    public void primitiveIteratorInAscendingOrder() {
+        LongBSTTreeSet set = new LongBSTTreeSet(5, -3, 10, 7, 0);
+        PrimitiveIterator.OfLong it = set.longIterator();
+        long[] expected = {-3, 0, 5, 7, 10};
+        for (long value : expected) {
+            assertTrue(it.hasNext());
+            assertEquals(value, it.nextLong());
+        }
+        assertFalse(it.hasNext());
+    }
+
+    @Test
+    public void iteratorRemove() {
+        IntBSTTreeSet set = new IntBSTTreeSet();
+        for (int i = 0; i < 1000; i++) {
+            set.add(i);
+        }
+        int expected = 0;
+        for (PrimitiveIterator.OfInt it = set.intIterator(); it.hasNext(); expected++) {
+            int value = it.nextInt();
+            assertEquals(expected, value);
+            if (value % 3 != 0) {
+                it.remove();
+            }
+        }
+        assertEquals(1000, expected);
+        assertEquals(334, set.size());
+        assertTrue(set.isStructureFine());
+    }
+
+    @Test (expected = ConcurrentModificationException.class)
+    public void iteratorIsFailFast() {
+        IntBSTTreeSet set = new IntBSTTreeSet(1, 2, 3);
+        PrimitiveIterator.OfInt it = set.intIterator();
+        set.add(4);
+        it.nextInt();
+    }
+
+    @Test (expected = IllegalStateException.class)
+    public void iteratorRemoveTwice() {
+        IntBSTTreeSet set = new IntBSTTreeSet(1, 2, 3);
+        PrimitiveIterator.OfInt it = set.intIterator();
+        it.nextInt();
+        it.remove();
+        it.remove();
+    }
+
+    @Test
+    public void bulkOperations() {
+        IntBSTTreeSet set = new IntBSTTreeSet();
+        assertTrue(set.addAll(4, 2, 4, 8, 6));
+        assertFalse(set.addAll(2, 8));
+        assertTrue(set.containsAll(2, 4, 6, 8));
+        assertFalse(set.containsAll(2, 3));
+        assertTrue(set.removeAll(2, 3, 6));
+        assertFalse(set.removeAll(3));
+        assertArrayEquals(new int[] {4, 8}, set.toIntArray());
+    }
+
+    @Test
+    public void collectionMethodsWorkOnBoxedValues() {
+        IntBSTTreeSet set = new IntBSTTreeSet();
+        Collection<Integer> collection = set;
+        assertTrue(collection.addAll(Arrays.asList(3, 1, 2)));
+        assertTrue(collection.contains(2));
+        assertFalse(collection.contains("2"));
+        assertFalse(collection.contains(2L));
+        assertTrue(collection.remove(Integer.valueOf(1)));
+        assertEquals(new HashSet<>(Arrays.asList(2, 3)), collection);
+        assertEquals("[2, 3]", collection.toString());
+    }
+
+    @Test
+    public void slotsAreReused() {
+        IntBSTTreeSet set = new IntBSTTreeSet();
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 1000; i++) {
+                set.add(i);
+            }
+            for (int i = 0; i < 1000; i++) {
+                set.remove(i);
+            }
+        }
+        assertTrue(set.isEmpty());
+        assertTrue(set.left.length <= 1024);
+    }
+
+    @Test
+    public void clear() {
+        LongBSTTreeSet set = new LongBSTTreeSet(1, 2, 3);
+        set.clear();
+        assertTrue(set.isEmpty());
+        assertFalse(set.contains(1));
+        set.add(4);
+        assertArrayEquals(new long[] {4}, set.toLongArray());
+    }
+
+    @Test (expected = NoSuchElementException.class)
+    public void firstOfEmptySet() {
+        new IntBSTTreeSet().first();
+    }
+
+    @Test
+    public void serializeDeserialize() throws IOException, ClassNotFoundException {
+        IntBSTTreeSet originalSet = new IntBSTTreeSet();
+        for (int i = 0; i < 1000; i++) {
+            originalSet.add(i * 31 % 1000);
+        }
+        IntBSTTreeSet deserializedSet;
+        try (ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+             ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(originalSet);
+            try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+                deserializedSet = (IntBSTTreeSet) ois.readObject();
+            }
+        }
+        assertArrayEquals(originalSet.toIntArray(), deserializedSet.toIntArray());
+        assertTrue(deserializedSet.isStructureFine());
+        deserializedSet.add(5000);
+        assertEquals(1001, deserializedSet.size());
+    }
+}
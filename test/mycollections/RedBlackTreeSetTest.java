@@ -0,0 +1,181 @@
+package mycollections;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing RedBlackTreeSet, using general Collection tests, plus red-black rules checked after every test.
+ */
+public class RedBlackTreeSetTest extends CollectionOrderGuaranteedTests {
+
+    private static final int NUMBER_OF_ELEMENTS = 100000;
+
+    @Override
+    protected <E> Collection<E> createEmptyCollection() {
+        return TreeBalancing.RED_BLACK.newTreeSet();
+    }
+
+    /**
+     * Red-black tree rebalances while inserting 10, 20, 30, 1, 2, 3, 100, 200:
+     * <pre>
+     *            20
+     *          /    \
+     *         2      100
+     *        / \    /   \
+     *       1  10  30   200
+     *         /
+     *        3
+     * </pre>
+     */
+    @Test
+    public void shapeAfterInsertions() {
+        cInt.addAll(Arrays.asList(10, 20, 30, 1, 2, 3, 100, 200));
+
+        assertArrayEquals(new Object[] {20, 2, 1, 10, 3, 100, 30, 200}, PreOrderTreeIteratorTest.toPreOrderArray((BSTTreeSet<?>) cInt));
+    }
+
+    @Test
+    public void balancingSelectableAtConstruction() {
+        assertEquals(BSTTreeSet.class, TreeBalancing.NONE.newTreeSet().getClass());
+        assertEquals(MyAVLTreeSet.class, TreeBalancing.AVL.newTreeSet().getClass());
+        assertEquals(RedBlackTreeSet.class, TreeBalancing.RED_BLACK.newTreeSet(new ReverseOrderComparator()).getClass());
+    }
+
+    @Test
+    public void heightBoundAfterSortedInsertions() {
+        BSTTreeSet<Integer> tree = TreeBalancing.RED_BLACK.newTreeSet();
+        for (int i = 0; i < NUMBER_OF_ELEMENTS; i++) {
+            tree.add(i);
+        }
+        assertEquals(NUMBER_OF_ELEMENTS, tree.size());
+        assertHeightWithinRedBlackBound(tree);
+    }
+
+    @Test
+    public void heightBoundAfterReverseSortedInsertionsAndRemovals() {
+        BSTTreeSet<Integer> tree = TreeBalancing.RED_BLACK.newTreeSet();
+        for (int i = NUMBER_OF_ELEMENTS; i > 0; i--) {
+            tree.add(i);
+        }
+        for (int i = 1; i <= NUMBER_OF_ELEMENTS; i += 3) {
+            assertTrue(tree.remove(i));
+        }
+        assertHeightWithinRedBlackBound(tree);
+    }
+
+    @Test
+    public void heightBoundAfterRandomInsertionsAndRemovals() {
+        BSTTreeSet<Integer> tree = (BSTTreeSet<Integer>) createCollectionOfIntegersWithRandomContent(NUMBER_OF_ELEMENTS);
+
+        Random random = new Random(2014);
+        Set<Integer> expected = new HashSet<>(tree);
+        for (int i = 0; i < NUMBER_OF_ELEMENTS; i++) {
+            Integer element = random.nextInt(2 * NUMBER_OF_ELEMENTS);
+            if (random.nextBoolean()) {
+                assertEquals(expected.remove(element), tree.remove(element));
+            } else {
+                assertEquals(expected.add(element), tree.add(element));
+            }
+        }
+        assertEquals(expected.size(), tree.size());
+        assertTrue(tree.containsAll(expected));
+        assertHeightWithinRedBlackBound(tree);
+        assertTrue("subtree sizes must be kept by rotations", tree.areNodeRelationsFine(tree.getRootNode()));
+        List<Integer> sorted = new ArrayList<>(expected);
+        Collections.sort(sorted);
+        for (int k = 0; k < sorted.size(); k += 97) {
+            assertEquals(sorted.get(k), tree.select(k));
+            assertEquals(k, tree.rank(sorted.get(k)));
+        }
+    }
+
+    @Test
+    public void coloursRestoredAfterDeserialization() throws IOException, ClassNotFoundException {
+        BSTTreeSet<Integer> originalTree = (BSTTreeSet<Integer>) createCollectionOfIntegersWithRandomContent(1000);
+
+        BSTTreeSet<Integer> deserializedTree;
+        try (ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+             ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(originalTree);
+            try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+                deserializedTree = (BSTTreeSet<Integer>) ois.readObject();
+            }
+        }
+        assertEquals(originalTree.size(), deserializedTree.size());
+        assertTrue(deserializedTree.containsAll(originalTree));
+        assertRedBlackRules(deserializedTree);
+    }
+
+    @Test
+    public void loadSortedColoursNodes() {
+        for (int n = 0; n < 300; n++) {
+            List<Integer> sorted = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                sorted.add(i);
+            }
+            BSTTreeSet<Integer> tree = TreeBalancing.RED_BLACK.newTreeSetFromSorted(sorted, null);
+            assertEquals(n, tree.size());
+            assertRedBlackRules(tree);
+            assertTrue(tree.areNodeRelationsFine(tree.getRootNode()));
+        }
+        BSTTreeSet<Integer> tree = TreeBalancing.RED_BLACK.newTreeSetFromSorted(new Integer[] {1, 2, 3, 4, 5, 6}, null);
+        for (int i = 1; i <= 6; i += 2) {
+            tree.remove(i);
+        }
+        tree.add(10);
+        assertHeightWithinRedBlackBound(tree);
+    }
+
+    @After
+    public void treeSanityCheck() {
+        BSTTreeSet tree = (BSTTreeSet)c;
+        BSTTreeSet treeInt = (BSTTreeSet)cInt;
+
+        assertTrue(tree.areNodeRelationsFine(tree.getRootNode()));
+        assertTrue(treeInt.areNodeRelationsFine(treeInt.getRootNode()));
+        assertRedBlackRules(tree);
+        assertRedBlackRules(treeInt);
+    }
+
+    private static void assertHeightWithinRedBlackBound(BSTTreeSet<?> tree) {
+        int height = height(tree.getRootNode());
+        double bound = 2 * Math.log(tree.size() + 1) / Math.log(2);
+        assertTrue("height " + height + " exceeds red-black bound " + bound + " for " + tree.size() + " elements", height <= bound);
+        assertRedBlackRules(tree);
+    }
+
+    private static void assertRedBlackRules(BSTTreeSet<?> tree) {
+        Node<?> root = tree.getRootNode();
+        if (root != null) {
+            assertFalse("root must be black", ((ColouredNode<?>) root).isRed());
+        }
+        blackHeight(root);
+    }
+
+    /**
+     * checks that red node has no red sons and that both subtrees have the same number of black nodes on every path
+     * @return number of black nodes on path from the node to empty leaf
+     */
+    private static int blackHeight(Node<?> node) {
+        if (node == null) return 1;
+        boolean red = ((ColouredNode<?>) node).isRed();
+        if (red) {
+            assertFalse("red node cannot have red left son", node.hasLeftSon() && ((ColouredNode<?>) node.getLeftSon()).isRed());
+            assertFalse("red node cannot have red right son", node.hasRightSon() && ((ColouredNode<?>) node.getRightSon()).isRed());
+        }
+        int leftBlackHeight = blackHeight(node.getLeftSon());
+        int rightBlackHeight = blackHeight(node.getRightSon());
+        assertEquals("black height below node " + node.getValue(), leftBlackHeight, rightBlackHeight);
+        return leftBlackHeight + (red ? 0 : 1);
+    }
+
+    private static int height(Node<?> node) {
+        if (node == null) return 0;
+        return 1 + Math.max(height(node.getLeftSon()), height(node.getRightSon()));
+    }
+}
@@ -0,0 +1,351 @@
+package mycollections;
+
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing bulk set operations (addAll, retainAll, removeAll, split, join and parallel set algebra) of all tree variants, using java.util.TreeSet as reference implementation.
+ */
+public class SetOperationsTest {
+
+    private static final int NUMBER_OF_ELEMENTS = 2000;
+
+    @Test
+    public void mergedOperationsSameAsInTreeSet() {
+        for (TreeBalancing balancing : TreeBalancing.values()) {
+            for (NodeStorage storage : NodeStorage.values()) {
+                for (SetOperation operation : SetOperation.values()) {
+                    BSTTreeSet<Integer> tree = randomTree(balancing, storage, 1);
+                    BSTTreeSet<Integer> other = randomTree(balancing, storage, 2);
+                    TreeSet<Integer> expected = new TreeSet<>(tree);
+
+                    assertEquals(operation.apply(expected, new TreeSet<>(other)), operation.apply(tree, other));
+                    assertSameTree(expected, tree);
+                    assertTrue(height(tree.getRootNode()) <= BSTTreeSet.heightOfBalanced(tree.size())); // tree was rebuilt
+
+                    modifyBoth(tree, expected); // balancing information must be fine after rebuild
+                    assertSameTree(expected, tree);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void mergesWithTreeSetAndViews() {
+        for (TreeBalancing balancing : TreeBalancing.values()) {
+            BSTTreeSet<Integer> tree = randomTree(balancing, NodeStorage.REFERENCES, 3);
+            TreeSet<Integer> expected = new TreeSet<>(tree);
+            TreeSet<Integer> other = new TreeSet<>(randomTree(balancing, NodeStorage.REFERENCES, 4));
+
+            assertEquals(expected.addAll(other), tree.addAll(other));
+            assertSameTree(expected, tree);
+            assertEquals(expected.removeAll(other.headSet(NUMBER_OF_ELEMENTS)), tree.removeAll(other.headSet(NUMBER_OF_ELEMENTS)));
+            assertSameTree(expected, tree);
+            assertEquals(expected.retainAll(expected.tailSet(NUMBER_OF_ELEMENTS / 2)), tree.retainAll(tree.tailSet(NUMBER_OF_ELEMENTS / 2)));
+            assertSameTree(expected, tree);
+        }
+    }
+
+    @Test
+    public void operationsWithItself() {
+        BSTTreeSet<Integer> tree = randomTree(TreeBalancing.AVL, NodeStorage.REFERENCES, 5);
+        Object[] elements = tree.toArray();
+
+        assertFalse(tree.addAll(tree));
+        assertFalse(tree.retainAll(tree));
+        assertArrayEquals(elements, tree.toArray());
+        assertTrue(tree.removeAll(tree));
+        assertTrue(tree.isEmpty());
+    }
+
+    @Test
+    public void mergeComparesEveryElementOnce() {
+        int[] comparisons = new int[1];
+        Comparator<Integer> countingComparator = (o1, o2) -> {
+            comparisons[0]++;
+            return o1.compareTo(o2);
+        };
+        BSTTreeSet<Integer> evens = TreeBalancing.RED_BLACK.newTreeSet(countingComparator);
+        BSTTreeSet<Integer> odds = TreeBalancing.RED_BLACK.newTreeSet(countingComparator);
+        for (int i = 0; i < 100000; i += 2) {
+            evens.add(i);
+            odds.add(i + 1);
+        }
+        comparisons[0] = 0;
+
+        assertTrue(evens.addAll(odds));
+
+        assertTrue(comparisons[0] < 100000); // merge only, no search from the root for every element
+        assertEquals(100000, evens.size());
+        assertEquals(Integer.valueOf(54321), evens.select(54321));
+        assertTrue(evens.areNodeRelationsFine(evens.getRootNode()));
+    }
+
+    @Test
+    public void unchangedTreeIsNotRebuilt() {
+        BSTTreeSet<Integer> tree = randomTree(TreeBalancing.NONE, NodeStorage.REFERENCES, 6);
+        Node<Integer> root = tree.getRootNode();
+        Iterator<Integer> iterator = tree.iterator();
+
+        assertFalse(tree.addAll(new TreeSet<>(tree)));
+        assertFalse(tree.retainAll(new TreeSet<>(tree)));
+        assertFalse(tree.removeAll(randomTree(TreeBalancing.NONE, NodeStorage.REFERENCES, 6).tailSet(Integer.MAX_VALUE)));
+
+        assertSame(root, tree.getRootNode());
+        iterator.next(); // not failing, tree was not modified
+    }
+
+    @Test
+    public void differentOrderIsNotMerged() {
+        for (TreeBalancing balancing : TreeBalancing.values()) {
+            BSTTreeSet<Integer> tree = randomTree(balancing, NodeStorage.REFERENCES, 7);
+            TreeSet<Integer> expected = new TreeSet<>(tree);
+            BSTTreeSet<Integer> descending = balancing.newTreeSet(Comparator.reverseOrder());
+            descending.addAll(randomTree(balancing, NodeStorage.REFERENCES, 8));
+
+            assertEquals(expected.addAll(descending), tree.addAll(descending));
+            assertSameTree(expected, tree);
+            assertEquals(expected.retainAll(descending.descendingSet()), tree.retainAll(descending.descendingSet()));
+            assertSameTree(expected, tree);
+        }
+    }
+
+    @Test
+    public void splitSameAsHeadAndTailSet() {
+        for (TreeBalancing balancing : TreeBalancing.values()) {
+            for (int key : new int[] {-1, 0, 1, 777, 778, NUMBER_OF_ELEMENTS, 2 * NUMBER_OF_ELEMENTS}) {
+                BSTTreeSet<Integer> tree = randomTree(balancing, NodeStorage.REFERENCES, 9);
+                TreeSet<Integer> expected = new TreeSet<>(tree);
+
+                BSTTreeSet<Integer> greater = tree.split(key);
+
+                assertSameTree(new TreeSet<>(expected.headSet(key)), tree);
+                assertSameTree(new TreeSet<>(expected.tailSet(key)), greater);
+                if (balancing == TreeBalancing.AVL) {
+                    assertAVLTree(tree.getRootNode());
+                    assertAVLTree(greater.getRootNode());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void joinTreesOfDifferentHeights() {
+        for (TreeBalancing balancing : TreeBalancing.values()) {
+            for (int leftSize : new int[] {0, 1, 2, 10, 1000}) {
+                for (int rightSize : new int[] {0, 1, 3, 10, 1000}) {
+                    BSTTreeSet<Integer> left = balancing.newTreeSet();
+                    BSTTreeSet<Integer> right = balancing.newTreeSet();
+                    TreeSet<Integer> expected = new TreeSet<>();
+                    for (int i = 0; i < leftSize; i++) {
+                        left.add(i);
+                        expected.add(i);
+                    }
+                    for (int i = 0; i < rightSize; i++) {
+                        right.add(leftSize + 1 + i);
+                        expected.add(leftSize + 1 + i);
+                    }
+                    expected.add(leftSize);
+
+                    assertSame(left, BSTTreeSet.join(left, leftSize, right));
+
+                    assertSameTree(expected, left);
+                    assertTrue(right.isEmpty());
+                    if (balancing == TreeBalancing.AVL) {
+                        assertAVLTree(left.getRootNode());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void splitAndJoinBack() {
+        BSTTreeSet<Integer> tree = randomTree(TreeBalancing.AVL, NodeStorage.REFERENCES, 10);
+        Object[] elements = tree.toArray();
+        Random random = new Random(2014);
+        for (int i = 0; i < 100; i++) {
+            Integer key = tree.select(random.nextInt(tree.size()));
+            BSTTreeSet<Integer> greater = tree.split(key);
+            greater.remove(key);
+            BSTTreeSet.join(tree, key, greater);
+        }
+        assertArrayEquals(elements, tree.toArray());
+        assertAVLTree(tree.getRootNode());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void joinRejectsOverlappingSets() {
+        BSTTreeSet<Integer> left = TreeBalancing.AVL.newTreeSet();
+        left.addAll(Arrays.asList(1, 2, 3));
+        BSTTreeSet<Integer> right = TreeBalancing.AVL.newTreeSet();
+        right.addAll(Arrays.asList(3, 4, 5));
+        BSTTreeSet.join(left, 3, right);
+    }
+
+    @Test
+    public void parallelOperationsSameAsInTreeSet() {
+        for (TreeBalancing balancing : TreeBalancing.values()) {
+            for (SetOperation operation : SetOperation.values()) {
+                BSTTreeSet<Integer> first = bigRandomTree(balancing, 11);
+                BSTTreeSet<Integer> second = bigRandomTree(balancing, 12);
+                TreeSet<Integer> expected = new TreeSet<>(first);
+                operation.apply(expected, new TreeSet<>(second));
+
+                assertSame(first, operation.applyInParallel(first, second, ForkJoinPool.commonPool()));
+
+                assertSameTree(expected, first);
+                assertTrue(second.isEmpty());
+                if (balancing == TreeBalancing.AVL) {
+                    assertAVLTree(first.getRootNode());
+                }
+                modifyBoth(first, expected);
+                assertSameTree(expected, first);
+            }
+        }
+    }
+
+    @Test
+    public void forkingEveryTask() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (SetOperation operation : SetOperation.values()) {
+                BSTTreeSet<Integer> first = randomTree(TreeBalancing.AVL, NodeStorage.REFERENCES, 13);
+                BSTTreeSet<Integer> second = randomTree(TreeBalancing.AVL, NodeStorage.REFERENCES, 14);
+                TreeSet<Integer> expected = new TreeSet<>(first);
+                operation.apply(expected, new TreeSet<>(second));
+
+                AVLSplitJoin<Integer> splitJoin = new AVLSplitJoin<>(first, 1);
+                AVLSplitJoin.Subtree<Integer> result = pool.invoke(splitJoin.new SetOperationTask(operation.algebraOperation,
+                        AVLSplitJoin.Subtree.of(first.replaceRootNode(null)), AVLSplitJoin.Subtree.of(second.replaceRootNode(null))));
+                first.replaceRootNode(result.root);
+
+                assertSameTree(expected, first);
+                assertEquals(AVLSplitJoin.heightOf(result.root), result.height);
+                assertAVLTree(result.root);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void arrayStoredTreesFallBackToSequentialOperations() {
+        BSTTreeSet<Integer> first = randomTree(TreeBalancing.AVL, NodeStorage.ARRAYS, 15);
+        BSTTreeSet<Integer> second = randomTree(TreeBalancing.AVL, NodeStorage.REFERENCES, 16);
+        TreeSet<Integer> expected = new TreeSet<>(first);
+        expected.addAll(second);
+
+        ParallelSetAlgebra.union(first, second);
+
+        assertSameTree(expected, first);
+        assertTrue(second.isEmpty());
+        assertEquals(NodeStorage.ARRAYS, first.getNodeFactory().getStorage());
+    }
+
+    private enum SetOperation {
+        UNION(AVLSplitJoin.SetOperation.UNION) {
+            @Override
+            boolean apply(Set<Integer> set, Set<Integer> other) {
+                return set.addAll(other);
+            }
+
+            @Override
+            BSTTreeSet<Integer> applyInParallel(BSTTreeSet<Integer> set, BSTTreeSet<Integer> other, ForkJoinPool pool) {
+                return ParallelSetAlgebra.union(set, other, pool);
+            }
+        },
+        INTERSECTION(AVLSplitJoin.SetOperation.INTERSECTION) {
+            @Override
+            boolean apply(Set<Integer> set, Set<Integer> other) {
+                return set.retainAll(other);
+            }
+
+            @Override
+            BSTTreeSet<Integer> applyInParallel(BSTTreeSet<Integer> set, BSTTreeSet<Integer> other, ForkJoinPool pool) {
+                return ParallelSetAlgebra.intersection(set, other, pool);
+            }
+        },
+        DIFFERENCE(AVLSplitJoin.SetOperation.DIFFERENCE) {
+            @Override
+            boolean apply(Set<Integer> set, Set<Integer> other) {
+                return set.removeAll(other);
+            }
+
+            @Override
+            BSTTreeSet<Integer> applyInParallel(BSTTreeSet<Integer> set, BSTTreeSet<Integer> other, ForkJoinPool pool) {
+                return ParallelSetAlgebra.difference(set, other, pool);
+            }
+        };
+
+        final AVLSplitJoin.SetOperation algebraOperation;
+
+        SetOperation(AVLSplitJoin.SetOperation algebraOperation) {
+            this.algebraOperation = algebraOperation;
+        }
+
+        abstract boolean apply(Set<Integer> set, Set<Integer> other);
+
+        abstract BSTTreeSet<Integer> applyInParallel(BSTTreeSet<Integer> set, BSTTreeSet<Integer> other, ForkJoinPool pool);
+    }
+
+    private static BSTTreeSet<Integer> randomTree(TreeBalancing balancing, NodeStorage storage, long seed) {
+        BSTTreeSet<Integer> tree = balancing.newTreeSet(null, storage);
+        Random random = new Random(seed);
+        for (int i = 0; i < NUMBER_OF_ELEMENTS; i++) {
+            tree.add(random.nextInt(2 * NUMBER_OF_ELEMENTS));
+        }
+        return tree;
+    }
+
+    /**
+     * Big enough for many fork/join tasks
+     */
+    private static BSTTreeSet<Integer> bigRandomTree(TreeBalancing balancing, long seed) {
+        BSTTreeSet<Integer> tree = balancing.newTreeSet();
+        Random random = new Random(seed);
+        for (int i = 0; i < 100000; i++) {
+            tree.add(random.nextInt(200000));
+        }
+        return tree;
+    }
+
+    private static void modifyBoth(Set<Integer> tree, Set<Integer> expected) {
+        Random random = new Random(2014);
+        for (int i = 0; i < NUMBER_OF_ELEMENTS; i++) {
+            int value = random.nextInt(2 * NUMBER_OF_ELEMENTS);
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(value), tree.add(value));
+            } else {
+                assertEquals(expected.remove(value), tree.remove(value));
+            }
+        }
+    }
+
+    private static void assertSameTree(TreeSet<Integer> expected, BSTTreeSet<Integer> tree) {
+        assertArrayEquals(expected.toArray(), tree.toArray());
+        assertEquals(expected.size(), tree.size());
+        assertTrue(tree.areNodeRelationsFine(tree.getRootNode()));
+    }
+
+    /**
+     * Checks balance factors against real heights of subtrees.
+     * @return height of the subtree
+     */
+    private static int assertAVLTree(Node<?> node) {
+        if (node == null) return 0;
+        int leftHeight = assertAVLTree(node.getLeftSon());
+        int rightHeight = assertAVLTree(node.getRightSon());
+        assertEquals("balance factor of " + node.getValue(), rightHeight - leftHeight, ((WeightedNode<?>) node).getBalanceFactor());
+        assertTrue(Math.abs(rightHeight - leftHeight) <= 1);
+        return 1 + Math.max(leftHeight, rightHeight);
+    }
+
+    private static int height(Node<?> node) {
+        return (node == null) ? 0 : 1 + Math.max(height(node.getLeftSon()), height(node.getRightSon()));
+    }
+}
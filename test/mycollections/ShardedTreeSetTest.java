@@ -0,0 +1,117 @@
+package mycollections;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static mycollections.ManyThreads.runInThreads;
+import static org.junit.Assert.*;
+
+/**
+ * Testing ShardedTreeSet: general Collection tests (with tiny shards, so they are split all the time), plus checks of the set modified by many threads.
+ */
+public class ShardedTreeSetTest extends CollectionOrderGuaranteedTests {
+
+    private static final int NUMBER_OF_THREADS = 8;
+    private static final int OPERATIONS_PER_THREAD = 50000;
+
+    @Override
+    protected <E> Collection<E> createEmptyCollection() {
+        return new ShardedTreeSet<>(null, TreeBalancing.AVL, 2, Collections.emptyList());
+    }
+
+    @Test
+    public void sameAsTreeSet() {
+        for (TreeBalancing balancing : TreeBalancing.values()) {
+            ShardedTreeSet<Integer> set = new ShardedTreeSet<>(null, balancing, 100, Arrays.asList(1000, 5000));
+            TreeSet<Integer> expected = new TreeSet<>();
+            Random random = new Random(2014);
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                Integer element = random.nextInt(10000);
+                if (random.nextInt(3) == 0) {
+                    assertEquals(expected.remove(element), set.remove(element));
+                } else {
+                    assertEquals(expected.add(element), set.add(element));
+                }
+            }
+            assertEquals(new ArrayList<>(expected), new ArrayList<>(set));
+            assertEquals(expected.size(), set.size());
+            assertTrue(set.numberOfShards() >= expected.size() / 100);
+            for (int i = 0; i < 10000; i++) {
+                assertEquals(expected.contains(i), set.contains(i));
+            }
+        }
+    }
+
+    @Test
+    public void hotShardIsSplit() {
+        ShardedTreeSet<Integer> set = new ShardedTreeSet<>(Comparator.reverseOrder(), TreeBalancing.AVL, 1000, Arrays.asList(1000000, 0));
+        for (int i = 0; i < 10000; i++) {
+            set.add(i); // all go to the middle shard
+        }
+        assertTrue(set.numberOfShards() >= 3 + 10);
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 9999; i >= 0; i--) {
+            expected.add(i);
+        }
+        assertEquals(expected, new ArrayList<>(set));
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void boundariesMustBeAscending() {
+        new ShardedTreeSet<>(null, TreeBalancing.AVL, 100, Arrays.asList(10, 5));
+    }
+
+    @Test
+    public void concurrentWritersWhileShardsAreSplit() throws InterruptedException {
+        ShardedTreeSet<Integer> set = new ShardedTreeSet<>(null, TreeBalancing.AVL, 256, Collections.emptyList());
+        List<Set<Integer>> expectedPerThread = new ArrayList<>();
+        for (int thread = 0; thread < NUMBER_OF_THREADS; thread++) {
+            expectedPerThread.add(new HashSet<>());
+        }
+        runInThreads(NUMBER_OF_THREADS, thread -> {
+            Set<Integer> expected = expectedPerThread.get(thread);
+            Random random = new Random(thread);
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                Integer element = random.nextInt(OPERATIONS_PER_THREAD) * NUMBER_OF_THREADS + thread;
+                if (random.nextInt(4) == 0) {
+                    assertEquals(expected.remove(element), set.remove(element));
+                } else {
+                    assertEquals(expected.add(element), set.add(element));
+                }
+            }
+        });
+
+        TreeSet<Integer> expected = new TreeSet<>();
+        expectedPerThread.forEach(expected::addAll);
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(set));
+        assertEquals(expected.size(), set.size());
+    }
+
+    @Test
+    public void iteratorNeverFailsDuringWrites() throws InterruptedException {
+        ShardedTreeSet<Integer> set = new ShardedTreeSet<>(null, TreeBalancing.RED_BLACK, 64, Collections.emptyList());
+        for (int i = 0; i < 10000; i += 2) {
+            set.add(i); // even elements stay all the time
+        }
+        runInThreads(NUMBER_OF_THREADS, thread -> {
+            Random random = new Random(thread);
+            for (int i = 0; i < 200; i++) {
+                if (thread % 2 == 0) {
+                    for (int j = 0; j < 100; j++) {
+                        set.add(2 * random.nextInt(5000) + 1);
+                    }
+                } else {
+                    int previous = -1;
+                    int evens = 0;
+                    for (Integer element : set) {
+                        assertTrue(element > previous);
+                        previous = element;
+                        if (element % 2 == 0) evens++;
+                    }
+                    assertEquals(5000, evens);
+                }
+            }
+        });
+    }
+}
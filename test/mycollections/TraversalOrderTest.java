@@ -0,0 +1,211 @@
+package mycollections;
+
+import org.junit.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing iterators, spliterators and streams for all traversal orders, against recursive traversal of the same tree.
+ */
+public class TraversalOrderTest {
+
+    private static BSTTreeSet<Integer> randomTree(TreeBalancing balancing, NodeStorage storage, int size) {
+        BSTTreeSet<Integer> tree = balancing.newTreeSet(null, storage);
+        Random random = new Random(2014);
+        while (tree.size() < size) {
+            tree.add(random.nextInt(10 * size));
+        }
+        return tree;
+    }
+
+    private static List<Integer> recursively(BSTTreeSet<Integer> tree, TraversalOrder order) {
+        List<Integer> elements = new ArrayList<>();
+        if (order == TraversalOrder.LEVEL_ORDER) {
+            List<Node<Integer>> level = new ArrayList<>();
+            if (tree.getRootNode() != null) {
+                level.add(tree.getRootNode());
+            }
+            while (!level.isEmpty()) {
+                List<Node<Integer>> nextLevel = new ArrayList<>();
+                for (Node<Integer> node : level) {
+                    elements.add(node.getValue());
+                    if (node.hasLeftSon()) {
+                        nextLevel.add(node.getLeftSon());
+                    }
+                    if (node.hasRightSon()) {
+                        nextLevel.add(node.getRightSon());
+                    }
+                }
+                level = nextLevel;
+            }
+        } else if (tree.getRootNode() != null) {
+            depthFirst(tree.getRootNode(), order, elements);
+        }
+        return elements;
+    }
+
+    private static void depthFirst(Node<Integer> node, TraversalOrder order, List<Integer> elements) {
+        if (order == TraversalOrder.PRE_ORDER) {
+            elements.add(node.getValue());
+        }
+        if (node.hasLeftSon()) {
+            depthFirst(node.getLeftSon(), order, elements);
+        }
+        if (order == TraversalOrder.IN_ORDER) {
+            elements.add(node.getValue());
+        }
+        if (node.hasRightSon()) {
+            depthFirst(node.getRightSon(), order, elements);
+        }
+        if (order == TraversalOrder.POST_ORDER) {
+            elements.add(node.getValue());
+        }
+    }
+
+    private static List<Integer> iterate(Iterator<Integer> it) {
+        List<Integer> elements = new ArrayList<>();
+        it.forEachRemaining(elements::add);
+        return elements;
+    }
+
+    @Test
+    public void allOrdersForAllTrees() {
+        for (TreeBalancing balancing : TreeBalancing.values()) {
+            for (NodeStorage storage : NodeStorage.values()) {
+                for (int size : new int[] {0, 1, 2, 3, 1000}) {
+                    BSTTreeSet<Integer> tree = randomTree(balancing, storage, size);
+                    for (TraversalOrder order : TraversalOrder.values()) {
+                        List<Integer> expected = recursively(tree, order);
+                        assertEquals(size, expected.size());
+                        assertEquals(balancing + " " + order, expected, iterate(tree.iterator(order)));
+                        assertEquals(expected, tree.stream(order).collect(Collectors.toList()));
+                        assertEquals(size, tree.spliterator(order).getExactSizeIfKnown());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void preOrderAndLevelOrderRebuildTheSameTree() {
+        BSTTreeSet<Integer> tree = randomTree(TreeBalancing.NONE, NodeStorage.REFERENCES, 1000);
+        for (TraversalOrder order : Arrays.asList(TraversalOrder.PRE_ORDER, TraversalOrder.LEVEL_ORDER)) {
+            BSTTreeSet<Integer> rebuilt = new BSTTreeSet<>();
+            tree.iterator(order).forEachRemaining(rebuilt::add);
+            assertArrayEquals(PreOrderTreeIteratorTest.toPreOrderArray(tree), PreOrderTreeIteratorTest.toPreOrderArray(rebuilt));
+        }
+    }
+
+    @Test
+    public void parallelStreamVisitsAllElements() {
+        BSTTreeSet<Integer> tree = randomTree(TreeBalancing.RED_BLACK, NodeStorage.REFERENCES, 10000);
+        long sum = tree.stream().mapToLong(Integer::longValue).sum();
+        for (TraversalOrder order : TraversalOrder.values()) {
+            assertEquals(sum, StreamSupport.stream(tree.spliterator(order), true).mapToLong(Integer::longValue).sum());
+            assertTrue(tree.spliterator(order).hasCharacteristics(Spliterator.SIZED | Spliterator.DISTINCT | Spliterator.ORDERED));
+        }
+    }
+
+    @Test
+    public void removeVisitsEveryElementOnce() {
+        for (TraversalOrder order : TraversalOrder.values()) {
+            BSTTreeSet<Integer> tree = randomTree(TreeBalancing.NONE, NodeStorage.REFERENCES, 2000);
+            Set<Integer> expected = new TreeSet<>(tree);
+            List<Integer> visited = new ArrayList<>();
+            for (Iterator<Integer> it = tree.iterator(order); it.hasNext(); ) {
+                Integer element = it.next();
+                visited.add(element);
+                if (element % 3 != 0) {
+                    it.remove();
+                }
+            }
+            assertEquals(order.toString(), expected.size(), visited.size());
+            assertEquals(expected, new TreeSet<>(visited));
+            expected.removeIf(element -> element % 3 != 0);
+            assertArrayEquals(expected.toArray(), tree.toArray());
+            assertTrue(tree.areNodeRelationsFine(tree.getRootNode()));
+        }
+    }
+
+    @Test
+    public void levelOrderRemoveOfNodeWithDeepSuccessor() {
+        /*
+                  50
+                /    \
+              20      80
+                     /  \
+                   60    90
+                     \
+                      70
+           removing 50 puts 60 in its place, 70 goes under 80
+         */
+        BSTTreeSet<Integer> tree = new BSTTreeSet<>();
+        tree.addAll(Arrays.asList(50, 20, 80, 60, 90, 70));
+        Iterator<Integer> it = tree.iterator(TraversalOrder.LEVEL_ORDER);
+        assertEquals(Integer.valueOf(50), it.next());
+        it.remove();
+
+        assertEquals(Arrays.asList(60, 20, 80, 70, 90), iterate(it));
+        assertEquals(Arrays.asList(60, 20, 80, 70, 90), iterate(tree.iterator(TraversalOrder.LEVEL_ORDER)));
+    }
+
+    @Test
+    public void postOrderRemoveOfNodeWithBothSons() {
+        BSTTreeSet<Integer> tree = new BSTTreeSet<>();
+        tree.addAll(Arrays.asList(50, 20, 80, 60, 90, 70, 10));
+        Iterator<Integer> it = tree.iterator(TraversalOrder.POST_ORDER);
+        List<Integer> visited = new ArrayList<>();
+        while (it.hasNext()) {
+            Integer element = it.next();
+            visited.add(element);
+            if (element == 80) {
+                it.remove();
+            }
+        }
+        assertEquals(Arrays.asList(10, 20, 70, 60, 90, 80, 50), visited);
+        assertEquals(Arrays.asList(10, 20, 70, 60, 90, 50), iterate(tree.iterator(TraversalOrder.POST_ORDER)));
+    }
+
+    @Test
+    public void removeNotSupportedForSelfBalancingTree() {
+        BSTTreeSet<Integer> tree = randomTree(TreeBalancing.AVL, NodeStorage.REFERENCES, 10);
+        for (TraversalOrder order : Arrays.asList(TraversalOrder.PRE_ORDER, TraversalOrder.POST_ORDER, TraversalOrder.LEVEL_ORDER)) {
+            Iterator<Integer> it = tree.iterator(order);
+            it.next();
+            try {
+                it.remove();
+                fail(order.toString());
+            } catch (UnsupportedOperationException expected) {
+            }
+        }
+        assertEquals(10, tree.size());
+    }
+
+    @Test
+    public void iteratorsAreFailFast() {
+        for (TraversalOrder order : TraversalOrder.values()) {
+            BSTTreeSet<Integer> tree = randomTree(TreeBalancing.NONE, NodeStorage.REFERENCES, 10);
+            Iterator<Integer> it = tree.iterator(order);
+            it.next();
+            tree.add(-1);
+            try {
+                it.next();
+                fail(order.toString());
+            } catch (ConcurrentModificationException expected) {
+            }
+        }
+    }
+
+    @Test (expected = IllegalStateException.class)
+    public void removeTwiceIsIllegal() {
+        BSTTreeSet<Integer> tree = randomTree(TreeBalancing.NONE, NodeStorage.REFERENCES, 10);
+        Iterator<Integer> it = tree.iterator(TraversalOrder.LEVEL_ORDER);
+        it.next();
+        it.remove();
+        it.remove();
+    }
+}
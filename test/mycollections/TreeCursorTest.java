@@ -0,0 +1,168 @@
+package mycollections;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing TreeCursor of all tree variants against TreeSet with the same elements.
+ */
+public class TreeCursorTest {
+
+    private static BSTTreeSet<Integer> randomTree(BSTTreeSet<Integer> tree, TreeSet<Integer> expected, int size) {
+        Random random = new Random(2014);
+        while (tree.size() < size) {
+            Integer element = random.nextInt(10 * size);
+            tree.add(element);
+            expected.add(element);
+        }
+        return tree;
+    }
+
+    @Test
+    public void navigationForAllTrees() {
+        for (TreeBalancing balancing : TreeBalancing.values()) {
+            for (NodeStorage storage : NodeStorage.values()) {
+                TreeSet<Integer> expected = new TreeSet<>();
+                BSTTreeSet<Integer> tree = randomTree(balancing.newTreeSet(null, storage), expected, 1000);
+
+                List<Integer> ascending = new ArrayList<>();
+                for (TreeCursor<Integer> cursor = tree.cursor(); cursor.isPositioned(); cursor.next()) {
+                    ascending.add(cursor.get());
+                }
+                assertEquals(new ArrayList<>(expected), ascending);
+
+                List<Integer> descending = new ArrayList<>();
+                TreeCursor<Integer> cursor = tree.cursor();
+                for (boolean positioned = cursor.last(); positioned; positioned = cursor.prev()) {
+                    descending.add(cursor.get());
+                }
+                assertEquals(new ArrayList<>(expected.descendingSet()), descending);
+
+                for (int key = -1; key <= 10001; key += 7) {
+                    assertEquals(expected.ceiling(key) != null, cursor.seek(key));
+                    if (cursor.isPositioned()) {
+                        assertEquals(expected.ceiling(key), cursor.get());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void removeInLoopForAllTrees() {
+        for (TreeBalancing balancing : TreeBalancing.values()) {
+            for (NodeStorage storage : NodeStorage.values()) {
+                TreeSet<Integer> expected = new TreeSet<>();
+                BSTTreeSet<Integer> tree = randomTree(balancing.newTreeSet(null, storage), expected, 5000);
+                List<Integer> visited = new ArrayList<>();
+                for (TreeCursor<Integer> cursor = tree.cursor(); cursor.isPositioned(); ) {
+                    visited.add(cursor.get());
+                    if (cursor.get() % 3 != 0) {
+                        cursor.remove();
+                    } else {
+                        cursor.next();
+                    }
+                }
+                assertEquals(new ArrayList<>(expected), visited);
+                expected.removeIf(element -> element % 3 != 0);
+                assertArrayEquals(expected.toArray(), tree.toArray());
+                assertTrue(tree.areNodeRelationsFine(tree.getRootNode()));
+            }
+        }
+    }
+
+    @Test
+    public void removeDoesNotSearchTheTree() {
+        int[] comparisons = new int[1];
+        BSTTreeSet<Integer> tree = new BSTTreeSet<>((first, second) -> {
+            comparisons[0]++;
+            return Integer.compare(first, second);
+        });
+        tree.addAll(Arrays.asList(50, 20, 80, 60, 90, 70));
+        TreeCursor<Integer> cursor = tree.cursor();
+        cursor.seek(50);
+        int comparisonsBefore = comparisons[0];
+
+        assertEquals(Integer.valueOf(50), cursor.remove());
+        assertEquals(Integer.valueOf(60), cursor.get());
+        assertEquals(Integer.valueOf(60), cursor.remove());
+        assertEquals(Integer.valueOf(70), cursor.get());
+        assertEquals(comparisonsBefore, comparisons[0]);
+        assertArrayEquals(new Object[] {20, 70, 80, 90}, tree.toArray());
+    }
+
+    @Test
+    public void removeOfTheLastElement() {
+        BSTTreeSet<Integer> tree = new BSTTreeSet<>();
+        tree.addAll(Arrays.asList(1, 2));
+        TreeCursor<Integer> cursor = tree.cursor();
+        cursor.last();
+        cursor.remove();
+
+        assertFalse(cursor.isPositioned());
+        assertTrue(cursor.first());
+        cursor.remove();
+        assertFalse(cursor.isPositioned());
+        assertTrue(tree.isEmpty());
+    }
+
+    @Test
+    public void replaceKeepingOrder() {
+        BSTTreeSet<String> tree = new BSTTreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        tree.addAll(Arrays.asList("a", "c", "e"));
+        TreeCursor<String> cursor = tree.cursor();
+        cursor.seek("C");
+        Iterator<String> it = tree.iterator();
+
+        assertEquals("c", cursor.replace("C"));
+        assertEquals("C", cursor.replace("d")); // fits between a and e
+        try {
+            cursor.replace("e");
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        assertArrayEquals(new Object[] {"a", "d", "e"}, tree.toArray());
+        assertTrue(tree.contains("D"));
+        assertEquals("a", it.next()); // structure did not change
+        assertEquals("d", it.next());
+    }
+
+    @Test
+    public void replaceInArrayStoredTree() {
+        BSTTreeSet<Integer> tree = TreeBalancing.RED_BLACK.newTreeSet(null, NodeStorage.ARRAYS);
+        tree.addAll(Arrays.asList(10, 20, 30));
+        TreeCursor<Integer> cursor = tree.cursor();
+        cursor.next();
+        cursor.replace(25);
+
+        assertArrayEquals(new Object[] {10, 25, 30}, tree.toArray());
+        assertTrue(tree.contains(25));
+        assertFalse(tree.contains(20));
+    }
+
+    @Test (expected = NoSuchElementException.class)
+    public void cursorOfEmptyTreeIsNotPositioned() {
+        TreeCursor<Integer> cursor = new BSTTreeSet<Integer>().cursor();
+        assertFalse(cursor.isPositioned());
+        cursor.get();
+    }
+
+    @Test
+    public void cursorIsFailFast() {
+        BSTTreeSet<Integer> tree = new BSTTreeSet<>();
+        tree.addAll(Arrays.asList(1, 2, 3));
+        TreeCursor<Integer> cursor = tree.cursor();
+        tree.add(4);
+        try {
+            cursor.next();
+            fail();
+        } catch (ConcurrentModificationException expected) {
+        }
+        assertTrue(cursor.seek(2)); // positioned again from the root
+        assertTrue(cursor.next());
+        assertEquals(Integer.valueOf(3), cursor.get());
+    }
+}
@@ -0,0 +1,135 @@
+package mycollections;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing Java Flight Recorder events of BSTTreeSet: recording is started in the test JVM and its events are read back from the dump.
+ */
+public class TreeEventsTest {
+
+    @Test
+    public void operationsAreRecordedWithDepthAndComparisons() throws IOException {
+        BSTTreeSet<Integer> tree = new BSTTreeSet<>();
+        tree.addAll(Arrays.asList(4, 2, 6, 1));
+
+        List<RecordedEvent> events = record(Duration.ZERO, () -> {
+            tree.add(3);
+            tree.contains(1);
+            tree.remove(6);
+        });
+
+        List<RecordedEvent> operations = ofType(events, "mycollections.TreeOperation");
+        assertEquals(Arrays.asList("add", "contains", "remove"), operations.stream().map(event -> event.getString("operation")).collect(Collectors.toList()));
+        assertEquals(5, operations.get(0).getInt("elementCount"));
+        assertEquals(2, operations.get(0).getInt("depth")); // 4, 2, and 2 has no right son yet
+        assertEquals(2, operations.get(0).getInt("comparisons"));
+        assertEquals(3, operations.get(1).getInt("depth"));
+        assertEquals(4, operations.get(2).getInt("elementCount"));
+    }
+
+    @Test
+    public void fullIterationAndSerializationAreRecorded() throws IOException {
+        BSTTreeSet<Integer> tree = TreeBalancing.AVL.newTreeSet();
+        for (int i = 0; i < 100; i++) {
+            tree.add(i);
+        }
+
+        List<RecordedEvent> events = record(Duration.ZERO, () -> {
+            for (Iterator<Integer> iterator = tree.iterator(); iterator.hasNext(); ) {
+                iterator.next();
+            }
+            tree.iterator().next(); // not the whole iteration, not recorded
+            tree.headSet(50).forEach(element -> {}); // views are not recorded
+            try (ObjectOutputStream oos = new ObjectOutputStream(new ByteArrayOutputStream())) {
+                oos.writeObject(tree);
+            }
+        });
+
+        List<RecordedEvent> iterations = ofType(events, "mycollections.TreeIteration");
+        assertEquals(1, iterations.size());
+        assertEquals(100, iterations.get(0).getInt("elementCount"));
+        List<RecordedEvent> serializations = ofType(events, "mycollections.TreeSerialization");
+        assertEquals(1, serializations.size());
+        assertEquals("writeObject", serializations.get(0).getString("operation"));
+        assertEquals("OBJECTS", serializations.get(0).getString("elementCodec"));
+    }
+
+    @Test
+    public void onlySlowOperationsAreRecordedWithDefaultThreshold() throws IOException {
+        BSTTreeSet<Integer> fast = new BSTTreeSet<>();
+        BSTTreeSet<Integer> slow = new BSTTreeSet<>((first, second) -> {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Integer.compare(first, second);
+        });
+        fast.addAll(Arrays.asList(1, 2, 3, 4)); // sizes differ, to tell events of both trees apart
+        slow.addAll(Arrays.asList(1, 2, 3));
+
+        List<RecordedEvent> events = record(null, () -> {
+            for (int i = 0; i < 1000; i++) {
+                fast.contains(3);
+            }
+            slow.contains(3);
+        });
+
+        List<RecordedEvent> operations = ofType(events, "mycollections.TreeOperation");
+        // single fast.contains may still be recorded if GC or safepoint pause makes it slow, but not most of them
+        assertTrue(operations.stream().filter(event -> event.getInt("elementCount") == 4).count() < 10);
+        List<RecordedEvent> slowOperations = operations.stream().filter(event -> event.getInt("elementCount") == 3).collect(Collectors.toList());
+        assertEquals(1, slowOperations.size());
+        RecordedEvent slowContains = slowOperations.get(0);
+        assertEquals("contains", slowContains.getString("operation"));
+        assertEquals(3, slowContains.getInt("comparisons"));
+        assertTrue(slowContains.getDuration().compareTo(Duration.ofMillis(1)) >= 0);
+    }
+
+    private interface Action {
+        void run() throws IOException;
+    }
+
+    /**
+     * Runs provided action with all tree events enabled.
+     * @param threshold threshold of events, {@code null} for default ones
+     */
+    private static List<RecordedEvent> record(Duration threshold, Action action) throws IOException {
+        Path file = Files.createTempFile("tree", ".jfr");
+        try (Recording recording = new Recording()) {
+            for (String event : Arrays.asList("mycollections.TreeOperation", "mycollections.TreeIteration", "mycollections.TreeSerialization")) {
+                if (threshold == null) {
+                    recording.enable(event);
+                } else {
+                    recording.enable(event).withThreshold(threshold);
+                }
+            }
+            recording.start();
+            action.run();
+            recording.stop();
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static List<RecordedEvent> ofType(List<RecordedEvent> events, String name) {
+        return events.stream()
+                .filter(event -> event.getEventType().getName().equals(name))
+                .sorted(Comparator.comparing(RecordedEvent::getStartTime))
+                .collect(Collectors.toList());
+    }
+}
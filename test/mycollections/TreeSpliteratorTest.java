@@ -0,0 +1,116 @@
+package mycollections;
+
+import org.junit.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing spliterators of all tree variants and their range views, using java.util.TreeSet as reference implementation.
+ */
+public class TreeSpliteratorTest {
+
+    private static final int NUMBER_OF_ELEMENTS = 10000;
+
+    @Test
+    public void reportsCharacteristicsOfSortedSet() {
+        BSTTreeSet<Integer> tree = TreeBalancing.AVL.newTreeSet(Comparator.reverseOrder());
+        tree.addAll(Arrays.asList(1, 2, 3));
+        Spliterator<Integer> spliterator = tree.spliterator();
+
+        for (int characteristic : new int[] {Spliterator.DISTINCT, Spliterator.SORTED, Spliterator.ORDERED, Spliterator.SIZED, Spliterator.SUBSIZED}) {
+            assertTrue(spliterator.hasCharacteristics(characteristic));
+        }
+        assertEquals(Comparator.reverseOrder(), spliterator.getComparator());
+        assertEquals(3, spliterator.getExactSizeIfKnown());
+        assertNull(TreeBalancing.AVL.newTreeSet().spliterator().getComparator()); // natural ordering
+    }
+
+    @Test
+    public void splitsIntoExactHalvesInOrder() {
+        for (TreeBalancing balancing : TreeBalancing.values()) {
+            BSTTreeSet<Integer> tree = randomTree(balancing);
+            List<Integer> collected = new ArrayList<>();
+
+            splitAndCollect(tree.spliterator(), collected, 8);
+
+            assertEquals(new ArrayList<>(tree), collected);
+        }
+    }
+
+    @Test
+    public void splitAfterTraversalStarted() {
+        BSTTreeSet<Integer> tree = randomTree(TreeBalancing.RED_BLACK);
+        List<Integer> collected = new ArrayList<>();
+        Spliterator<Integer> spliterator = tree.spliterator();
+        for (int i = 0; i < 100; i++) {
+            spliterator.tryAdvance(collected::add);
+        }
+
+        Spliterator<Integer> prefix = spliterator.trySplit();
+        assertEquals(prefix.estimateSize() + spliterator.estimateSize(), tree.size() - 100);
+        prefix.forEachRemaining(collected::add);
+        spliterator.forEachRemaining(collected::add);
+
+        assertEquals(new ArrayList<>(tree), collected);
+        assertFalse(spliterator.tryAdvance(collected::add));
+    }
+
+    @Test
+    public void parallelStreamSameAsSequential() {
+        for (TreeBalancing balancing : TreeBalancing.values()) {
+            BSTTreeSet<Integer> tree = randomTree(balancing);
+            TreeSet<Integer> expected = new TreeSet<>(tree);
+
+            assertEquals(new ArrayList<>(expected), tree.parallelStream().collect(Collectors.toList()));
+            assertEquals(expected.stream().mapToLong(Integer::longValue).sum(), tree.parallelStream().mapToLong(Integer::longValue).sum());
+            assertEquals(expected.stream().filter(i -> i % 3 == 0).count(), tree.parallelStream().filter(i -> i % 3 == 0).count());
+        }
+    }
+
+    @Test
+    public void rangeViewsSameAsInTreeSet() {
+        BSTTreeSet<Integer> tree = randomTree(TreeBalancing.AVL);
+        TreeSet<Integer> expected = new TreeSet<>(tree);
+
+        assertEquals(new ArrayList<>(expected.subSet(100, 5000)), tree.subSet(100, 5000).parallelStream().collect(Collectors.toList()));
+        assertEquals(new ArrayList<>(expected.headSet(7000, true)), tree.headSet(7000, true).parallelStream().collect(Collectors.toList()));
+        assertEquals(new ArrayList<>(expected.tailSet(12345, false)), tree.tailSet(12345, false).parallelStream().collect(Collectors.toList()));
+        assertEquals(0, tree.subSet(5000, 5000).spliterator().estimateSize());
+        assertEquals(expected.subSet(100, 5000).size(), tree.subSet(100, 5000).spliterator().getExactSizeIfKnown());
+        assertEquals(new ArrayList<>(expected.descendingSet()), tree.descendingSet().parallelStream().collect(Collectors.toList()));
+    }
+
+    @Test (expected = ConcurrentModificationException.class)
+    public void spliteratorIsFailFast() {
+        BSTTreeSet<Integer> tree = randomTree(TreeBalancing.NONE);
+        Spliterator<Integer> spliterator = tree.spliterator();
+        spliterator.tryAdvance(i -> { });
+        tree.add(-1);
+        spliterator.tryAdvance(i -> { });
+    }
+
+    private static void splitAndCollect(Spliterator<Integer> spliterator, List<Integer> collected, int depth) {
+        long size = spliterator.estimateSize();
+        Spliterator<Integer> prefix = (depth > 0) ? spliterator.trySplit() : null;
+        if (prefix == null) {
+            spliterator.forEachRemaining(collected::add);
+            return;
+        }
+        assertEquals(size, prefix.estimateSize() + spliterator.estimateSize());
+        assertTrue(Math.abs(prefix.estimateSize() - spliterator.estimateSize()) <= 1);
+        splitAndCollect(prefix, collected, depth - 1);
+        splitAndCollect(spliterator, collected, depth - 1);
+    }
+
+    private static BSTTreeSet<Integer> randomTree(TreeBalancing balancing) {
+        BSTTreeSet<Integer> tree = balancing.newTreeSet();
+        Random random = new Random(2014);
+        for (int i = 0; i < NUMBER_OF_ELEMENTS; i++) {
+            tree.add(random.nextInt(2 * NUMBER_OF_ELEMENTS));
+        }
+        return tree;
+    }
+}
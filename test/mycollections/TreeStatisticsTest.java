@@ -0,0 +1,148 @@
+package mycollections;
+
+import org.junit.Test;
+
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing statistics of BSTTreeSet operations.
+ */
+public class TreeStatisticsTest {
+
+    private static final int NUMBER_OF_ELEMENTS = 1000;
+
+    @Test
+    public void degeneratedTreeIsVisible() {
+        BSTTreeSet<Integer> plain = TreeBalancing.NONE.newTreeSet();
+        BSTTreeSet<Integer> avl = TreeBalancing.AVL.newTreeSet();
+        plain.setStatisticsEnabled(true);
+        avl.setStatisticsEnabled(true);
+        for (int i = 0; i < NUMBER_OF_ELEMENTS; i++) {
+            plain.add(i);
+            avl.add(i);
+        }
+
+        TreeStatistics plainStatistics = plain.getStatistics();
+        assertEquals(NUMBER_OF_ELEMENTS, plainStatistics.getHeight());
+        assertEquals((NUMBER_OF_ELEMENTS + 1) / 2.0, plainStatistics.getAverageDepth(), 0.001);
+        assertEquals(NUMBER_OF_ELEMENTS - 1, plainStatistics.getMaxNodesVisited());
+        assertEquals(0, plainStatistics.getRotations());
+
+        TreeStatistics avlStatistics = avl.getStatistics();
+        assertTrue(avlStatistics.getHeight() <= 1.44 * Math.log(NUMBER_OF_ELEMENTS + 2) / Math.log(2));
+        assertTrue(avlStatistics.getAverageNodesVisited() < 10);
+        assertTrue(avlStatistics.getRotations() > NUMBER_OF_ELEMENTS / 2);
+        assertTrue(plainStatistics.getNodesVisited() > 50 * avlStatistics.getNodesVisited());
+    }
+
+    @Test
+    public void comparisonsAndModificationsAreCounted() {
+        AtomicLong comparatorCalls = new AtomicLong();
+        Comparator<Integer> countingComparator = (first, second) -> {
+            comparatorCalls.incrementAndGet();
+            return Integer.compare(first, second);
+        };
+        BSTTreeSet<Integer> tree = TreeBalancing.RED_BLACK.newTreeSet(countingComparator);
+        tree.setStatisticsEnabled(true);
+        for (int i = 0; i < NUMBER_OF_ELEMENTS; i++) {
+            tree.add(i % 500);
+        }
+        for (int i = 0; i < 100; i++) {
+            tree.remove(i);
+            tree.contains(i);
+        }
+
+        TreeStatistics statistics = tree.getStatistics();
+        assertEquals(comparatorCalls.get(), statistics.getComparisons());
+        assertEquals(NUMBER_OF_ELEMENTS + 200, statistics.getSearches());
+        assertEquals(500, statistics.getInsertions());
+        assertEquals(100, statistics.getRemovals());
+        assertEquals(400, statistics.getSize());
+        assertTrue(statistics.getRotations() > 0);
+    }
+
+    /**
+     * Comparisons of union are done by many fork/join tasks at once, and none of them may be lost.
+     */
+    @Test
+    public void comparisonsOfParallelUnionAreCounted() {
+        AtomicLong comparatorCalls = new AtomicLong();
+        Comparator<Integer> countingComparator = (first, second) -> {
+            comparatorCalls.incrementAndGet();
+            return Integer.compare(first, second);
+        };
+        BSTTreeSet<Integer> first = TreeBalancing.AVL.newTreeSet(countingComparator);
+        BSTTreeSet<Integer> second = TreeBalancing.AVL.newTreeSet(countingComparator);
+        for (int i = 0; i < 100 * NUMBER_OF_ELEMENTS; i++) {
+            first.add(2 * i);
+            second.add(3 * i);
+        }
+        first.setStatisticsEnabled(true);
+        comparatorCalls.set(0);
+
+        ParallelSetAlgebra.union(first, second);
+
+        assertTrue(comparatorCalls.get() > AVLSplitJoin.DEFAULT_PARALLEL_THRESHOLD);
+        assertEquals(comparatorCalls.get(), first.getStatistics().getComparisons());
+    }
+
+    @Test
+    public void expensiveComparatorIsVisible() {
+        Comparator<Integer> slowComparator = (first, second) -> {
+            long end = System.nanoTime() + 20000;
+            while (System.nanoTime() < end) {
+                // busy wait, like comparator doing real work
+            }
+            return Integer.compare(first, second);
+        };
+        BSTTreeSet<Integer> slow = TreeBalancing.AVL.newTreeSet(slowComparator);
+        BSTTreeSet<Integer> fast = TreeBalancing.AVL.newTreeSet();
+        slow.setStatisticsEnabled(true);
+        fast.setStatisticsEnabled(true);
+        for (int i = 0; i < 200; i++) {
+            slow.add(i);
+            fast.add(i);
+        }
+
+        assertTrue(slow.getStatistics().getAverageComparisonNanos() >= 20000);
+        assertTrue(fast.getStatistics().getAverageComparisonNanos() < slow.getStatistics().getAverageComparisonNanos() / 10);
+        assertEquals(slow.getStatistics().getHeight(), fast.getStatistics().getHeight()); // shape does not tell the difference
+    }
+
+    @Test
+    public void resetZeroesCounters() {
+        BSTTreeSet<Integer> tree = TreeBalancing.AVL.newTreeSet();
+        tree.setStatisticsEnabled(true);
+        for (int i = 0; i < NUMBER_OF_ELEMENTS; i++) {
+            tree.add(i);
+        }
+        tree.resetStatistics();
+        tree.contains(0);
+
+        TreeStatistics statistics = tree.getStatistics();
+        assertEquals(1, statistics.getSearches());
+        assertEquals(statistics.getNodesVisited(), statistics.getComparisons());
+        assertEquals(0, statistics.getInsertions());
+        assertEquals(0, statistics.getRotations());
+        assertEquals(NUMBER_OF_ELEMENTS, statistics.getSize());
+    }
+
+    @Test
+    public void disabledByDefault() {
+        BSTTreeSet<Integer> tree = new BSTTreeSet<>();
+        assertFalse(tree.isStatisticsEnabled());
+        tree.setStatisticsEnabled(true);
+        tree.add(1);
+        tree.setStatisticsEnabled(false);
+        tree.setStatisticsEnabled(true);
+        assertEquals(0, tree.getStatistics().getInsertions());
+    }
+
+    @Test (expected = IllegalStateException.class)
+    public void noStatisticsWhenDisabled() {
+        new BSTTreeSet<Integer>().getStatistics();
+    }
+}